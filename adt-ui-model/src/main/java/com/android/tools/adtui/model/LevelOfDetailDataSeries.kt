@@ -0,0 +1,28 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.model
+
+/**
+ * A [DataSeries] which can provide a reduced version of its data for consumers that cannot display more than a given number of points,
+ * e.g. a chart that is only so many pixels wide.
+ */
+interface LevelOfDetailDataSeries<E> : DataSeries<E> {
+  /**
+   * Returns the data in [range], reduced such that for every one of at most about [maxBuckets] buckets along the x axis only a constant
+   * number of points representative of the shape of the data (e.g. the first, last, minimum and maximum) are returned.
+   */
+  fun getDataForRange(range: Range, maxBuckets: Int): List<SeriesData<E>>
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.model
+
+import kotlin.math.ceil
+import kotlin.math.floor
+import kotlin.math.max
+import kotlin.math.min
+
+/**
+ * An append-only [LevelOfDetailDataSeries] which maintains a min/max pyramid of its samples, so that querying a reduced version of a
+ * range costs time proportional to the number of requested buckets rather than to the number of samples in the range.
+ *
+ * Level 0 holds the samples. Each node of level k summarizes [FAN_OUT]^k consecutive samples by the indexes of its minimum and maximum
+ * samples (its first and last samples are implied by its position). Levels are updated as samples are added, in O(log n) per sample.
+ *
+ * Samples must be added in increasing x order. Adding samples and querying are synchronized, so the series can be filled on a background
+ * thread while a chart reads it.
+ */
+class MinMaxPyramidDataSeries : LevelOfDetailDataSeries<Long> {
+  private var xs = LongArray(INITIAL_CAPACITY)
+  private var values = LongArray(INITIAL_CAPACITY)
+  private val levels = mutableListOf<Level>()
+
+  var size = 0
+    @Synchronized get
+    private set
+
+  @Synchronized
+  fun add(x: Long, value: Long) {
+    require(size == 0 || x >= xs[size - 1]) { "Samples must be added in increasing x order" }
+    if (size == xs.size) {
+      xs = xs.copyOf(size * 2)
+      values = values.copyOf(size * 2)
+    }
+    val index = size++
+    xs[index] = x
+    values[index] = value
+
+    // Level k only exists once level k - 1 has more than one node.
+    var level = 1
+    while (index shr (FAN_OUT_BITS * (level - 1)) > 0) {
+      if (levels.size < level) {
+        // The first node of the new level covers the first node of the level below.
+        val below = if (level == 1) null else levels[level - 2]
+        levels.add(Level().apply { append(below?.minIndex?.get(0) ?: 0, below?.maxIndex?.get(0) ?: 0) })
+      }
+      levels[level - 1].update(index shr (FAN_OUT_BITS * level), index)
+      level++
+    }
+  }
+
+  override fun getDataForRange(range: Range): List<SeriesData<Long>> = getDataForRange(range, Int.MAX_VALUE)
+
+  /**
+   * The result includes the samples just before and after [range], so that a line can be drawn up to the edges of the range.
+   */
+  @Synchronized
+  override fun getDataForRange(range: Range, maxBuckets: Int): List<SeriesData<Long>> {
+    if (size == 0 || range.isEmpty) {
+      return emptyList()
+    }
+    val from = getIndexAtOrBefore(ceil(range.min).toLong())
+    val to = getIndexAtOrAfter(floor(range.max).toLong())
+
+    // Pick the most detailed level with no more than maxBuckets nodes in range.
+    val buckets = max(1, maxBuckets)
+    var level = 0
+    while (level < levels.size && (to shr (FAN_OUT_BITS * level)) - (from shr (FAN_OUT_BITS * level)) >= buckets) {
+      level++
+    }
+    if (level == 0) {
+      return (from..to).map { SeriesData(xs[it], values[it]) }
+    }
+
+    val shift = FAN_OUT_BITS * level
+    val nodes = levels[level - 1]
+    val result = ArrayList<SeriesData<Long>>()
+    var lastAdded = -1
+    for (node in (from shr shift)..(to shr shift)) {
+      val first = max(node shl shift, from)
+      val last = min(((node + 1) shl shift) - 1, to)
+      // The minimum and maximum of the boundary nodes may lie slightly outside of the range, which is fine for a chart.
+      val indexes = intArrayOf(first, nodes.minIndex[node], nodes.maxIndex[node], last).apply { sort() }
+      for (index in indexes) {
+        if (index > lastAdded) {
+          result.add(SeriesData(xs[index], values[index]))
+          lastAdded = index
+        }
+      }
+    }
+    return result
+  }
+
+  /**
+   * Returns the index of the last sample whose x is not greater than [x], or 0 if there is none.
+   */
+  private fun getIndexAtOrBefore(x: Long): Int {
+    var low = 0
+    var high = size - 1
+    while (low <= high) {
+      val mid = (low + high) ushr 1
+      if (xs[mid] <= x) low = mid + 1 else high = mid - 1
+    }
+    return max(0, high)
+  }
+
+  /**
+   * Returns the index of the first sample whose x is not less than [x], or the last index if there is none.
+   */
+  private fun getIndexAtOrAfter(x: Long): Int {
+    var low = 0
+    var high = size - 1
+    while (low <= high) {
+      val mid = (low + high) ushr 1
+      if (xs[mid] < x) low = mid + 1 else high = mid - 1
+    }
+    return min(size - 1, low)
+  }
+
+  private inner class Level {
+    var minIndex = IntArray(INITIAL_CAPACITY)
+    var maxIndex = IntArray(INITIAL_CAPACITY)
+    var size = 0
+
+    fun append(min: Int, max: Int) {
+      if (size == minIndex.size) {
+        minIndex = minIndex.copyOf(size * 2)
+        maxIndex = maxIndex.copyOf(size * 2)
+      }
+      minIndex[size] = min
+      maxIndex[size] = max
+      size++
+    }
+
+    fun update(node: Int, index: Int) {
+      if (node == size) {
+        append(index, index)
+        return
+      }
+      if (values[index] < values[minIndex[node]]) minIndex[node] = index
+      if (values[index] > values[maxIndex[node]]) maxIndex[node] = index
+    }
+  }
+
+  companion object {
+    private const val FAN_OUT_BITS = 2
+    const val FAN_OUT = 1 shl FAN_OUT_BITS
+    private const val INITIAL_CAPACITY = 16
+
+    /**
+     * Creates a series of [data], e.g. the samples of a counter of a captured trace. [data] is sorted by x first if it is not already.
+     */
+    @JvmStatic
+    fun of(data: List<SeriesData<Long>>): MinMaxPyramidDataSeries {
+      val sorted = if ((1 until data.size).all { data[it - 1].x <= data[it].x }) data else data.sortedBy { it.x }
+      return MinMaxPyramidDataSeries().apply { sorted.forEach { add(it.x, it.value) } }
+    }
+
+    /**
+     * Creates a series of the data returned by [data], which is only called, and the pyramid only built, when the series is first queried,
+     * e.g. when its track is first displayed.
+     */
+    @JvmStatic
+    fun lazyOf(data: () -> List<SeriesData<Long>>): LevelOfDetailDataSeries<Long> = object : LevelOfDetailDataSeries<Long> {
+      private val series by lazy { of(data()) }
+
+      override fun getDataForRange(range: Range): List<SeriesData<Long>> = series.getDataForRange(range)
+
+      override fun getDataForRange(range: Range, maxBuckets: Int): List<SeriesData<Long>> = series.getDataForRange(range, maxBuckets)
+    }
+  }
+}
@@ -73,6 +73,15 @@ open class RangedSeries<E>
     return lastQueriedSeries
   }
 
+  /**
+   * Like [series], but if the underlying data series is a [LevelOfDetailDataSeries], returns its data reduced to about [maxBuckets]
+   * buckets. Unlike [series], this is not cached since it is meant to be cheap regardless of the size of the range.
+   */
+  fun getSeries(maxBuckets: Int): List<SeriesData<E>> {
+    val dataSeries = _series
+    return if (dataSeries is LevelOfDetailDataSeries<E>) dataSeries.getDataForRange(intersection, maxBuckets) else series
+  }
+
   /**
    * @param range The range to which the data will be scoped.
    * @return A new, immutable [SeriesDataList] that allows the caller to get items in the DataStore scoped to the given range.
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.model
+
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+import kotlin.random.Random
+
+class MinMaxPyramidDataSeriesTest {
+
+  @Test
+  fun `returns empty list for empty series`() {
+    val series = MinMaxPyramidDataSeries()
+    assertThat(series.getDataForRange(Range(0.0, 3.0), 10)).isEmpty()
+  }
+
+  @Test
+  fun `returns all data when it fits in the buckets`() {
+    val series = MinMaxPyramidDataSeries()
+    (0L until 100L).forEach { series.add(it, it * 2) }
+
+    assertThat(series.getDataForRange(Range(10.0, 19.0), 10)).isEqualTo((10L..19L).map { SeriesData(it, it * 2) })
+    assertThat(series.getDataForRange(Range(10.0, 19.0))).isEqualTo((10L..19L).map { SeriesData(it, it * 2) })
+  }
+
+  @Test
+  fun `includes the samples around the range`() {
+    val series = MinMaxPyramidDataSeries.of(listOf(SeriesData(0L, 1L), SeriesData(10L, 2L), SeriesData(20L, 3L), SeriesData(30L, 4L)))
+
+    assertThat(series.getDataForRange(Range(5.0, 15.0), 10)).containsExactly(SeriesData(0L, 1L), SeriesData(10L, 2L), SeriesData(20L, 3L))
+      .inOrder()
+    assertThat(series.getDataForRange(Range(10.0, 20.0), 10)).containsExactly(SeriesData(10L, 2L), SeriesData(20L, 3L)).inOrder()
+    assertThat(series.getDataForRange(Range(25.0, 100.0), 10)).containsExactly(SeriesData(20L, 3L), SeriesData(30L, 4L)).inOrder()
+  }
+
+  @Test
+  fun `sorts unsorted data`() {
+    val series = MinMaxPyramidDataSeries.of(listOf(SeriesData(20L, 3L), SeriesData(0L, 1L), SeriesData(10L, 2L)))
+
+    assertThat(series.getDataForRange(Range(0.0, 20.0))).containsExactly(SeriesData(0L, 1L), SeriesData(10L, 2L), SeriesData(20L, 3L))
+      .inOrder()
+  }
+
+  @Test
+  fun `lazy series is built when first queried`() {
+    var calls = 0
+    val series = MinMaxPyramidDataSeries.lazyOf {
+      calls++
+      listOf(SeriesData(0L, 1L), SeriesData(10L, 2L))
+    }
+    assertThat(calls).isEqualTo(0)
+
+    assertThat(series.getDataForRange(Range(0.0, 10.0), 10)).containsExactly(SeriesData(0L, 1L), SeriesData(10L, 2L)).inOrder()
+    assertThat(series.getDataForRange(Range(0.0, 10.0))).hasSize(2)
+    assertThat(calls).isEqualTo(1)
+  }
+
+  @Test
+  fun `can be read while data is added`() {
+    val series = MinMaxPyramidDataSeries()
+    val writer = Thread { (0L until 100_000L).forEach { series.add(it, it % 100) } }
+    writer.start()
+    while (writer.isAlive) {
+      val reduced = series.getDataForRange(Range(0.0, 100_000.0), 50)
+      assertThat(reduced.map { it.x }).isInStrictOrder()
+    }
+    writer.join()
+    assertThat(series.size).isEqualTo(100_000)
+  }
+
+  @Test
+  fun `reduced data is bounded by the number of buckets and keeps extremes`() {
+    val random = Random(42)
+    val series = MinMaxPyramidDataSeries()
+    val values = List(100_000) { random.nextLong(-1000, 1000) }
+    values.forEachIndexed { index, value -> series.add(index * 10L, value) }
+
+    val reduced = series.getDataForRange(Range(0.0, 999_990.0), 100)
+    assertThat(reduced.size).isAtMost(4 * 100)
+    assertThat(reduced.first()).isEqualTo(SeriesData(0L, values.first()))
+    assertThat(reduced.last()).isEqualTo(SeriesData(999_990L, values.last()))
+    assertThat(reduced.minOf { it.value }).isEqualTo(values.minOrNull())
+    assertThat(reduced.maxOf { it.value }).isEqualTo(values.maxOrNull())
+    assertThat(reduced.map { it.x }).isInStrictOrder()
+  }
+
+  @Test
+  fun `levels are kept up to date as data arrives`() {
+    val series = MinMaxPyramidDataSeries()
+    (0L until 1000L).forEach { series.add(it, 0) }
+    assertThat(series.getDataForRange(Range(0.0, 2000.0), 8).maxOf { it.value }).isEqualTo(0)
+
+    series.add(1000, 50)
+    series.add(1001, -50)
+    (1002L until 2000L).forEach { series.add(it, 0) }
+    val reduced = series.getDataForRange(Range(0.0, 2000.0), 8)
+    assertThat(reduced).contains(SeriesData(1000L, 50L))
+    assertThat(reduced).contains(SeriesData(1001L, -50L))
+    assertThat(series.size).isEqualTo(2000)
+  }
+
+  @Test(expected = IllegalArgumentException::class)
+  fun `data must be added in order`() {
+    val series = MinMaxPyramidDataSeries()
+    series.add(10, 0)
+    series.add(5, 0)
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.chart.hchart
+
+import com.android.tools.adtui.model.HNode
+import java.util.TreeMap
+import kotlin.math.max
+
+/**
+ * An index of the nodes of a tree by depth, with the nodes of each depth sorted by start, so that the nodes intersecting a range can
+ * be enumerated in O(depths * log(n) + visible) rather than by walking the whole tree.
+ *
+ * Nodes are enumerated by increasing depth, and by increasing start within a depth, which is the order expected by [HTreeChartReducer].
+ *
+ * The index is a snapshot of the tree: it has to be rebuilt when the tree changes, or when the start or end of its nodes change (e.g.
+ * when the clock type of profiler capture nodes is switched).
+ */
+internal class HNodeDepthIndex<N : HNode<N>>(root: N?, includeRoot: Boolean) {
+  private val rows: List<Row<N>>
+
+  /**
+   * The maximum depth of the nodes of the tree (including the root even if it is not included), or -1 if there is no tree.
+   */
+  val maxDepth: Int
+
+  init {
+    val nodesByDepth = TreeMap<Int, MutableList<N>>()
+    var deepest = -1
+    if (root != null) {
+      val stack = ArrayDeque<N>()
+      stack.add(root)
+      while (stack.isNotEmpty()) {
+        val node = stack.removeLast()
+        deepest = max(deepest, node.depth)
+        if (node !== root || includeRoot) {
+          nodesByDepth.getOrPut(node.depth) { ArrayList() }.add(node)
+        }
+        for (i in node.childCount - 1 downTo 0) {
+          stack.add(node.getChildAt(i))
+        }
+      }
+    }
+    maxDepth = deepest
+    rows = nodesByDepth.values.map { Row(it.sortedBy { node -> node.start }) }
+  }
+
+  /**
+   * Calls [consumer] with every node intersecting the range [[min], [max]].
+   */
+  fun forEachInRange(min: Double, max: Double, consumer: (N) -> Unit) {
+    for (row in rows) {
+      row.forEachInRange(min, max, consumer)
+    }
+  }
+
+  private class Row<N : HNode<N>>(private val nodes: List<N>) {
+    private val starts = LongArray(nodes.size) { nodes[it].start }
+
+    /**
+     * Running maximum of the end of the nodes, which is sorted even if nodes of the same depth overlap.
+     */
+    private val maxEnds = LongArray(nodes.size)
+
+    init {
+      var maxEnd = Long.MIN_VALUE
+      for (i in nodes.indices) {
+        maxEnd = max(maxEnd, nodes[i].end)
+        maxEnds[i] = maxEnd
+      }
+    }
+
+    fun forEachInRange(min: Double, max: Double, consumer: (N) -> Unit) {
+      // Nodes before "from" all end before min, nodes from "to" on all start after max.
+      val from = firstIndex { maxEnds[it] >= min }
+      val to = firstIndex { starts[it] > max }
+      for (i in from until to) {
+        val node = nodes[i]
+        if (node.end >= min) {
+          consumer(node)
+        }
+      }
+    }
+
+    /**
+     * Returns the first index for which the monotonic [predicate] is true, or the number of nodes if there is none.
+     */
+    private inline fun firstIndex(predicate: (Int) -> Boolean): Int {
+      var low = 0
+      var high = nodes.size
+      while (low < high) {
+        val mid = (low + high) ushr 1
+        if (predicate(mid)) high = mid else low = mid + 1
+      }
+      return low
+    }
+  }
+}
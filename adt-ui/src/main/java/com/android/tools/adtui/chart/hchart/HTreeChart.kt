@@ -36,8 +36,6 @@ import java.awt.event.MouseEvent
 import java.awt.event.MouseWheelEvent
 import java.awt.geom.Rectangle2D
 import java.awt.image.BufferedImage
-import java.util.LinkedList
-import java.util.Queue
 import javax.swing.AbstractAction
 import javax.swing.KeyStroke
 import kotlin.math.max
@@ -64,6 +62,11 @@ class HTreeChart<N : HNode<N>> private constructor(builder: Builder<N>) : Animat
   private val nodes = ArrayList<N>()
   private val rootVisible = builder.rootVisible
 
+  /**
+   * Index of the nodes of [root] by depth, rebuilt when the tree is set, used to find the nodes in range without walking the tree.
+   */
+  private var nodeIndex = HNodeDepthIndex<N>(null, rootVisible)
+
   /**
    * Normally, the focused node is set by mouse hover. However, for tests, it can be a huge
    * convenience to set this directly.
@@ -91,6 +94,18 @@ class HTreeChart<N : HNode<N>> private constructor(builder: Builder<N>) : Animat
 
   private val drawnRectangles = ArrayList<Rectangle2D.Float>()
   private val drawnNodes = ArrayList<N>()
+
+  /**
+   * Indexes in [drawnNodes] at which a new depth starts, followed by the size of [drawnNodes].
+   */
+  private val drawnRowStarts = ArrayList<Int>()
+
+  /**
+   * Rectangles reused across updates and frames, as there can be many of them.
+   */
+  private val rectanglePool = ArrayList<Rectangle2D.Float>()
+  private val drawnRectanglePool = ArrayList<Rectangle2D.Float>()
+  private val clampedDrawingArea = Rectangle2D.Float()
   private val reducer = builder.reducer
   private var canvas: Image? = null
 
@@ -132,6 +147,7 @@ class HTreeChart<N : HNode<N>> private constructor(builder: Builder<N>) : Animat
   }
 
   private fun rootChanged() {
+    nodeIndex = HNodeDepthIndex(root, rootVisible)
     maximumHeight = calculateMaximumHeight()
     // Update preferred size using calculated height to make sure containers of this chart account for the height change during layout.
     preferredSize = Dimension(preferredSize.width, maximumHeight)
@@ -184,8 +200,8 @@ class HTreeChart<N : HNode<N>> private constructor(builder: Builder<N>) : Animat
     drawnNodes.addAll(nodes)
     drawnRectangles.clear()
     // Transform
-    for (rect in rectangles) {
-      val newRect = Rectangle2D.Float()
+    for ((i, rect) in rectangles.withIndex()) {
+      val newRect = drawnRectanglePool.getOrAdd(i)
       newRect.x = rect.x * dim.getWidth().toFloat()
       newRect.y = rect.y
       newRect.width = max(0f, rect.width * dim.getWidth().toFloat() - nodeXPaddingPx)
@@ -197,10 +213,14 @@ class HTreeChart<N : HNode<N>> private constructor(builder: Builder<N>) : Animat
     }
     reducer.reduce(drawnRectangles, drawnNodes)
     assert(drawnRectangles.size == drawnNodes.size)
+    drawnRowStarts.clear()
     for (i in drawnNodes.indices) {
       val node = drawnNodes[i]
+      if (i == 0 || node.depth != drawnNodes[i - 1].depth) {
+        drawnRowStarts.add(i)
+      }
       val drawingArea = drawnRectangles[i]
-      val clampedDrawingArea = Rectangle2D.Float(
+      clampedDrawingArea.setRect(
         max(0f, drawingArea.x),
         drawingArea.y,
         min(drawingArea.x + drawingArea.width, (dim.width - nodeXPaddingPx).toFloat()) - max(0f, drawingArea.x),
@@ -208,6 +228,7 @@ class HTreeChart<N : HNode<N>> private constructor(builder: Builder<N>) : Animat
       )
       renderer.render(g, node, drawingArea, clampedDrawingArea, node === focusedNode, selectedNode != null && node !== selectedNode)
     }
+    drawnRowStarts.add(drawnNodes.size)
     g.dispose()
   }
 
@@ -215,36 +236,16 @@ class HTreeChart<N : HNode<N>> private constructor(builder: Builder<N>) : Animat
     nodes.clear()
     rectangles.clear()
     canvas = null
-    if (root == null) {
-      return
-    }
-    if (inRange(root!!)) {
-      nodes.add(root!!)
-      rectangles.add(createRectangle(root!!))
-    }
-    var head = 0
-    while (head < nodes.size) {
-      val curNode = nodes[head++]
-      for (i in 0 until curNode.childCount) {
-        val child = curNode.getChildAt(i)
-        if (inRange(child)) {
-          nodes.add(child)
-          rectangles.add(createRectangle(child))
-        }
-      }
-    }
-    if (!rootVisible && nodes.isNotEmpty()) {
-      nodes.removeAt(0)
-      rectangles.removeAt(0)
+    nodeIndex.forEachInRange(xRange.min, xRange.max) { node ->
+      rectangles.add(updateRectangle(node, rectanglePool.getOrAdd(nodes.size)))
+      nodes.add(node)
     }
   }
 
-  private fun inRange(node: N) = node.start <= xRange.max && node.end >= xRange.min
-
-  private fun createRectangle(node: N): Rectangle2D.Float {
+  private fun updateRectangle(node: N, rectangle: Rectangle2D.Float): Rectangle2D.Float {
     val left = ((node.start - xRange.min) / xRange.length).toFloat()
     val right = ((node.end - xRange.min) / xRange.length).toFloat()
-    return Rectangle2D.Float().apply {
+    return rectangle.apply {
       x = left
       y = ((nodeHeight + nodeYPaddingPx) * node.depth - yRange.min).toFloat()
       width = right - left
@@ -252,6 +253,13 @@ class HTreeChart<N : HNode<N>> private constructor(builder: Builder<N>) : Animat
     }
   }
 
+  private fun ArrayList<Rectangle2D.Float>.getOrAdd(index: Int): Rectangle2D.Float {
+    if (index == size) {
+      add(Rectangle2D.Float())
+    }
+    return this[index]
+  }
+
   private fun positionToRange(x: Double) = x / width * xRange.length + xRange.min
 
   fun setHTree(root: N?) {
@@ -259,7 +267,36 @@ class HTreeChart<N : HNode<N>> private constructor(builder: Builder<N>) : Animat
     rootChanged()
   }
 
-  fun getNodeAt(point: Point): N? = (drawnNodes zip drawnRectangles).find { (_, rect) -> point in rect }?.first
+  fun getNodeAt(point: Point): N? {
+    // Drawn nodes are grouped by depth, so the rows' y are monotonic: increasing if top-down and decreasing if bottom-up.
+    var low = 0
+    var high = drawnRowStarts.size - 2
+    while (low <= high) {
+      val row = (low + high) ushr 1
+      val rowRectangle = drawnRectangles[drawnRowStarts[row]]
+      val isAbove = point.y < rowRectangle.minY
+      val isBelow = point.y >= rowRectangle.maxY
+      if (!isAbove && !isBelow) {
+        return getNodeInRow(drawnRowStarts[row], drawnRowStarts[row + 1], point)
+      }
+      if (isAbove == (orientation == Orientation.TOP_DOWN)) high = row - 1 else low = row + 1
+    }
+    return null
+  }
+
+  /**
+   * Returns the node drawn at [point] among the nodes in [from, to), which are sorted by x.
+   */
+  private fun getNodeInRow(from: Int, to: Int, point: Point): N? {
+    var low = from
+    var high = to
+    while (low < high) {
+      val mid = (low + high) ushr 1
+      if (drawnRectangles[mid].minX <= point.x) low = mid + 1 else high = mid
+    }
+    // low is the first rectangle starting after point.
+    return if (low > from && point in drawnRectangles[low - 1]) drawnNodes[low - 1] else null
+  }
 
   private fun initializeInputMap() {
     fun bindKey(key: Int, action: String) = inputMap.put(KeyStroke.getKeyStroke(key, 0), action)
@@ -366,19 +403,7 @@ class HTreeChart<N : HNode<N>> private constructor(builder: Builder<N>) : Animat
     if (root == null) {
       return 0
     }
-    var maxDepth = -1
-    val queue: Queue<N> = LinkedList()
-    queue.add(root)
-    while (!queue.isEmpty()) {
-      val n = queue.poll()!!
-      if (n.depth > maxDepth) {
-        maxDepth = n.depth
-      }
-      for (i in 0 until n.childCount) {
-        queue.add(n.getChildAt(i))
-      }
-    }
-    maxDepth += 1
+    val maxDepth = nodeIndex.maxDepth + 1
     // The HEIGHT_PADDING is for the chart's toe (the innermost frame on call stacks).
     // We have this because the padding near the chart's head (the outermost frame on call stacks)
     // is there because the root node of the tree is invisible.
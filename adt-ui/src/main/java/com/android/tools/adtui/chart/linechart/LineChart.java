@@ -111,6 +111,11 @@ public class LineChart extends AnimatedComponent {
 
   private boolean myRedraw;
 
+  /**
+   * The width the line paths were last computed for, as the level of detail of the data depends on it.
+   */
+  private int myRedrawWidth = -1;
+
   @NotNull private DoubleSupplier myFillEndSupplier = ALWAYS_0;
 
   @NotNull
@@ -194,7 +199,11 @@ public class LineChart extends AnimatedComponent {
       }
       final LineConfig config = getLineConfig(ranged);
 
-      List<SeriesData<Long>> seriesList = ranged.getSeries();
+      // Stacked series rely on the x values of all series being aligned and bars need every data point, so only use a level of detail
+      // matching the chart width (if the series provides one) for plain lines. Lines are reduced per pixel in draw anyway.
+      List<SeriesData<Long>> seriesList = config.isStacked() || config.getDataBucketInterval() > 0
+                                          ? ranged.getSeries()
+                                          : ranged.getSeries(Math.max(1, dim.width));
       if (config.isStacked()) {
         if (lastStackedSeries == null) {
           // Create a new list of SeriesData to prevent modifying the backing data series, which could be cached.
@@ -395,8 +404,9 @@ public class LineChart extends AnimatedComponent {
       myLastCount = now;
     }
     myDraws++;
-    if (myRedraw) {
+    if (myRedraw || myRedrawWidth != dim.width) {
       myRedraw = false;
+      myRedrawWidth = dim.width;
       redraw(dim);
       myRedraws++;
     }
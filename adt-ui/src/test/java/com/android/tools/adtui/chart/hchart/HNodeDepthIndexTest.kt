@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.chart.hchart
+
+import com.android.tools.adtui.model.DefaultHNode
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+
+class HNodeDepthIndexTest {
+  // Depth 0: root [0, 100]
+  // Depth 1: a [0, 40], b [50, 100]
+  // Depth 2: a1 [0, 10], a2 [20, 40], b1 [60, 70]
+  private val a1 = node("a1", 0, 10, 2)
+  private val a2 = node("a2", 20, 40, 2)
+  private val b1 = node("b1", 60, 70, 2)
+  private val a = node("a", 0, 40, 1, a1, a2)
+  private val b = node("b", 50, 100, 1, b1)
+  private val root = node("root", 0, 100, 0, a, b)
+
+  @Test
+  fun `nodes in range are enumerated by depth then start`() {
+    val index = HNodeDepthIndex(root, true)
+    assertThat(index.nodesInRange(0.0, 100.0)).containsExactly(root, a, b, a1, a2, b1).inOrder()
+    assertThat(index.nodesInRange(35.0, 65.0)).containsExactly(root, a, b, a2, b1).inOrder()
+    assertThat(index.nodesInRange(41.0, 49.0)).containsExactly(root)
+    assertThat(index.nodesInRange(101.0, 200.0)).isEmpty()
+    assertThat(index.maxDepth).isEqualTo(2)
+  }
+
+  @Test
+  fun `root can be excluded`() {
+    val index = HNodeDepthIndex(root, false)
+    assertThat(index.nodesInRange(0.0, 100.0)).containsExactly(a, b, a1, a2, b1).inOrder()
+    assertThat(index.maxDepth).isEqualTo(2)
+  }
+
+  @Test
+  fun `overlapping nodes of the same depth are found`() {
+    val long = node("long", 0, 90, 1)
+    val short = node("short", 10, 20, 1)
+    val index = HNodeDepthIndex(node("root", 0, 100, 0, long, short), false)
+    assertThat(index.nodesInRange(80.0, 85.0)).containsExactly(long)
+    assertThat(index.nodesInRange(15.0, 16.0)).containsExactly(long, short).inOrder()
+  }
+
+  @Test
+  fun `empty tree`() {
+    val index = HNodeDepthIndex<DefaultHNode<String>>(null, true)
+    assertThat(index.nodesInRange(0.0, 100.0)).isEmpty()
+    assertThat(index.maxDepth).isEqualTo(-1)
+  }
+
+  private fun HNodeDepthIndex<DefaultHNode<String>>.nodesInRange(min: Double, max: Double): List<DefaultHNode<String>> {
+    val result = mutableListOf<DefaultHNode<String>>()
+    forEachInRange(min, max) { result.add(it) }
+    return result
+  }
+
+  private fun node(name: String, start: Long, end: Long, depth: Int, vararg children: DefaultHNode<String>) =
+    DefaultHNode(name, start, end).apply {
+      this.depth = depth
+      children.forEach { addChild(it) }
+    }
+}
@@ -329,6 +329,16 @@ public final class StudioFlags {
     "Enable binary cache of classes used in preview",
     true);
 
+  public static final Flag<Boolean> NELE_PERSISTENT_CLASS_BINARY_CACHE = Flag.create(
+    NELE, "toggle.layout.editor.persistent.class.binary.cache", "Enable persistent binary cache",
+    "Keep the binary cache of library classes used in preview on disk, so that it survives IDE restarts",
+    false);
+
+  public static final Flag<Boolean> NELE_CLASS_PREFETCH = Flag.create(
+    NELE, "toggle.layout.editor.class.prefetch", "Enable class prefetching",
+    "Load and transform in the background the library classes that a preview used the last time it was rendered",
+    false);
+
   public static final Flag<Boolean> NELE_ASSET_REPOSITORY_INCLUDE_AARS_THROUGH_PROJECT_SYSTEM = Flag.create(
     NELE, "asset.repository.include.aars.through.project.system", "Include AARs through project system",
     "Include resource directories from AARs found through project system.",
@@ -369,6 +379,12 @@ public final class StudioFlags {
     "If enabled, the size of previews will be proportional to screen dp size instead of screen px size.",
     true);
 
+  public static final Flag<Boolean> NELE_SCENE_LAYER_CACHE = Flag.create(
+    NELE, "scene.layer.cache", "Reuse the draw commands of unchanged scene components",
+    "If enabled, the draw commands generated for a SceneComponent are cached and reused when rebuilding the display list if " +
+    "the component did not change.",
+    false);
+
   public static final Flag<Boolean> NELE_NEW_COMPONENT_TREE = Flag.create(
     NELE, "use.component.tree.builder", "Use the Component Tree builder",
     "If enabled, use the Component Tree builder for the Nele component tree",
@@ -543,6 +559,14 @@ public final class StudioFlags {
     "Use adblib instead of ddmlib for Device Explorer",
     true);
 
+  public static final Flag<Boolean> DEVICE_EXPLORER_FILE_TREE_CACHE = Flag.create(
+    RUNDEBUG,
+    "device.explorer.file.tree.cache",
+    "Cache the Device Explorer file tree",
+    "Show the last known entries of device directories while they are listed again, " +
+    "and list the subdirectories of expanded directories in the background",
+    false);
+
   public static final Flag<Boolean> ADBLIB_MIGRATION_WIFI_PAIRING = Flag.create(
     RUNDEBUG,
     "adblib.migration.wifi.pairing",
@@ -789,6 +813,13 @@ public final class StudioFlags {
     "Enables caching of build variant data so that the IDE does not always run Gradle when switching between build variants. " +
     "While faster this mode may be incompatible with some plugins.", true);
 
+  public static final Flag<Boolean> GRADLE_SYNC_INCREMENTAL_MODEL_CACHE = Flag.create(
+    GRADLE_IDE, "gradle.sync.incremental.model.cache", "Enables reusing variant models of unchanged modules",
+    "When enabled variant models of Android modules whose build inputs (build files, manifests, source set directories and " +
+    "properties files, and those of the modules they depend on) did not change since the previous sync, with the same AGP version " +
+    "and Studio build, are read from an on-disk cache instead of being fetched from Gradle. This mode does not detect dependency " +
+    "changes that are not caused by changes to these inputs (e.g. dynamic versions).", false);
+
   public static final Flag<Boolean> ALLOW_DIFFERENT_JDK_VERSION = Flag.create(
     GRADLE_IDE, "jdk.allow.different", "Allow different Gradle JDK", "Allow usage of a different JDK version when running Gradle.", true);
 
@@ -1122,6 +1153,20 @@ public final class StudioFlags {
     true
   );
 
+  public static final Flag<Boolean> LINT_EDITOR_RESULT_CACHE = Flag.create(
+    EDITOR, "lint.editor.result.cache",
+    "Cache lint editor results on disk",
+    "If enabled, lint results of unchanged files are reused across editor sessions and IDE restarts instead of running lint again",
+    false
+  );
+
+  public static final Flag<Boolean> LINT_PARALLEL_BATCH_ANALYSIS = Flag.create(
+    EDITOR, "lint.parallel.batch.analysis",
+    "Run batch lint analysis of independent modules in parallel",
+    "If enabled, Inspect Code analyzes groups of modules that do not depend on each other concurrently, with a separate lint driver each",
+    false
+  );
+
   //endregion
 
   //region Unified App Bundle
@@ -1204,6 +1249,11 @@ public final class StudioFlags {
     "If enabled, the antivirus status checker will use the Windows registry instead of PowerShell commands",
     true);
 
+  public static final Flag<Boolean> JFR_STREAMING_ENABLED = Flag.create(
+    SYSTEM_HEALTH, "jfr.streaming.enabled", "Stream JFR events to the reports",
+    "If enabled, JFR events are streamed to the reports as they are recorded, instead of periodically dumping and re-reading the recording",
+    false);
+
   //endregion
 
   //region Compose
@@ -28,6 +28,8 @@ import com.android.tools.idea.projectsystem.getScopeType
 import com.intellij.openapi.diagnostic.Logger
 import com.intellij.openapi.diagnostic.debug
 import com.intellij.openapi.module.Module
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.util.Key
 import com.intellij.openapi.util.text.StringUtil
 import com.intellij.psi.JavaPsiFacade
 import com.intellij.psi.PsiAnnotation
@@ -44,6 +46,7 @@ import com.intellij.psi.PsiModifierList
 import com.intellij.psi.PsiModifierListOwner
 import com.intellij.psi.PsiNamedElement
 import com.intellij.psi.SmartPointerManager
+import com.intellij.psi.SyntaxTraverser
 import com.intellij.psi.impl.source.PsiClassReferenceType
 import com.intellij.psi.search.GlobalSearchScope
 import com.intellij.psi.search.searches.AnnotatedElementsSearch.searchPsiClasses
@@ -75,7 +78,7 @@ class RoomSchemaManager(val module: Module) {
   /**
    * Returns the [RoomSchema] visible from the given [PsiFile] or null if Room is not used in the project.
    *
-   * The schema is cached in the file and recomputed after a change to PSI.
+   * The schema is cached in the file and recomputed after a change to PSI, reusing the tables of the classes whose files didn't change.
    */
   fun getSchema(psiFile: PsiFile): RoomSchema? {
     var vFile = psiFile.originalFile.virtualFile ?: return null
@@ -89,8 +92,8 @@ class RoomSchemaManager(val module: Module) {
     return schemas[scopeType]!!.value
   }
 
-  private val constantEvaluationHelper = JavaPsiFacade.getInstance(module.project).constantEvaluationHelper
   private val pointerManager = SmartPointerManager.getInstance(module.project)
+  private val tableFactory = RoomTableFactory(module.project)
 
   /** Builds the schema using IJ indexes. */
   private fun buildSchema(module: Module, scopeType: ScopeType): RoomSchema? {
@@ -103,8 +106,8 @@ class RoomSchemaManager(val module: Module) {
     val psiFacade = JavaPsiFacade.getInstance(module.project) ?: return null
 
     // Some of this logic is repeated in [RoomReferenceSearchExecutor], make sure to keep them in sync.
-    val entities = processAnnotatedClasses(psiFacade, scope, RoomAnnotations.ENTITY) { createTable(it, RoomTable.Type.ENTITY) }
-    val views = processAnnotatedClasses(psiFacade, scope, RoomAnnotations.DATABASE_VIEW) { createTable(it, RoomTable.Type.VIEW) }
+    val entities = processAnnotatedClasses(psiFacade, scope, RoomAnnotations.ENTITY) { tableFactory.getTable(it, RoomTable.Type.ENTITY) }
+    val views = processAnnotatedClasses(psiFacade, scope, RoomAnnotations.DATABASE_VIEW) { tableFactory.getTable(it, RoomTable.Type.VIEW) }
     val daos = processAnnotatedClasses(psiFacade, scope, RoomAnnotations.DAO) {
       Dao(pointerManager.createSmartPsiElementPointer(it))
     }
@@ -130,9 +133,66 @@ class RoomSchemaManager(val module: Module) {
     return result
   }
 
-  private fun createTable(psiClass: PsiClass, type: RoomTable.Type): RoomTable? {
+  private fun PsiAnnotation.extractClassesFromAttribute(attribute: String): Set<PsiClassPointer> = findDeclaredAttributeValue(attribute)
+  ?.let { it as? PsiArrayInitializerMemberValue }
+  ?.initializers
+  ?.mapNotNullTo(HashSet()) {
+    val classObjectAccessExpression = it as? PsiClassObjectAccessExpression ?: return@mapNotNullTo null
+    PsiUtil.resolveClassInClassTypeOnly(classObjectAccessExpression.operand.type)
+      ?.let(pointerManager::createSmartPsiElementPointer)
+  } ?: emptySet()
+
+  private fun createDatabase(psiClass: PsiClass, pointerManager: SmartPointerManager, daos: Set<Dao>): RoomDatabase? {
+    val dataBaseAnnotation = psiClass.modifierList?.findAnnotation(RoomAnnotations.DATABASE) ?: return null
+    val entities: Set<PsiClassPointer> = dataBaseAnnotation.extractClassesFromAttribute("entities")
+    val views: Set<PsiClassPointer> = dataBaseAnnotation.extractClassesFromAttribute("views")
+
+    val daosExposedInDatabase: Set<PsiClassPointer> = psiClass.allMethods
+      .mapNotNullTo((HashSet())) {
+        val resolvedClass = (it.returnType as? PsiClassReferenceType)?.resolve()
+        resolvedClass
+          ?.takeIf { daos.any { dao -> dao.psiClass.element == resolvedClass } }
+          ?.let(pointerManager::createSmartPsiElementPointer)
+      }
+
+    return RoomDatabase(pointerManager.createSmartPsiElementPointer(psiClass), entities = entities, daos = daosExposedInDatabase, views = views)
+  }
+
+  private inline fun AndroidxName.bothNames(f: (String) -> Unit) {
+    f(oldName())
+    f(newName())
+  }
+}
+
+private val ENTITY_TABLE_KEY = Key.create<CachedValue<RoomTable?>>("RoomSchemaManager.ENTITY_TABLE")
+private val VIEW_TABLE_KEY = Key.create<CachedValue<RoomTable?>>("RoomSchemaManager.VIEW_TABLE")
+
+/**
+ * Builds the [RoomTable] contributed by an annotated class.
+ *
+ * Tables are cached on the class, and only recomputed when one of the files they were built from changes, so that a change to PSI
+ * doesn't require re-creating the tables and columns of every entity in the module.
+ */
+private class RoomTableFactory(project: Project) {
+  private val constantEvaluationHelper = JavaPsiFacade.getInstance(project).constantEvaluationHelper
+  private val pointerManager = SmartPointerManager.getInstance(project)
+
+  fun getTable(psiClass: PsiClass, type: RoomTable.Type): RoomTable? {
+    val key = when (type) {
+      RoomTable.Type.ENTITY -> ENTITY_TABLE_KEY
+      RoomTable.Type.VIEW -> VIEW_TABLE_KEY
+    }
+    return CachedValuesManager.getCachedValue(psiClass, key) {
+      val dependencies = Dependencies()
+      dependencies.addFileOf(psiClass)
+      CachedValueProvider.Result.create(createTable(psiClass, type, dependencies), dependencies.toList())
+    }
+  }
+
+  private fun createTable(psiClass: PsiClass, type: RoomTable.Type, dependencies: Dependencies): RoomTable? {
     val (tableName, tableNameElement) = getNameAndNameElement(
       psiClass,
+      dependencies,
       annotationName = when (type) {
         RoomTable.Type.ENTITY -> RoomAnnotations.ENTITY
         RoomTable.Type.VIEW -> RoomAnnotations.DATABASE_VIEW
@@ -148,12 +208,13 @@ class RoomSchemaManager(val module: Module) {
       type,
       tableName,
       pointerManager.createSmartPsiElementPointer(tableNameElement),
-      createColumns(psiClass, tableName, type)
+      createColumns(psiClass, tableName, type, dependencies)
     )
   }
 
-  private fun createColumns(psiClass: PsiClass, tableName: String, type: RoomTable.Type): Set<AndroidSqlColumn> {
-    val columns = createColumnsFromFields(psiClass, useMethods = psiClass.hasAnnotation(AUTO_VALUE_ANNOTATION)).toHashSet<AndroidSqlColumn>()
+  private fun createColumns(psiClass: PsiClass, tableName: String, type: RoomTable.Type, dependencies: Dependencies): Set<AndroidSqlColumn> {
+    val columns = createColumnsFromFields(psiClass, dependencies, useMethods = psiClass.hasAnnotation(AUTO_VALUE_ANNOTATION))
+      .toHashSet<AndroidSqlColumn>()
     val tableElement = pointerManager.createSmartPsiElementPointer(psiClass).element!!
     val primaryKeyElement = columns.find { it.isPrimaryKey }
     if (psiClass.annotations.any(::isFtsAnnotation)) {
@@ -183,7 +244,14 @@ class RoomSchemaManager(val module: Module) {
     return if (psiClass.annotations.any(::isFtsAnnotation)) PRIMARY_KEY_NAMES_FOR_FTS else PRIMARY_KEY_NAMES
   }
 
-  private fun createColumnsFromFields(psiClass: PsiClass, namePrefix: String = "", useMethods: Boolean): Sequence<RoomMemberColumn> {
+  private fun createColumnsFromFields(
+    psiClass: PsiClass,
+    dependencies: Dependencies,
+    namePrefix: String = "",
+    useMethods: Boolean
+  ): Sequence<RoomMemberColumn> {
+    // Fields of superclasses are columns too.
+    dependencies.addClassHierarchy(psiClass)
     val members:MutableList<PsiMember> = psiClass.allFields.toMutableList()
     if (useMethods) {
       members.addAll(psiClass.methods)
@@ -195,10 +263,11 @@ class RoomSchemaManager(val module: Module) {
       .flatMap { psiMember ->
         val embeddedAnnotation = psiMember.modifierList?.findAnnotation(RoomAnnotations.EMBEDDED)
         if (embeddedAnnotation != null) {
-          createColumnsFromEmbeddedField(psiMember, embeddedAnnotation, namePrefix)
+          createColumnsFromEmbeddedField(psiMember, embeddedAnnotation, namePrefix, dependencies)
         } else {
           val thisField = getNameAndNameElement(
             psiMember as? PsiField ?: psiMember as PsiMethod,
+            dependencies,
             annotationName = RoomAnnotations.COLUMN_INFO,
             annotationAttributeName = "name"
           )
@@ -222,53 +291,35 @@ class RoomSchemaManager(val module: Module) {
   private fun createColumnsFromEmbeddedField(
     embeddedMember: PsiMember,
     embeddedAnnotation: PsiAnnotation,
-    currentPrefix: String
+    currentPrefix: String,
+    dependencies: Dependencies
   ): Sequence<RoomMemberColumn> {
     val newPrefix = embeddedAnnotation.findAttributeValue("prefix")
+                      ?.also(dependencies::addReferencesIn)
                       ?.let { constantEvaluationHelper.computeConstantExpression(it) }
                       ?.toString()
                     ?: ""
 
     val type = (embeddedMember as? PsiField)?.type ?: (embeddedMember as PsiMethod).returnType
-    val embeddedClass = PsiUtil.resolveClassInClassTypeOnly(type) ?: return emptySequence()
-
-    return createColumnsFromFields(embeddedClass, currentPrefix + newPrefix, false)
-  }
-
-  private fun PsiAnnotation.extractClassesFromAttribute(attribute: String): Set<PsiClassPointer> = findDeclaredAttributeValue(attribute)
-  ?.let { it as? PsiArrayInitializerMemberValue }
-  ?.initializers
-  ?.mapNotNullTo(HashSet()) {
-    val classObjectAccessExpression = it as? PsiClassObjectAccessExpression ?: return@mapNotNullTo null
-    PsiUtil.resolveClassInClassTypeOnly(classObjectAccessExpression.operand.type)
-      ?.let(pointerManager::createSmartPsiElementPointer)
-  } ?: emptySet()
-
-  private fun createDatabase(psiClass: PsiClass, pointerManager: SmartPointerManager, daos: Set<Dao>): RoomDatabase? {
-    val dataBaseAnnotation = psiClass.modifierList?.findAnnotation(RoomAnnotations.DATABASE) ?: return null
-    val entities: Set<PsiClassPointer> = dataBaseAnnotation.extractClassesFromAttribute("entities")
-    val views: Set<PsiClassPointer> = dataBaseAnnotation.extractClassesFromAttribute("views")
-
-    val daosExposedInDatabase: Set<PsiClassPointer> = psiClass.allMethods
-      .mapNotNullTo((HashSet())) {
-        val resolvedClass = (it.returnType as? PsiClassReferenceType)?.resolve()
-        resolvedClass
-          ?.takeIf { daos.any { dao -> dao.psiClass.element == resolvedClass } }
-          ?.let(pointerManager::createSmartPsiElementPointer)
-      }
+    val embeddedClass = PsiUtil.resolveClassInClassTypeOnly(type)
+    if (embeddedClass == null) {
+      dependencies.addUnresolved()
+      return emptySequence()
+    }
 
-    return RoomDatabase(pointerManager.createSmartPsiElementPointer(psiClass), entities = entities, daos = daosExposedInDatabase, views = views)
+    return createColumnsFromFields(embeddedClass, dependencies, currentPrefix + newPrefix, false)
   }
 
   private fun <T> getNameAndNameElement(
     element: T,
+    dependencies: Dependencies,
     annotationName: AndroidxName,
     annotationAttributeName: String
   ): Pair<String, PsiElement>?
     where T : PsiModifierListOwner,
           T : PsiNamedElement {
     // First look for the annotation that can override the name:
-    val nameFromAnnotation = getAnnotationAndAnnotationName(element, annotationName, annotationAttributeName)
+    val nameFromAnnotation = getAnnotationAndAnnotationName(element, dependencies, annotationName, annotationAttributeName)
     if (nameFromAnnotation != null) return nameFromAnnotation
     // Fall back to the name used in code:
     var nameInCode = element.name ?: return null
@@ -304,6 +355,7 @@ class RoomSchemaManager(val module: Module) {
    */
   private fun <T> getAnnotationAndAnnotationName(
     element: T,
+    dependencies: Dependencies,
     annotationName: AndroidxName,
     annotationAttributeName: String
   ): Pair<String, PsiElement>?
@@ -312,25 +364,64 @@ class RoomSchemaManager(val module: Module) {
     var annotation: PsiElement? = element.modifierList
       ?.findAnnotation(annotationName)
       ?.findDeclaredAttributeValue(annotationAttributeName)
+    // The name may be a constant declared in another file.
+    annotation?.let(dependencies::addReferencesIn)
     var name: String? = annotation?.let { constantEvaluationHelper.computeConstantExpression(it)?.toString() }
 
     // There is special case for KtLightField when we have annotation without target (property annotation) e.g @ColumnInfo(name = 'override_name')
     // In that case element.modifierList.findAnnotation(annotationName) returns null because it searches only for annotation with FIELD target
     if (name == null && element is KtLightField) {
       val ktExpression = element.getPropertyAnnotationExpression(annotationName, annotationAttributeName)
+      ktExpression?.let(dependencies::addReferencesIn)
       name = ktExpression?.tryEvaluateConstant()
       if (name != null) annotation = ktExpression as PsiElement
     }
 
     return name?.let { it to annotation!! }
   }
+}
 
-  private inline fun AndroidxName.bothNames(f: (String) -> Unit) {
-    f(oldName())
-    f(newName())
+/**
+ * The files a [RoomTable] is built from: the files declaring its class, their superclasses and embedded classes, and the constants
+ * used in their annotations.
+ *
+ * A reference that doesn't resolve may start resolving to a class in any file, so tables with unresolved references depend on all PSI.
+ */
+private class Dependencies {
+  private val files = LinkedHashSet<PsiFile>()
+  private val visitedClasses = HashSet<PsiClass>()
+  private var hasUnresolved = false
+
+  fun addClassHierarchy(psiClass: PsiClass) {
+    if (!visitedClasses.add(psiClass)) return
+    addFileOf(psiClass)
+    if (psiClass.superTypes.any { it.resolve() == null }) {
+      addUnresolved()
+    }
+    psiClass.supers.forEach(::addClassHierarchy)
+  }
+
+  fun addReferencesIn(element: PsiElement) {
+    for (e in SyntaxTraverser.psiTraverser(element.navigationElement)) {
+      for (reference in e.references) {
+        val target = reference.resolve()
+        if (target == null) addUnresolved() else addFileOf(target)
+      }
+    }
   }
 
-  private fun PsiModifierList.findAnnotation(annotation: AndroidxName): PsiAnnotation? {
-    return findAnnotation(annotation.oldName()) ?: findAnnotation(annotation.newName())
+  fun addFileOf(element: PsiElement) {
+    // For Kotlin light classes the navigation element is in the Kotlin file that actually changes.
+    element.navigationElement.containingFile?.let(files::add)
   }
+
+  fun addUnresolved() {
+    hasUnresolved = true
+  }
+
+  fun toList(): List<Any> = if (hasUnresolved) listOf(PsiModificationTracker.MODIFICATION_COUNT) else files.toList()
+}
+
+private fun PsiModifierList.findAnnotation(annotation: AndroidxName): PsiAnnotation? {
+  return findAnnotation(annotation.oldName()) ?: findAnnotation(annotation.newName())
 }
@@ -32,6 +32,7 @@ import com.google.common.truth.Truth.assertThat
 import com.intellij.codeInsight.intention.impl.QuickEditAction
 import com.intellij.ide.highlighter.JavaFileType
 import com.intellij.openapi.application.ApplicationManager
+import com.intellij.openapi.command.WriteCommandAction
 import com.intellij.openapi.module.ModuleUtil
 import com.intellij.openapi.project.ex.ProjectEx
 import com.intellij.psi.PsiDocumentManager
@@ -544,6 +545,66 @@ class RoomSchemaManagerTest : JavaCodeInsightFixtureAdtTestCase() {
         daos = emptySet()))
   }
 
+  fun testTablesOfUnchangedClassesAreReused() {
+    myFixture.addClass(
+      """
+        package com.example;
+
+        public abstract class NamedBase {
+          private String name;
+        }
+        """.trimIndent())
+
+    val user = myFixture.addClass(
+      """
+        package com.example;
+
+        import androidx.room.Entity;
+
+        @Entity
+        public class User extends NamedBase {}
+        """.trimIndent())
+
+    val book = myFixture.addClass(
+      """
+        package com.example;
+
+        import androidx.room.Entity;
+
+        @Entity
+        public class Book {}
+        """.trimIndent())
+
+    val schema = getSchema(book)
+
+    // Adding a class rebuilds the schema, but not the tables of the other classes.
+    myFixture.addClass(
+      """
+        package com.example;
+
+        import androidx.room.Entity;
+
+        @Entity
+        public class Magazine {}
+        """.trimIndent())
+
+    val newSchema = getSchema(book)
+    assertThat(newSchema).isNotSameInstanceAs(schema)
+    assertThat(newSchema.tables.map { it.name }).containsExactly("User", "Book", "Magazine")
+    assertThat(newSchema.findTable(user)).isSameInstanceAs(schema.findTable(user))
+    assertThat(newSchema.findTable(book)).isSameInstanceAs(schema.findTable(book))
+
+    // Changing a superclass changes the columns of the table.
+    val baseDocument = PsiDocumentManager.getInstance(project).getDocument(myFixture.findClass("com.example.NamedBase").containingFile)!!
+    WriteCommandAction.runWriteCommandAction(project) {
+      baseDocument.insertString(baseDocument.text.indexOf("private String name;"), "private String nickname; ")
+      PsiDocumentManager.getInstance(project).commitDocument(baseDocument)
+    }
+
+    assertThat(getSchema(book).findTable(user)!!.columns.mapNotNull { it.name }).containsExactly("name", "nickname")
+    assertThat(getSchema(book).findTable(book)).isSameInstanceAs(schema.findTable(book))
+  }
+
   fun testFts() {
     val psiClass = myFixture.addClass(
       """
@@ -19,6 +19,7 @@ import com.android.SdkConstants.ANDROID_MANIFEST_XML
 import com.android.ide.common.repository.AgpVersion
 import com.android.ide.common.repository.GradleCoordinate
 import com.android.ide.common.repository.SdkMavenRepository
+import com.android.tools.idea.flags.StudioFlags
 import com.android.tools.idea.gradle.plugin.LatestKnownPluginVersionProvider
 import com.android.tools.idea.gradle.project.model.GradleAndroidModel
 import com.android.tools.idea.gradle.project.upgrade.AssistantInvoker
@@ -299,6 +300,12 @@ class AndroidLintIdeSupport : LintIdeSupport() {
     }
   }
 
+  override fun canCacheEditorResults(module: Module): Boolean =
+    StudioFlags.LINT_EDITOR_RESULT_CACHE.get()
+
+  override fun canAnalyzeModulesInParallel(project: Project): Boolean =
+    StudioFlags.LINT_PARALLEL_BATCH_ANALYSIS.get()
+
   override fun logSession(lint: LintDriver, module: Module?, lintResult: LintBatchResult) {
     val analytics = LintIdeAnalytics(lintResult.project)
     analytics.logSession(
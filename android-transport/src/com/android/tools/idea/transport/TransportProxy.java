@@ -24,8 +24,6 @@ import com.android.tools.idea.io.grpc.ManagedChannel;
 import com.android.tools.idea.io.grpc.Server;
 import com.android.tools.idea.io.grpc.inprocess.InProcessServerBuilder;
 import java.io.IOException;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.BlockingDeque;
 import java.util.concurrent.LinkedBlockingDeque;
@@ -52,7 +50,7 @@ public class TransportProxy {
   @NotNull private final TransportServiceProxy myProxyService;
   @NotNull private final LinkedBlockingDeque<Common.Event> myProxyEventQueue = new LinkedBlockingDeque<>();
   // General file/byte cache used in the proxy layer.
-  @NotNull private final Map<String, ByteString> myProxyBytesCache = Collections.synchronizedMap(new HashMap<>());
+  @NotNull private final TransportProxyBytesCache myProxyBytesCache = new TransportProxyBytesCache();
 
   public TransportProxy(@NotNull IDevice ddmlibDevice, @NotNull Common.Device transportDevice, @NotNull ManagedChannel transportChannel) {
     myDevice = ddmlibDevice;
@@ -120,6 +118,10 @@ public class TransportProxy {
     catch (InterruptedException e) {
       throw new RuntimeException(e);
     }
+    finally {
+      // Deletes the bytes that were spilled to disk and never requested.
+      myProxyBytesCache.clear();
+    }
   }
 
   @NotNull
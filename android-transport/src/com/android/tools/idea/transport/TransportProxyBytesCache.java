@@ -0,0 +1,275 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.transport;
+
+import com.android.tools.idea.protobuf.ByteString;
+import com.google.common.annotations.VisibleForTesting;
+import com.intellij.openapi.diagnostic.Logger;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * General file/byte cache used in the proxy layer, e.g. for the traces and allocation dumps of pre-O devices until the datastore
+ * requests them.
+ * <p>
+ * Entries larger than the spill threshold are written to temporary files instead of being kept on the heap, and are streamed back
+ * when they are requested. The total size of the entries is bounded: the least recently used entries are evicted first when a new
+ * entry does not fit.
+ * <p>
+ * All the methods are synchronized on the cache itself.
+ */
+public class TransportProxyBytesCache extends AbstractMap<String, ByteString> {
+  private static final Logger LOG = Logger.getInstance(TransportProxyBytesCache.class);
+
+  @VisibleForTesting static final int DEFAULT_SPILL_THRESHOLD_BYTES = 1024 * 1024;
+  @VisibleForTesting static final long DEFAULT_MAX_TOTAL_BYTES = 2L * 1024 * 1024 * 1024;
+
+  private final int mySpillThresholdBytes;
+  private final long myMaxTotalBytes;
+  // Iterates from the least recently used entry.
+  private final LinkedHashMap<String, CacheEntry> myEntries = new LinkedHashMap<>(16, 0.75f, true);
+  @Nullable private Path mySpillDirectory;
+
+  private long myTotalBytes;
+  private long mySpilledBytes;
+  private int myEvictionCount;
+
+  public TransportProxyBytesCache() {
+    this(DEFAULT_SPILL_THRESHOLD_BYTES, DEFAULT_MAX_TOTAL_BYTES);
+  }
+
+  @VisibleForTesting
+  TransportProxyBytesCache(int spillThresholdBytes, long maxTotalBytes) {
+    mySpillThresholdBytes = spillThresholdBytes;
+    myMaxTotalBytes = maxTotalBytes;
+  }
+
+  @Override
+  public synchronized int size() {
+    return myEntries.size();
+  }
+
+  @Override
+  public synchronized boolean containsKey(Object key) {
+    return myEntries.containsKey(key);
+  }
+
+  @Override
+  @Nullable
+  public synchronized ByteString get(Object key) {
+    CacheEntry entry = myEntries.get(key);
+    return entry == null ? null : entry.read();
+  }
+
+  /**
+   * Adds the given bytes to the cache, spilling them to disk if they are larger than the spill threshold.
+   *
+   * @return always null: the previous bytes, if any, are discarded without being read back.
+   */
+  @Override
+  @Nullable
+  public synchronized ByteString put(@NotNull String key, @NotNull ByteString value) {
+    discard(myEntries.remove(key));
+
+    CacheEntry entry = value.size() > mySpillThresholdBytes ? spill(value) : null;
+    if (entry == null) {
+      entry = new InMemoryEntry(value);
+    }
+    myEntries.put(key, entry);
+    myTotalBytes += entry.size();
+    evictOverBudget(key);
+    return null;
+  }
+
+  @Override
+  @Nullable
+  public synchronized ByteString remove(Object key) {
+    CacheEntry entry = myEntries.remove(key);
+    if (entry == null) {
+      return null;
+    }
+    ByteString bytes = entry.read();
+    discard(entry);
+    return bytes;
+  }
+
+  /**
+   * Discards all the entries, and deletes the temporary directory of the spilled ones.
+   */
+  @Override
+  public synchronized void clear() {
+    myEntries.values().forEach(this::discard);
+    myEntries.clear();
+    deleteQuietly(mySpillDirectory);
+    mySpillDirectory = null;
+  }
+
+  /**
+   * Returns a snapshot of the cache. This reads back all the spilled entries, and is only meant for debugging.
+   */
+  @Override
+  @NotNull
+  public synchronized Set<Entry<String, ByteString>> entrySet() {
+    Set<Entry<String, ByteString>> entries = new LinkedHashSet<>();
+    myEntries.forEach((key, entry) -> entries.add(new SimpleImmutableEntry<>(key, entry.read())));
+    return entries;
+  }
+
+  /**
+   * Returns the total size of the cached bytes, whether they are on the heap or on disk.
+   */
+  public synchronized long getTotalBytes() {
+    return myTotalBytes;
+  }
+
+  /**
+   * Returns the size of the cached bytes that are on disk.
+   */
+  public synchronized long getSpilledBytes() {
+    return mySpilledBytes;
+  }
+
+  /**
+   * Returns the number of entries evicted to stay within the byte budget since the cache was created.
+   */
+  public synchronized int getEvictionCount() {
+    return myEvictionCount;
+  }
+
+  private void evictOverBudget(@NotNull String newKey) {
+    Iterator<Map.Entry<String, CacheEntry>> iterator = myEntries.entrySet().iterator();
+    while (myTotalBytes > myMaxTotalBytes && iterator.hasNext()) {
+      Map.Entry<String, CacheEntry> eldest = iterator.next();
+      if (eldest.getKey().equals(newKey)) {
+        // The new entry is the most recently used one, and is kept even if it's larger than the budget on its own.
+        break;
+      }
+      iterator.remove();
+      discard(eldest.getValue());
+      myEvictionCount++;
+      LOG.warn(String.format("Evicted %1$s (%2$d bytes) from the proxy bytes cache to stay within %3$d bytes",
+                             eldest.getKey(), eldest.getValue().size(), myMaxTotalBytes));
+    }
+  }
+
+  @Nullable
+  private CacheEntry spill(@NotNull ByteString value) {
+    Path file = null;
+    try {
+      if (mySpillDirectory == null || !Files.isDirectory(mySpillDirectory)) {
+        mySpillDirectory = Files.createTempDirectory("transport-proxy-bytes");
+      }
+      file = Files.createTempFile(mySpillDirectory, "bytes", ".bin");
+      try (OutputStream output = Files.newOutputStream(file)) {
+        value.writeTo(output);
+      }
+      mySpilledBytes += value.size();
+      return new FileEntry(file, value.size());
+    }
+    catch (IOException e) {
+      LOG.warn("Could not spill proxy bytes to disk, keeping them in memory", e);
+      deleteQuietly(file);
+      return null;
+    }
+  }
+
+  private void discard(@Nullable CacheEntry entry) {
+    if (entry == null) {
+      return;
+    }
+    myTotalBytes -= entry.size();
+    if (entry instanceof FileEntry) {
+      mySpilledBytes -= entry.size();
+      deleteQuietly(((FileEntry)entry).myFile);
+    }
+  }
+
+  private static void deleteQuietly(@Nullable Path file) {
+    if (file == null) {
+      return;
+    }
+    try {
+      Files.deleteIfExists(file);
+    }
+    catch (IOException e) {
+      LOG.warn("Could not delete " + file, e);
+    }
+  }
+
+  private interface CacheEntry {
+    int size();
+
+    @Nullable
+    ByteString read();
+  }
+
+  private static final class InMemoryEntry implements CacheEntry {
+    @NotNull private final ByteString myBytes;
+
+    private InMemoryEntry(@NotNull ByteString bytes) {
+      myBytes = bytes;
+    }
+
+    @Override
+    public int size() {
+      return myBytes.size();
+    }
+
+    @Override
+    @NotNull
+    public ByteString read() {
+      return myBytes;
+    }
+  }
+
+  private static final class FileEntry implements CacheEntry {
+    @NotNull private final Path myFile;
+    private final int mySize;
+
+    private FileEntry(@NotNull Path file, int size) {
+      myFile = file;
+      mySize = size;
+    }
+
+    @Override
+    public int size() {
+      return mySize;
+    }
+
+    @Override
+    @Nullable
+    public ByteString read() {
+      try (InputStream input = Files.newInputStream(myFile)) {
+        return ByteString.readFrom(input);
+      }
+      catch (IOException e) {
+        LOG.warn("Could not read spilled proxy bytes from " + myFile, e);
+        return null;
+      }
+    }
+  }
+}
@@ -62,30 +62,29 @@ class TransportEventPoller(
   fun poll() {
     // Copy the list so we can remove listeners within the loop in-place.
     val listeners = mutableListOf<TransportEventListener>().apply { addAll(eventListeners) }
+    val queries = listeners.map { createQuery(it) }
+
+    // Listeners that query the same events share a single request, starting from the earliest timestamp among them.
+    val sharedRequests = mutableMapOf<RequestKey, Transport.GetEventGroupsRequest>()
+    for (query in queries) {
+      val key = query.key ?: continue
+      val request = sharedRequests[key]
+      if (request == null || request.fromTimestamp > query.request.fromTimestamp) {
+        sharedRequests[key] = query.request
+      }
+    }
+    val sharedEvents = mutableMapOf<RequestKey, List<Common.Event>?>()
+
     // Poll for each listener
-    for (eventListener in listeners) {
-      // Use start/end time if available
-      val startTimestamp = max(listenersToLastTimestamp[eventListener] ?: Long.MIN_VALUE,
-                               eventListener.startTime?.invoke() ?: Long.MIN_VALUE)
-      val endTimestamp = eventListener.endTime()
-
-      val builder = Transport.GetEventGroupsRequest.newBuilder()
-        .setKind(eventListener.eventKind)
-        .setFromTimestamp(startTimestamp)
-        .setToTimestamp(endTimestamp)
-      eventListener.streamId?.invoke()?.let { builder.streamId = it }
-      eventListener.processId?.invoke()?.let { builder.pid = it }
-      eventListener.groupId?.invoke()?.let { builder.groupId = it }
-
-      val request = builder.build()
+    for ((index, eventListener) in listeners.withIndex()) {
+      val query = queries[index]
+      val startTimestamp = query.request.fromTimestamp
 
       // Order by timestamp
-      val response = transportClient.getEventGroups(request)
-      if (response != Transport.GetEventGroupsResponse.getDefaultInstance()) {
-        val filtered = response.groupsList
-          .flatMap { group -> group.eventsList }
-          .sortedWith(sortOrder)
-          .filter { event -> event.timestamp >= startTimestamp && eventListener.filter(event) }
+      val events = if (query.key == null) getSortedEvents(query.request)
+      else sharedEvents.getOrPut(query.key) { getSortedEvents(sharedRequests.getValue(query.key)) }
+      if (events != null) {
+        val filtered = events.filter { event -> event.timestamp >= startTimestamp && eventListener.filter(event) }
         filtered.forEach { event ->
           eventListener.executor.execute {
             if(eventListener.callback(event)) {
@@ -108,6 +107,44 @@ class TransportEventPoller(
     }
   }
 
+  private fun createQuery(eventListener: TransportEventListener): Query {
+    // Use start/end time if available
+    val startTimestamp = max(listenersToLastTimestamp[eventListener] ?: Long.MIN_VALUE,
+                             eventListener.startTime?.invoke() ?: Long.MIN_VALUE)
+    val endTimestamp = eventListener.endTime()
+
+    val builder = Transport.GetEventGroupsRequest.newBuilder()
+      .setKind(eventListener.eventKind)
+      .setFromTimestamp(startTimestamp)
+      .setToTimestamp(endTimestamp)
+    eventListener.streamId?.invoke()?.let { builder.streamId = it }
+    eventListener.processId?.invoke()?.let { builder.pid = it }
+    eventListener.groupId?.invoke()?.let { builder.groupId = it }
+
+    val request = builder.build()
+    // Only requests without an end timestamp are shared: the events the server returns past the end timestamp depend on the start
+    // timestamp, whereas the events before the start timestamp are filtered out for each listener.
+    val key = if (endTimestamp == Long.MAX_VALUE) RequestKey(request.kind, request.streamId, request.pid, request.groupId) else null
+    return Query(request, key)
+  }
+
+  /**
+   * Returns the events of all the groups matching the [request], in [sortOrder], or null if there are none.
+   */
+  private fun getSortedEvents(request: Transport.GetEventGroupsRequest): List<Common.Event>? {
+    val response = transportClient.getEventGroups(request)
+    if (response == Transport.GetEventGroupsResponse.getDefaultInstance()) {
+      return null
+    }
+    return response.groupsList
+      .flatMap { group -> group.eventsList }
+      .sortedWith(sortOrder)
+  }
+
+  private data class RequestKey(val kind: Common.Event.Kind, val streamId: Long, val pid: Int, val groupId: Long)
+
+  private class Query(val request: Transport.GetEventGroupsRequest, val key: RequestKey?)
+
   companion object {
     private val myExecutorService: ScheduledExecutorService = Executors.newScheduledThreadPool(1)
     private val myScheduledFutures = mutableMapOf<TransportEventPoller, ScheduledFuture<*>>()
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.transport
+
+import com.android.tools.idea.protobuf.ByteString
+import com.google.common.truth.Truth.assertThat
+import org.junit.After
+import org.junit.Test
+
+class TransportProxyBytesCacheTest {
+  private val cache = TransportProxyBytesCache(/* spillThresholdBytes= */ 10, /* maxTotalBytes= */ 100)
+
+  @After
+  fun tearDown() {
+    cache.clear()
+  }
+
+  private fun bytes(size: Int, value: Int = size) = ByteString.copyFrom(ByteArray(size) { value.toByte() })
+
+  @Test
+  fun smallEntriesStayInMemory() {
+    cache["small"] = bytes(10)
+
+    assertThat(cache.spilledBytes).isEqualTo(0)
+    assertThat(cache.totalBytes).isEqualTo(10)
+    assertThat(cache["small"]).isEqualTo(bytes(10))
+    assertThat(cache.remove("small")).isEqualTo(bytes(10))
+    assertThat(cache).isEmpty()
+    assertThat(cache.totalBytes).isEqualTo(0)
+  }
+
+  @Test
+  fun largeEntriesAreSpilledToDisk() {
+    cache["large"] = bytes(50)
+
+    assertThat(cache.spilledBytes).isEqualTo(50)
+    assertThat(cache.totalBytes).isEqualTo(50)
+    assertThat(cache["large"]).isEqualTo(bytes(50))
+    assertThat(cache.remove("large")).isEqualTo(bytes(50))
+    assertThat(cache.remove("large")).isNull()
+    assertThat(cache.spilledBytes).isEqualTo(0)
+    assertThat(cache.totalBytes).isEqualTo(0)
+  }
+
+  @Test
+  fun replacedEntriesAreDiscarded() {
+    cache["key"] = bytes(50)
+    cache["key"] = bytes(5)
+
+    assertThat(cache.spilledBytes).isEqualTo(0)
+    assertThat(cache.totalBytes).isEqualTo(5)
+    assertThat(cache["key"]).isEqualTo(bytes(5))
+  }
+
+  @Test
+  fun leastRecentlyUsedEntriesAreEvictedOverBudget() {
+    cache["first"] = bytes(40, 1)
+    cache["second"] = bytes(40, 2)
+    // Makes "second" the least recently used entry.
+    assertThat(cache["first"]).isEqualTo(bytes(40, 1))
+
+    cache["third"] = bytes(40, 3)
+    assertThat(cache.keys).containsExactly("first", "third")
+    assertThat(cache.totalBytes).isEqualTo(80)
+    assertThat(cache.evictionCount).isEqualTo(1)
+
+    // An entry larger than the budget evicts all the others, but is kept.
+    cache["huge"] = bytes(200)
+    assertThat(cache.keys).containsExactly("huge")
+    assertThat(cache["huge"]).isEqualTo(bytes(200))
+    assertThat(cache.evictionCount).isEqualTo(3)
+  }
+}
@@ -16,11 +16,17 @@
 package com.android.tools.idea.transport.poller
 
 import com.android.tools.adtui.model.FakeTimer
+import com.android.tools.idea.io.grpc.CallOptions
+import com.android.tools.idea.io.grpc.Channel
+import com.android.tools.idea.io.grpc.ClientCall
+import com.android.tools.idea.io.grpc.ClientInterceptor
+import com.android.tools.idea.io.grpc.MethodDescriptor
 import com.android.tools.idea.transport.TransportClient
 import com.android.tools.idea.transport.faketransport.FakeGrpcServer
 import com.android.tools.idea.transport.faketransport.FakeTransportService
 import com.android.tools.pipeline.example.proto.Echo
 import com.android.tools.profiler.proto.Common
+import com.android.tools.profiler.proto.TransportServiceGrpc
 import com.google.common.truth.Truth.assertThat
 import com.google.common.util.concurrent.MoreExecutors
 import org.junit.After
@@ -456,4 +462,51 @@ class TransportEventPollerTest {
     assertThat(events[0]).isEqualTo(event2)
     assertThat(events[1]).isEqualTo(event1)
   }
+
+  @Test
+  fun testListenersOfTheSameEventsShareRequests() {
+    var eventGroupsRequestCount = 0
+    val countingStub = transportClient!!.transportStub.withInterceptors(object : ClientInterceptor {
+      override fun <ReqT, RespT> interceptCall(method: MethodDescriptor<ReqT, RespT>,
+                                               callOptions: CallOptions,
+                                               next: Channel): ClientCall<ReqT, RespT> {
+        if (method == TransportServiceGrpc.getGetEventGroupsMethod()) {
+          eventGroupsRequestCount++
+        }
+        return next.newCall(method, callOptions)
+      }
+    })
+    val poller = TransportEventPoller(countingStub)
+
+    val allEvents = mutableListOf<Common.Event>()
+    val lateEvents = mutableListOf<Common.Event>()
+    val endedEvents = mutableListOf<Common.Event>()
+    poller.registerListener(TransportEventListener(eventKind = Common.Event.Kind.ECHO,
+                                                   executor = MoreExecutors.directExecutor(),
+                                                   callback = { allEvents.add(it); false }))
+    poller.registerListener(TransportEventListener(eventKind = Common.Event.Kind.ECHO,
+                                                   executor = MoreExecutors.directExecutor(),
+                                                   startTime = { 5 },
+                                                   callback = { lateEvents.add(it); false }))
+    // Listeners with an end timestamp have their own request.
+    poller.registerListener(TransportEventListener(eventKind = Common.Event.Kind.ECHO,
+                                                   executor = MoreExecutors.directExecutor(),
+                                                   endTime = { 5 },
+                                                   callback = { endedEvents.add(it); false }))
+
+    transportService.addEventToStream(FakeTransportService.FAKE_DEVICE_ID, generateEchoEvent(2))
+    transportService.addEventToStream(FakeTransportService.FAKE_DEVICE_ID, generateEchoEvent(10))
+    poller.poll()
+    assertThat(eventGroupsRequestCount).isEqualTo(2)
+    assertThat(allEvents.map { it.timestamp }).containsExactly(2L, 10L).inOrder()
+    assertThat(lateEvents.map { it.timestamp }).containsExactly(10L)
+    assertThat(endedEvents.map { it.timestamp }).containsExactly(2L, 10L).inOrder()
+
+    // Each listener only receives the events after the last one it has seen.
+    transportService.addEventToStream(FakeTransportService.FAKE_DEVICE_ID, generateEchoEvent(12))
+    poller.poll()
+    assertThat(eventGroupsRequestCount).isEqualTo(4)
+    assertThat(allEvents.map { it.timestamp }).containsExactly(2L, 10L, 12L).inOrder()
+    assertThat(lateEvents.map { it.timestamp }).containsExactly(10L, 12L).inOrder()
+  }
 }
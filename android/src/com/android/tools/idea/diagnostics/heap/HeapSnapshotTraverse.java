@@ -16,7 +16,6 @@
 package com.android.tools.idea.diagnostics.heap;
 
 import static com.android.tools.idea.diagnostics.heap.HeapTraverseUtil.isPrimitive;
-import static com.android.tools.idea.diagnostics.heap.HeapTraverseUtil.processMask;
 import static com.google.common.math.LongMath.isPowerOfTwo;
 import static com.google.wireless.android.sdk.stats.MemoryUsageReportEvent.MemoryUsageCollectionMetadata.StatusCode;
 
@@ -35,7 +34,6 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import org.jetbrains.annotations.NotNull;
@@ -58,7 +56,6 @@ public final class HeapSnapshotTraverse implements Disposable {
     return roots;
   };
 
-  private static final int MAX_ALLOWED_OBJECT_MAP_SIZE = 1_000_000;
   private static final int INVALID_OBJECT_ID = -1;
   private static final int INVALID_OBJECT_TAG = -1;
   private static final int MAX_DEPTH = 100_000;
@@ -169,7 +166,7 @@ public final class HeapSnapshotTraverse implements Disposable {
           abortTraversalIfRequested();
           int mapSize = HeapTraverseNode.getObjectIdToTraverseNodeMapSize();
           statistics.updateMaxObjectsQueueSize(mapSize);
-          if (mapSize > MAX_ALLOWED_OBJECT_MAP_SIZE) {
+          if (mapSize > statistics.getConfig().maxObjectMapSize) {
             return StatusCode.OBJECTS_MAP_IS_TOO_BIG;
           }
           HeapTraverseNode node = HeapTraverseNode.getObjectIdToTraverseNodeMapElement(i, HeapTraverseNode.class);
@@ -208,26 +205,21 @@ public final class HeapSnapshotTraverse implements Disposable {
           }
 
           // If current object is retained by any components - propagate their stats.
-          processMask(node.retainedMask,
-                      (index) -> statistics.addRetainedObjectSizeToComponent(index, currentObjectSize));
+          // Masks are iterated in place rather than with processMask: this runs for every object of
+          // the heap, and capturing lambdas would allocate on each of them.
+          for (long mask = node.retainedMask; mask != 0; mask &= mask - 1) {
+            statistics.addRetainedObjectSizeToComponent(Long.numberOfTrailingZeros(mask), currentObjectSize);
+          }
           // If current object is retained by any component categories - propagate their stats.
-          processMask(node.retainedMaskForCategories,
-                      (index) -> statistics.addRetainedObjectSizeToCategoryComponent(index,
-                                                                                     currentObjectSize
-                      ));
-
-          AtomicInteger categoricalOwnedMask = new AtomicInteger();
-          processMask(node.ownedByComponentMask,
-                      (index) -> categoricalOwnedMask.set(
-                        categoricalOwnedMask.get() |
-                        1 <<
-                        statistics.getConfig().getComponentsSet().getComponents().get(index)
-                          .getComponentCategory().getId()));
-          if (categoricalOwnedMask.get() != 0 && isPowerOfTwo(categoricalOwnedMask.get())) {
-            processMask(categoricalOwnedMask.get(),
-                        (index) -> statistics.addOwnedObjectSizeToCategoryComponent(index,
-                                                                                    currentObjectSize,
-                                                                                    currentObjectClassName, node.isMergePoint));
+          for (int mask = node.retainedMaskForCategories; mask != 0; mask &= mask - 1) {
+            statistics.addRetainedObjectSizeToCategoryComponent(Integer.numberOfTrailingZeros(mask), currentObjectSize);
+          }
+
+          int categoricalOwnedMask = getCategoricalMask(node.ownedByComponentMask);
+          if (categoricalOwnedMask != 0 && isPowerOfTwo(categoricalOwnedMask)) {
+            statistics.addOwnedObjectSizeToCategoryComponent(Integer.numberOfTrailingZeros(categoricalOwnedMask),
+                                                             currentObjectSize,
+                                                             currentObjectClassName, node.isMergePoint);
           }
           if (node.ownedByComponentMask == 0) {
             int uncategorizedComponentId =
@@ -242,9 +234,8 @@ public final class HeapSnapshotTraverse implements Disposable {
           }
           else if (isPowerOfTwo(node.ownedByComponentMask)) {
             // if only owned by one component
-            processMask(node.ownedByComponentMask,
-                        (index) -> statistics.addOwnedObjectSizeToComponent(index, currentObjectSize,
-                                                                            currentObjectClassName, objectIsAComponentRoot));
+            statistics.addOwnedObjectSizeToComponent(Long.numberOfTrailingZeros(node.ownedByComponentMask), currentObjectSize,
+                                                     currentObjectClassName, objectIsAComponentRoot);
           }
           else {
             // if owned by multiple components -> add to shared
@@ -284,6 +275,18 @@ public final class HeapSnapshotTraverse implements Disposable {
     node.ownershipWeight = weight;
   }
 
+  /**
+   * Maps a mask of components to the mask of their categories.
+   */
+  private int getCategoricalMask(long componentsMask) {
+    List<ComponentsSet.Component> components = statistics.getConfig().getComponentsSet().getComponents();
+    int result = 0;
+    for (long mask = componentsMask; mask != 0; mask &= mask - 1) {
+      result |= 1 << components.get(Long.numberOfTrailingZeros(mask)).getComponentCategory().getId();
+    }
+    return result;
+  }
+
   private void abortTraversalIfRequested() throws HeapSnapshotTraverseException {
     if (shouldAbortTraversal) {
       throw new HeapSnapshotTraverseException(StatusCode.LOW_MEMORY);
@@ -403,7 +406,7 @@ public final class HeapSnapshotTraverse implements Disposable {
       if (stackSize == 0) {
         break;
       }
-      if (stackSize > MAX_ALLOWED_OBJECT_MAP_SIZE) {
+      if (stackSize > statistics.getConfig().maxObjectMapSize) {
         StackNode.clearDepthFirstSearchStack();
         throw new HeapSnapshotTraverseException(StatusCode.OBJECTS_MAP_IS_TOO_BIG);
       }
@@ -457,6 +460,7 @@ public final class HeapSnapshotTraverse implements Disposable {
                                       @NotNull final HeapTraverseNode parentNode,
                                       int parentId,
                                       @NotNull final FieldCache fieldCache) throws HeapSnapshotTraverseException {
+    final boolean parentIsSynthetic = parentObj.getClass().isSynthetic();
     heapTraverseChildProcessor.processChildObjects(parentObj, (Object value, HeapTraverseNode.RefWeight ownershipWeight) -> {
       if (value == null ||
           isPrimitive(value.getClass()) ||
@@ -476,7 +480,7 @@ public final class HeapSnapshotTraverse implements Disposable {
       if (objectId == INVALID_OBJECT_ID || objectId >= parentId) {
         return;
       }
-      if (parentObj.getClass().isSynthetic()) {
+      if (parentIsSynthetic) {
         ownershipWeight = HeapTraverseNode.RefWeight.SYNTHETIC;
       }
       if (parentNode.ownedByComponentMask == 0) {
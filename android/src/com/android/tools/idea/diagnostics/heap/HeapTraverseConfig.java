@@ -19,17 +19,43 @@ import org.jetbrains.annotations.NotNull;
 
 public class HeapTraverseConfig {
 
+  private static final int MIN_OBJECT_MAP_SIZE = 1_000_000;
+  private static final int MAX_OBJECT_MAP_SIZE = 50_000_000;
+
   @NotNull
   private final ComponentsSet componentsSet;
   final boolean collectHistograms;
   final boolean collectDisposerTreeInfo;
+  // Maximum number of objects in the depth-first search stack and in the object id to traverse node
+  // map. Both live in the native agent memory, so the limit only needs to keep it proportionate to
+  // the heap being traversed.
+  final int maxObjectMapSize;
 
   public HeapTraverseConfig(@NotNull final ComponentsSet componentsSet,
                             boolean collectHistograms,
                             boolean collectDisposerTreeInfo) {
+    this(componentsSet, collectHistograms, collectDisposerTreeInfo, getDefaultMaxObjectMapSize());
+  }
+
+  public HeapTraverseConfig(@NotNull final ComponentsSet componentsSet,
+                            boolean collectHistograms,
+                            boolean collectDisposerTreeInfo,
+                            int maxObjectMapSize) {
     this.componentsSet = componentsSet;
     this.collectHistograms = collectHistograms;
     this.collectDisposerTreeInfo = collectDisposerTreeInfo;
+    this.maxObjectMapSize = maxObjectMapSize;
+  }
+
+  /**
+   * One object per KB of the maximum heap size, between 1M and 50M objects, so that the traversal of
+   * large heaps is not aborted with {@code OBJECTS_MAP_IS_TOO_BIG}. This is a heuristic: the native
+   * cost of an entry is not measured, and typical heaps (e.g. 4 GB, so 4M objects) stay far below
+   * the upper bound. Heaps with more live objects than the limit are still reported as too big.
+   */
+  static int getDefaultMaxObjectMapSize() {
+    long maxHeapKb = Runtime.getRuntime().maxMemory() / 1024;
+    return (int)Math.max(MIN_OBJECT_MAP_SIZE, Math.min(MAX_OBJECT_MAP_SIZE, maxHeapKb));
   }
 
   @NotNull
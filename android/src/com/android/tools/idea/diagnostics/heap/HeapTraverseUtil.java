@@ -20,7 +20,7 @@ import static com.android.tools.idea.diagnostics.heap.HeapSnapshotTraverse.HeapS
 import com.android.tools.idea.diagnostics.hprof.util.HeapReportUtils;
 import java.lang.reflect.Field;
 import java.util.Locale;
-import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -31,15 +31,11 @@ public class HeapTraverseUtil {
   }
 
   /**
-   * Check that passed class was initialized.
+   * Calls the passed consumer with the index of every bit set in the mask, in increasing order.
    */
-  public static void processMask(long mask, @NotNull final Consumer<Integer> p) {
-    int trailingZeros = Long.numberOfTrailingZeros(mask);
-    mask >>= Long.numberOfTrailingZeros(mask);
-    for (int i = trailingZeros; mask != 0; i++, mask >>= 1) {
-      if ((mask & 1) != 0) {
-        p.accept(i);
-      }
+  public static void processMask(long mask, @NotNull final IntConsumer p) {
+    for (; mask != 0; mask &= mask - 1) {
+      p.accept(Long.numberOfTrailingZeros(mask));
     }
   }
 
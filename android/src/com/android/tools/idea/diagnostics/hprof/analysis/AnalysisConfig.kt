@@ -84,7 +84,9 @@ class AnalysisConfig(
   class TraverseOptions(
     val onlyStrongReferences: Boolean = false,
     val includeDisposerRelationships: Boolean = true,
-    val includeFieldInformation: Boolean = true
+    val includeFieldInformation: Boolean = true,
+    // Number of threads reading objects during the graph walks. Does not change the report.
+    val parallelism: Int = ParallelObjectReader.defaultParallelism()
   )
 
   class MetaInfoOptions(
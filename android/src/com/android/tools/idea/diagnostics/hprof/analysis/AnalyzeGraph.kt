@@ -41,6 +41,7 @@ import java.io.File
 import java.io.PrintWriter
 import java.util.Arrays
 import java.util.BitSet
+import java.util.stream.IntStream
 import kotlin.math.ln
 import kotlin.math.max
 import kotlin.math.min
@@ -284,7 +285,7 @@ class AnalyzeGraph(private val analysisContext: AnalysisContext, private val lis
 
     var visitedInstancesCount = 0
     val stopwatch = Stopwatch.createStarted()
-    val references = LongArrayList()
+    val objectReader = ParallelObjectReader(nav, traverseOptions.parallelism)
 
     var visitedCount = 0
     var strongRefVisitedCount = 0
@@ -304,8 +305,9 @@ class AnalyzeGraph(private val analysisContext: AnalysisContext, private val lis
     val disposedReferencedNonRootSet = IntOpenHashSet()
 
     while (toVisit.isNotEmpty() || phase != WalkGraphPhase.Finished) {
-      for (i in 0 until toVisit.count()) {
-        val id = toVisit.getInt(i)
+      val level = toVisit
+      for (objectInfo in readObjects(objectReader, level.size, ObjectNavigator.ReferenceResolution.ALL_REFERENCES) { level.getInt(it) }) {
+        val id = objectInfo.id
 
         if (includeDisposerRelationships &&
           phase < WalkGraphPhase.DisposedRoots &&
@@ -322,8 +324,7 @@ class AnalyzeGraph(private val analysisContext: AnalysisContext, private val lis
           continue
         }
 
-        nav.goTo(id.toLong(), ObjectNavigator.ReferenceResolution.ALL_REFERENCES)
-        val currentObjectClass = nav.getClass()
+        val currentObjectClass = objectInfo.classDefinition
 
         if ((currentObjectClass == sunMiscCleanerClass || currentObjectClass == finalizerClass)
             && phase < WalkGraphPhase.CleanerFinalizerReferences) {
@@ -338,26 +339,26 @@ class AnalyzeGraph(private val analysisContext: AnalysisContext, private val lis
         nominatedInstances[currentObjectClass]?.add(id)
 
         var isLeaf = true
-        nav.copyReferencesTo(references)
+        val references = objectInfo.references
         val currentObjectIsArray = currentObjectClass.isArray()
 
         // Postpone any soft references encountered before the phase that handles them
-        if (phase < WalkGraphPhase.SoftReferences && nav.getSoftReferenceId() != 0L) {
+        if (phase < WalkGraphPhase.SoftReferences && objectInfo.softReferenceId != 0L) {
           if (!onlyStrongReferences) {
-            softReferenceIdToParentMap.put(nav.getSoftReferenceId().toInt(), id)
+            softReferenceIdToParentMap.put(objectInfo.softReferenceId.toInt(), id)
           }
-          references[nav.getSoftWeakReferenceIndex()] = 0L
+          references[objectInfo.softWeakReferenceIndex] = 0L
         }
 
         // Postpone any weak references encountered before the phase that handles them
-        if (phase < WalkGraphPhase.WeakReferences && nav.getWeakReferenceId() != 0L) {
+        if (phase < WalkGraphPhase.WeakReferences && objectInfo.weakReferenceId != 0L) {
           if (!onlyStrongReferences) {
-            weakReferenceIdToParentMap.put(nav.getWeakReferenceId().toInt(), id)
+            weakReferenceIdToParentMap.put(objectInfo.weakReferenceId.toInt(), id)
           }
-          references[nav.getSoftWeakReferenceIndex()] = 0L
+          references[objectInfo.softWeakReferenceIndex] = 0L
         }
 
-        val size = nav.getObjectSize()
+        val size = objectInfo.size
         val nonDisposerReferences = references.count()
 
         // Inline children from the disposer tree
@@ -490,7 +491,7 @@ class AnalyzeGraph(private val analysisContext: AnalysisContext, private val lis
         rootsSet.addAll(frameRootsSet)
         rootsSet.addAll(disposedRootsSet)
         dominatorFlameGraph = getReportOrExceptionString {
-          computeDominatorFlameGraph(nav, rootsSet, sizesList, edgeCount, report)
+          computeDominatorFlameGraph(nav, objectReader, rootsSet, sizesList, edgeCount, report)
         }
       } else {
         dominatorFlameGraph = "Omitted due to low disk space"
@@ -578,11 +579,33 @@ class AnalyzeGraph(private val analysisContext: AnalysisContext, private val lis
     }
   }
 
+  /**
+   * Reads the [count] objects given by [idAt] in batches, so that only a bounded number of decoded objects are kept in memory at any
+   * time, even for the levels of the graph with millions of objects.
+   */
+  private fun readObjects(objectReader: ParallelObjectReader,
+                          count: Int,
+                          referenceResolution: ObjectNavigator.ReferenceResolution,
+                          idAt: (Int) -> Int): Sequence<ParallelObjectReader.ObjectInfo> = sequence {
+    var batchStart = 0
+    while (batchStart < count) {
+      val batchEnd = min(batchStart + ParallelObjectReader.BATCH_SIZE, count)
+      val from = batchStart
+      yieldAll(objectReader.read(IntArray(batchEnd - from) { idAt(from + it) }, referenceResolution).asIterable())
+      batchStart = batchEnd
+    }
+  }
+
   private fun estimateDominatorTempFilesSize(objectCount: Int, edgeCount: Int): Long {
     return 20L * objectCount + 10L * edgeCount
   }
 
-  private fun computeDominatorFlameGraph(nav: ObjectNavigator, rootsSet: IntOpenHashSet, sizesList: IntList, edgeCount: Int, report: AnalysisReport): String {
+  private fun computeDominatorFlameGraph(nav: ObjectNavigator,
+                                         objectReader: ParallelObjectReader,
+                                         rootsSet: IntOpenHashSet,
+                                         sizesList: IntList,
+                                         edgeCount: Int,
+                                         report: AnalysisReport): String {
     val totalStopwatch = Stopwatch.createUnstarted()
     val postorderStopwatch = Stopwatch.createUnstarted()
     val incomingEdgesStopwatch = Stopwatch.createUnstarted()
@@ -684,13 +707,16 @@ class AnalyzeGraph(private val analysisContext: AnalysisContext, private val lis
     val edgeListOffsets = childrenStackOffsets
     edgeListOffsets.clear(maxPonum+1)
 
+    // Objects in postorder, read in parallel. The object with postorder number i is at index i - 1.
+    fun readObjectsInPostorder() =
+      readObjects(objectReader, maxPonum - 1, ObjectNavigator.ReferenceResolution.ONLY_STRONG_REFERENCES) { postorderList[it + 1] }
+
     // first count the number of incoming edges for each object and fill the card lists
-    val references = LongArrayList()
     var ncardrefs = 0
-    for (i in 1 until maxPonum) {
-      val id = postorderList[i]
-      nav.goTo(id.toLong())
-      nav.copyReferencesTo(references)
+    for ((index, objectInfo) in readObjectsInPostorder().withIndex()) {
+      val i = index + 1
+      val id = objectInfo.id
+      val references = objectInfo.references
       if (rootsSet.contains(id)) {
         edgeListOffsets[i]++
       }
@@ -739,10 +765,10 @@ class AnalyzeGraph(private val analysisContext: AnalysisContext, private val lis
     fun numIncomingEdges(ponum: Int) = edgeListOffsets[ponum + 1] - edgeListOffsets[ponum]
 
     // now that the incoming edges have been counted and the offsets determined, fill in the lists
-    for (i in 1 until maxPonum) {
-      val id = postorderList[i]
-      nav.goTo(id.toLong())
-      nav.copyReferencesTo(references)
+    for ((index, objectInfo) in readObjectsInPostorder().withIndex()) {
+      val i = index + 1
+      val id = objectInfo.id
+      val references = objectInfo.references
       if (rootsSet.contains(id)) {
         addEdge(i, rootPonum)
       }
@@ -755,9 +781,10 @@ class AnalyzeGraph(private val analysisContext: AnalysisContext, private val lis
     }
     incomingEdgesStopwatch.stop()
     sortIncomingEdgesStopwatch.start()
-    for (i in 0 until maxPonum-1) {
+    // Each list is sorted in place independently of the others, so they can be sorted in parallel
+    IntStream.range(0, maxPonum-1).parallel().forEach { i ->
       val size = edgeListOffsets[i+1] - edgeListOffsets[i]
-      if (size <= 1) continue
+      if (size <= 1) return@forEach
       val arr = IntArray(size)
       for (j in 0 until size) {
         arr[j] = incomingEdges[edgeListOffsets[i] + j]
@@ -16,7 +16,6 @@
 package com.android.tools.idea.diagnostics.hprof.analysis
 
 import com.android.tools.idea.diagnostics.hprof.classstore.HProfMetadata
-import com.android.tools.idea.diagnostics.hprof.histogram.Histogram
 import com.android.tools.idea.diagnostics.hprof.navigator.ObjectNavigator
 import com.android.tools.idea.diagnostics.hprof.parser.HProfEventBasedParser
 import com.android.tools.idea.diagnostics.hprof.util.FileBackedIntList
@@ -26,6 +25,7 @@ import com.android.tools.idea.diagnostics.hprof.util.HeapReportUtils.sectionHead
 import com.android.tools.idea.diagnostics.hprof.util.HeapReportUtils.toShortStringAsCount
 import com.android.tools.idea.diagnostics.hprof.util.ListProvider
 import com.android.tools.idea.diagnostics.hprof.util.PartialProgressIndicator
+import com.android.tools.idea.diagnostics.hprof.visitors.HistogramVisitor
 import com.android.tools.idea.diagnostics.hprof.visitors.RemapIDsVisitor
 import com.google.common.base.Stopwatch
 import com.intellij.openapi.progress.ProgressIndicator
@@ -89,15 +89,13 @@ class HProfAnalysis(private val hprofFileChannel: FileChannel,
 
     val parser = HProfEventBasedParser(hprofFileChannel)
     try {
-      progress.text2 = "Collect heap metadata"
+      progress.text2 = "Collect heap metadata and histogram"
       progress.fraction = 0.0
 
-      val hprofMetadata = HProfMetadata.create(parser)
-
-      progress.text2 = "Create histogram"
-      progress.fraction = 0.1
-
-      val histogram = Histogram.create(parser, hprofMetadata.classStore)
+      // The histogram is collected in the same pass as the metadata, as reading a multi-GB heap dump dominates both
+      val histogramVisitor = HistogramVisitor()
+      val hprofMetadata = HProfMetadata.create(parser, histogramVisitor)
+      val histogram = histogramVisitor.createHistogram(hprofMetadata.classStore)
 
       val nominatedClasses = ClassNomination(histogram, 5).nominateClasses()
 
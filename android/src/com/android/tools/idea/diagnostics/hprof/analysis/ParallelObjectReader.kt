@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.diagnostics.hprof.analysis
+
+import com.android.tools.idea.diagnostics.hprof.classstore.ClassDefinition
+import com.android.tools.idea.diagnostics.hprof.navigator.ObjectNavigator
+import it.unimi.dsi.fastutil.longs.LongArrayList
+import java.util.stream.IntStream
+import kotlin.math.min
+
+/**
+ * Reads batches of objects on several threads, each thread using its own copy of the navigator.
+ *
+ * Decoding objects from the auxiliary files is the bulk of the graph walks, while the walks themselves update shared state that
+ * depends on the order in which objects are visited. The objects are therefore only read in parallel, and returned in the order
+ * of the batch, so that the walks process them sequentially and produce the same report regardless of [parallelism].
+ */
+class ParallelObjectReader(navigator: ObjectNavigator, private val parallelism: Int) {
+
+  class ObjectInfo(
+    val id: Int,
+    val classDefinition: ClassDefinition,
+    val references: LongArrayList,
+    val size: Int,
+    val softReferenceId: Long,
+    val weakReferenceId: Long,
+    val softWeakReferenceIndex: Int
+  )
+
+  private val navigators = Array(parallelism.coerceAtLeast(1)) { navigator.duplicate() }
+
+  /**
+   * Reads the objects in [ids], in the same order.
+   */
+  fun read(ids: IntArray, referenceResolution: ObjectNavigator.ReferenceResolution): Array<ObjectInfo> {
+    val result = arrayOfNulls<ObjectInfo>(ids.size)
+    val slices = min(navigators.size, (ids.size + MIN_SLICE_SIZE - 1) / MIN_SLICE_SIZE)
+    if (slices <= 1) {
+      readSlice(navigators[0], ids, 0, ids.size, referenceResolution, result)
+    }
+    else {
+      IntStream.range(0, slices).parallel().forEach { slice ->
+        val from = (ids.size.toLong() * slice / slices).toInt()
+        val to = (ids.size.toLong() * (slice + 1) / slices).toInt()
+        readSlice(navigators[slice], ids, from, to, referenceResolution, result)
+      }
+    }
+    @Suppress("UNCHECKED_CAST")
+    return result as Array<ObjectInfo>
+  }
+
+  private fun readSlice(nav: ObjectNavigator,
+                        ids: IntArray,
+                        from: Int,
+                        to: Int,
+                        referenceResolution: ObjectNavigator.ReferenceResolution,
+                        result: Array<ObjectInfo?>) {
+    for (i in from until to) {
+      val id = ids[i]
+      nav.goTo(id.toLong(), referenceResolution)
+      result[i] = ObjectInfo(id,
+                             nav.getClass(),
+                             nav.getReferencesCopy(),
+                             nav.getObjectSize(),
+                             nav.getSoftReferenceId(),
+                             nav.getWeakReferenceId(),
+                             nav.getSoftWeakReferenceIndex())
+    }
+  }
+
+  companion object {
+    /** Objects read in one go by the walks. Bounds the memory used by the decoded references. */
+    const val BATCH_SIZE = 16_384
+
+    /** Smaller slices are not worth handing to another thread. */
+    private const val MIN_SLICE_SIZE = 1_024
+
+    fun defaultParallelism() = Runtime.getRuntime().availableProcessors().coerceIn(1, 8)
+  }
+}
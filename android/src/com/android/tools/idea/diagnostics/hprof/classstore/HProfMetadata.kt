@@ -17,6 +17,7 @@ package com.android.tools.idea.diagnostics.hprof.classstore
 
 import com.android.tools.idea.diagnostics.hprof.navigator.RootReason
 import com.android.tools.idea.diagnostics.hprof.parser.HProfEventBasedParser
+import com.android.tools.idea.diagnostics.hprof.parser.HProfVisitor
 import com.android.tools.idea.diagnostics.hprof.visitors.CollectRootReasonsVisitor
 import com.android.tools.idea.diagnostics.hprof.visitors.CollectStringValuesVisitor
 import com.android.tools.idea.diagnostics.hprof.visitors.CollectThreadInfoVisitor
@@ -50,7 +51,11 @@ class HProfMetadata(var classStore: ClassStore, // TODO: private-set, public-get
   }
 
   companion object {
-    fun create(parser: HProfEventBasedParser): HProfMetadata {
+    /**
+     * Collects the metadata in one pass over the heap dump. [additionalVisitors] are run in the same pass, so that the heap dump is not
+     * read again for data that does not depend on the metadata while visiting.
+     */
+    fun create(parser: HProfEventBasedParser, vararg additionalVisitors: HProfVisitor): HProfMetadata {
       val stringIdMap = Long2ObjectOpenHashMap<String>()
       val threadsMap = Long2ObjectOpenHashMap<ThreadInfo>()
 
@@ -62,7 +67,8 @@ class HProfMetadata(var classStore: ClassStore, // TODO: private-set, public-get
         CollectStringValuesVisitor(stringIdMap),
         classStoreVisitor,
         threadInfoVisitor,
-        rootReasonsVisitor
+        rootReasonsVisitor,
+        *additionalVisitors
       )
       parser.accept(visitor, "create hprof metadata")
       return HProfMetadata(classStoreVisitor.getClassStore(),
@@ -57,6 +57,11 @@ abstract class ObjectNavigator(val classStore: ClassStore, val instanceCount: Lo
   abstract fun getWeakReferenceId(): Long
   abstract fun getSoftWeakReferenceIndex(): Int
 
+  /**
+   * Creates a navigator over the same objects, with its own current object, so that objects can be read from several threads at once.
+   */
+  abstract fun duplicate(): ObjectNavigator
+
   fun goToInstanceField(className: String?, fieldName: String) {
     val objectId = getInstanceFieldObjectId(className, fieldName)
     goTo(objectId, ReferenceResolution.ALL_REFERENCES)
@@ -34,6 +34,9 @@ class ObjectNavigatorOnAuxFiles(
 
   override fun getClass() = currentClass!!
 
+  override fun duplicate(): ObjectNavigator =
+    ObjectNavigatorOnAuxFiles(roots, auxOffsets.duplicate().order(auxOffsets.order()), aux.duplicate(), classStore, instanceCount, idSize)
+
   override fun getClassForObjectId(id: Long): ClassDefinition {
     auxOffsets.position((id * 4).toInt())
     aux.position(auxOffsets.int)
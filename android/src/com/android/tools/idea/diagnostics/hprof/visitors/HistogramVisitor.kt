@@ -25,14 +25,43 @@ import com.android.tools.idea.diagnostics.hprof.parser.HeapDumpRecordType
 import com.android.tools.idea.diagnostics.hprof.parser.InstanceFieldEntry
 import com.android.tools.idea.diagnostics.hprof.parser.StaticFieldEntry
 import com.android.tools.idea.diagnostics.hprof.parser.Type
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap
 import java.nio.ByteBuffer
 
-class HistogramVisitor(private val classStore: ClassStore) : HProfVisitor() {
+/**
+ * Counts instances and their sizes by class.
+ *
+ * Classes are only resolved in [createHistogram], so the class store does not need to exist while the heap dump is visited, and this
+ * visitor can run in the same pass as the one creating the class store.
+ */
+class HistogramVisitor : HProfVisitor() {
   private var completed = false
 
   private var instanceCount = 0L
 
-  private var classToHistogramEntryInternal = HashMap<ClassDefinition, InternalHistogramEntry>()
+  // Counters for instances and object arrays by class object id, for primitive arrays by element type, and for classes.
+  private val classIdCounters = Long2ObjectOpenHashMap<Counter>()
+  private val primitiveArrayCounters = HashMap<Type, Counter>()
+  private var classDumpCounter: Counter? = null
+
+  /**
+   * Counts instances of one class. [order] is the order in which the class was first encountered, so that the histogram entries are
+   * created in the same order as if classes had been resolved while visiting.
+   */
+  private inner class Counter(val isInstance: Boolean) {
+    val order = counterCount++
+    var instances = 0L
+    // For instances, the size is only known once the class is resolved.
+    var bytes = 0L
+
+    fun add(sizeInBytes: Long) {
+      instanceCount++
+      instances++
+      bytes += sizeInBytes
+    }
+  }
+
+  private var counterCount = 0
 
   override fun preVisit() {
     assert(!completed)
@@ -44,11 +73,8 @@ class HistogramVisitor(private val classStore: ClassStore) : HProfVisitor() {
   }
 
   override fun visitPrimitiveArrayDump(arrayObjectId: Long, stackTraceSerialNumber: Long, numberOfElements: Long, elementType: Type) {
-    instanceCount++
-    val classDefinition = classStore.getClassForPrimitiveArray(elementType)!!
-    classToHistogramEntryInternal.getOrPut(classDefinition) {
-      InternalHistogramEntry(classDefinition)
-    }.addInstance(numberOfElements * elementType.size + ClassDefinition.ARRAY_PREAMBLE_SIZE)
+    primitiveArrayCounters.getOrPut(elementType) { Counter(false) }
+      .add(numberOfElements * elementType.size + ClassDefinition.ARRAY_PREAMBLE_SIZE)
   }
 
   override fun visitClassDump(classId: Long,
@@ -59,37 +85,50 @@ class HistogramVisitor(private val classStore: ClassStore) : HProfVisitor() {
                               constants: Array<ConstantPoolEntry>,
                               staticFields: Array<StaticFieldEntry>,
                               instanceFields: Array<InstanceFieldEntry>) {
-    instanceCount++
-    val classDefinition = classStore.classClass
-    classToHistogramEntryInternal.getOrPut(classDefinition) {
-      InternalHistogramEntry(classDefinition)
-    }.addInstance(classDefinition.instanceSize.toLong() + ClassDefinition.OBJECT_PREAMBLE_SIZE)
+    val counter = classDumpCounter ?: Counter(true).also { classDumpCounter = it }
+    counter.add(0)
   }
 
   override fun visitObjectArrayDump(arrayObjectId: Long, stackTraceSerialNumber: Long, arrayClassObjectId: Long, objects: LongArray) {
-    instanceCount++
-    val classDefinition = classStore[arrayClassObjectId]
-    classToHistogramEntryInternal.getOrPut(classDefinition) {
-      InternalHistogramEntry(classDefinition)
-    }.addInstance(objects.size.toLong() * visitorContext.idSize + ClassDefinition.ARRAY_PREAMBLE_SIZE)
+    getClassIdCounter(arrayClassObjectId, false).add(objects.size.toLong() * visitorContext.idSize + ClassDefinition.ARRAY_PREAMBLE_SIZE)
   }
 
   override fun visitInstanceDump(objectId: Long, stackTraceSerialNumber: Long, classObjectId: Long, bytes: ByteBuffer) {
-    instanceCount++
-    val classDefinition = classStore[classObjectId]
-    classToHistogramEntryInternal.getOrPut(classDefinition) {
-      InternalHistogramEntry(classDefinition)
-    }.addInstance(classDefinition.instanceSize.toLong() + ClassDefinition.OBJECT_PREAMBLE_SIZE)
+    getClassIdCounter(classObjectId, true).add(0)
+  }
+
+  private fun getClassIdCounter(classObjectId: Long, isInstance: Boolean): Counter {
+    var counter = classIdCounters.get(classObjectId)
+    if (counter == null) {
+      counter = Counter(isInstance)
+      classIdCounters.put(classObjectId, counter)
+    }
+    return counter
   }
 
   override fun postVisit() {
     completed = true
   }
 
-  fun createHistogram(): Histogram {
+  fun createHistogram(classStore: ClassStore): Histogram {
     assert(completed)
-    val result = ArrayList<HistogramEntry>(classToHistogramEntryInternal.size)
+    val classToHistogramEntryInternal = HashMap<ClassDefinition, InternalHistogramEntry>()
+    val resolvedCounters = ArrayList<Pair<ClassDefinition, Counter>>()
+    classDumpCounter?.let { resolvedCounters.add(Pair(classStore.classClass, it)) }
+    primitiveArrayCounters.forEach { (type, counter) -> resolvedCounters.add(Pair(classStore.getClassForPrimitiveArray(type)!!, counter)) }
+    classIdCounters.long2ObjectEntrySet().forEach { resolvedCounters.add(Pair(classStore[it.longKey], it.value)) }
+    resolvedCounters.sortBy { it.second.order }
+
+    resolvedCounters.forEach { (classDefinition, counter) ->
+      val bytes =
+        if (counter.isInstance) counter.instances * (classDefinition.instanceSize.toLong() + ClassDefinition.OBJECT_PREAMBLE_SIZE)
+        else counter.bytes
+      classToHistogramEntryInternal.getOrPut(classDefinition) {
+        InternalHistogramEntry(classDefinition)
+      }.addInstances(counter.instances, bytes)
+    }
 
+    val result = ArrayList<HistogramEntry>(classToHistogramEntryInternal.size)
     classToHistogramEntryInternal.forEach { (_, internalEntry) ->
       result.add(internalEntry.asHistogramEntry())
     }
@@ -107,6 +146,11 @@ class HistogramVisitor(private val classStore: ClassStore) : HProfVisitor() {
       totalBytes += sizeInBytes
     }
 
+    fun addInstances(count: Long, sizeInBytes: Long) {
+      totalInstances += count
+      totalBytes += sizeInBytes
+    }
+
     fun asHistogramEntry(): HistogramEntry {
       return HistogramEntry(classDefinition, totalInstances, totalBytes)
     }
@@ -53,6 +53,8 @@ abstract class JfrReportGenerator(
 
   inner class Capture {
     val start: Instant = clock.instant().plusMillis(startOffsetMs)
+    // Set by stopCapture, and read by the thread dispatching the events
+    @Volatile
     var end: Instant? = null
 
     fun maybeAccept(e: RecordedEvent) {
@@ -30,6 +30,8 @@ import java.nio.file.Paths;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Function;
+import jdk.jfr.EventSettings;
 import jdk.jfr.Recording;
 
 public class RecordingBuffer {
@@ -50,14 +52,21 @@ public class RecordingBuffer {
 
   private void createAndStartRecording() {
     recordings[latest] = new Recording();
-    recordings[latest].enable("jdk.ExecutionSample").withPeriod(Duration.ofMillis(20));
-    recordings[latest].enable("jdk.NativeMethodSample").withPeriod(Duration.ofMillis(20));
-    recordings[latest].enable("jdk.GCPhasePause");
-    recordings[latest].enable("jdk.GCHeapSummary");
+    enableEvents(recordings[latest]::enable);
     recordings[latest].setToDisk(true);
     recordings[latest].start();
   }
 
+  /**
+   * Enables the JDK events used by the reports, with either {@link Recording#enable(String)} or {@code RecordingStream.enable(String)}.
+   */
+  static void enableEvents(Function<String, EventSettings> enable) {
+    enable.apply("jdk.ExecutionSample").withPeriod(Duration.ofMillis(20));
+    enable.apply("jdk.NativeMethodSample").withPeriod(Duration.ofMillis(20));
+    enable.apply("jdk.GCPhasePause");
+    enable.apply("jdk.GCHeapSummary");
+  }
+
   @Slow
   @Nullable
   public Path dumpJfrTo(Path directory) {
@@ -39,6 +39,7 @@ import com.intellij.openapi.util.LowMemoryWatcher
 import com.intellij.openapi.util.SystemInfo
 import com.intellij.openapi.util.io.FileUtil
 import jdk.jfr.consumer.RecordingFile
+import jdk.jfr.consumer.RecordingStream
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.NonCancellable
 import kotlinx.coroutines.delay
@@ -52,6 +53,7 @@ import java.io.File
 import java.io.IOException
 import java.nio.file.Files
 import java.nio.file.Path
+import java.time.Duration
 import java.time.Instant
 import java.util.IdentityHashMap
 import java.util.concurrent.atomic.AtomicBoolean
@@ -59,6 +61,7 @@ import kotlin.time.Duration.Companion.seconds
 
 private const val JFR_SERVER_FLAG_NAME = "diagnostics/jfr"
 internal val JFR_RECORDING_DURATION = 30.seconds
+private const val JFR_STREAM_MAX_SIZE_BYTES = 64L * 1024 * 1024
 
 typealias ReportCallback = (DiagnosticReport) -> Boolean
 
@@ -74,6 +77,8 @@ class RecordingManager : Disposable {
   private lateinit var reportCallback: ReportCallback
   private lateinit var coroutineScope: CoroutineScope
   private var lowMemoryWatcher: LowMemoryWatcher? = null
+  private var recordingStream: RecordingStream? = null
+  private var streamingDispatcher: StreamingCaptureDispatcher? = null
 
   private var previousRecordingEnd: Instant = Instant.MIN
 
@@ -96,13 +101,19 @@ class RecordingManager : Disposable {
 
     setupActionEvents()
     lowMemoryWatcher = LowMemoryWatcher.register { LowMemory().commit() }
-    scheduleRecording()
+    if (StudioFlags.JFR_STREAMING_ENABLED.get()) startStreaming() else scheduleRecording()
     createReportManagers()
   }
 
-  override fun dispose() { }
+  override fun dispose() {
+    recordingStream?.close()
+  }
 
   fun startCapture(capture: JfrReportGenerator.Capture) {
+    streamingDispatcher?.let {
+      it.addCapture(capture)
+      return
+    }
     coroutineScope.launch {
       mutex.withLock { pendingCaptures.add(capture) }
     }
@@ -114,8 +125,21 @@ class RecordingManager : Disposable {
     }
   }
 
-  private fun dumpJfrTo(directory: Path): Path? = runBlocking(coroutineScope.coroutineContext) {
-    mutex.withLock { recordings.dumpJfrTo(directory) }
+  private fun dumpJfrTo(directory: Path): Path? {
+    recordingStream?.let { stream ->
+      val path = directory.resolve("recording.jfr")
+      return try {
+        stream.dump(path)
+        path
+      }
+      catch (e: IOException) {
+        logger.warn(e)
+        null
+      }
+    }
+    return runBlocking(coroutineScope.coroutineContext) {
+      mutex.withLock { recordings.dumpJfrTo(directory) }
+    }
   }
 
   private fun createReportManagers() {
@@ -140,6 +164,27 @@ class RecordingManager : Disposable {
     })
   }
 
+  /**
+   * Streams the recorded events to the captures as they are flushed, instead of periodically dumping the recording to a file and reading
+   * it back, see [scheduleRecording]. The stream only keeps the last [JFR_RECORDING_DURATION]s of events on disk, like the double
+   * buffered recordings, so that they can still be dumped by [DumpJfrAction].
+   */
+  private fun startStreaming() {
+    val dispatcher = StreamingCaptureDispatcher(reportCallback)
+    val stream = RecordingStream()
+    RecordingBuffer.enableEvents(stream::enable)
+    stream.setMaxAge(Duration.ofSeconds(JFR_RECORDING_DURATION.inWholeSeconds * 2))
+    stream.setMaxSize(JFR_STREAM_MAX_SIZE_BYTES)
+    // The dispatcher keeps recent events to replay them to backdated captures.
+    stream.setReuse(false)
+    stream.onEvent(dispatcher::onEvent)
+    stream.onFlush { dispatcher.onFlush(Instant.now()) }
+    stream.onError { logger.warn(it) }
+    streamingDispatcher = dispatcher
+    recordingStream = stream
+    stream.startAsync()
+  }
+
   private fun scheduleRecording() {
     coroutineScope.launch {
       try {
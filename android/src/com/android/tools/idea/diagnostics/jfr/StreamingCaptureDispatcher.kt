@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.diagnostics.jfr
+
+import jdk.jfr.consumer.RecordedEvent
+import java.time.Instant
+import java.util.ArrayDeque
+import java.util.concurrent.ConcurrentLinkedQueue
+import kotlin.time.Duration
+import kotlin.time.toJavaDuration
+
+/**
+ * Dispatches the events of a continuous JFR stream to the pending [JfrReportGenerator.Capture]s, and completes the captures once all
+ * of their events have been delivered.
+ *
+ * The stream delivers the events committed before each flush, so once a flush is over, all the events that happened before the
+ * previous one have been dispatched, and the captures that ended before it are complete. Their reports are then generated at most a
+ * couple of flushes after they end, instead of after the next recording is dumped.
+ *
+ * Captures can start before they are added, by a negative start offset of at most [JFR_RECORDING_DURATION] (e.g. freezes are only
+ * detected once they have been going on for a while). The events of the last [retention] before the latest flush are therefore kept, and
+ * replayed to each capture when it is added, the same way the double buffered recordings always have the previous chunk to read.
+ *
+ * [onEvent] and [onFlush] must be called from the stream thread. Captures can be added from any thread.
+ */
+class StreamingCaptureDispatcher(
+  private val reportCallback: ReportCallback,
+  private val retention: Duration = JFR_RECORDING_DURATION,
+) {
+  private val newCaptures = ConcurrentLinkedQueue<JfrReportGenerator.Capture>()
+  private val pendingCaptures = mutableListOf<JfrReportGenerator.Capture>()
+  private val recentEvents = ArrayDeque<RecordedEvent>()
+  private var previousFlush: Instant = Instant.MIN
+
+  fun addCapture(capture: JfrReportGenerator.Capture) {
+    newCaptures.add(capture)
+  }
+
+  fun onEvent(e: RecordedEvent) {
+    pollNewCaptures()
+    pendingCaptures.forEach { it.maybeAccept(e) }
+    recentEvents.addLast(e)
+  }
+
+  fun onFlush(flushTime: Instant) {
+    pollNewCaptures()
+    pendingCaptures.removeIf { it.completeAndGenerateReport(previousFlush, reportCallback) }
+    previousFlush = flushTime
+    // Events are delivered roughly in time order, the few out of order ones are dropped at the following flushes.
+    val retainedSince = flushTime.minus(retention.toJavaDuration())
+    while (recentEvents.peekFirst()?.startTime?.isBefore(retainedSince) == true) {
+      recentEvents.removeFirst()
+    }
+  }
+
+  private fun pollNewCaptures() {
+    while (true) {
+      val capture = newCaptures.poll() ?: return
+      recentEvents.forEach { capture.maybeAccept(it) }
+      pendingCaptures.add(capture)
+    }
+  }
+}
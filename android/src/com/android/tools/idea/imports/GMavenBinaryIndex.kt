@@ -0,0 +1,274 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.imports
+
+import java.io.DataOutputStream
+import java.io.IOException
+import java.io.OutputStream
+import java.nio.ByteBuffer
+import java.nio.charset.StandardCharsets.UTF_8
+import java.util.Arrays
+
+private const val MAGIC = 0x474D4958 // "GMIX"
+private const val FORMAT_VERSION = 1
+private const val NO_STRING = -1
+
+/**
+ * A compact binary form of [LookupData], meant to be memory-mapped so that class names are looked up without loading the whole
+ * index on the heap.
+ *
+ * The layout is the following, all integers being 4-byte big-endian:
+ * - header: [MAGIC], [FORMAT_VERSION].
+ * - string table: the number of strings, their start offsets followed by the end offset of the last one, and their UTF-8 bytes.
+ *   Strings are sorted in unsigned byte order.
+ * - class names: the number of simple class names, then for each of them, in string table order, the string id of the name and
+ *   the index of its first library record. A last entry with no name holds the end index of the last name's records.
+ * - library records: the number of records, then the string ids of the artifact, package name and version of each record.
+ * - KTX map: the number of entries, then the string ids of the key and the value of each entry.
+ * - coordinates: the number of coordinates, then the string ids of the group id, artifact id and version of each coordinate.
+ *
+ * Only the KTX map and the coordinates, which are small, are decoded by [toLookupData]. Class names are looked up by a binary
+ * search on the buffer.
+ */
+class GMavenBinaryIndex(private val buffer: ByteBuffer) {
+  private val stringCount: Int
+  private val stringOffsetsStart: Int
+  private val stringDataStart: Int
+  private val classCount: Int
+  private val classesStart: Int
+  private val recordsStart: Int
+  private val ktxMapStart: Int
+  private val coordinatesStart: Int
+
+  init {
+    if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION) {
+      throw IOException("Not a binary GMaven index of version $FORMAT_VERSION")
+    }
+    var position = 8
+    stringCount = buffer.getInt(position)
+    stringOffsetsStart = position + 4
+    stringDataStart = stringOffsetsStart + (stringCount + 1) * 4
+    position = stringDataStart + buffer.getInt(stringOffsetsStart + stringCount * 4)
+
+    classCount = buffer.getInt(position)
+    classesStart = position + 4
+    position = classesStart + (classCount + 1) * 8
+
+    val recordCount = buffer.getInt(position)
+    recordsStart = position + 4
+    position = recordsStart + recordCount * 12
+
+    ktxMapStart = position
+    position += 4 + buffer.getInt(position) * 8
+
+    coordinatesStart = position
+    position += 4 + buffer.getInt(position) * 12
+    if (position > buffer.limit()) {
+      throw IOException("Truncated binary GMaven index")
+    }
+  }
+
+  /**
+   * Returns the lookup data of this index, with a [LookupData.classNameMap] backed by the buffer.
+   */
+  fun toLookupData(): LookupData {
+    val ktxMap = LinkedHashMap<String, String>()
+    val ktxCount = buffer.getInt(ktxMapStart)
+    for (i in 0 until ktxCount) {
+      val entry = ktxMapStart + 4 + i * 8
+      ktxMap[getString(buffer.getInt(entry))] = getString(buffer.getInt(entry + 4))
+    }
+
+    val coordinateCount = buffer.getInt(coordinatesStart)
+    val coordinateList = List(coordinateCount) {
+      val coordinate = coordinatesStart + 4 + it * 12
+      MavenClassRegistryBase.Coordinate(getString(buffer.getInt(coordinate)),
+                                        getString(buffer.getInt(coordinate + 4)),
+                                        getString(buffer.getInt(coordinate + 8)))
+    }
+    return LookupData(ClassNameMap(), ktxMap, coordinateList)
+  }
+
+  /**
+   * Returns the index of the given simple class name in the class names section, or -1 if it's not there.
+   */
+  private fun findClass(shortName: String): Int {
+    val key = shortName.toByteArray(UTF_8)
+    var low = 0
+    var high = classCount - 1
+    while (low <= high) {
+      val middle = (low + high) ushr 1
+      val comparison = compareWithString(buffer.getInt(classesStart + middle * 8), key)
+      when {
+        comparison < 0 -> low = middle + 1
+        comparison > 0 -> high = middle - 1
+        else -> return middle
+      }
+    }
+    return -1
+  }
+
+  private fun readLibraries(classIndex: Int): List<MavenClassRegistryBase.Library> {
+    val firstRecord = buffer.getInt(classesStart + classIndex * 8 + 4)
+    val endRecord = buffer.getInt(classesStart + (classIndex + 1) * 8 + 4)
+    return List(endRecord - firstRecord) {
+      val record = recordsStart + (firstRecord + it) * 12
+      val version = buffer.getInt(record + 8)
+      MavenClassRegistryBase.Library(artifact = getString(buffer.getInt(record)),
+                                     packageName = getString(buffer.getInt(record + 4)),
+                                     version = if (version == NO_STRING) null else getString(version))
+    }
+  }
+
+  /**
+   * Compares the string [id] with [key] in unsigned byte order, without decoding the string.
+   */
+  private fun compareWithString(id: Int, key: ByteArray): Int {
+    val start = stringDataStart + buffer.getInt(stringOffsetsStart + id * 4)
+    val length = buffer.getInt(stringOffsetsStart + (id + 1) * 4) - buffer.getInt(stringOffsetsStart + id * 4)
+    for (i in 0 until minOf(length, key.size)) {
+      val comparison = (buffer.get(start + i).toInt() and 0xFF) - (key[i].toInt() and 0xFF)
+      if (comparison != 0) return comparison
+    }
+    return length - key.size
+  }
+
+  private fun getString(id: Int): String {
+    val start = buffer.getInt(stringOffsetsStart + id * 4)
+    val bytes = ByteArray(buffer.getInt(stringOffsetsStart + (id + 1) * 4) - start)
+    buffer.get(stringDataStart + start, bytes)
+    return String(bytes, UTF_8)
+  }
+
+  /**
+   * A read-only view of the class names section. Only [get] and [containsKey] are meant for regular use, iterating decodes the
+   * whole section.
+   */
+  private inner class ClassNameMap : AbstractMap<String, List<MavenClassRegistryBase.Library>>() {
+    override val size: Int
+      get() = classCount
+
+    override fun containsKey(key: String) = findClass(key) >= 0
+
+    override fun get(key: String): List<MavenClassRegistryBase.Library>? {
+      val classIndex = findClass(key)
+      return if (classIndex < 0) null else readLibraries(classIndex)
+    }
+
+    override val entries: Set<Map.Entry<String, List<MavenClassRegistryBase.Library>>>
+      get() = (0 until classCount).mapTo(LinkedHashSet()) {
+        java.util.AbstractMap.SimpleImmutableEntry(getString(buffer.getInt(classesStart + it * 8)), readLibraries(it))
+      }
+  }
+
+  companion object {
+    /**
+     * Writes the binary form of the given [lookup] data to [output].
+     */
+    @JvmStatic
+    @Throws(IOException::class)
+    fun write(lookup: LookupData, output: OutputStream) {
+      val strings = StringTable()
+      lookup.classNameMap.forEach { (name, libraries) ->
+        strings.add(name)
+        libraries.forEach {
+          strings.add(it.artifact)
+          strings.add(it.packageName)
+          it.version?.let(strings::add)
+        }
+      }
+      lookup.ktxMap.forEach { (key, value) ->
+        strings.add(key)
+        strings.add(value)
+      }
+      lookup.coordinateList.forEach {
+        strings.add(it.groupId)
+        strings.add(it.artifactId)
+        strings.add(it.version)
+      }
+      strings.sort()
+
+      val out = DataOutputStream(output)
+      out.writeInt(MAGIC)
+      out.writeInt(FORMAT_VERSION)
+      strings.write(out)
+
+      // Sorting by string id sorts class names in the byte order used by the binary search.
+      val classNames = lookup.classNameMap.keys.sortedBy { strings.idOf(it) }
+      out.writeInt(classNames.size)
+      var recordCount = 0
+      for (name in classNames) {
+        out.writeInt(strings.idOf(name))
+        out.writeInt(recordCount)
+        recordCount += lookup.classNameMap.getValue(name).size
+      }
+      out.writeInt(NO_STRING)
+      out.writeInt(recordCount)
+
+      out.writeInt(recordCount)
+      for (name in classNames) {
+        for (library in lookup.classNameMap.getValue(name)) {
+          out.writeInt(strings.idOf(library.artifact))
+          out.writeInt(strings.idOf(library.packageName))
+          out.writeInt(library.version?.let { strings.idOf(it) } ?: NO_STRING)
+        }
+      }
+
+      out.writeInt(lookup.ktxMap.size)
+      lookup.ktxMap.forEach { (key, value) ->
+        out.writeInt(strings.idOf(key))
+        out.writeInt(strings.idOf(value))
+      }
+
+      out.writeInt(lookup.coordinateList.size)
+      lookup.coordinateList.forEach {
+        out.writeInt(strings.idOf(it.groupId))
+        out.writeInt(strings.idOf(it.artifactId))
+        out.writeInt(strings.idOf(it.version))
+      }
+      out.flush()
+    }
+  }
+
+  private class StringTable {
+    private val bytesByString = HashMap<String, ByteArray>()
+    private val ids = HashMap<String, Int>()
+    private lateinit var sorted: List<ByteArray>
+
+    fun add(string: String) {
+      bytesByString.computeIfAbsent(string) { it.toByteArray(UTF_8) }
+    }
+
+    fun sort() {
+      val entries = bytesByString.entries.sortedWith { a, b -> Arrays.compareUnsigned(a.value, b.value) }
+      entries.forEachIndexed { id, entry -> ids[entry.key] = id }
+      sorted = entries.map { it.value }
+    }
+
+    fun idOf(string: String): Int = ids.getValue(string)
+
+    fun write(out: DataOutputStream) {
+      out.writeInt(sorted.size)
+      var offset = 0
+      for (bytes in sorted) {
+        out.writeInt(offset)
+        offset += bytes.size
+      }
+      out.writeInt(offset)
+      sorted.forEach { out.write(it) }
+    }
+  }
+}
@@ -24,14 +24,19 @@ import com.intellij.util.io.HttpRequests
 import com.intellij.util.io.outputStream
 import java.io.IOException
 import java.io.InputStream
+import java.io.OutputStream
 import java.net.HttpURLConnection
 import java.net.SocketTimeoutException
 import java.net.URL
 import java.net.UnknownHostException
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
 import java.nio.file.Files
 import java.nio.file.NoSuchFileException
 import java.nio.file.Path
 import java.nio.file.StandardCopyOption
+import java.nio.file.StandardOpenOption
+import java.nio.file.attribute.FileTime
 import java.text.SimpleDateFormat
 import java.time.Duration
 import java.util.Locale
@@ -39,6 +44,7 @@ import java.util.Properties
 import java.util.concurrent.TimeUnit
 import java.util.concurrent.atomic.AtomicReference
 import kotlin.io.path.exists
+import kotlin.streams.toList
 
 /** Network connection timeout in milliseconds. */
 private const val NETWORK_TIMEOUT_MILLIS = 3000
@@ -54,6 +60,8 @@ private const val NETWORK_RETRY_DELAY_FACTOR = 2.0
 
 private const val GZ_EXT = ".gz"
 
+private const val BINARY_EXT = ".bin"
+
 /** Key used in property list to find ETag value.  */
 private const val ETAG_KEY = "etag"
 
@@ -163,6 +171,45 @@ class GMavenIndexRepository(
     return readDefaultData()
   }
 
+  /**
+   * Returns the binary form of the local disk cache, or null if there's no disk cache, in which case the index has to be read
+   * with [loadIndexFromDisk].
+   *
+   * The binary form is written by [convert] next to the disk cache the first time it's requested after the disk cache is
+   * refreshed, and memory-mapped when possible. Its file name contains the last modified time of the disk cache it's converted
+   * from, so that a binary form converted from an older disk cache is never used. A mapped file can't be replaced or deleted on
+   * Windows as long as the mapping is alive, which is why each version of the binary form is written to a new file rather than
+   * replacing the previous one, and previous versions are deleted once they are no longer mapped.
+   */
+  @Slow
+  fun loadBinaryIndexFromDisk(convert: (InputStream, OutputStream) -> Unit): ByteBuffer? {
+    val cacheFile = cacheDir.resolve(relativeCachePath)
+    val cacheModifiedTime = try {
+      Files.getLastModifiedTime(cacheFile)
+    }
+    catch (ignore: NoSuchFileException) {
+      return null
+    }
+    val binaryFile = getBinaryIndexFile(cacheFile, cacheModifiedTime)
+
+    if (!binaryFile.exists()) {
+      saveBinaryIndex(cacheFile, binaryFile, convert)
+      thisLogger().info("Converted disk cache to binary index $binaryFile.")
+    }
+
+    val buffer = FileChannel.open(binaryFile, StandardOpenOption.READ).use { channel ->
+      try {
+        channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+      }
+      catch (e: UnsupportedOperationException) {
+        // Not a file on the default file system.
+        ByteBuffer.wrap(Files.readAllBytes(binaryFile))
+      }
+    }
+    deleteStaleBinaryIndexes(cacheFile, binaryFile)
+    return buffer
+  }
+
   /**
    * Returns [RefreshStatus.UPDATED] if the disk cache is successfully updated.
    *
@@ -258,6 +305,46 @@ class GMavenIndexRepository(
     }
   }
 
+  private fun saveBinaryIndex(cacheFile: Path, binaryFile: Path, convert: (InputStream, OutputStream) -> Unit) {
+    val tempFile = Files.createTempFile(binaryFile.parent, "${binaryFile.fileName}", ".tmp")
+
+    try {
+      CancellableFileIo.newInputStream(cacheFile).use { input ->
+        Files.newOutputStream(tempFile).buffered().use { output -> convert(input, output) }
+      }
+      Files.move(tempFile, binaryFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+    }
+    catch (e: Exception) {
+      Files.deleteIfExists(tempFile)
+      throw e
+    }
+  }
+
+  /**
+   * Deletes the binary forms of [cacheFile] other than [binaryFile]. The ones still mapped by a previous registry can't be deleted on
+   * Windows, they are deleted by a later call.
+   */
+  private fun deleteStaleBinaryIndexes(cacheFile: Path, binaryFile: Path) {
+    val prefix = "${cacheFile.fileName}."
+    val staleFiles = try {
+      Files.list(cacheFile.parent).use { files ->
+        files.filter { it != binaryFile && it.fileName.toString().let { name -> name.startsWith(prefix) && name.endsWith(BINARY_EXT) } }
+          .toList()
+      }
+    }
+    catch (e: IOException) {
+      return
+    }
+    for (file in staleFiles) {
+      try {
+        Files.deleteIfExists(file)
+      }
+      catch (e: IOException) {
+        thisLogger().debug("Binary index $file is still in use.", e)
+      }
+    }
+  }
+
   private fun loadETag(file: Path): String? {
     return try {
       val properties = Properties().apply {
@@ -284,6 +371,10 @@ class GMavenIndexRepository(
     return file.resolveSibling("${file.fileName}.properties")
   }
 
+  private fun getBinaryIndexFile(file: Path, modifiedTime: FileTime): Path {
+    return file.resolveSibling("${file.fileName}.${modifiedTime.toMillis()}$BINARY_EXT")
+  }
+
   /**
    * Status after the local disk cache being refreshed.
    */
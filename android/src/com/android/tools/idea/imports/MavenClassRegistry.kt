@@ -21,6 +21,7 @@ import org.jetbrains.kotlin.name.FqName
 import java.io.IOException
 import java.io.InputStream
 import java.io.InputStreamReader
+import java.io.OutputStream
 
 /**
  * Registry contains [lookup] extracted by reading indices from [GMavenIndexRepository].
@@ -63,6 +64,16 @@ class MavenClassRegistry(private val indexRepository: GMavenIndexRepository) : M
   }
 
   private fun generateLookup(): LookupData {
+    try {
+      // The binary form is converted once per downloaded index, and is then read without parsing the JSON index again.
+      indexRepository.loadBinaryIndexFromDisk(::convertToBinaryIndex)?.let {
+        return GMavenBinaryIndex(it).toLookupData()
+      }
+    }
+    catch (e: Exception) {
+      logger<MavenClassRegistry>().warn("Problem reading binary GMaven index file: ${e.message}")
+    }
+
     val data = indexRepository.loadIndexFromDisk()
 
     return try {
@@ -74,6 +85,11 @@ class MavenClassRegistry(private val indexRepository: GMavenIndexRepository) : M
     }
   }
 
+  @Throws(IOException::class)
+  private fun convertToBinaryIndex(jsonInputStream: InputStream, binaryOutputStream: OutputStream) {
+    GMavenBinaryIndex.write(readIndicesFromJsonFile(jsonInputStream), binaryOutputStream)
+  }
+
   @Throws(IOException::class)
   private fun readIndicesFromJsonFile(inputStream: InputStream): LookupData {
     return JsonReader(InputStreamReader(inputStream)).use { reader ->
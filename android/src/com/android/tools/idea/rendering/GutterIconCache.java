@@ -15,16 +15,28 @@
  */
 package com.android.tools.idea.rendering;
 
+import static com.android.SdkConstants.DOT_XML;
+
 import com.android.ide.common.rendering.api.RenderResources;
+import com.android.ide.common.resources.ResourceResolver;
+import com.android.tools.idea.configurations.Configuration;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.util.Ref;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.ui.scale.JBUIScale;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import com.intellij.util.ui.UIUtil;
 import icons.StudioIcons;
-import java.util.HashMap;
-import java.util.Map;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import javax.swing.Icon;
 import org.jetbrains.android.facet.AndroidFacet;
 import org.jetbrains.annotations.NotNull;
@@ -37,18 +49,33 @@ public class GutterIconCache {
   @VisibleForTesting static final int MAX_WIDTH = JBUIScale.scale(16);
   @VisibleForTesting static final int MAX_HEIGHT = JBUIScale.scale(16);
 
+  /**
+   * Maximum number of cached thumbnails. The least recently used ones are evicted first.
+   */
+  @VisibleForTesting static final int MAX_CACHE_SIZE = 1000;
+
   private static final GutterIconCache ourInstance = new GutterIconCache();
 
-  private Map<String, Icon> myThumbnailCache = new HashMap<>();
+  /**
+   * Thumbnails along with the modification stamps of their image files at the time they were rendered, using the path as a key.
+   */
+  private final Cache<String, CachedIcon> myThumbnailCache;
 
   /**
-   * Stores timestamps for the last modification time of image files using the
-   * path as a key.
+   * Paths of the files being rendered by {@link #myRenderingExecutor}.
    */
-  private Map<String, Long> myModificationStampCache = new HashMap<>();
-  private boolean myRetina;
+  private final Set<String> myPendingRenderings = ConcurrentHashMap.newKeySet();
+  private final Executor myRenderingExecutor;
+  private volatile boolean myRetina;
 
   public GutterIconCache() {
+    this(MAX_CACHE_SIZE, AppExecutorUtil.createBoundedApplicationPoolExecutor("GutterIconCache Rendering", 2));
+  }
+
+  @VisibleForTesting
+  GutterIconCache(int maxCacheSize, @NotNull Executor renderingExecutor) {
+    myThumbnailCache = CacheBuilder.newBuilder().maximumSize(maxCacheSize).build();
+    myRenderingExecutor = renderingExecutor;
   }
 
   @NotNull
@@ -58,38 +85,121 @@ public class GutterIconCache {
 
   @VisibleForTesting
   boolean isIconUpToDate(@NotNull VirtualFile file) {
-    String path = file.getPath();
-    if (myModificationStampCache.containsKey(path)) {
-      // Entry is valid if image resource has not been modified since the entry was cached
-      return myModificationStampCache.get(path) == file.getModificationStamp() && !FileDocumentManager.getInstance().isFileModified(file);
+    CachedIcon cachedIcon = myThumbnailCache.getIfPresent(file.getPath());
+    return cachedIcon != null && cachedIcon.isUpToDate(file);
+  }
+
+  /**
+   * Returns the thumbnail of the given image file, rendering it in the calling thread if it's not cached or out of date.
+   */
+  @Nullable
+  public Icon getIcon(@NotNull VirtualFile file, @Nullable RenderResources resolver, @NotNull AndroidFacet facet) {
+    clearIfRetinaChanged();
+    CachedIcon cachedIcon = myThumbnailCache.getIfPresent(file.getPath());
+    if (cachedIcon == null || !cachedIcon.isUpToDate(file)) {
+      cachedIcon = render(file, resolver, facet);
     }
 
-    return false;
+    return cachedIcon.getIcon();
   }
 
+  /**
+   * Returns the thumbnail of the given image file if it's cached, without rendering it in the calling thread. If it's not cached or
+   * out of date, it's rendered on a background thread and {@code onRendered} is called on the UI thread once the new thumbnail is
+   * cached. In the meantime, the out of date thumbnail is returned if there's one, or null otherwise.
+   * <p>
+   * The content of the file and a copy of the resource resolver of {@code configuration} are obtained in a read action on the background
+   * thread, and the thumbnail is rendered from them outside of it, so that rendering does not block write actions.
+   */
   @Nullable
-  public Icon getIcon(@NotNull VirtualFile file, @Nullable RenderResources resolver, @NotNull AndroidFacet facet) {
+  public Icon getIconOrRenderAsync(@NotNull VirtualFile file,
+                                   @NotNull Configuration configuration,
+                                   @NotNull AndroidFacet facet,
+                                   @NotNull Runnable onRendered) {
+    clearIfRetinaChanged();
+    String path = file.getPath();
+    CachedIcon cachedIcon = myThumbnailCache.getIfPresent(path);
+    if (cachedIcon != null && cachedIcon.isUpToDate(file)) {
+      return cachedIcon.getIcon();
+    }
+
+    if (myPendingRenderings.add(path)) {
+      myRenderingExecutor.execute(() -> {
+        try {
+          if (facet.isDisposed()) {
+            return;
+          }
+          renderAsync(file, configuration, facet);
+        }
+        catch (Throwable e) {
+          LOG.warn(String.format("Could not render icon image %1$s", file.getPresentableUrl()), e);
+          return;
+        }
+        finally {
+          myPendingRenderings.remove(path);
+        }
+        ApplicationManager.getApplication().invokeLater(onRendered, facet.getModule().getDisposed());
+      });
+    }
+
+    return cachedIcon != null ? cachedIcon.getIcon() : null;
+  }
+
+  @NotNull
+  private CachedIcon render(@NotNull VirtualFile file, @Nullable RenderResources resolver, @NotNull AndroidFacet facet) {
+    // Record timestamp of image resource at the time of caching
+    long modificationStamp = file.getModificationStamp();
+    Icon icon = GutterIconFactory.createIcon(file, resolver, MAX_WIDTH, MAX_HEIGHT, facet);
+    CachedIcon cachedIcon = new CachedIcon(icon != null ? icon : NONE, modificationStamp);
+    myThumbnailCache.put(file.getPath(), cachedIcon);
+    return cachedIcon;
+  }
+
+  private void renderAsync(@NotNull VirtualFile file, @NotNull Configuration configuration, @NotNull AndroidFacet facet)
+    throws IOException {
+    if (!file.getPath().endsWith(DOT_XML)) {
+      render(file, null, facet);
+      return;
+    }
+
+    // Record timestamp of image resource at the time of caching
+    Ref<Long> modificationStamp = new Ref<>();
+    Ref<String> xml = new Ref<>();
+    // The resolver of the configuration may be in use by other threads, e.g. by the highlighting pass, so the icon is rendered with a copy.
+    ResourceResolver resolver = ReadAction.compute(() -> {
+      modificationStamp.set(file.getModificationStamp());
+      xml.set(GutterIconFactory.getXmlContent(file));
+      return ResourceResolver.copy(configuration.getResourceResolver());
+    });
+    Icon icon = GutterIconFactory.createXmlIcon(file, xml.get(), resolver, MAX_WIDTH, MAX_HEIGHT, facet);
+    myThumbnailCache.put(file.getPath(), new CachedIcon(icon != null ? icon : NONE, modificationStamp.get()));
+  }
+
+  private void clearIfRetinaChanged() {
     boolean isRetina = UIUtil.isRetina();
     if (myRetina != isRetina) {
       myRetina = isRetina;
-      myThumbnailCache.clear();
+      myThumbnailCache.invalidateAll();
     }
-    String path = file.getPath();
-    Icon myIcon = myThumbnailCache.get(path);
-    if (myIcon == null || !isIconUpToDate(file)) {
-      myIcon = GutterIconFactory.createIcon(file, resolver, MAX_WIDTH, MAX_HEIGHT, facet);
+  }
 
-      if (myIcon == null) {
-        myIcon = NONE;
-      }
+  private static final class CachedIcon {
+    @NotNull private final Icon myIcon;
+    private final long myModificationStamp;
 
-      myThumbnailCache.put(path, myIcon);
+    private CachedIcon(@NotNull Icon icon, long modificationStamp) {
+      myIcon = icon;
+      myModificationStamp = modificationStamp;
+    }
 
-      // Record timestamp of image resource at the time of caching
-      myModificationStampCache.put(path, file.getModificationStamp());
+    @Nullable
+    Icon getIcon() {
+      return myIcon != NONE ? myIcon : null;
     }
 
-    return myIcon != NONE ? myIcon : null;
+    boolean isUpToDate(@NotNull VirtualFile file) {
+      // Entry is valid if image resource has not been modified since the entry was cached
+      return myModificationStamp == file.getModificationStamp() && !FileDocumentManager.getInstance().isFileModified(file);
+    }
   }
-
 }
@@ -26,6 +26,7 @@ import com.android.tools.idea.res.IdeResourcesUtil;
 import com.android.utils.XmlUtils;
 import com.google.common.annotations.VisibleForTesting;
 import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.fileEditor.FileDocumentManager;
 import com.intellij.openapi.util.Disposer;
@@ -74,7 +75,15 @@ public class GutterIconFactory {
   public static Icon createIcon(@NotNull VirtualFile file, @Nullable RenderResources resolver, int maxWidth, int maxHeight, @NotNull AndroidFacet facet) {
     String path = file.getPath();
     if (path.endsWith(DOT_XML)) {
-      return createXmlIcon(file, resolver, maxWidth, maxHeight, facet);
+      String xml;
+      try {
+        xml = getXmlContent(file);
+      }
+      catch (Throwable e) {
+        LOG.warn(String.format("Could not read icon image %1$s", file.getPresentableUrl()), e);
+        return null;
+      }
+      return createXmlIcon(file, xml, resolver, maxWidth, maxHeight, facet);
     }
 
     return createBitmapIcon(file, maxWidth, maxHeight);
@@ -85,7 +94,7 @@ public class GutterIconFactory {
    * for a file open in an editor).
    */
   @NotNull
-  private static String getXmlContent(@NotNull VirtualFile file) throws IOException {
+  static String getXmlContent(@NotNull VirtualFile file) throws IOException {
     com.intellij.openapi.editor.Document document = FileDocumentManager.getInstance().getCachedDocument(file);
 
     if  (document == null) {
@@ -95,11 +104,15 @@ public class GutterIconFactory {
     return document.getText();
   }
 
+  /**
+   * Returns an Icon for the XML resource {@code file} with the given content, {@code xml}, like
+   * {@link #createIcon(VirtualFile, RenderResources, int, int, AndroidFacet)}. It does not need to be called in a read action, as long as
+   * {@code resolver} is not used by other threads.
+   */
   @Nullable
-  private static Icon createXmlIcon(@NotNull VirtualFile file, @Nullable RenderResources resolver, int maxWidth, int maxHeight,
-                                    @NotNull AndroidFacet facet) {
+  static Icon createXmlIcon(@NotNull VirtualFile file, @NotNull String xml, @Nullable RenderResources resolver, int maxWidth,
+                            int maxHeight, @NotNull AndroidFacet facet) {
     try {
-      String xml = getXmlContent(file);
       Image image;
       // If drawable is a vector drawable, use the renderer inside Studio.
       // Otherwise, delegate to layoutlib.
@@ -125,7 +138,8 @@ public class GutterIconFactory {
         }
       }
       else {
-        Configuration configuration = ConfigurationManager.getOrCreateInstance(facet.getModule()).getConfiguration(file);
+        Configuration configuration =
+          ReadAction.compute(() -> ConfigurationManager.getOrCreateInstance(facet.getModule()).getConfiguration(file));
         DrawableRenderer renderer = new DrawableRenderer(facet, configuration);
         Dimension size = new Dimension(maxWidth * RENDERING_SCALING_FACTOR, maxHeight * RENDERING_SCALING_FACTOR);
         try {
@@ -5,7 +5,6 @@ import static com.android.SdkConstants.DOT_JAR;
 import static com.intellij.util.io.URLUtil.FILE_PROTOCOL;
 import static com.intellij.util.io.URLUtil.JAR_PROTOCOL;
 
-import com.android.ide.common.resources.ResourceResolver;
 import com.android.ide.common.util.PathString;
 import com.android.resources.ResourceType;
 import com.android.sdklib.IAndroidTarget;
@@ -26,6 +25,8 @@ import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.command.WriteCommandAction;
 import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.EditorFactory;
+import com.intellij.openapi.editor.ex.EditorEx;
 import com.intellij.openapi.project.DumbAware;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vfs.VirtualFile;
@@ -47,7 +48,6 @@ import org.jetbrains.annotations.Nullable;
  * {@link com.intellij.openapi.editor.markup.GutterIconRenderer} for Drawable resource references in XML files.
  */
 public class GutterIconRenderer extends com.intellij.openapi.editor.markup.GutterIconRenderer implements DumbAware {
-  @NotNull private final ResourceResolver myResourceResolver;
   @NotNull private final AndroidFacet myFacet;
   @Nullable private final VirtualFile myFile;
   @NotNull private final Configuration myConfiguration;
@@ -55,19 +55,17 @@ public class GutterIconRenderer extends com.intellij.openapi.editor.markup.Gutte
   @NotNull private final Consumer<String> myAttributeTask;
 
   /**
-   * @param element          {@link PsiElement} being annotated, usually an XML attribute or tag.
-   * @param resourceResolver {@link ResourceResolver} instance used to resolve resources from the active theme.
-   * @param facet            the {@link AndroidFacet} for the active module.
-   * @param file             the resource file to render in the gutter. Can be an XML file or bitmap. When null, a fallback icon will be
-   *                         rendered instead. See {@link #getIcon()}.
-   * @param configuration    Android {@link Configuration} associated with the containing file of the annotated element.
+   * @param element       {@link PsiElement} being annotated, usually an XML attribute or tag.
+   * @param facet         the {@link AndroidFacet} for the active module.
+   * @param file          the resource file to render in the gutter. Can be an XML file or bitmap. When null, a fallback icon will be
+   *                      rendered instead. See {@link #getIcon()}.
+   * @param configuration Android {@link Configuration} associated with the containing file of the annotated element, whose resource
+   *                      resolver is used to resolve resources from the active theme.
    */
   public GutterIconRenderer(@NotNull PsiElement element,
-                            @NotNull ResourceResolver resourceResolver,
                             @NotNull AndroidFacet facet,
                             @Nullable VirtualFile file,
                             @NotNull Configuration configuration) {
-    myResourceResolver = resourceResolver;
     myFacet = facet;
     myFile = file;
     myConfiguration = configuration;
@@ -78,12 +76,23 @@ public class GutterIconRenderer extends com.intellij.openapi.editor.markup.Gutte
   @Override
   @NotNull
   public Icon getIcon() {
+    // The gutter is painted on the UI thread, so icons that are not cached yet are rendered in the background, and the fallback icon
+    // is shown until they are.
     Icon icon = myFile != null
-                ? GutterIconCache.getInstance().getIcon(myFile, myResourceResolver, myFacet)
+                ? GutterIconCache.getInstance().getIconOrRenderAsync(myFile, myConfiguration, myFacet, this::repaintGutters)
                 : StudioIcons.LayoutEditor.Properties.IMAGE_PICKER;
     return icon == null ? StudioIcons.LayoutEditor.Properties.IMAGE_PICKER : icon;
   }
 
+  private void repaintGutters() {
+    Project project = myFacet.getModule().getProject();
+    for (Editor editor : EditorFactory.getInstance().getAllEditors()) {
+      if (project.equals(editor.getProject()) && editor instanceof EditorEx) {
+        ((EditorEx)editor).getGutterComponentEx().repaint();
+      }
+    }
+  }
+
   @Override
   @Nullable
   public AnAction getClickAction() {
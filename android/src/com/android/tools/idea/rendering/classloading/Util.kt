@@ -41,11 +41,18 @@ private fun ClassVisitor.uniqueId(): String = if (this is ClassVisitorUniqueIdPr
 else
   "${this::class.qualifiedName}:${System.identityHashCode(this).toString(16)}"
 
+/**
+ * Prefix of the [ClassTransform.id]s that are only valid in the current IDE session, because one of their [ClassVisitor]s does not
+ * implement [ClassVisitorUniqueIdProvider].
+ */
+const val TRANSIENT_TRANSFORM_ID_PREFIX = "transient:"
+
 /**
  * Class that represents a group of [ClassVisitor] to be applied to an input class that will generated a transformed output.
  *
  * A [ClassTransform] also contains an id that allows identifying the transformations done by this transform. If the id of two class transforms
- * is the same, the transformation applied by both is the same.
+ * is the same, the transformation applied by both is the same. If all the visitors implement [ClassVisitorUniqueIdProvider], the id is also
+ * the same across IDE sessions, otherwise it starts with [TRANSIENT_TRANSFORM_ID_PREFIX].
  */
 class ClassTransform(private val transforms: List<java.util.function.Function<ClassVisitor, ClassVisitor>>) {
   @VisibleForTesting
@@ -63,8 +70,17 @@ class ClassTransform(private val transforms: List<java.util.function.Function<Cl
       }
     }.apply("" to EmptyClassVisitor).first
 
+  private val isStable: Boolean by lazy {
+    transforms.fold(Pair<ClassVisitor, Boolean>(EmptyClassVisitor, true)) { (visitor, stable), transform ->
+      val newVisitor = transform.apply(visitor)
+      newVisitor to (stable && (newVisitor == visitor || newVisitor is ClassVisitorUniqueIdProvider))
+    }.second
+  }
+
   val id: String by lazy {
-    Hashing.goodFastHash(64).hashString(debugId, Charsets.UTF_8).toString()
+    // Not goodFastHash, its seed changes with every session.
+    val hash = Hashing.sha256().hashString(debugId, Charsets.UTF_8).toString()
+    if (isStable) hash else "$TRANSIENT_TRANSFORM_ID_PREFIX$hash"
   }
 
   operator fun invoke(visitor: ClassVisitor): ClassVisitor =
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.rendering.classloading.loaders
+
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.Executor
+import java.util.concurrent.RejectedExecutionException
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * A [DelegatingClassLoader.Loader] that can load classes from the [delegate] ahead of time, in parallel, so that [loadClass] only has to
+ * return the already loaded (and transformed) bytes.
+ *
+ * Each prefetched class is handed out once, and then forgotten. Classes that were not prefetched, or that failed to be prefetched, are
+ * loaded from the [delegate] as usual, so that any error is reported to the caller of [loadClass].
+ *
+ * The [delegate] must be safe to use from multiple threads.
+ */
+class PrefetchingLoader(private val delegate: DelegatingClassLoader.Loader) : DelegatingClassLoader.Loader {
+  private class Prefetched(val bytes: ByteArray?, val loadTimeNanos: Long)
+
+  private val prefetched = ConcurrentHashMap<String, CompletableFuture<Prefetched?>>()
+  private val _hitCount = AtomicInteger()
+  private val _savedTimeNanos = AtomicLong()
+
+  /**
+   * Number of [loadClass] calls that were served by a prefetched class.
+   */
+  val hitCount: Int get() = _hitCount.get()
+
+  /**
+   * Time saved by the [loadClass] callers, i.e. the time the prefetched classes took to load, minus the time spent waiting for the ones
+   * that were still loading when requested.
+   */
+  val savedTimeMs: Long get() = TimeUnit.NANOSECONDS.toMillis(_savedTimeNanos.get())
+
+  /**
+   * Starts loading the given classes on the [executor], each one as a separate task. Classes that are already prefetched are ignored.
+   * Loading stops when [isActive] returns false.
+   */
+  fun prefetch(classes: Collection<String>, executor: Executor, isActive: () -> Boolean = { true }) {
+    for (fqcn in classes) {
+      if (!isActive()) return
+      if (prefetched.containsKey(fqcn)) continue
+      val future = try {
+        CompletableFuture.supplyAsync({ if (isActive()) load(fqcn) else null }, executor)
+      }
+      catch (_: RejectedExecutionException) {
+        return
+      }
+      prefetched.putIfAbsent(fqcn, future)
+    }
+  }
+
+  private fun load(fqcn: String): Prefetched? {
+    val start = System.nanoTime()
+    return try {
+      Prefetched(delegate.loadClass(fqcn), System.nanoTime() - start)
+    }
+    catch (_: Exception) {
+      // The class will be loaded again by loadClass, so the error is reported to the right caller.
+      null
+    }
+    catch (_: LinkageError) {
+      null
+    }
+  }
+
+  /**
+   * Discards all the prefetched classes, and cancels the ones that have not been loaded yet.
+   */
+  fun clear() {
+    prefetched.values.forEach { it.cancel(false) }
+    prefetched.clear()
+  }
+
+  override fun loadClass(fqcn: String): ByteArray? {
+    val future = prefetched.remove(fqcn) ?: return delegate.loadClass(fqcn)
+    val wasDone = future.isDone
+    val waitStart = System.nanoTime()
+    val result = try {
+      future.join()
+    }
+    catch (_: Exception) {
+      null
+    } ?: return delegate.loadClass(fqcn)
+
+    val waitedNanos = if (wasDone) 0L else System.nanoTime() - waitStart
+    _hitCount.incrementAndGet()
+    _savedTimeNanos.addAndGet(maxOf(0L, result.loadTimeNanos - waitedNanos))
+    return result.bytes
+  }
+}
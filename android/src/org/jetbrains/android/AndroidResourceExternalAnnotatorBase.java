@@ -169,7 +169,7 @@ public abstract class AndroidResourceExternalAnnotatorBase
       // Updating the GutterIconCache in the background thread to include the icon.
       GutterIconCache.getInstance().getIcon(resourceFile, resourceResolver, facet);
     }
-    return new com.android.tools.idea.rendering.GutterIconRenderer(element, resourceResolver, facet, resourceFile, configuration);
+    return new com.android.tools.idea.rendering.GutterIconRenderer(element, facet, resourceFile, configuration);
   }
 
   @Nullable
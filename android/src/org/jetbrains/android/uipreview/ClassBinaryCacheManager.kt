@@ -17,10 +17,15 @@ package org.jetbrains.android.uipreview
 
 import com.android.annotations.concurrency.AnyThread
 import com.android.annotations.concurrency.GuardedBy
+import com.android.tools.idea.flags.StudioFlags
+import com.android.tools.idea.rendering.classloading.TRANSIENT_TRANSFORM_ID_PREFIX
 import com.google.common.base.Ticker
 import com.google.common.cache.CacheBuilder
+import com.intellij.openapi.application.ApplicationInfo
+import com.intellij.openapi.application.PathManager
 import com.intellij.openapi.module.Module
 import org.jetbrains.annotations.TestOnly
+import java.nio.file.Paths
 import java.time.Duration
 import java.util.WeakHashMap
 import java.util.concurrent.locks.ReentrantLock
@@ -28,10 +33,21 @@ import kotlin.concurrent.withLock
 
 private const val MAX_WEIGHT_BYTES = 100_000_000L // We will store no more than 100Mb of cached classes
 private const val EXPIRE_MINUTES = 30L // We will store cached classes for no longer than 30 minutes
+private const val PERSISTENT_MAX_SIZE_BYTES = 500_000_000L // We will store no more than 500Mb of cached classes on disk
+private const val PERSISTENT_CACHE_DIRECTORY = "preview-class-cache"
+private const val PERSISTENT_KEY_VERSION = 1
 /**
  * A class binary representation cache.
+ *
+ * If a [persistentCache] is given, the library classes are also stored on disk and the classes not found in memory, e.g. after a restart,
+ * are looked up there. Classes are only persisted for transformations whose id is the same across IDE sessions, and the persistent keys
+ * include the [ideBuild], since the transformations themselves change with the IDE.
  */
-class ClassBinaryCacheManager private constructor(ticker: Ticker, maxWeight: Long, expireMinutes: Long) {
+class ClassBinaryCacheManager private constructor(ticker: Ticker,
+                                                  maxWeight: Long,
+                                                  expireMinutes: Long,
+                                                  private val persistentCache: PersistentClassBinaryCache? = null,
+                                                  private val ideBuild: String = "") {
   @GuardedBy("this")
   private val moduleCaches = WeakHashMap<Module, ModuleClassCache>()
   private var lock = ReentrantLock()
@@ -85,26 +101,58 @@ class ClassBinaryCacheManager private constructor(ticker: Ticker, maxWeight: Lon
     @Synchronized
     private fun notCurrentDependency(path: String?) = path !in libraryPaths
 
+    @Synchronized
+    private fun currentDependencies() = libraryPaths
+
     // @LayoutlibRenderThread
     override fun get(fqcn: String, transformationId: String): ByteArray? {
       val key = getCachingKey(fqcn, transformationId)
       // If the url for the class is not in this module dependencies we should invalidate the whole library (url) and make
       val libraryPath = lock.withLock { classFqn2LibraryPath[key] }
+      if (libraryPath == null) {
+        return getPersisted(key, fqcn, transformationId, currentDependencies())
+      }
       if (notCurrentDependency(libraryPath)) {
-        libraryPath?.let {
-          lock.withLock { libraryPath2ClassFqns.remove(libraryPath) }?.forEach { globalCache.invalidate(it) }
-        }
+        lock.withLock { libraryPath2ClassFqns.remove(libraryPath) }?.forEach { globalCache.invalidate(it) }
         return null
       }
 
-      return globalCache.getIfPresent(key)
+      return globalCache.getIfPresent(key) ?: getPersisted(key, fqcn, transformationId, listOf(libraryPath))
+    }
+
+    /**
+     * Looks for the class in the persistent cache of the given libraries, and keeps it in memory if found.
+     */
+    private fun getPersisted(key: String, fqcn: String, transformationId: String, libraryPaths: Collection<String>): ByteArray? {
+      val persistentCache = persistentCache ?: return null
+      val persistentKey = getPersistentKey(fqcn, transformationId) ?: return null
+      for (libraryPath in libraryPaths) {
+        val data = persistentCache.get(libraryPath, persistentKey) ?: continue
+        putInMemory(key, fqcn, libraryPath, data)
+        return data
+      }
+      return null
     }
 
     private fun getCachingKey(fqcn: String, transformationId: String) = "$transformationId:$fqcn"
 
+    /**
+     * Returns the key of the class in the persistent cache, or null if the class can not be persisted because its transformation is only
+     * identified within this session.
+     */
+    private fun getPersistentKey(fqcn: String, transformationId: String) =
+      if (transformationId.startsWith(TRANSIENT_TRANSFORM_ID_PREFIX)) null
+      else "$PERSISTENT_KEY_VERSION:$ideBuild:$transformationId:$fqcn"
+
     // @LayoutlibRenderThread
     override fun put(fqcn: String, transformationId: String, libraryPath: String, data: ByteArray) {
       val key = getCachingKey(fqcn, transformationId)
+      putInMemory(key, fqcn, libraryPath, data)
+      val persistentKey = getPersistentKey(fqcn, transformationId) ?: return
+      persistentCache?.put(libraryPath, persistentKey, data)
+    }
+
+    private fun putInMemory(key: String, fqcn: String, libraryPath: String, data: ByteArray) {
       lock.withLock {
         classFqn2LibraryPath[key] = libraryPath
         libraryPath2ClassFqns.computeIfAbsent(libraryPath) { mutableSetOf() }.add(fqcn)
@@ -113,19 +161,34 @@ class ClassBinaryCacheManager private constructor(ticker: Ticker, maxWeight: Lon
     }
 
     @AnyThread
-    @Synchronized
     override fun setDependencies(paths: Collection<String>) {
-      libraryPaths = paths.toSet()
+      val dependencies = paths.toSet()
+      synchronized(this) {
+        libraryPaths = dependencies
+      }
+      persistentCache?.refresh(dependencies)
     }
   }
 
   companion object {
-    private val globalManager = ClassBinaryCacheManager(Ticker.systemTicker(), MAX_WEIGHT_BYTES, EXPIRE_MINUTES)
+    private val globalManager = ClassBinaryCacheManager(
+      Ticker.systemTicker(),
+      MAX_WEIGHT_BYTES,
+      EXPIRE_MINUTES,
+      if (StudioFlags.NELE_PERSISTENT_CLASS_BINARY_CACHE.get())
+        PersistentClassBinaryCache(Paths.get(PathManager.getSystemPath(), PERSISTENT_CACHE_DIRECTORY), PERSISTENT_MAX_SIZE_BYTES)
+      else null,
+      ApplicationInfo.getInstance().build.asString())
 
     @JvmStatic
     fun getInstance() = globalManager
 
     @TestOnly
     fun getTestInstance(ticker: Ticker, maxWeight: Long, expireMinutes: Long) = ClassBinaryCacheManager(ticker, maxWeight, expireMinutes)
+
+    @TestOnly
+    fun getTestInstance(ticker: Ticker, maxWeight: Long, expireMinutes: Long, persistentCache: PersistentClassBinaryCache,
+                        ideBuild: String = "AI-232.1") =
+      ClassBinaryCacheManager(ticker, maxWeight, expireMinutes, persistentCache, ideBuild)
   }
 }
\ No newline at end of file
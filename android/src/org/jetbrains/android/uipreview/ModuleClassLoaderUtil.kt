@@ -31,6 +31,7 @@ import com.android.tools.idea.rendering.classloading.loaders.ListeningLoader
 import com.android.tools.idea.rendering.classloading.loaders.MultiLoader
 import com.android.tools.idea.rendering.classloading.loaders.MultiLoaderWithAffinity
 import com.android.tools.idea.rendering.classloading.loaders.NameRemapperLoader
+import com.android.tools.idea.rendering.classloading.loaders.PrefetchingLoader
 import com.android.tools.idea.rendering.classloading.loaders.ProjectSystemClassLoader
 import com.android.tools.idea.rendering.classloading.loaders.RecyclerViewAdapterLoader
 import com.intellij.openapi.Disposable
@@ -55,6 +56,7 @@ import java.nio.file.Path
 import java.util.Collections
 import java.util.Enumeration
 import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.Executor
 
 private val ourLoaderCachePool = UrlClassLoader.createCachePool()
 
@@ -147,6 +149,7 @@ internal class ModuleClassLoaderImpl(module: Module,
                                      private val binaryCache: ClassBinaryCache,
                                      private val diagnostics: ModuleClassLoaderDiagnosticsWrite) : UserDataHolderBase(), DelegatingClassLoader.Loader, Disposable {
   private val loader: DelegatingClassLoader.Loader
+  private val prefetchingLoader: PrefetchingLoader
   private val parentLoader = parentClassLoader?.let { ClassLoaderLoader(it) }
 
   private val onClassRewrite = { fqcn: String, timeMs: Long, size: Int -> diagnostics.classRewritten(fqcn, size, timeMs) }
@@ -224,13 +227,13 @@ internal class ModuleClassLoaderImpl(module: Module,
   fun createNonProjectLoader(nonProjectTransforms: ClassTransform,
                              binaryCache: ClassBinaryCache,
                              externalLibraries: List<Path>,
-                             onClassLoaded: (String) -> Unit,
                              onClassRewrite: (String, Long, Int) -> Unit): DelegatingClassLoader.Loader {
     val externalLibrariesClassLoader = createUrlClassLoader(externalLibraries)
     // Non project classes loading pipeline
     val nonProjectTransformationId = nonProjectTransforms.id
-    // map of fqcn -> library path used to be able to insert classes into the ClassBinaryCache
-    val fqcnToLibraryPath = mutableMapOf<String, String>()
+    // map of fqcn -> library path used to be able to insert classes into the ClassBinaryCache. Classes might be loaded concurrently
+    // when prefetching.
+    val fqcnToLibraryPath = ConcurrentHashMap<String, String>()
     val jarLoader = NameRemapperLoader(
       ClassLoaderLoader(externalLibrariesClassLoader) { fqcn, path, _ ->
         URLUtil.splitJarUrl(path)?.first?.let { libraryPath -> fqcnToLibraryPath[fqcn] = libraryPath }
@@ -255,7 +258,6 @@ internal class ModuleClassLoaderImpl(module: Module,
             asmFlags = ClassWriter.COMPUTE_MAXS,
             onRewrite = onClassRewrite),
           onAfterLoad = { fqcn, bytes ->
-            onClassLoaded(fqcn)
             // Map the fqcn to the library path and insert the class into the class binary cache
             fqcnToLibraryPath[onDiskClassNameLookup(fqcn)]?.let { libraryPath ->
               binaryCache.put(fqcn, nonProjectTransformationId, libraryPath, bytes)
@@ -277,11 +279,13 @@ internal class ModuleClassLoaderImpl(module: Module,
   }
 
   init {
-    val nonProjectLoader = createNonProjectLoader(nonProjectTransforms,
-                                                  binaryCache,
-                                                  externalLibraries,
-                                                  { _nonProjectLoadedClassNames.add(it) },
-                                                  onClassRewrite)
+    // The prefetching loader sits below the listener recording the loaded classes, so that only the classes returned by loadClass are
+    // recorded, and not every prefetched one.
+    prefetchingLoader = PrefetchingLoader(createNonProjectLoader(nonProjectTransforms,
+                                                                 binaryCache,
+                                                                 externalLibraries,
+                                                                 onClassRewrite))
+    val nonProjectLoader = ListeningLoader(prefetchingLoader, onAfterLoad = { fqcn, _ -> _nonProjectLoadedClassNames.add(fqcn) })
     // Project classes loading pipeline
     val projectLoader = if (!FastPreviewManager.getInstance(module.project).isEnabled) {
       createProjectLoader(projectSystemLoader, nonProjectLoader, onClassRewrite)
@@ -326,6 +330,23 @@ internal class ModuleClassLoaderImpl(module: Module,
     return loader.loadClass(fqcn)
   }
 
+  /**
+   * Starts loading and transforming the given non-project [classes] on the [executor], so that loading them later is faster. See
+   * [PrefetchingLoader].
+   */
+  fun prefetchNonProjectClasses(classes: Collection<String>, executor: Executor, isActive: () -> Boolean) =
+    prefetchingLoader.prefetch(classes, executor, isActive)
+
+  /**
+   * Time saved loading the classes that had been prefetched by [prefetchNonProjectClasses].
+   */
+  val prefetchSavedTimeMs: Long get() = prefetchingLoader.savedTimeMs
+
+  /**
+   * Number of classes loaded from the ones prefetched by [prefetchNonProjectClasses].
+   */
+  val prefetchHitCount: Int get() = prefetchingLoader.hitCount
+
   fun getResources(name: String): Enumeration<URL> = externalLibrariesClassLoader.getResources(name)
   fun getResource(name: String): URL? = externalLibrariesClassLoader.getResource(name)
 
@@ -353,6 +374,7 @@ internal class ModuleClassLoaderImpl(module: Module,
   }
 
   override fun dispose() {
+    prefetchingLoader.clear()
     projectSystemLoader.invalidateCaches()
   }
 
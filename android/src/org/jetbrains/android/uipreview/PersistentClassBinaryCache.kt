@@ -0,0 +1,306 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.android.uipreview
+
+import com.android.annotations.concurrency.GuardedBy
+import com.google.common.hash.Hashing
+import com.intellij.openapi.diagnostic.Logger
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.Files
+import java.nio.file.InvalidPathException
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption
+import java.nio.file.attribute.FileTime
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+import java.util.zip.CRC32
+import kotlin.io.path.fileSize
+import kotlin.io.path.getLastModifiedTime
+import kotlin.io.path.isRegularFile
+import kotlin.io.path.listDirectoryEntries
+
+private const val PACK_MAGIC = 0x43424350 // "CBCP"
+private const val PACK_VERSION = 1
+private const val PACK_HEADER_SIZE = 8
+private const val PACK_EXTENSION = "pack"
+/** Keys and classes larger than this are considered corrupted. */
+private const val MAX_RECORD_PART_SIZE = 64 * 1024 * 1024
+
+/**
+ * An on-disk store of class binaries, so that the transformed library classes used by the previews survive IDE restarts.
+ *
+ * Classes are stored in one pack file per library. The pack name is derived from the library path, size and modification time, so a
+ * library that changes gets a new pack, and the packs of libraries that are no longer used are eventually pruned, least recently used
+ * first, when the total size of the packs exceeds [maxSizeBytes].
+ *
+ * A pack is a header followed by append-only records:
+ * ```
+ * <key size: int> <key: UTF-8> <data size: int> <data CRC32: int> <data>
+ * ```
+ * where the key identifies the class and the transformations applied to it. The records written by previous sessions are memory mapped
+ * when the pack is first used, and the ones appended during this session are read through a file channel. Reading stops at the first
+ * truncated record, e.g. after a crash, and new records overwrite it.
+ */
+class PersistentClassBinaryCache(private val directory: Path, private val maxSizeBytes: Long) {
+  private val packs = ConcurrentHashMap<String, Pack>()
+  /** Libraries that can not be cached, e.g. class directories, remembered so that they are not checked for every class. */
+  private val notCacheable = ConcurrentHashMap.newKeySet<String>()
+  private val totalSize = AtomicLong()
+
+  init {
+    try {
+      Files.createDirectories(directory)
+      totalSize.set(prune(directory, maxSizeBytes))
+    }
+    catch (e: IOException) {
+      LOG.warn("Unable to initialize the class binary cache in $directory", e)
+    }
+  }
+
+  /**
+   * Returns the binary data stored for [key] from the library in [libraryPath], or null if there is none.
+   */
+  fun get(libraryPath: String, key: String): ByteArray? = getPack(libraryPath)?.get(key)
+
+  /**
+   * Stores the binary [data] for [key] from the library in [libraryPath], unless the cache is full.
+   */
+  fun put(libraryPath: String, key: String, data: ByteArray) {
+    if (totalSize.get() + data.size > maxSizeBytes) return
+    getPack(libraryPath)?.put(key, data)
+  }
+
+  /**
+   * Checks again whether the libraries in [libraryPaths] have changed since their packs were opened, so that classes of the previous
+   * versions are not returned anymore. This is not done for every [get], as that would access the file system for every class.
+   */
+  fun refresh(libraryPaths: Collection<String>) {
+    for (libraryPath in libraryPaths) {
+      notCacheable.remove(libraryPath)
+      packs.computeIfPresent(libraryPath) { _, pack -> pack.takeIf { it.isCurrent() } }
+    }
+  }
+
+  private fun getPack(libraryPath: String): Pack? {
+    packs[libraryPath]?.let { return it }
+    if (libraryPath in notCacheable) return null
+    val pack = createPack(libraryPath)
+    if (pack == null) {
+      notCacheable.add(libraryPath)
+      return null
+    }
+    return packs.putIfAbsent(libraryPath, pack) ?: pack
+  }
+
+  /**
+   * Returns the pack of the library in [libraryPath], or null if the library is not a file that can be identified by its size and
+   * modification time.
+   */
+  private fun createPack(libraryPath: String): Pack? {
+    val path = try {
+      Path.of(libraryPath)
+    }
+    catch (e: InvalidPathException) {
+      return null
+    }
+    if (!path.isRegularFile()) return null
+    return try {
+      val size = path.fileSize()
+      val modified = path.getLastModifiedTime()
+      val name = Hashing.farmHashFingerprint64().hashUnencodedChars("$libraryPath:$size:${modified.toMillis()}").toString()
+      Pack(directory.resolve("${path.fileName}_$name.$PACK_EXTENSION"), path, size, modified)
+    }
+    catch (e: IOException) {
+      null
+    }
+  }
+
+  private inner class Pack(private val file: Path, private val libraryPath: Path, private val librarySize: Long,
+                           private val libraryModified: FileTime) {
+    @GuardedBy("this")
+    private var index: HashMap<String, Record>? = null
+
+    /** The valid records written by previous sessions. */
+    @GuardedBy("this")
+    private var mapped: ByteBuffer? = null
+
+    /** Offset at which the next record is written. */
+    @GuardedBy("this")
+    private var end = 0L
+
+    /**
+     * Whether the library is still the one this pack was created for.
+     */
+    fun isCurrent(): Boolean = try {
+      Files.size(libraryPath) == librarySize && Files.getLastModifiedTime(libraryPath) == libraryModified
+    }
+    catch (e: IOException) {
+      false
+    }
+
+    @Synchronized
+    fun get(key: String): ByteArray? {
+      val record = loadIndex()[key] ?: return null
+      val data = try {
+        read(record)
+      }
+      catch (e: IOException) {
+        LOG.debug("Unable to read $key from $file", e)
+        null
+      }
+      if (data == null || crc(data) != record.crc) {
+        LOG.debug("Dropping corrupted $key from $file")
+        index?.remove(key)
+        return null
+      }
+      return data
+    }
+
+    @Synchronized
+    fun put(key: String, data: ByteArray) {
+      val index = loadIndex()
+      if (index.containsKey(key)) return
+
+      val keyBytes = key.toByteArray(Charsets.UTF_8)
+      val crc = crc(data)
+      val buffer = ByteBuffer.allocate(4 + keyBytes.size + 12 + data.size)
+        .putInt(keyBytes.size).put(keyBytes).putInt(data.size).putInt(crc).put(data)
+      buffer.flip()
+      try {
+        FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE).use { channel ->
+          if (end == 0L) {
+            writeFully(channel, ByteBuffer.allocate(PACK_HEADER_SIZE).putInt(PACK_MAGIC).putInt(PACK_VERSION).flip(), 0)
+            end = PACK_HEADER_SIZE.toLong()
+            totalSize.addAndGet(PACK_HEADER_SIZE.toLong())
+          }
+          writeFully(channel, buffer, end)
+        }
+      }
+      catch (e: IOException) {
+        LOG.warn("Unable to write $key to $file", e)
+        return
+      }
+      index[key] = Record(end + 4 + keyBytes.size + 12, data.size, crc)
+      end += buffer.limit()
+      totalSize.addAndGet(buffer.limit().toLong())
+    }
+
+    @GuardedBy("this")
+    private fun read(record: Record): ByteArray? {
+      val data = ByteArray(record.size)
+      val mapped = mapped
+      if (mapped != null && record.offset + record.size <= mapped.limit()) {
+        mapped.duplicate().position(record.offset.toInt()).get(data)
+        return data
+      }
+      FileChannel.open(file, StandardOpenOption.READ).use { channel ->
+        val buffer = ByteBuffer.wrap(data)
+        while (buffer.hasRemaining()) {
+          if (channel.read(buffer, record.offset + buffer.position()) < 0) return null
+        }
+      }
+      return data
+    }
+
+    /**
+     * Maps the pack written by previous sessions, and indexes its records.
+     */
+    @GuardedBy("this")
+    private fun loadIndex(): HashMap<String, Record> {
+      index?.let { return it }
+      val records = HashMap<String, Record>()
+      index = records
+      if (!file.isRegularFile()) return records
+
+      try {
+        // Mark the pack as recently used, for pruning.
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()))
+        val buffer = FileChannel.open(file, StandardOpenOption.READ).use { it.map(FileChannel.MapMode.READ_ONLY, 0, it.size()) }
+        if (buffer.capacity() < PACK_HEADER_SIZE || buffer.getInt(0) != PACK_MAGIC || buffer.getInt(4) != PACK_VERSION) {
+          // Unknown content, start over.
+          return records
+        }
+        var position = PACK_HEADER_SIZE
+        while (position + 4 <= buffer.capacity()) {
+          val keySize = buffer.getInt(position)
+          if (keySize !in 1..MAX_RECORD_PART_SIZE || position + 4 + keySize + 12 > buffer.capacity()) break
+          val keyBytes = ByteArray(keySize)
+          buffer.duplicate().position(position + 4).get(keyBytes)
+          val dataSize = buffer.getInt(position + 4 + keySize)
+          val crc = buffer.getInt(position + 8 + keySize)
+          val dataOffset = position + 4 + keySize + 12
+          if (dataSize !in 0..MAX_RECORD_PART_SIZE || dataOffset.toLong() + dataSize > buffer.capacity()) break
+          records[String(keyBytes, Charsets.UTF_8)] = Record(dataOffset.toLong(), dataSize, crc)
+          position = dataOffset + dataSize
+        }
+        mapped = buffer.limit(position)
+        end = position.toLong()
+      }
+      catch (e: IOException) {
+        LOG.warn("Unable to read $file", e)
+        records.clear()
+      }
+      return records
+    }
+  }
+
+  private class Record(val offset: Long, val size: Int, val crc: Int)
+
+  private companion object {
+    val LOG = Logger.getInstance(PersistentClassBinaryCache::class.java)
+
+    fun crc(data: ByteArray): Int = CRC32().apply { update(data) }.value.toInt()
+
+    fun writeFully(channel: FileChannel, buffer: ByteBuffer, position: Long) {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer, position + buffer.position())
+      }
+    }
+
+    /**
+     * Deletes the least recently used packs in [directory] until they fit in [maxSizeBytes], and returns the size of the remaining ones.
+     */
+    fun prune(directory: Path, maxSizeBytes: Long): Long {
+      val packFiles = directory.listDirectoryEntries("*.$PACK_EXTENSION")
+        .mapNotNull { file ->
+          try {
+            Triple(file, file.fileSize(), file.getLastModifiedTime())
+          }
+          catch (e: IOException) {
+            null
+          }
+        }
+        .sortedByDescending { it.third }
+      var total = 0L
+      for ((file, size, _) in packFiles) {
+        if (total + size <= maxSizeBytes) {
+          total += size
+          continue
+        }
+        try {
+          Files.deleteIfExists(file)
+        }
+        catch (e: IOException) {
+          LOG.debug("Unable to delete $file", e)
+          total += size
+        }
+      }
+      return total
+    }
+  }
+}
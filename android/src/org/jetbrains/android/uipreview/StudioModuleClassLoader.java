@@ -43,9 +43,11 @@ import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.net.URL;
 import java.nio.file.Path;
+import java.util.Collection;
 import java.util.Enumeration;
 import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Supplier;
@@ -152,6 +154,10 @@ public final class StudioModuleClassLoader extends ModuleClassLoader implements
   private static final ExecutorService ourDisposeService =
     AppExecutorUtil.createBoundedApplicationPoolExecutor("ModuleClassLoader Dispose Thread", 1);
 
+  private static final ExecutorService ourPrefetchService =
+    AppExecutorUtil.createBoundedApplicationPoolExecutor("ModuleClassLoader Prefetch",
+                                                         Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+
   /**
    * The base module to use as a render context; the class loader will consult the module dependencies and library dependencies
    * of this class as well to find classes
@@ -275,6 +281,27 @@ public final class StudioModuleClassLoader extends ModuleClassLoader implements
   @NotNull
   public ClassTransform getProjectClassesTransform() { return myImpl.getProjectTransforms(); }
 
+  /**
+   * Starts loading and transforming the given non-project classes in parallel in the background, so that the render thread only has to
+   * define them when they are needed. Classes that are already loaded are skipped.
+   */
+  public void prefetchNonProjectClasses(@NotNull Collection<String> classes) {
+    if (classes.isEmpty() || isDisposed()) return;
+    Set<String> loaded = getNonProjectLoadedClasses();
+    List<String> toPrefetch = classes.stream().filter(fqcn -> !loaded.contains(fqcn)).collect(Collectors.toList());
+    myImpl.prefetchNonProjectClasses(toPrefetch, ourPrefetchService, () -> !isDisposed());
+  }
+
+  /**
+   * Returns the time saved on the render thread by {@link #prefetchNonProjectClasses(Collection)}.
+   */
+  public long getPrefetchSavedTimeMs() { return myImpl.getPrefetchSavedTimeMs(); }
+
+  /**
+   * Returns the number of classes loaded from the ones prefetched by {@link #prefetchNonProjectClasses(Collection)}.
+   */
+  public int getPrefetchHitCount() { return myImpl.getPrefetchHitCount(); }
+
   @NotNull
   public ClassTransform getNonProjectClassesTransform() { return myImpl.getNonProjectTransforms(); }
 
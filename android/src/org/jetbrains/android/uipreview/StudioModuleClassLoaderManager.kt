@@ -15,6 +15,7 @@
  */
 package org.jetbrains.android.uipreview
 
+import com.android.tools.idea.flags.StudioFlags
 import com.android.tools.idea.log.LogAnonymizerUtil.anonymize
 import com.android.tools.idea.projectsystem.ProjectSystemBuildManager
 import com.android.tools.idea.projectsystem.ProjectSystemService
@@ -37,6 +38,7 @@ import com.intellij.openapi.project.Project
 import com.intellij.openapi.util.Disposer
 import com.intellij.openapi.util.Key
 import com.intellij.openapi.util.UserDataHolder
+import com.intellij.openapi.vfs.VirtualFile
 import com.intellij.util.concurrency.AppExecutorUtil.getAppExecutorService
 import org.jetbrains.android.uipreview.StudioModuleClassLoader.NON_PROJECT_CLASSES_DEFAULT_TRANSFORMS
 import org.jetbrains.android.uipreview.StudioModuleClassLoader.PROJECT_DEFAULT_TRANSFORMS
@@ -134,6 +136,36 @@ class Preloader(
 private val PRELOADER: Key<Preloader> = Key.create(::PRELOADER.qualifiedName)
 val HATCHERY: Key<ModuleClassLoaderHatchery> = Key.create(::HATCHERY.qualifiedName)
 
+/**
+ * The non-project classes loaded the last time a file was previewed. They are prefetched by the next [StudioModuleClassLoader] created to
+ * preview the same file.
+ */
+private val PREVIOUSLY_LOADED_CLASSES: Key<Set<String>> = Key.create(::PREVIOUSLY_LOADED_CLASSES.qualifiedName)
+
+private val ModuleRenderContext.virtualFile: VirtualFile?
+  get() = fileProvider.get()?.virtualFile
+
+/**
+ * Starts prefetching the classes that [moduleRenderContext] file needed the last time it was previewed. See
+ * [StudioModuleClassLoader.prefetchNonProjectClasses].
+ */
+private fun StudioModuleClassLoader.prefetchClassesFor(moduleRenderContext: ModuleRenderContext) {
+  if (!StudioFlags.NELE_CLASS_PREFETCH.get()) return
+  moduleRenderContext.virtualFile?.getUserData(PREVIOUSLY_LOADED_CLASSES)?.let { prefetchNonProjectClasses(it) }
+}
+
+/**
+ * Records the classes loaded by this [StudioModuleClassLoader] so that the next previews of the same file can prefetch them.
+ */
+private fun StudioModuleClassLoader.recordLoadedClasses() {
+  if (!StudioFlags.NELE_CLASS_PREFETCH.get()) return
+  val file = moduleContext?.virtualFile ?: return
+  val loadedClasses = nonProjectLoadedClasses
+  if (loadedClasses.isNotEmpty()) {
+    file.putUserData(PREVIOUSLY_LOADED_CLASSES, loadedClasses.toSet())
+  }
+}
+
 private fun calculateTransformationsUniqueId(projectClassesTransformationProvider: ClassTransform,
                                              nonProjectClassesTransformationProvider: ClassTransform): String? {
   return Hashing.goodFastHash(64).newHasher()
@@ -243,6 +275,7 @@ class StudioModuleClassLoaderManager : ModuleClassLoaderManager {
                                                                           combinedProjectTransformations,
                                                                           combinedNonProjectTransformations,
                                                                           createDiagnostics())
+      moduleClassLoader.prefetchClassesFor(moduleRenderContext)
       module.putUserData(PRELOADER, Preloader(moduleClassLoader))
       onNewModuleClassLoader.run()
     }
@@ -278,6 +311,7 @@ class StudioModuleClassLoaderManager : ModuleClassLoaderManager {
                                                             combinedProjectTransformations,
                                                             combinedNonProjectTransformations,
                                                             createDiagnostics())).apply {
+      prefetchClassesFor(moduleRenderContext)
       holders[this] = createHoldersSet().apply { add(holder) }
     }
   }
@@ -365,8 +399,14 @@ class StudioModuleClassLoaderManager : ModuleClassLoaderManager {
    */
   override fun release(moduleClassLoader: ModuleClassLoader, holder: Any) {
     if (moduleClassLoader is StudioModuleClassLoader) {
+      moduleClassLoader.recordLoadedClasses()
       unHold(moduleClassLoader, holder)
       if (stopManagingIfNotHeld(moduleClassLoader)) {
+        if (moduleClassLoader.prefetchHitCount > 0) {
+          LOG.debug {
+            "Prefetching ${moduleClassLoader.prefetchHitCount} classes saved ${moduleClassLoader.prefetchSavedTimeMs}ms on the render thread"
+          }
+        }
         Disposer.dispose(moduleClassLoader)
       }
     }
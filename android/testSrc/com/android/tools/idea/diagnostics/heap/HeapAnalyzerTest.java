@@ -311,6 +311,18 @@ public class HeapAnalyzerTest extends PlatformLiteFixture {
                         traverse.walkObjects(MAX_DEPTH, List.of(new A())));
   }
 
+  @Test
+  public void testTraverseReturnObjectsMapIsTooBigError() {
+    ComponentsSet componentsSet = new ComponentsSet();
+    HeapSnapshotStatistics stats = new HeapSnapshotStatistics(new HeapTraverseConfig(componentsSet,
+      /*collectHistograms=*/false, /*collectDisposerTreeInfo=*/false, /*maxObjectMapSize=*/1));
+    A a = new A();
+
+    Assert.assertEquals(StatusCode.OBJECTS_MAP_IS_TOO_BIG,
+                        new HeapSnapshotTraverse(stats).walkObjects(MAX_DEPTH, List.of(a)));
+    Assert.assertTrue(HeapTraverseConfig.getDefaultMaxObjectMapSize() >= 1_000_000);
+  }
+
   @Test
   public void testUncategorizedComponent() {
     ComponentsSet componentsSet = new ComponentsSet();
@@ -54,16 +54,33 @@ open class HProfScenarioRunner(private val tmpFolder: TemporaryFolder,
           nominatedClassNames: List<String>?,
           shouldMapClassNames: Boolean = true,
           config: AnalysisConfig? = null) {
+    val hprofFile = createHProfFile(scenario, shouldMapClassNames)
+    compareReportToBaseline(hprofFile, baselineFileName, nominatedClassNames, config)
+  }
+
+  fun createHProfFile(scenario: HProfBuilder.() -> Unit, shouldMapClassNames: Boolean = true): File {
     val hprofFile = tmpFolder.newFile()
     HProfTestUtils.createHProfOnFile(hprofFile,
                                      scenario) { c -> if (shouldMapClassNames) mapClassName(c) else c.name }
-    compareReportToBaseline(hprofFile, baselineFileName, nominatedClassNames, config)
+    return hprofFile
   }
 
   private fun compareReportToBaseline(hprofFile: File,
                                       baselineFileName: String,
                                       nominatedClassNames: List<String>? = null,
                                       config: AnalysisConfig? = null) {
+    val analysisReport = analyze(hprofFile, nominatedClassNames, config)
+
+    val baselinePath = getBaselinePath(baselineFileName)
+    val baseline = getBaselineContents(baselinePath)
+    Assert.assertEquals("Report doesn't match the baseline from file:\n$baselinePath",
+                        baseline,
+                        analysisReport)
+  }
+
+  fun analyze(hprofFile: File,
+              nominatedClassNames: List<String>? = null,
+              config: AnalysisConfig? = null): String {
     FileChannel.open(hprofFile.toPath(), StandardOpenOption.READ).use { hprofChannel ->
 
       val progress = object : AbstractProgressIndicatorBase() {
@@ -133,13 +150,7 @@ open class HProfScenarioRunner(private val tmpFolder: TemporaryFolder,
         histogram
       )
 
-      val analysisReport = AnalyzeGraph(analysisContext, memoryBackedListProvider).analyze(progress).mainReport.toString()
-
-      val baselinePath = getBaselinePath(baselineFileName)
-      val baseline = getBaselineContents(baselinePath)
-      Assert.assertEquals("Report doesn't match the baseline from file:\n$baselinePath",
-                          baseline,
-                          analysisReport)
+      return AnalyzeGraph(analysisContext, memoryBackedListProvider).analyze(progress).mainReport.toString()
     }
   }
 
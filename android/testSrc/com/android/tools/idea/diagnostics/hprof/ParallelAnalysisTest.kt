@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.diagnostics.hprof
+
+import com.android.tools.idea.diagnostics.hprof.analysis.AnalysisConfig
+import org.junit.Assert.assertEquals
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.lang.ref.WeakReference
+
+class ParallelAnalysisTest {
+  @get:Rule
+  val tmpFolder = TemporaryFolder()
+
+  class Payload(val data: IntArray)
+  class Node(val children: Array<Node?>, val payload: Payload, val shared: Payload?)
+
+  /**
+   * A synthetic heap of a few tens of thousands of objects: a tree of nodes with a fan-out of [fanOut], where some payloads are
+   * shared by many nodes, so that dominators differ from parents, and some nodes are only weakly reachable.
+   */
+  private fun syntheticHeap(depth: Int, fanOut: Int): HProfBuilder.() -> Unit = {
+    val sharedPayloads = Array(100) { Payload(IntArray(it)) }
+    var counter = 0
+    fun createNode(level: Int): Node {
+      val children: Array<Node?> = if (level == depth) arrayOfNulls(0) else Array(fanOut) { createNode(level + 1) }
+      counter++
+      return Node(children, Payload(IntArray(counter % 16)), if (counter % 3 == 0) sharedPayloads[counter % sharedPayloads.size] else null)
+    }
+    addRootGlobalJNI(createNode(0))
+    // Kept strongly reachable outside of the heap dump, so that the referents are not collected while the dump is written
+    val weaklyReachable = List(100) { createNode(depth - 1) }
+    addRootUnknown(Array(weaklyReachable.size) { WeakReference(weaklyReachable[it]) })
+  }
+
+  private fun createConfig(parallelism: Int) = AnalysisConfig(
+    perClassOptions = AnalysisConfig.PerClassOptions(classNames = listOf(Node::class.java.name, Payload::class.java.name)),
+    traverseOptions = AnalysisConfig.TraverseOptions(parallelism = parallelism),
+    metaInfoOptions = AnalysisConfig.MetaInfoOptions(include = false),
+    dominatorTreeOptions = AnalysisConfig.DominatorTreeOptions(diskSpaceThreshold = 0)
+  )
+
+  @Test
+  fun testParallelAnalysisMatchesSequentialAnalysis() {
+    val runner = HProfScenarioRunner(tmpFolder, false)
+    val hprofFile = runner.createHProfFile(syntheticHeap(depth = 5, fanOut = 7))
+
+    val sequentialReport = runner.analyze(hprofFile, config = createConfig(1))
+    val parallelReport = runner.analyze(hprofFile, config = createConfig(4))
+
+    assertEquals(sequentialReport, parallelReport)
+  }
+}
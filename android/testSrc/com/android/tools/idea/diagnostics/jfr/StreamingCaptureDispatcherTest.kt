@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.diagnostics.jfr
+
+import com.android.testutils.MockitoKt.mock
+import com.android.testutils.MockitoKt.whenever
+import com.android.tools.idea.diagnostics.report.DiagnosticReport
+import com.google.common.truth.Truth.assertThat
+import jdk.jfr.consumer.RecordedEvent
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.JUnit4
+import java.time.Clock
+import java.time.Instant
+import java.time.ZoneOffset
+import kotlin.time.Duration.Companion.seconds
+
+@RunWith(JUnit4::class)
+class StreamingCaptureDispatcherTest {
+  private val now = Instant.EPOCH
+  private val generator = TestGenerator(Clock.fixed(now, ZoneOffset.UTC))
+  private val reports = mutableListOf<DiagnosticReport>()
+  private val dispatcher = StreamingCaptureDispatcher { reports.add(it) }
+
+  private fun event(time: Instant): RecordedEvent = mock<RecordedEvent>().also { whenever(it.startTime).thenReturn(time) }
+
+  @Test
+  fun eventsAreDispatchedToCapturesAsTheyArrive() {
+    val capture = generator.Capture()
+    val early = event(now.minusMillis(1))
+    val inside = event(now.plusMillis(1))
+
+    dispatcher.addCapture(capture)
+    dispatcher.onEvent(early)
+    dispatcher.onEvent(inside)
+
+    assertThat(generator.acceptedEvents).containsExactly(inside)
+  }
+
+  @Test
+  fun captureIsCompletedOnceFlushedPastItsEnd() {
+    val capture = generator.Capture()
+    generator.finish()
+    dispatcher.addCapture(capture)
+    dispatcher.onEvent(event(now.plusMillis(1)))
+    capture.end = now.plusMillis(10)
+
+    // Events up to the first flush may still be in flight when it happens.
+    dispatcher.onFlush(now.plusMillis(20))
+    assertThat(generator.completedCaptures).isEmpty()
+
+    dispatcher.onFlush(now.plusMillis(1000))
+    assertThat(generator.completedCaptures).containsExactly(capture)
+    assertThat(reports).hasSize(1)
+
+    // The capture is not dispatched to anymore.
+    dispatcher.onEvent(event(now.plusMillis(2)))
+    dispatcher.onFlush(now.plusMillis(2000))
+    assertThat(generator.acceptedEvents).hasSize(1)
+    assertThat(generator.completedCaptures).hasSize(1)
+  }
+
+  @Test
+  fun unfinishedCaptureIsKept() {
+    val capture = generator.Capture()
+    dispatcher.addCapture(capture)
+
+    dispatcher.onFlush(now.plusMillis(1000))
+    dispatcher.onFlush(now.plusMillis(2000))
+    assertThat(generator.completedCaptures).isEmpty()
+
+    dispatcher.onEvent(event(now.plusMillis(3000)))
+    assertThat(generator.acceptedEvents).hasSize(1)
+  }
+
+  @Test
+  fun recentEventsAreReplayedToCapturesWithNegativeStartOffset() {
+    val backdatedGenerator = TestGenerator(Clock.fixed(now, ZoneOffset.UTC), startOffsetMs = -5000)
+    val tooOld = event(now.minusMillis(6000))
+    val beforeAdded = event(now.minusMillis(4000))
+    val afterAdded = event(now.plusMillis(1))
+
+    dispatcher.onEvent(tooOld)
+    dispatcher.onEvent(beforeAdded)
+    dispatcher.onFlush(now)
+    dispatcher.addCapture(backdatedGenerator.Capture())
+    dispatcher.onEvent(afterAdded)
+
+    assertThat(backdatedGenerator.acceptedEvents).containsExactly(beforeAdded, afterAdded).inOrder()
+  }
+
+  @Test
+  fun eventsOlderThanTheRetentionAreNotReplayed() {
+    val dispatcher = StreamingCaptureDispatcher({ reports.add(it) }, retention = 1.seconds)
+    val backdatedGenerator = TestGenerator(Clock.fixed(now, ZoneOffset.UTC), startOffsetMs = -5000)
+    val expired = event(now.minusMillis(3000))
+    val retained = event(now.minusMillis(500))
+
+    dispatcher.onEvent(expired)
+    dispatcher.onEvent(retained)
+    dispatcher.onFlush(now)
+    dispatcher.addCapture(backdatedGenerator.Capture())
+    dispatcher.onFlush(now.plusMillis(1000))
+
+    assertThat(backdatedGenerator.acceptedEvents).containsExactly(retained)
+  }
+
+  private class TestGenerator(clock: Clock, startOffsetMs: Long = 0) : JfrReportGenerator("Test Report", EventFilter.ALL, startOffsetMs = startOffsetMs, clock = clock) {
+    val acceptedEvents = mutableListOf<RecordedEvent>()
+    val completedCaptures = mutableListOf<Capture>()
+
+    override fun accept(e: RecordedEvent, c: Capture) {
+      acceptedEvents += e
+    }
+
+    override fun captureCompleted(c: Capture) {
+      completedCaptures += c
+    }
+
+    override fun generateReport() = mapOf("report" to "contents")
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.imports
+
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+import java.io.ByteArrayOutputStream
+import java.io.IOException
+import java.nio.ByteBuffer
+
+/**
+ * Tests for [GMavenBinaryIndex].
+ */
+class GMavenBinaryIndexTest {
+  private fun roundTrip(lookup: LookupData): LookupData {
+    val output = ByteArrayOutputStream()
+    GMavenBinaryIndex.write(lookup, output)
+    return GMavenBinaryIndex(ByteBuffer.wrap(output.toByteArray())).toLookupData()
+  }
+
+  @Test
+  fun writeAndRead() {
+    val activity = MavenClassRegistryBase.Library("androidx.activity:activity", "androidx.activity", "1.1.0")
+    val annotation = MavenClassRegistryBase.Library("androidx.annotation:annotation", "androidx.annotation", "1.1.0")
+    val noVersion = MavenClassRegistryBase.Library("androidx.fake:fake", "androidx.fake")
+    val lookup = LookupData(
+      classNameMap = mapOf(
+        "ComponentActivity" to listOf(activity),
+        "Fake" to listOf(annotation, activity, noVersion),
+        "AnimRes" to listOf(annotation),
+        "Ünicode" to listOf(noVersion),
+        "Z" to listOf(noVersion)
+      ),
+      ktxMap = mapOf("androidx.activity:activity" to "androidx.activity:activity-ktx"),
+      coordinateList = listOf(
+        MavenClassRegistryBase.Coordinate("androidx.activity", "activity", "1.1.0"),
+        MavenClassRegistryBase.Coordinate("androidx.activity", "activity-ktx", "1.1.0"),
+        MavenClassRegistryBase.Coordinate("androidx.annotation", "annotation", "1.1.0")
+      )
+    )
+
+    val result = roundTrip(lookup)
+
+    assertThat(result.classNameMap).containsExactlyEntriesIn(lookup.classNameMap)
+    // Libraries keep the order of the index.
+    assertThat(result.classNameMap["Fake"]).containsExactly(annotation, activity, noVersion).inOrder()
+    assertThat(result.classNameMap["Ünicode"]).containsExactly(noVersion)
+    assertThat(result.classNameMap["Z"]).containsExactly(noVersion)
+    assertThat(result.classNameMap["Activity"]).isNull()
+    assertThat(result.classNameMap["Fak"]).isNull()
+    assertThat(result.classNameMap["Fakes"]).isNull()
+    assertThat(result.classNameMap).doesNotContainKey("")
+    assertThat(result.ktxMap).containsExactlyEntriesIn(lookup.ktxMap)
+    assertThat(result.coordinateList).containsExactlyElementsIn(lookup.coordinateList).inOrder()
+  }
+
+  @Test
+  fun writeAndReadEmpty() {
+    val result = roundTrip(LookupData.EMPTY)
+
+    assertThat(result.classNameMap).isEmpty()
+    assertThat(result.classNameMap["Fake"]).isNull()
+    assertThat(result.ktxMap).isEmpty()
+    assertThat(result.coordinateList).isEmpty()
+  }
+
+  @Test(expected = IOException::class)
+  fun readInvalidData() {
+    GMavenBinaryIndex(ByteBuffer.wrap("{ \"Index\": [] }".toByteArray()))
+  }
+}
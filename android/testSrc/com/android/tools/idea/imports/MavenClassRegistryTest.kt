@@ -22,7 +22,10 @@ import com.google.common.truth.Truth.assertThat
 import com.intellij.openapi.util.Disposer
 import org.junit.Test
 import java.nio.charset.StandardCharsets.UTF_8
+import java.nio.file.Files
+import java.nio.file.attribute.FileTime
 import java.time.Duration
+import kotlin.io.path.exists
 
 /**
  * Tests for [MavenClassRegistry].
@@ -412,4 +415,73 @@ class MavenClassRegistryTest {
       Disposer.dispose(repository)
     }
   }
-}
\ No newline at end of file
+
+  @Test
+  fun readBinaryIndexConvertedFromDiskCache() {
+    val tempDir = createInMemoryFileSystemAndFolder("tempCacheDir")
+    val cacheFile = tempDir.resolve("v0.1/classes-v0.1.json")
+    Files.createDirectories(cacheFile.parent)
+    Files.writeString(
+      cacheFile,
+      """
+        {
+          "Index": [
+            {
+              "groupId": "androidx.activity",
+              "artifactId": "activity",
+              "version": "1.1.0",
+              "ktxTargets": [],
+              "fqcns": [
+                "androidx.activity.ComponentActivity"
+              ]
+            },
+            {
+              "groupId": "androidx.activity",
+              "artifactId": "activity-ktx",
+              "version": "1.1.0",
+              "ktxTargets": [
+                "androidx.activity:activity"
+              ],
+              "fqcns": []
+            }
+          ]
+        }
+      """.trimIndent()
+    )
+    val repository = GMavenIndexRepository("https://example.com", tempDir, Duration.ofDays(1))
+
+    try {
+      val library = MavenClassRegistryBase.Library(
+        artifact = "androidx.activity:activity",
+        packageName = "androidx.activity",
+        version = "1.1.0"
+      )
+      val cacheModifiedTime = Files.getLastModifiedTime(cacheFile).toMillis()
+      val binaryFile = tempDir.resolve("v0.1/classes-v0.1.json.$cacheModifiedTime.bin")
+
+      assertThat(MavenClassRegistry(repository).findLibraryData("ComponentActivity", true)).containsExactly(library)
+      assertThat(binaryFile.exists()).isTrue()
+
+      // Subsequent registries read the binary index, which is not converted again.
+      val binaryModifiedTime = Files.getLastModifiedTime(binaryFile)
+      val mavenClassRegistry = MavenClassRegistry(repository)
+      assertThat(Files.getLastModifiedTime(binaryFile)).isEqualTo(binaryModifiedTime)
+      assertThat(mavenClassRegistry.findLibraryData("androidx.activity.ComponentActivity", true)).containsExactly(library)
+      assertThat(mavenClassRegistry.findLibraryData("androidx.fake.ComponentActivity", true)).isEmpty()
+      assertThat(mavenClassRegistry.findKtxLibrary("androidx.activity:activity")).isEqualTo("androidx.activity:activity-ktx")
+      assertThat(mavenClassRegistry.getCoordinates()).hasSize(2)
+
+      // A binary index converted from an older disk cache is not used, a new one is written next to it while the old one is still
+      // mapped, and the old one is deleted.
+      Files.setLastModifiedTime(cacheFile, FileTime.fromMillis(cacheModifiedTime + 1000))
+      val newBinaryFile = tempDir.resolve("v0.1/classes-v0.1.json.${cacheModifiedTime + 1000}.bin")
+      assertThat(MavenClassRegistry(repository).findLibraryData("ComponentActivity", true)).containsExactly(library)
+      assertThat(newBinaryFile.exists()).isTrue()
+      assertThat(binaryFile.exists()).isFalse()
+      assertThat(mavenClassRegistry.findLibraryData("androidx.activity.ComponentActivity", true)).containsExactly(library)
+    }
+    finally {
+      Disposer.dispose(repository)
+    }
+  }
+}
@@ -17,15 +17,23 @@ package com.android.tools.idea.rendering;
 
 import static com.google.common.truth.Truth.assertThat;
 
+import com.android.tools.idea.configurations.Configuration;
+import com.android.tools.idea.configurations.ConfigurationManager;
 import com.android.tools.idea.io.TestFileUtils;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.fileEditor.FileDocumentManager;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.testFramework.PlatformTestUtil;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.attribute.FileTime;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.jetbrains.android.AndroidTestCase;
 
 public class GutterIconCacheTest extends AndroidTestCase {
@@ -98,4 +106,53 @@ public class GutterIconCacheTest extends AndroidTestCase {
     // Modifying the image should have invalidated the cache entry.
     assertThat(GutterIconCache.getInstance().isIconUpToDate(mySampleSvgFile)).isFalse();
   }
+
+  public void testGetIconOrRenderAsync() {
+    GutterIconCache cache = new GutterIconCache(GutterIconCache.MAX_CACHE_SIZE, MoreExecutors.directExecutor());
+    Configuration configuration = ConfigurationManager.getOrCreateInstance(myModule).getConfiguration(mySampleSvgFile);
+    AtomicInteger renderedCount = new AtomicInteger();
+
+    // The icon is not cached yet, it's rendered by the executor and the callback is called on the UI thread.
+    assertThat(cache.getIconOrRenderAsync(mySampleSvgFile, configuration, myFacet, renderedCount::incrementAndGet)).isNull();
+    assertThat(cache.isIconUpToDate(mySampleSvgFile)).isTrue();
+    PlatformTestUtil.dispatchAllInvocationEventsInIdeEventQueue();
+    assertThat(renderedCount.get()).isEqualTo(1);
+
+    assertThat(cache.getIconOrRenderAsync(mySampleSvgFile, configuration, myFacet, renderedCount::incrementAndGet)).isNotNull();
+    PlatformTestUtil.dispatchAllInvocationEventsInIdeEventQueue();
+    assertThat(renderedCount.get()).isEqualTo(1);
+  }
+
+  public void testGetIconOrRenderAsyncOnBackgroundThread() throws Exception {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    GutterIconCache cache = new GutterIconCache(GutterIconCache.MAX_CACHE_SIZE, executor);
+    VirtualFile vectorFile = TestFileUtils.writeFileAndRefreshVfs(
+      mySampleSvgPath.resolveSibling("GutterIconCacheTest_vector.xml"),
+      "<vector xmlns:android=\"http://schemas.android.com/apk/res/android\" android:width=\"24dp\" android:height=\"24dp\"\n" +
+      "    android:viewportWidth=\"24\" android:viewportHeight=\"24\">\n" +
+      "  <path android:fillColor=\"#FF0000\" android:pathData=\"M0,0h24v24h-24z\"/>\n" +
+      "</vector>");
+    Configuration configuration = ConfigurationManager.getOrCreateInstance(myModule).getConfiguration(vectorFile);
+
+    assertThat(cache.getIconOrRenderAsync(vectorFile, configuration, myFacet, () -> {})).isNull();
+    executor.shutdown();
+    assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+    assertThat(cache.isIconUpToDate(vectorFile)).isTrue();
+    assertThat(cache.getIconOrRenderAsync(vectorFile, configuration, myFacet, () -> {})).isNotNull();
+  }
+
+  public void testLeastRecentlyUsedIconsAreEvicted() throws Exception {
+    GutterIconCache cache = new GutterIconCache(1, MoreExecutors.directExecutor());
+    Path otherSvgPath = mySampleSvgPath.resolveSibling("GutterIconCacheTest_other.xml");
+    VirtualFile otherSvgFile = TestFileUtils.writeFileAndRefreshVfs(
+      otherSvgPath, "<svg viewBox=\"0 0 50 50\"><rect width=\"50\" height=\"50\" fill=\"red\"/></svg>");
+
+    cache.getIcon(mySampleSvgFile, null, myFacet);
+    assertThat(cache.isIconUpToDate(mySampleSvgFile)).isTrue();
+
+    cache.getIcon(otherSvgFile, null, myFacet);
+    assertThat(cache.isIconUpToDate(otherSvgFile)).isTrue();
+    assertThat(cache.isIconUpToDate(mySampleSvgFile)).isFalse();
+  }
 }
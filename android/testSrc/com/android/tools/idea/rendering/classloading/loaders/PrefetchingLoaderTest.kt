@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.rendering.classloading.loaders
+
+import com.google.common.util.concurrent.MoreExecutors
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Test
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class PrefetchingLoaderTest {
+  private class CountingLoader(private val delegate: DelegatingClassLoader.Loader) : DelegatingClassLoader.Loader {
+    val loadCounts = ConcurrentHashMap<String, Int>()
+
+    override fun loadClass(fqcn: String): ByteArray? {
+      loadCounts.merge(fqcn, 1) { a, b -> a + b }
+      if (fqcn == "a.Failing") throw IllegalStateException("failed")
+      return delegate.loadClass(fqcn)
+    }
+  }
+
+  @Test
+  fun `prefetched classes are loaded once`() {
+    val delegate = CountingLoader(StaticLoader("a.A" to ByteArray(1), "a.B" to ByteArray(2)))
+    val loader = PrefetchingLoader(delegate)
+
+    loader.prefetch(listOf("a.A", "a.B", "a.NotFound"), MoreExecutors.directExecutor())
+    assertEquals(mapOf("a.A" to 1, "a.B" to 1, "a.NotFound" to 1), delegate.loadCounts)
+
+    assertEquals(1, loader.loadClass("a.A")?.size)
+    assertEquals(2, loader.loadClass("a.B")?.size)
+    assertNull(loader.loadClass("a.NotFound"))
+    assertEquals(mapOf("a.A" to 1, "a.B" to 1, "a.NotFound" to 1), delegate.loadCounts)
+    assertEquals(3, loader.hitCount)
+
+    // Prefetched classes are only handed out once
+    assertEquals(1, loader.loadClass("a.A")?.size)
+    assertEquals(2, delegate.loadCounts["a.A"])
+    assertEquals(3, loader.hitCount)
+  }
+
+  @Test
+  fun `failed prefetches are loaded again`() {
+    val delegate = CountingLoader(StaticLoader())
+    val loader = PrefetchingLoader(delegate)
+
+    loader.prefetch(listOf("a.Failing"), MoreExecutors.directExecutor())
+    try {
+      loader.loadClass("a.Failing")
+      throw AssertionError("The loading error was not reported")
+    }
+    catch (e: IllegalStateException) {
+      assertEquals("failed", e.message)
+    }
+    assertEquals(2, delegate.loadCounts["a.Failing"])
+    assertEquals(0, loader.hitCount)
+  }
+
+  @Test
+  fun `inactive prefetch does not load`() {
+    val delegate = CountingLoader(StaticLoader("a.A" to ByteArray(1)))
+    val loader = PrefetchingLoader(delegate)
+
+    loader.prefetch(listOf("a.A"), MoreExecutors.directExecutor()) { false }
+    assertEquals(emptyMap<String, Int>(), delegate.loadCounts)
+    assertEquals(1, loader.loadClass("a.A")?.size)
+  }
+
+  @Test
+  fun `parallel prefetch`() {
+    val classes = (0 until 500).associate { "a.C$it" to ByteArray(it) }
+    val delegate = CountingLoader(StaticLoader(classes))
+    val loader = PrefetchingLoader(delegate)
+    val executor = Executors.newFixedThreadPool(4)
+    try {
+      loader.prefetch(classes.keys, executor)
+      for ((fqcn, bytes) in classes) {
+        assertArrayEquals(bytes, loader.loadClass(fqcn))
+      }
+    }
+    finally {
+      executor.shutdown()
+      executor.awaitTermination(10, TimeUnit.SECONDS)
+    }
+    assertEquals(classes.keys.associateWith { 1 }, delegate.loadCounts)
+    assertEquals(500, loader.hitCount)
+  }
+
+  @Test
+  fun `clear discards prefetched classes`() {
+    val delegate = CountingLoader(StaticLoader("a.A" to ByteArray(1)))
+    val loader = PrefetchingLoader(delegate)
+
+    loader.prefetch(listOf("a.A"), MoreExecutors.directExecutor())
+    loader.clear()
+    assertEquals(1, loader.loadClass("a.A")?.size)
+    assertEquals(2, delegate.loadCounts["a.A"])
+    assertEquals(0, loader.hitCount)
+  }
+
+  @Test
+  fun `listener above the prefetching loader only sees loaded classes`() {
+    val loadedClasses = mutableListOf<String>()
+    val prefetchingLoader = PrefetchingLoader(StaticLoader("a.A" to ByteArray(1), "a.B" to ByteArray(2)))
+    val loader = ListeningLoader(prefetchingLoader, onAfterLoad = { fqcn, _ -> loadedClasses.add(fqcn) })
+
+    prefetchingLoader.prefetch(listOf("a.A", "a.B"), MoreExecutors.directExecutor())
+    assertEquals(listOf<String>(), loadedClasses)
+
+    assertEquals(1, loader.loadClass("a.A")?.size)
+    assertEquals(listOf("a.A"), loadedClasses)
+  }
+}
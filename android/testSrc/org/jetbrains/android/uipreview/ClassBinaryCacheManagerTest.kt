@@ -15,15 +15,24 @@
  */
 package org.jetbrains.android.uipreview
 
+import com.android.tools.idea.rendering.classloading.ClassTransform
+import com.android.tools.idea.rendering.classloading.TRANSIENT_TRANSFORM_ID_PREFIX
+import com.android.tools.idea.rendering.classloading.combine
+import com.android.tools.idea.rendering.classloading.toClassTransform
 import com.google.common.base.Ticker
 import com.intellij.openapi.module.Module
+import org.jetbrains.org.objectweb.asm.ClassVisitor
+import org.jetbrains.org.objectweb.asm.Opcodes
 import org.junit.Before
+import org.junit.Rule
 import org.junit.Test
+import org.junit.rules.TemporaryFolder
 import org.mockito.Mock
 import org.mockito.MockitoAnnotations
 import kotlin.test.assertEquals
 import kotlin.test.assertNotNull
 import kotlin.test.assertNull
+import kotlin.test.assertTrue
 
 class ClassBinaryCacheManagerTest {
   private class ManualTicker : Ticker() {
@@ -31,6 +40,9 @@ class ClassBinaryCacheManagerTest {
     override fun read(): Long = timeNanos
   }
 
+  @get:Rule
+  val temporaryFolder = TemporaryFolder()
+
   @Mock
   private lateinit var module: Module
 
@@ -105,4 +117,78 @@ class ClassBinaryCacheManagerTest {
 
     assertNull(moduleCache.get("a.b.c"))
   }
-}
\ No newline at end of file
+
+  @Test
+  fun testPersistentCacheSurvivesNewManager() {
+    val cacheDirectory = temporaryFolder.newFolder("cache").toPath()
+    val library = temporaryFolder.newFile("a.jar").apply { writeText("a") }.path
+
+    val manager = ClassBinaryCacheManager.getTestInstance(
+      ManualTicker(), 100, 1, PersistentClassBinaryCache(cacheDirectory, 1_000_000))
+    manager.getCache(module).apply {
+      setDependencies(listOf(library))
+      put("a.b.c", library, "hello".toByteArray())
+    }
+
+    val newManager = ClassBinaryCacheManager.getTestInstance(
+      ManualTicker(), 100, 1, PersistentClassBinaryCache(cacheDirectory, 1_000_000))
+    val moduleCache = newManager.getCache(module)
+    assertNull(moduleCache.get("a.b.c"))
+    moduleCache.setDependencies(listOf(library))
+    assertEquals("hello", moduleCache.get("a.b.c")?.toString(Charsets.UTF_8))
+    assertNull(moduleCache.get("a.b.c", "other"))
+
+    moduleCache.setDependencies(listOf("B"))
+    assertNull(moduleCache.get("a.b.c"))
+  }
+
+  @Test
+  fun testPersistentCacheIsReopenedWithFreshlyBuiltTransformationId() {
+    val cacheDirectory = temporaryFolder.newFolder("cache").toPath()
+    val library = temporaryFolder.newFile("a.jar").apply { writeText("a") }.path
+
+    val manager = ClassBinaryCacheManager.getTestInstance(
+      ManualTicker(), 100, 1, PersistentClassBinaryCache(cacheDirectory, 1_000_000))
+    manager.getCache(module).apply {
+      setDependencies(listOf(library))
+      put("a.b.c", StudioModuleClassLoader.NON_PROJECT_CLASSES_DEFAULT_TRANSFORMS.id, library, "hello".toByteArray())
+    }
+
+    // A new session builds new transforms, the identity is skipped by the id.
+    val freshTransformationId = combine(StudioModuleClassLoader.NON_PROJECT_CLASSES_DEFAULT_TRANSFORMS, ClassTransform.identity).id
+    val newManager = ClassBinaryCacheManager.getTestInstance(
+      ManualTicker(), 100, 1, PersistentClassBinaryCache(cacheDirectory, 1_000_000))
+    val moduleCache = newManager.getCache(module)
+    moduleCache.setDependencies(listOf(library))
+    assertEquals("hello", moduleCache.get("a.b.c", freshTransformationId)?.toString(Charsets.UTF_8))
+
+    val upgradedManager = ClassBinaryCacheManager.getTestInstance(
+      ManualTicker(), 100, 1, PersistentClassBinaryCache(cacheDirectory, 1_000_000), ideBuild = "AI-232.2")
+    val upgradedModuleCache = upgradedManager.getCache(module)
+    upgradedModuleCache.setDependencies(listOf(library))
+    assertNull(upgradedModuleCache.get("a.b.c", freshTransformationId))
+  }
+
+  @Test
+  fun testTransientTransformationsAreNotPersisted() {
+    val cacheDirectory = temporaryFolder.newFolder("cache").toPath()
+    val library = temporaryFolder.newFile("a.jar").apply { writeText("a") }.path
+    // The visitor does not provide a unique id, so the id of the transform is based on its identity.
+    val transform = toClassTransform({ visitor -> object : ClassVisitor(Opcodes.ASM9, visitor) {} })
+    assertTrue(transform.id.startsWith(TRANSIENT_TRANSFORM_ID_PREFIX))
+
+    val manager = ClassBinaryCacheManager.getTestInstance(
+      ManualTicker(), 100, 1, PersistentClassBinaryCache(cacheDirectory, 1_000_000))
+    manager.getCache(module).apply {
+      setDependencies(listOf(library))
+      put("a.b.c", transform.id, library, "hello".toByteArray())
+      assertEquals("hello", get("a.b.c", transform.id)?.toString(Charsets.UTF_8))
+    }
+
+    val newManager = ClassBinaryCacheManager.getTestInstance(
+      ManualTicker(), 100, 1, PersistentClassBinaryCache(cacheDirectory, 1_000_000))
+    val moduleCache = newManager.getCache(module)
+    moduleCache.setDependencies(listOf(library))
+    assertNull(moduleCache.get("a.b.c", transform.id))
+  }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.android.uipreview
+
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption
+import java.nio.file.attribute.FileTime
+import kotlin.test.assertEquals
+import kotlin.test.assertNull
+import kotlin.test.assertTrue
+
+class PersistentClassBinaryCacheTest {
+  @get:Rule
+  val temporaryFolder = TemporaryFolder()
+
+  private val cacheDirectory: Path
+    get() = temporaryFolder.root.toPath().resolve("cache")
+
+  private fun createLibrary(name: String, content: String = name): String {
+    val library = temporaryFolder.newFile(name)
+    library.writeText(content)
+    return library.path
+  }
+
+  @Test
+  fun testClassesArePersisted() {
+    val libraryA = createLibrary("a.jar")
+    val libraryB = createLibrary("b.jar")
+    PersistentClassBinaryCache(cacheDirectory, 1_000_000).apply {
+      put(libraryA, "id:a.b.c", "hello".toByteArray())
+      put(libraryB, "id:d.e.f", "bye".toByteArray())
+      assertEquals("hello", get(libraryA, "id:a.b.c")?.toString(Charsets.UTF_8))
+    }
+
+    val cache = PersistentClassBinaryCache(cacheDirectory, 1_000_000)
+    assertEquals("hello", cache.get(libraryA, "id:a.b.c")?.toString(Charsets.UTF_8))
+    assertEquals("bye", cache.get(libraryB, "id:d.e.f")?.toString(Charsets.UTF_8))
+    assertNull(cache.get(libraryA, "id:d.e.f"))
+    assertNull(cache.get(libraryA, "other:a.b.c"))
+
+    // Classes can be appended to the packs of the previous session.
+    cache.put(libraryA, "id:a.b.d", "again".toByteArray())
+    assertEquals("again", PersistentClassBinaryCache(cacheDirectory, 1_000_000).get(libraryA, "id:a.b.d")?.toString(Charsets.UTF_8))
+  }
+
+  @Test
+  fun testChangedLibraryIsNotReused() {
+    val library = createLibrary("a.jar")
+    PersistentClassBinaryCache(cacheDirectory, 1_000_000).put(library, "id:a.b.c", "hello".toByteArray())
+
+    File(library).writeText("changed")
+    Files.setLastModifiedTime(Path.of(library), FileTime.fromMillis(System.currentTimeMillis() + 10_000))
+
+    assertNull(PersistentClassBinaryCache(cacheDirectory, 1_000_000).get(library, "id:a.b.c"))
+  }
+
+  @Test
+  fun testChangedLibraryIsNotReusedAfterRefresh() {
+    val library = createLibrary("a.jar")
+    val cache = PersistentClassBinaryCache(cacheDirectory, 1_000_000)
+    cache.put(library, "id:a.b.c", "hello".toByteArray())
+
+    File(library).writeText("changed")
+    Files.setLastModifiedTime(Path.of(library), FileTime.fromMillis(System.currentTimeMillis() + 10_000))
+    cache.refresh(listOf(library))
+
+    assertNull(cache.get(library, "id:a.b.c"))
+  }
+
+  @Test
+  fun testTruncatedPackIsTolerated() {
+    val library = createLibrary("a.jar")
+    PersistentClassBinaryCache(cacheDirectory, 1_000_000).apply {
+      put(library, "id:a.b.c", "hello".toByteArray())
+      put(library, "id:a.b.d", "bye".toByteArray())
+    }
+    val pack = Files.list(cacheDirectory).use { it.toList().single() }
+    Files.newByteChannel(pack, StandardOpenOption.WRITE).use { it.truncate(Files.size(pack) - 1) }
+
+    val cache = PersistentClassBinaryCache(cacheDirectory, 1_000_000)
+    assertEquals("hello", cache.get(library, "id:a.b.c")?.toString(Charsets.UTF_8))
+    assertNull(cache.get(library, "id:a.b.d"))
+
+    // The truncated record is overwritten.
+    cache.put(library, "id:a.b.d", "bye".toByteArray())
+    assertEquals("bye", PersistentClassBinaryCache(cacheDirectory, 1_000_000).get(library, "id:a.b.d")?.toString(Charsets.UTF_8))
+  }
+
+  @Test
+  fun testCorruptedClassIsDropped() {
+    val library = createLibrary("a.jar")
+    PersistentClassBinaryCache(cacheDirectory, 1_000_000).put(library, "id:a.b.c", "hello".toByteArray())
+    val pack = Files.list(cacheDirectory).use { it.toList().single() }
+    val content = Files.readAllBytes(pack)
+    content[content.size - 1] = 'X'.code.toByte()
+    Files.write(pack, content)
+
+    assertNull(PersistentClassBinaryCache(cacheDirectory, 1_000_000).get(library, "id:a.b.c"))
+  }
+
+  @Test
+  fun testOldPacksArePrunedWhenOverSize() {
+    val libraryA = createLibrary("a.jar")
+    val libraryB = createLibrary("b.jar")
+    PersistentClassBinaryCache(cacheDirectory, 1_000_000).apply {
+      put(libraryA, "id:a.b.c", ByteArray(600))
+      put(libraryB, "id:d.e.f", ByteArray(600))
+    }
+    val packs = Files.list(cacheDirectory).use { it.toList() }
+    assertEquals(2, packs.size)
+    val packA = packs.single { it.fileName.toString().startsWith("a.jar") }
+    Files.setLastModifiedTime(packA, FileTime.fromMillis(0))
+
+    val cache = PersistentClassBinaryCache(cacheDirectory, 1_000)
+    assertTrue(Files.notExists(packA))
+    assertNull(cache.get(libraryA, "id:a.b.c"))
+    assertEquals(600, cache.get(libraryB, "id:d.e.f")?.size)
+
+    // The cache is full, so nothing else is stored.
+    cache.put(libraryA, "id:a.b.c", ByteArray(600))
+    assertNull(PersistentClassBinaryCache(cacheDirectory, 1_000).get(libraryA, "id:a.b.c"))
+  }
+
+  @Test
+  fun testDirectoriesAreNotCached() {
+    val directory = temporaryFolder.newFolder("classes").path
+    val cache = PersistentClassBinaryCache(cacheDirectory, 1_000_000)
+    cache.put(directory, "id:a.b.c", "hello".toByteArray())
+    assertNull(cache.get(directory, "id:a.b.c"))
+  }
+}
@@ -17,12 +17,16 @@ package com.android.tools.idea.databinding.finders
 
 import com.android.tools.idea.databinding.module.LayoutBindingModuleCache
 import com.android.tools.idea.databinding.util.DataBindingUtil
+import com.android.tools.idea.databinding.util.getViewBindingEnabledTracker
 import com.android.tools.idea.databinding.util.isViewBindingEnabled
 import com.android.tools.idea.projectsystem.getModuleSystem
 import com.android.tools.idea.util.androidFacet
 import com.intellij.openapi.module.Module
 import com.intellij.openapi.module.ModuleUtil
+import com.intellij.openapi.project.DumbService
 import com.intellij.openapi.project.Project
+import com.intellij.openapi.roots.ProjectRootModificationTracker
+import com.intellij.openapi.util.ModificationTracker
 import com.intellij.openapi.vfs.VirtualFile
 import com.intellij.psi.PsiClass
 import com.intellij.psi.ResolveScopeEnlarger
@@ -30,7 +34,6 @@ import com.intellij.psi.search.GlobalSearchScope
 import com.intellij.psi.search.SearchScope
 import com.intellij.psi.util.CachedValueProvider
 import com.intellij.psi.util.CachedValuesManager
-import com.intellij.psi.util.PsiModificationTracker
 import org.jetbrains.android.facet.AndroidFacet
 import org.jetbrains.kotlin.idea.base.projectStructure.KotlinResolveScopeEnlarger
 
@@ -38,6 +41,19 @@ private fun AndroidFacet.isRelevantForScopeEnlarging(): Boolean {
   return DataBindingUtil.isDataBindingEnabled(this) || isViewBindingEnabled()
 }
 
+/**
+ * The dependencies of the binding scopes of [facets]: their binding layouts, whether binding is enabled, and the module structure. Code
+ * changes do not invalidate the scopes.
+ *
+ * In dumb mode, the binding layouts may be stale (see [LayoutBindingModuleCache.bindingLayoutGroups]), so the scopes are not cached.
+ */
+private fun Project.bindingScopeDependencies(facets: List<AndroidFacet>): Array<Any> {
+  if (DumbService.isDumb(this)) return arrayOf(ModificationTracker.EVER_CHANGED)
+  return (facets.map { LayoutBindingModuleCache.getInstance(it).layoutsModificationTracker } +
+          listOf(DataBindingUtil.getDataBindingEnabledTracker(), getViewBindingEnabledTracker(),
+                 ProjectRootModificationTracker.getInstance(this))).toTypedArray()
+}
+
 /**
  * Scope enlarger for data binding and view binding modules, providing additional in-memory light
  * classes that represent files that will eventually be generated by the data binding compiler.
@@ -56,13 +72,14 @@ class BindingScopeEnlarger : ResolveScopeEnlarger() {
 
     return CachedValuesManager.getManager(project).getCachedValue(module) {
       val localScope = facet.getLocalBindingScope()
-      val scopeIncludingDeps = module.getModuleSystem()
+      val dependencyFacets = module.getModuleSystem()
         .getResourceModuleDependencies()
         .mapNotNull { module -> module.androidFacet }
+      val scopeIncludingDeps = dependencyFacets
         .map(AndroidFacet::getLocalBindingScope)
         .fold(localScope) { scopeAccum, depScope -> scopeAccum.union(depScope) }
 
-      CachedValueProvider.Result.create(scopeIncludingDeps, PsiModificationTracker.MODIFICATION_COUNT)
+      CachedValueProvider.Result.create(scopeIncludingDeps, *project.bindingScopeDependencies(dependencyFacets + facet))
     }
   }
 }
@@ -89,7 +106,7 @@ private fun AndroidFacet.getLocalBindingScope(): GlobalSearchScope {
     // that classes they are returning belong to the current scope.
     val virtualFiles = lightClasses.map { it.containingFile!!.viewProvider.virtualFile }
     val localScope = GlobalSearchScope.filesWithoutLibrariesScope(project, virtualFiles)
-    CachedValueProvider.Result.create(localScope, PsiModificationTracker.MODIFICATION_COUNT)
+    CachedValueProvider.Result.create(localScope, *project.bindingScopeDependencies(listOf(this)))
   }
 }
 
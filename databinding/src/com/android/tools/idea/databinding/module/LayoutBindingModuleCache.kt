@@ -40,6 +40,7 @@ import com.intellij.openapi.diagnostic.Logger
 import com.intellij.openapi.module.Module
 import com.intellij.openapi.project.DumbService
 import com.intellij.openapi.util.Key
+import com.intellij.openapi.util.ModificationTracker
 import com.intellij.psi.PsiManager
 import net.jcip.annotations.GuardedBy
 import net.jcip.annotations.ThreadSafe
@@ -112,7 +113,8 @@ class LayoutBindingModuleCache(private val module: Module) {
     }
   }
 
-  @GuardedBy("lock")
+  // Only written under lock, volatile so that reading an existing class does not need it.
+  @Volatile
   private var _lightBrClass: LightBrClass? = null
   /**
    * Fetches the singleton light BR class associated with this module.
@@ -126,6 +128,7 @@ class LayoutBindingModuleCache(private val module: Module) {
   val lightBrClass: LightBrClass?
     get() {
       val facet = AndroidFacet.getInstance(module) ?: return null
+      _lightBrClass?.let { return it }
 
       synchronized(lock) {
         if (_lightBrClass == null) {
@@ -137,7 +140,8 @@ class LayoutBindingModuleCache(private val module: Module) {
     }
 
 
-  @GuardedBy("lock")
+  // Only written under lock, volatile so that reading an existing class does not need it.
+  @Volatile
   private var _lightDataBindingComponentClass: LightDataBindingComponentClass? = null
   /**
    * Fetches the singleton light DataBindingComponent class associated with this module.
@@ -151,6 +155,7 @@ class LayoutBindingModuleCache(private val module: Module) {
   val lightDataBindingComponentClass: LightDataBindingComponentClass?
     get() {
       val facet = AndroidFacet.getInstance(module)?.takeUnless { it.configuration.isLibraryProject } ?: return null
+      _lightDataBindingComponentClass?.let { return it }
 
       synchronized(lock) {
         if (_lightDataBindingComponentClass == null) {
@@ -160,24 +165,42 @@ class LayoutBindingModuleCache(private val module: Module) {
       }
     }
 
-  private val BindingLayoutGroup.layoutFileName: String
-    get() = mainLayout.file.name
-
   /**
-   * A modification tracker for module resources.
+   * An immutable view of the binding layouts of this module, replaced as a whole whenever the module resources change.
    *
-   * We keep track of it to know when to regenerate [BindingLayoutGroup]s, since they depend on
-   * resources. See also [bindingLayoutGroups].
+   * @param resourcesModificationCount the module resources modification count this snapshot was computed for.
+   * @param generation incremented only when [groups] actually change, see [layoutsModificationTracker].
    */
-  @GuardedBy("lock")
-  private var lastResourcesModificationCount = Long.MIN_VALUE
+  private class BindingLayoutsSnapshot(val resourcesModificationCount: Long,
+                                       val generation: Long,
+                                       val groups: Set<BindingLayoutGroup>)
+
+  @Volatile
+  private var bindingLayoutsSnapshot = BindingLayoutsSnapshot(Long.MIN_VALUE, 0, emptySet())
+
+  /**
+   * Lock only taken to compute a new [bindingLayoutsSnapshot], readers of an up-to-date snapshot never block.
+   */
+  private val snapshotLock = Any()
+
+  /**
+   * A modification tracker that only changes when the [bindingLayoutGroups] of this module change, i.e. when layouts are added or removed,
+   * or when the binding data of a layout changes. Other resource changes and code changes do not affect it.
+   */
+  val layoutsModificationTracker = ModificationTracker {
+    if (ApplicationManager.getApplication().isReadAccessAllowed) {
+      bindingLayoutGroups
+    }
+    bindingLayoutsSnapshot.generation
+  }
 
-  @GuardedBy("lock")
-  private var _bindingLayoutGroups = emptySet<BindingLayoutGroup>()
   /**
    * Returns all [BindingLayoutGroup] instances associated with this module, representing all layouts
    * that should have bindings generated for them.
    *
+   * Groups whose layouts did not change since the last call are returned as the same instances, so their
+   * [getLightBindingClasses] are reused.
+   *
    * See also [getLightBindingClasses].
    */
   val bindingLayoutGroups: Collection<BindingLayoutGroup>
@@ -193,23 +216,31 @@ class LayoutBindingModuleCache(private val module: Module) {
       if (DumbService.isDumb(module.project)) {
         Logger.getInstance(LayoutBindingModuleCache::class.java).info(
           "Binding classes may be temporarily stale due to indices not being accessible right now.")
-        return _bindingLayoutGroups
+        return bindingLayoutsSnapshot.groups
       }
 
-      synchronized(lock) {
-        val moduleResources = StudioResourceRepositoryManager.getModuleResources(facet)
+      val moduleResources = StudioResourceRepositoryManager.getModuleResources(facet)
+      bindingLayoutsSnapshot.let { snapshot ->
+        if (snapshot.resourcesModificationCount == moduleResources.modificationCount) return snapshot.groups
+      }
+
+      synchronized(snapshotLock) {
+        val snapshot = bindingLayoutsSnapshot
         val modificationCount = moduleResources.modificationCount
-        if (modificationCount != lastResourcesModificationCount) {
-          val layoutResources = moduleResources.getResources(ResourceNamespace.RES_AUTO, ResourceType.LAYOUT)
-          _bindingLayoutGroups = layoutResources.values()
-            .mapNotNull { resource -> BindingLayout.tryCreate(facet, resource) }
-            .groupBy { info -> info.file.name }
-            .map { entry -> BindingLayoutGroup(entry.value) }
-            .toSet()
-          lastResourcesModificationCount = modificationCount
-        }
+        if (snapshot.resourcesModificationCount == modificationCount) return snapshot.groups
 
-        return _bindingLayoutGroups
+        val previousGroups = snapshot.groups.associateBy { it }
+        val layoutResources = moduleResources.getResources(ResourceNamespace.RES_AUTO, ResourceType.LAYOUT)
+        val groups = layoutResources.values()
+          .mapNotNull { resource -> BindingLayout.tryCreate(facet, resource) }
+          .groupBy { info -> info.file.name }
+          .map { entry -> BindingLayoutGroup(entry.value) }
+          .map { group -> previousGroups[group]?.takeIf { it.hasSameBindingsAs(group) } ?: group }
+          .toSet()
+        val changed = groups.size != snapshot.groups.size || groups.any { group -> previousGroups[group] !== group }
+        val generation = if (changed) snapshot.generation + 1 else snapshot.generation
+        bindingLayoutsSnapshot = BindingLayoutsSnapshot(modificationCount, generation, groups)
+        return groups
       }
     }
 
@@ -229,28 +260,39 @@ class LayoutBindingModuleCache(private val module: Module) {
   fun getLightBindingClasses(group: BindingLayoutGroup): List<LightBindingClass> {
     val facet = AndroidFacet.getInstance(module) ?: return emptyList()
 
-    synchronized(lock) {
-      var bindingClasses = group.getUserData(LIGHT_BINDING_CLASSES_KEY)
-      if (bindingClasses == null) {
-        bindingClasses = ArrayList()
+    group.getUserData(LIGHT_BINDING_CLASSES_KEY)?.let { return it }
 
-        // Always add a full "Binding" class.
-        val psiManager = PsiManager.getInstance(module.project)
-        val bindingClass = LightBindingClass(psiManager, BindingClassConfig(facet, group))
-        bindingClasses.add(bindingClass)
+    val bindingClasses = ArrayList<LightBindingClass>()
 
-        // "Impl" classes are only necessary if we have more than a single configuration.
-        // Also, only create "Impl" bindings for data binding; view binding does not generate them
-        if (group.layouts.size > 1 && group.mainLayout.data.layoutType == BindingLayoutType.DATA_BINDING_LAYOUT) {
-          for (layoutIndex in group.layouts.indices) {
-            val bindingImplClass = LightBindingClass(psiManager, BindingImplClassConfig(facet, group, layoutIndex))
-            bindingClasses.add(bindingImplClass)
-          }
-        }
+    // Always add a full "Binding" class.
+    val psiManager = PsiManager.getInstance(module.project)
+    val bindingClass = LightBindingClass(psiManager, BindingClassConfig(facet, group))
+    bindingClasses.add(bindingClass)
 
-        group.putUserData(LIGHT_BINDING_CLASSES_KEY, bindingClasses)
+    // "Impl" classes are only necessary if we have more than a single configuration.
+    // Also, only create "Impl" bindings for data binding; view binding does not generate them
+    if (group.layouts.size > 1 && group.mainLayout.data.layoutType == BindingLayoutType.DATA_BINDING_LAYOUT) {
+      for (layoutIndex in group.layouts.indices) {
+        val bindingImplClass = LightBindingClass(psiManager, BindingImplClassConfig(facet, group, layoutIndex))
+        bindingClasses.add(bindingImplClass)
       }
-      return bindingClasses
     }
+
+    // If another thread got there first, use its classes so that all callers see the same instances.
+    return group.putUserDataIfAbsent(LIGHT_BINDING_CLASSES_KEY, bindingClasses)
+  }
+}
+
+/**
+ * Returns true if the layouts of this group would generate the same binding classes as the ones of [other], i.e. they are the same files
+ * with the same binding data.
+ */
+private fun BindingLayoutGroup.hasSameBindingsAs(other: BindingLayoutGroup): Boolean {
+  if (layouts.size != other.layouts.size) return false
+  return layouts.zip(other.layouts).all { (layout, otherLayout) ->
+    layout.file == otherLayout.file &&
+    layout.data == otherLayout.data &&
+    layout.qualifiedClassName == otherLayout.qualifiedClassName &&
+    layout.resource.configuration == otherLayout.resource.configuration
   }
 }
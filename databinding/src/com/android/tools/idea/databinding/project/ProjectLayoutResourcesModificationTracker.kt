@@ -15,17 +15,18 @@
  */
 package com.android.tools.idea.databinding.project
 
-import com.android.tools.idea.res.StudioResourceRepositoryManager
+import com.android.tools.idea.databinding.module.LayoutBindingModuleCache
 import com.intellij.openapi.components.Service
 import com.intellij.openapi.project.Project
 import com.intellij.openapi.util.ModificationTracker
 import org.jetbrains.kotlin.utils.addToStdlib.sumByLong
 
 /**
- * Modification tracker which changes if any layout resource file across the whole project changes.
+ * Modification tracker which changes if the binding layouts of any binding enabled module across the whole project change. Changes to
+ * other resources and to code do not affect it.
  *
  * If you need to know the modification count for a single module, just use
- * `ResourceRepositoryManager.getModuleResources(facet).modificationCount` directly.
+ * `LayoutBindingModuleCache.getInstance(facet).layoutsModificationTracker` directly.
  */
 @Service
 class ProjectLayoutResourcesModificationTracker(project: Project): ModificationTracker {
@@ -38,7 +39,8 @@ class ProjectLayoutResourcesModificationTracker(project: Project): ModificationT
   private val enabledFacetsProvider = LayoutBindingEnabledFacetsProvider.getInstance(project)
 
   override fun getModificationCount(): Long {
-    return enabledFacetsProvider.getAllBindingEnabledFacets()
-      .sumByLong { facet -> StudioResourceRepositoryManager.getModuleResources(facet).modificationCount }
+    // Include the enabled facets count so that the sum changes when modules are removed.
+    return enabledFacetsProvider.modificationCount + enabledFacetsProvider.getAllBindingEnabledFacets()
+      .sumByLong { facet -> LayoutBindingModuleCache.getInstance(facet).layoutsModificationTracker.modificationCount }
   }
 }
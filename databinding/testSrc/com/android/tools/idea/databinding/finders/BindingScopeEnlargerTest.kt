@@ -21,6 +21,7 @@ import com.android.tools.idea.testing.AndroidProjectRule
 import com.android.tools.idea.util.androidFacet
 import com.google.common.truth.Truth.assertThat
 import com.intellij.openapi.project.DumbServiceImpl
+import com.intellij.psi.ResolveScopeEnlarger
 import com.intellij.psi.search.PsiSearchScopeUtil
 import com.intellij.testFramework.EdtRule
 import com.intellij.testFramework.RunsInEdt
@@ -106,4 +107,60 @@ class BindingScopeEnlargerTest {
       }
     }
   }
-}
\ No newline at end of file
+
+  @Test
+  fun scopeIsOnlyRecomputedWhenLayoutsChange() {
+    fixture.addFileToProject(
+      "res/layout/activity_main.xml",
+      //language=XML
+      """
+        <?xml version="1.0" encoding="utf-8"?>
+        <layout xmlns:android="http://schemas.android.com/apk/res/android">
+          <LinearLayout />
+        </layout>
+      """.trimIndent())
+    projectRule.waitForResourceRepositoryUpdates()
+
+    val enlarger = ResolveScopeEnlarger.EP_NAME.findExtensionOrFail(BindingScopeEnlarger::class.java)
+    val moduleCache = LayoutBindingModuleCache.getInstance(facet)
+    val scope = enlarger.getAdditionalResolveScope(facet)
+    val bindingClasses = moduleCache.bindingLayoutGroups.flatMap { moduleCache.getLightBindingClasses(it) }
+
+    // Neither code changes nor changes to other resources affect the binding classes.
+    fixture.addClass("public class OtherActivity {}")
+    fixture.addFileToProject(
+      "res/values/strings.xml",
+      //language=XML
+      """
+        <resources>
+          <string name="app_name">App</string>
+        </resources>
+      """.trimIndent())
+    projectRule.waitForResourceRepositoryUpdates()
+    assertThat(enlarger.getAdditionalResolveScope(facet)).isSameAs(scope)
+    assertThat(moduleCache.bindingLayoutGroups.flatMap { moduleCache.getLightBindingClasses(it) })
+      .containsExactlyElementsIn(bindingClasses).inOrder()
+
+    fixture.addFileToProject(
+      "res/layout/activity_other.xml",
+      //language=XML
+      """
+        <?xml version="1.0" encoding="utf-8"?>
+        <layout xmlns:android="http://schemas.android.com/apk/res/android">
+          <LinearLayout />
+        </layout>
+      """.trimIndent())
+    projectRule.waitForResourceRepositoryUpdates()
+    val newScope = enlarger.getAdditionalResolveScope(facet)!!
+    assertThat(newScope).isNotSameAs(scope)
+    assertThat(moduleCache.bindingLayoutGroups.map { it.mainLayout.qualifiedClassName })
+      .containsExactly("test.db.databinding.ActivityMainBinding", "test.db.databinding.ActivityOtherBinding")
+    moduleCache.bindingLayoutGroups.forEach { group ->
+      moduleCache.getLightBindingClasses(group).forEach { bindingClass ->
+        assertThat(PsiSearchScopeUtil.isInScope(newScope, bindingClass)).isTrue()
+      }
+    }
+    // The classes of the unchanged layout are reused.
+    assertThat(moduleCache.bindingLayoutGroups.flatMap { moduleCache.getLightBindingClasses(it) }).containsAtLeastElementsIn(bindingClasses)
+  }
+}
@@ -108,6 +108,11 @@ public class Scene implements SelectionListener, Disposable {
   public static final int IMMEDIATE_LAYOUT = 1;
   public static final int ANIMATED_LAYOUT = 2;
   private long myDisplayListVersion = 1;
+  /**
+   * Version of the content drawn by the components of this scene. Cached component layers generated for an older version are
+   * discarded by the {@link com.android.tools.idea.common.scene.decorator.SceneDecorator}.
+   */
+  private long myCachedLayersVersion = 1;
   private Target myOverTarget;
   private Target mySnapTarget;
   private SceneComponent myCurrentComponent;
@@ -350,6 +355,7 @@ public class Scene implements SelectionListener, Disposable {
    */
   public void removeComponent(@NotNull SceneComponent component) {
     component.removeFromParent();
+    component.invalidateCachedLayers();
     mySceneComponents.remove(component.getNlComponent(), component);
     needsRebuildList();
   }
@@ -1086,6 +1092,19 @@ public class Scene implements SelectionListener, Disposable {
     myDisplayListVersion++;
   }
 
+  public long getCachedLayersVersion() {
+    return myCachedLayersVersion;
+  }
+
+  /**
+   * Invalidates the draw commands cached by every {@link SceneComponent} of this scene. This must be called when the underlying
+   * model changes in a way that is not reflected by the component bounds or draw state (e.g. attribute changes).
+   */
+  public void invalidateCachedLayers() {
+    myCachedLayersVersion++;
+    needsRebuildList();
+  }
+
   //endregion
   /////////////////////////////////////////////////////////////////////////////
 
@@ -21,6 +21,7 @@ import com.android.tools.idea.common.model.Coordinates;
 import com.android.tools.idea.common.model.NlComponent;
 import com.android.tools.idea.common.scene.decorator.SceneDecorator;
 import com.android.tools.idea.common.scene.draw.DisplayList;
+import com.android.tools.idea.common.scene.draw.DrawCommand;
 import com.android.tools.idea.common.scene.target.CommonDragTarget;
 import com.android.tools.idea.common.scene.target.Target;
 import com.android.tools.idea.flags.StudioFlags;
@@ -35,6 +36,7 @@ import java.awt.geom.Rectangle2D;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.WeakHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import org.intellij.lang.annotations.JdkConstants;
 import org.jetbrains.annotations.NotNull;
@@ -98,6 +100,22 @@ public class SceneComponent {
 
   @Nullable private Notch.Provider myNotchProvider = null;
 
+  /**
+   * Draw commands generated by the {@link SceneDecorator} for this component's own layer (background, content and frame), per
+   * {@link SceneContext}. An entry is reused while its key stays equal to the key computed for the current repaint.
+   */
+  private final WeakHashMap<SceneContext, CachedLayer> myCachedLayers = new WeakHashMap<>();
+
+  private static final class CachedLayer {
+    @NotNull final Object key;
+    @NotNull final List<DrawCommand> commands;
+
+    CachedLayer(@NotNull Object key, @NotNull List<DrawCommand> commands) {
+      this.key = key;
+      this.commands = commands;
+    }
+  }
+
   @AndroidDpCoordinate
   public int getCenterX() {
     return myCurrentLeft + (myCurrentRight - myCurrentLeft) / 2;
@@ -787,6 +805,31 @@ public class SceneComponent {
     myDecorator.buildList(list, time, sceneContext, this);
   }
 
+  /**
+   * Returns the draw commands cached for this component's own layer in the given {@link SceneContext} if they were generated for
+   * the given {@code key}, null otherwise.
+   */
+  @Nullable
+  public List<DrawCommand> getCachedLayerCommands(@NotNull SceneContext sceneContext, @NotNull Object key) {
+    CachedLayer layer = myCachedLayers.get(sceneContext);
+    return layer != null && layer.key.equals(key) ? layer.commands : null;
+  }
+
+  /**
+   * Stores the draw commands generated for this component's own layer so they can be reused by the next
+   * {@link #buildDisplayList(long, DisplayList, SceneContext)} call in the same {@link SceneContext} with an equal {@code key}.
+   */
+  public void setCachedLayerCommands(@NotNull SceneContext sceneContext, @NotNull Object key, @NotNull List<DrawCommand> commands) {
+    myCachedLayers.put(sceneContext, new CachedLayer(key, commands));
+  }
+
+  /**
+   * Discards the cached layers of this component so they will be regenerated on the next display list build.
+   */
+  public void invalidateCachedLayers() {
+    myCachedLayers.clear();
+  }
+
   //endregion
   /////////////////////////////////////////////////////////////////////////////
 
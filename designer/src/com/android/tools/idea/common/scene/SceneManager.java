@@ -224,7 +224,7 @@ abstract public class SceneManager implements Disposable, ResourceNotificationMa
     oldComponents.removeIf(component -> component instanceof TemporarySceneComponent);
     oldComponents.forEach(scene::removeComponent);
 
-    scene.needsRebuildList();
+    scene.invalidateCachedLayers();
   }
 
   @NotNull
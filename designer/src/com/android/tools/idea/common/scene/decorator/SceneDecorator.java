@@ -15,14 +15,20 @@
  */
 package com.android.tools.idea.common.scene.decorator;
 
+import com.android.tools.adtui.common.SwingCoordinate;
 import com.android.tools.idea.common.scene.SceneComponent;
 import com.android.tools.idea.common.scene.SceneContext;
+import com.android.tools.idea.common.scene.draw.ColorSet;
 import com.android.tools.idea.common.scene.draw.DisplayList;
+import com.android.tools.idea.common.scene.draw.DrawCommand;
 import com.android.tools.idea.common.scene.draw.DrawComponentBackground;
 import com.android.tools.idea.common.scene.draw.DrawComponentFrame;
+import com.android.tools.idea.flags.StudioFlags;
 import com.android.tools.idea.uibuilder.scene.decorator.DecoratorUtilities;
+import com.google.common.collect.ImmutableList;
 import java.awt.Rectangle;
 import java.util.List;
+import java.util.Objects;
 import org.jetbrains.annotations.NotNull;
 
 /**
@@ -54,7 +60,7 @@ public class SceneDecorator {
    */
   public void buildList(@NotNull DisplayList list, long time, @NotNull SceneContext sceneContext, @NotNull SceneComponent component) {
     if (!component.isSelected() && component.isHighlighted()) {
-      buildListComponent(list, time, sceneContext, component);
+      buildCachedListComponent(list, time, sceneContext, component);
       buildListChildren(list, time, sceneContext, component);
       return;
     }
@@ -64,11 +70,44 @@ public class SceneDecorator {
       buildListChildren(list, time, sceneContext, component);
       return;
     }
-    buildListComponent(list, time, sceneContext, component);
+    buildCachedListComponent(list, time, sceneContext, component);
     buildListTargets(list, time, sceneContext, component);
     buildListChildren(list, time, sceneContext, component);
   }
 
+  /**
+   * Returns true if the commands built by {@link #buildListComponent} only depend on the component state captured by
+   * {@link LayerKey} and on the model, so they can be reused by {@link #buildCachedListComponent}. Decorators drawing anything else,
+   * e.g. other components, the hover state of targets, client properties or images loaded asynchronously, must not opt in.
+   */
+  protected boolean isComponentLayerCacheable() {
+    return false;
+  }
+
+  /**
+   * Adds the commands built by {@link #buildListComponent} to the list, reusing the commands generated on a previous build when
+   * nothing that affects them has changed since. Targets and children are not cached since they depend on the interaction state.
+   */
+  protected final void buildCachedListComponent(@NotNull DisplayList list,
+                                                long time,
+                                                @NotNull SceneContext sceneContext,
+                                                @NotNull SceneComponent component) {
+    if (!StudioFlags.NELE_SCENE_LAYER_CACHE.get() || !isComponentLayerCacheable()) {
+      buildListComponent(list, time, sceneContext, component);
+      return;
+    }
+    LayerKey key = new LayerKey(this, time, sceneContext, component);
+    List<DrawCommand> cached = component.getCachedLayerCommands(sceneContext, key);
+    if (cached != null) {
+      list.addAll(cached);
+      return;
+    }
+    int start = list.getCommands().size();
+    buildListComponent(list, time, sceneContext, component);
+    List<DrawCommand> commands = list.getCommands();
+    component.setCachedLayerCommands(sceneContext, key, ImmutableList.copyOf(commands.subList(start, commands.size())));
+  }
+
   public void buildListComponent(@NotNull DisplayList list,
                                  long time,
                                  @NotNull SceneContext sceneContext,
@@ -147,4 +186,71 @@ public class SceneDecorator {
                                   @NotNull SceneComponent component) {
     component.getTargets().forEach(target -> target.render(list, sceneContext));
   }
+
+  /**
+   * Snapshot of everything the component layer built by {@link #buildListComponent} depends on. Changes to the model that are not
+   * captured here are covered by {@link com.android.tools.idea.common.scene.Scene#getCachedLayersVersion()}.
+   */
+  private static final class LayerKey {
+    private final SceneDecorator myDecorator;
+    private final long myCachedLayersVersion;
+    private final Rectangle myRect = new Rectangle();
+    private final Rectangle myDrawRect = new Rectangle();
+    private final SceneComponent.DrawState myDrawState;
+    private final boolean mySelected;
+    private final boolean myToolLocked;
+    private final boolean myDragging;
+    private final Integer myTryingToConnectState;
+    private final ColorSet myColorSet;
+    private final boolean myShowOnlySelection;
+    private final double myScale;
+    @SwingCoordinate private final int mySwingOriginX;
+    @SwingCoordinate private final int mySwingOriginY;
+    @SwingCoordinate private final int mySwingUnit;
+
+    LayerKey(@NotNull SceneDecorator decorator, long time, @NotNull SceneContext sceneContext, @NotNull SceneComponent component) {
+      myDecorator = decorator;
+      myCachedLayersVersion = component.getScene().getCachedLayersVersion();
+      component.fillRect(myRect);
+      component.fillDrawRect(time, myDrawRect);
+      myDrawState = component.getDrawState();
+      mySelected = component.isSelected();
+      myToolLocked = component.isToolLocked();
+      myDragging = component.isDragging();
+      myTryingToConnectState = DecoratorUtilities.getTryingToConnectState(component.getAuthoritativeNlComponent());
+      myColorSet = sceneContext.getColorSet();
+      myShowOnlySelection = sceneContext.showOnlySelection();
+      myScale = sceneContext.getScale();
+      mySwingOriginX = sceneContext.getSwingXDip(0);
+      mySwingOriginY = sceneContext.getSwingYDip(0);
+      mySwingUnit = sceneContext.getSwingDimensionDip(1000);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof LayerKey)) return false;
+      LayerKey other = (LayerKey)o;
+      return myDecorator == other.myDecorator &&
+             myCachedLayersVersion == other.myCachedLayersVersion &&
+             myRect.equals(other.myRect) &&
+             myDrawRect.equals(other.myDrawRect) &&
+             myDrawState == other.myDrawState &&
+             mySelected == other.mySelected &&
+             myToolLocked == other.myToolLocked &&
+             myDragging == other.myDragging &&
+             Objects.equals(myTryingToConnectState, other.myTryingToConnectState) &&
+             myColorSet == other.myColorSet &&
+             myShowOnlySelection == other.myShowOnlySelection &&
+             Double.compare(myScale, other.myScale) == 0 &&
+             mySwingOriginX == other.mySwingOriginX &&
+             mySwingOriginY == other.mySwingOriginY &&
+             mySwingUnit == other.mySwingUnit;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(myCachedLayersVersion, myRect, myDrawRect, myDrawState, mySelected, myScale, mySwingOriginX, mySwingOriginY);
+    }
+  }
 }
@@ -118,6 +118,11 @@ public class ButtonDecorator extends SceneDecorator {
     }
   }
 
+  @Override
+  protected boolean isComponentLayerCacheable() {
+    return true;
+  }
+
   @Override
   public void addContent(@NotNull DisplayList list, long time, @NotNull SceneContext sceneContext, @NotNull SceneComponent component) {
     super.addContent(list, time, sceneContext, component);
@@ -127,6 +127,11 @@ public class CheckBoxDecorator extends SceneDecorator {
     }
   }
 
+  @Override
+  protected boolean isComponentLayerCacheable() {
+    return true;
+  }
+
   @Override
   public void addContent(@NotNull DisplayList list, long time, @NotNull SceneContext sceneContext, @NotNull SceneComponent component) {
     super.addContent(list, time, sceneContext, component);
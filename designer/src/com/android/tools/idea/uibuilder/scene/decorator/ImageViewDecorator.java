@@ -150,6 +150,11 @@ public class ImageViewDecorator extends SceneDecorator {
     }
   }
 
+  @Override
+  protected boolean isComponentLayerCacheable() {
+    return true;
+  }
+
   @Override
   public void addContent(@NotNull DisplayList list, long time, @NotNull SceneContext sceneContext, @NotNull SceneComponent component) {
     Rectangle rect = new Rectangle();
@@ -60,6 +60,11 @@ public class ProgressBarDecorator extends SceneDecorator {
     }
   }
 
+  @Override
+  protected boolean isComponentLayerCacheable() {
+    return true;
+  }
+
   @Override
   public void addContent(@NotNull DisplayList list, long time, @NotNull SceneContext sceneContext, @NotNull SceneComponent component) {
     Rectangle rect = new Rectangle();
@@ -35,6 +35,12 @@ import java.awt.*;
  */
 public class TextViewDecorator extends SceneDecorator {
   private static final String DEFAULT_DIM = "14sp";
+
+  @Override
+  protected boolean isComponentLayerCacheable() {
+    return true;
+  }
+
   @Override
   public void addContent(@NotNull DisplayList list, long time, @NotNull SceneContext sceneContext, @NotNull SceneComponent component) {
     @AndroidDpCoordinate Rectangle rect = new Rectangle();
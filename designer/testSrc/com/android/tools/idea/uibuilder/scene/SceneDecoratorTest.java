@@ -24,12 +24,35 @@ import static com.android.SdkConstants.SWITCH;
 
 import com.android.AndroidXConstants;
 import com.android.tools.idea.common.fixtures.ModelBuilder;
+import com.android.tools.idea.common.scene.SceneComponent;
 import com.android.tools.idea.common.scene.SceneContext;
+import com.android.tools.idea.common.scene.decorator.SceneDecorator;
 import com.android.tools.idea.common.scene.draw.DisplayList;
+import com.android.tools.idea.common.scene.draw.DrawCommand;
+import com.android.tools.idea.flags.StudioFlags;
+import com.android.tools.idea.uibuilder.scene.decorator.ProgressBarDecorator;
 import java.awt.image.BufferedImage;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
 import org.jetbrains.annotations.NotNull;
 
 public class SceneDecoratorTest extends SceneTest {
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    StudioFlags.NELE_SCENE_LAYER_CACHE.override(true);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      StudioFlags.NELE_SCENE_LAYER_CACHE.clearOverride();
+    } finally {
+      super.tearDown();
+    }
+  }
+
   @Override
   @NotNull
   public ModelBuilder createModel() {
@@ -118,4 +141,61 @@ public class SceneDecoratorTest extends SceneTest {
     assertEquals(44, disp.getCommands().size());
     disp.clear();
   }
-}
\ No newline at end of file
+
+  public void testCachedLayersAreReused() {
+    DisplayList first = new DisplayList();
+    myScene.buildDisplayList(first, 0, SceneContext.get());
+    DisplayList second = new DisplayList();
+    myScene.buildDisplayList(second, 0, SceneContext.get());
+    assertEquals(first.serialize(), second.serialize());
+    assertTrue(countSharedCommands(first, second) > 0);
+
+    SceneComponent component = myScene.getSceneComponent("a");
+    component.setPosition(component.getDrawX() + 10, component.getDrawY());
+    DisplayList third = new DisplayList();
+    myScene.buildDisplayList(third, 0, SceneContext.get());
+    assertFalse(second.serialize().equals(third.serialize()));
+
+    myScene.invalidateCachedLayers();
+    DisplayList fourth = new DisplayList();
+    myScene.buildDisplayList(fourth, 0, SceneContext.get());
+    assertEquals(third.serialize(), fourth.serialize());
+    assertEquals(0, countSharedCommands(third, fourth));
+  }
+
+  public void testOnlyCacheableDecoratorsReuseLayers() {
+    SceneComponent component = myScene.getSceneComponent("a");
+    SceneDecorator cacheable = new ProgressBarDecorator();
+    SceneDecorator notCacheable = new SceneDecorator();
+
+    DisplayList first = new DisplayList();
+    cacheable.buildList(first, 0, SceneContext.get(), component);
+    DisplayList second = new DisplayList();
+    cacheable.buildList(second, 0, SceneContext.get(), component);
+    assertTrue(countSharedCommands(first, second) > 0);
+
+    // Decorators that did not opt in may draw state that is not part of the cache key, so their commands are always rebuilt.
+    DisplayList third = new DisplayList();
+    notCacheable.buildList(third, 0, SceneContext.get(), component);
+    DisplayList fourth = new DisplayList();
+    notCacheable.buildList(fourth, 0, SceneContext.get(), component);
+    assertEquals(third.serialize(), fourth.serialize());
+    assertEquals(0, countSharedCommands(third, fourth));
+  }
+
+  public void testLayersAreNotCachedWhenFlagIsDisabled() {
+    StudioFlags.NELE_SCENE_LAYER_CACHE.override(false);
+    DisplayList first = new DisplayList();
+    myScene.buildDisplayList(first, 0, SceneContext.get());
+    DisplayList second = new DisplayList();
+    myScene.buildDisplayList(second, 0, SceneContext.get());
+    assertEquals(first.serialize(), second.serialize());
+    assertEquals(0, countSharedCommands(first, second));
+  }
+
+  private static int countSharedCommands(@NotNull DisplayList a, @NotNull DisplayList b) {
+    Set<DrawCommand> commands = Collections.newSetFromMap(new IdentityHashMap<>());
+    commands.addAll(a.getCommands());
+    return (int)b.getCommands().stream().filter(commands::contains).count();
+  }
+}
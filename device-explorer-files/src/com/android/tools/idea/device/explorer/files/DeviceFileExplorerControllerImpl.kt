@@ -30,6 +30,7 @@ import com.android.tools.idea.device.explorer.files.fs.DownloadProgress
 import com.android.tools.idea.device.explorer.files.fs.FileTransferProgress
 import com.android.tools.idea.device.explorer.files.ui.TreeUtil
 import com.android.tools.idea.device.explorer.files.ui.TreeUtil.UpdateChildrenOps
+import com.android.tools.idea.flags.StudioFlags
 import com.android.utils.FileUtils
 import com.google.common.base.Stopwatch
 import com.google.common.base.Strings.emptyToNull
@@ -58,9 +59,11 @@ import com.intellij.ui.UIBundle
 import com.intellij.util.Alarm
 import com.intellij.util.ArrayUtil
 import com.intellij.util.ExceptionUtil
+import com.intellij.util.concurrency.AppExecutorUtil
 import kotlinx.coroutines.CancellationException
 import kotlinx.coroutines.CompletableDeferred
 import kotlinx.coroutines.Job
+import kotlinx.coroutines.asCoroutineDispatcher
 import kotlinx.coroutines.launch
 import kotlinx.coroutines.plus
 import kotlinx.coroutines.time.withTimeout
@@ -109,6 +112,9 @@ class DeviceFileExplorerControllerImpl(
   private val transferringNodesAlarms = Alarm()
   private val loadingChildrenAlarms = Alarm()
   private var longRunningOperationTracker: LongRunningOperationTracker? = null
+  private val prefetchDispatcher = AppExecutorUtil.createBoundedApplicationPoolExecutor("Device Explorer Prefetch", 1)
+    .asCoroutineDispatcher()
+  private var prefetchJob: Job? = null
 
   init {
     Disposer.register(project, this)
@@ -162,7 +168,20 @@ class DeviceFileExplorerControllerImpl(
     }
   }
 
+  private fun getFileTreeCache(): DeviceFileTreeCache? =
+    if (StudioFlags.DEVICE_EXPLORER_FILE_TREE_CACHE.get()) DeviceFileTreeCache.getInstance() else null
+
+  /**
+   * Marks the children of [node] to be listed again from the device the next time they are loaded.
+   */
+  private fun invalidateNodeChildren(node: DeviceFileEntryNode) {
+    node.isLoaded = false
+    getFileTreeCache()?.invalidate(node.entry)
+  }
+
   private fun cancelOrMoveToBackgroundPendingOperations() {
+    prefetchJob?.cancel()
+    prefetchJob = null
     loadingNodesAlarms.cancelAllRequests()
     loadingChildrenAlarms.cancelAllRequests()
     transferringNodesAlarms.cancelAllRequests()
@@ -605,7 +624,7 @@ class DeviceFileExplorerControllerImpl(
         view.startTreeBusyIndicator()
         try {
           for (node in directoryNodes) {
-            node.isLoaded = false
+            invalidateNodeChildren(node)
             try {
               loadNodeChildren(node)
             } catch (ignored: Exception) {
@@ -663,7 +682,7 @@ class DeviceFileExplorerControllerImpl(
         // Refresh the parent node(s) to remove the deleted files
         val parentsToRefresh = nodes.mapNotNull { DeviceFileEntryNode.fromNode(it.parent) }.toSet()
         for (parent in parentsToRefresh) {
-          parent.isLoaded = false
+          invalidateNodeChildren(parent)
           try {
             loadNodeChildren(parent)
           } catch (ignored: Exception) {
@@ -769,7 +788,7 @@ class DeviceFileExplorerControllerImpl(
           }
 
           // Refresh the parent node to show the newly created file
-          parentTreeNode.isLoaded = false
+          invalidateNodeChildren(parentTreeNode)
           loadNodeChildren(parentTreeNode)
           view.expandNode(parentTreeNode)
           return
@@ -857,7 +876,7 @@ class DeviceFileExplorerControllerImpl(
       files.forEach { uploadVirtualFile(parentNode, it, tracker) }
 
       // Refresh children nodes
-      parentNode.isLoaded = false
+      invalidateNodeChildren(parentNode)
       loadNodeChildren(parentNode)
     }
 
@@ -895,7 +914,7 @@ class DeviceFileExplorerControllerImpl(
         } catch (t: Throwable) { t }
 
       // Refresh node entries
-      parentNode.isLoaded = false
+      invalidateNodeChildren(parentNode)
       try {
         loadNodeChildren(parentNode)
       } catch (t: Throwable) {
@@ -978,7 +997,7 @@ class DeviceFileExplorerControllerImpl(
               // Start loading children
               if (currentBytes > 0) {
                 if (uploadState.loadChildrenJob == null) {
-                  parentNode.isLoaded = false
+                  invalidateNodeChildren(parentNode)
                   uploadState.loadChildrenJob = scope.launch { loadNodeChildren(parentNode) }
                 }
               }
@@ -1218,41 +1237,39 @@ class DeviceFileExplorerControllerImpl(
       if (fileSystem != node.entry.fileSystem) {
         return
       }
+      // Show the last known entries right away, and only list them again if they are not fresh
+      val fileTreeCache = getFileTreeCache()
+      val cachedListing = fileTreeCache?.getListing(node.entry)
+      var cachedSymlinkNodes = emptyList<DeviceFileEntryNode>()
+      if (fileTreeCache != null && cachedListing != null) {
+        cachedSymlinkNodes = showNodeChildren(treeModel, treeSelectionModel, node, cachedListing.entries)
+        if (fileTreeCache.isFresh(node.entry, cachedListing)) {
+          querySymbolicLinks(cachedSymlinkNodes, treeModel)
+          prefetchNodeChildren(fileTreeCache, node)
+          return
+        }
+      }
+
       val showLoadingNode = Runnable { showLoadingNode(treeModel, node) }
-      loadingNodesAlarms.addRequest(showLoadingNode, showLoadingNodeDelayMillis)
+      if (cachedListing == null) {
+        loadingNodesAlarms.addRequest(showLoadingNode, showLoadingNodeDelayMillis)
+      }
       startLoadChildren(node)
       try {
-        val entries = node.entry.entries()
+        val entries = fileTreeCache?.listEntries(node.entry) ?: node.entry.entries()
         if (treeModel != getTreeModel()) {
           // We switched to another device, ignore this callback
           return
         }
-
-        // Save selection
-        val oldSelections = treeSelectionModel.selectionPaths
-
-        // Collect existing entries that have the "isLinkToDirectory" property set
-        val isLinkToDirectory = node.childEntryNodes
-          .filter { it.isSymbolicLinkToDirectory }
-          .map { it.entry.name }
-          .toSet()
-
-        // Sort new entries according to presentation sort order
-        val comparator = NodeSorting.CustomComparator<DeviceFileEntry>(
-          nameProvider = { it.name },
-          isDirectory = {
-            it.isDirectory || isLinkToDirectory.contains(it.name)
-          })
-
-        val addedNodes = updateChildrenNodes(treeModel, node, entries.sortedWith(comparator))
-        LOGGER.debug("Number of nodes added: ${addedNodes.size}")
         loadingNodesAlarms.cancelRequest(showLoadingNode)
-
-        // Restore selection
-        restoreTreeSelection(treeSelectionModel, oldSelections, node)
-        val symlinkNodes = addedNodes.filter { it.entry.isSymbolicLink }
-        querySymbolicLinks(symlinkNodes, treeModel)
+        val symlinkNodes = showNodeChildren(treeModel, treeSelectionModel, node, entries)
+        // Cached nodes that are still there have not been queried yet
+        querySymbolicLinks(cachedSymlinkNodes.filter { it.parent == node } + symlinkNodes, treeModel)
+        if (fileTreeCache != null) {
+          prefetchNodeChildren(fileTreeCache, node)
+        }
       } catch (t: Throwable) {
+        fileTreeCache?.invalidate(node.entry)
         val message = emptyToNull(ExceptionUtil.getRootCause(t).message)
                       ?: "Unable to list entries of directory ${getUserFacingNodeName(node)}"
         node.removeAllChildren()
@@ -1266,6 +1283,52 @@ class DeviceFileExplorerControllerImpl(
       }
     }
 
+    /**
+     * Updates the children of [node] to show [entries], and returns the symbolic link nodes that were added.
+     */
+    private fun showNodeChildren(
+      treeModel: DefaultTreeModel,
+      treeSelectionModel: DefaultTreeSelectionModel,
+      node: DeviceFileEntryNode,
+      entries: List<DeviceFileEntry>
+    ): List<DeviceFileEntryNode> {
+      // Save selection
+      val oldSelections = treeSelectionModel.selectionPaths
+
+      // Collect existing entries that have the "isLinkToDirectory" property set
+      val isLinkToDirectory = node.childEntryNodes
+        .filter { it.isSymbolicLinkToDirectory }
+        .map { it.entry.name }
+        .toSet()
+
+      // Sort new entries according to presentation sort order
+      val comparator = NodeSorting.CustomComparator<DeviceFileEntry>(
+        nameProvider = { it.name },
+        isDirectory = {
+          it.isDirectory || isLinkToDirectory.contains(it.name)
+        })
+
+      val addedNodes = updateChildrenNodes(treeModel, node, entries.sortedWith(comparator))
+      LOGGER.debug("Number of nodes added: ${addedNodes.size}")
+
+      // Restore selection
+      restoreTreeSelection(treeSelectionModel, oldSelections, node)
+      return addedNodes.filter { it.entry.isSymbolicLink }
+    }
+
+    /**
+     * Lists the subdirectories of [node] in the background, as they are likely to be expanded next.
+     */
+    private fun prefetchNodeChildren(fileTreeCache: DeviceFileTreeCache, node: DeviceFileEntryNode) {
+      val directories = node.childEntryNodes
+        .filter { it.entry.isDirectory && !it.isLoaded }
+        .map { it.entry }
+      prefetchJob?.cancel()
+      prefetchJob = node.entry.fileSystem.scope.launch(prefetchDispatcher) {
+        fileTreeCache.prefetch(directories)
+      }
+    }
+
     private fun updateChildrenNodes(
       treeModel: DefaultTreeModel,
       parentNode: DeviceFileEntryNode,
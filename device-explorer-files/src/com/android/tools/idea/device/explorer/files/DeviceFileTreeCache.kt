@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.device.explorer.files
+
+import com.android.tools.idea.device.explorer.files.adbimpl.AdbPathUtil
+import com.android.tools.idea.device.explorer.files.fs.DeviceFileEntry
+import com.android.tools.idea.device.explorer.files.fs.DeviceFileSystem
+import com.google.common.cache.Cache
+import com.google.common.cache.CacheBuilder
+import com.intellij.openapi.components.Service
+import com.intellij.openapi.components.service
+import com.intellij.openapi.diagnostic.logger
+import kotlinx.coroutines.CancellationException
+import org.jetbrains.annotations.VisibleForTesting
+import java.util.concurrent.TimeUnit
+
+/**
+ * Remembers the directory listings of the devices shown in the Device Explorer, so that expanding a directory,
+ * refreshing the tree or selecting a device again shows the last known entries right away, while they are
+ * listed again from the device (stale-while-revalidate).
+ *
+ * Each [Listing] is stamped with the time it was made and with the modification date of its directory. A listing
+ * is fresh, and does not need to be listed again, if it is recent and the directory has not been modified since.
+ *
+ * Listings are tied to the [DeviceFileSystem] instance they come from, as their entries are only valid for it:
+ * a device that reconnects starts with an empty cache.
+ */
+@Service
+class DeviceFileTreeCache {
+  @VisibleForTesting
+  var freshnessMillis = FRESHNESS_MILLIS
+
+  @VisibleForTesting
+  var clock: () -> Long = System::currentTimeMillis
+
+  /**
+   * The entries of a directory, as listed at [listedAtMillis], when the directory was last modified at
+   * [directoryModified] (see [DeviceFileEntry.lastModifiedDate]).
+   */
+  class Listing(val entries: List<DeviceFileEntry>, val listedAtMillis: Long, val directoryModified: String)
+
+  private class DeviceListings(val fileSystem: DeviceFileSystem) {
+    val listings: Cache<String, Listing> = CacheBuilder.newBuilder().maximumSize(MAX_DIRECTORIES_PER_DEVICE.toLong()).build()
+
+    /**
+     * Incremented by [invalidate], so that a listing which was in flight when its directory was invalidated
+     * is not remembered. Guarded by this [DeviceListings].
+     */
+    var generation = 0L
+  }
+
+  private val devices: Cache<String, DeviceListings> = CacheBuilder.newBuilder()
+    .maximumSize(MAX_DEVICES.toLong())
+    .expireAfterAccess(DEVICE_EXPIRATION_MINUTES, TimeUnit.MINUTES)
+    .build()
+
+  /**
+   * Returns the last known listing of [directory], or `null` if it has never been listed.
+   */
+  fun getListing(directory: DeviceFileEntry): Listing? =
+    getDeviceListings(directory.fileSystem, false)?.listings?.getIfPresent(directory.fullPath)
+
+  /**
+   * Returns `true` if [listing] of [directory] is recent enough to be shown without listing the directory again.
+   */
+  fun isFresh(directory: DeviceFileEntry, listing: Listing): Boolean =
+    clock() - listing.listedAtMillis < freshnessMillis && listing.directoryModified == directory.lastModifiedDate.text
+
+  /**
+   * Lists the entries of [directory] from the device, and remembers them.
+   */
+  suspend fun listEntries(directory: DeviceFileEntry): List<DeviceFileEntry> {
+    val deviceListings = getDeviceListings(directory.fileSystem, true)
+    val generation = deviceListings?.let { synchronized(it) { it.generation } }
+    val listedAtMillis = clock()
+    val entries = directory.entries()
+    if (deviceListings != null) {
+      synchronized(deviceListings) {
+        if (deviceListings.generation == generation) {
+          deviceListings.listings.put(directory.fullPath, Listing(entries, listedAtMillis, directory.lastModifiedDate.text))
+        }
+      }
+    }
+    return entries
+  }
+
+  /**
+   * Lists the [directories] that don't have a fresh listing yet, one at a time, so that they are likely to be
+   * shown right away when they are expanded. Errors are ignored, the directories are listed again when expanded.
+   */
+  suspend fun prefetch(directories: List<DeviceFileEntry>) {
+    for (directory in directories.take(MAX_PREFETCHED_DIRECTORIES)) {
+      val listing = getListing(directory)
+      if (listing != null && isFresh(directory, listing)) {
+        continue
+      }
+      try {
+        listEntries(directory)
+      }
+      catch (e: CancellationException) {
+        throw e
+      }
+      catch (t: Throwable) {
+        LOGGER.debug("Error prefetching entries of directory \"${directory.fullPath}\"", t)
+      }
+    }
+  }
+
+  /**
+   * Forgets the listings of [directory] and of all its descendants, e.g. after they have been modified.
+   * Listings of the device that are in flight are not remembered either.
+   */
+  fun invalidate(directory: DeviceFileEntry) {
+    val deviceListings = getDeviceListings(directory.fileSystem, false) ?: return
+    val path = directory.fullPath
+    val descendantsPrefix = if (path.endsWith(AdbPathUtil.FILE_SEPARATOR)) path else path + AdbPathUtil.FILE_SEPARATOR
+    synchronized(deviceListings) {
+      deviceListings.generation++
+      val listings = deviceListings.listings
+      listings.invalidate(path)
+      listings.invalidateAll(listings.asMap().keys.filter { it.startsWith(descendantsPrefix) })
+    }
+  }
+
+  private fun getDeviceListings(fileSystem: DeviceFileSystem, create: Boolean): DeviceListings? {
+    val deviceListings = devices.getIfPresent(fileSystem.deviceSerialNumber)
+    if (deviceListings?.fileSystem === fileSystem) {
+      return deviceListings
+    }
+    if (!create) {
+      return null
+    }
+    // Either the first listing of the device, or the device reconnected and the previous listings are obsolete
+    return DeviceListings(fileSystem).also { devices.put(fileSystem.deviceSerialNumber, it) }
+  }
+
+  companion object {
+    private val LOGGER = logger<DeviceFileTreeCache>()
+
+    private const val FRESHNESS_MILLIS = 30_000L
+    private const val MAX_DIRECTORIES_PER_DEVICE = 2_000
+    private const val MAX_DEVICES = 8
+    private const val DEVICE_EXPIRATION_MINUTES = 30L
+
+    @VisibleForTesting
+    const val MAX_PREFETCHED_DIRECTORIES = 10
+
+    @JvmStatic
+    fun getInstance(): DeviceFileTreeCache = service()
+  }
+}
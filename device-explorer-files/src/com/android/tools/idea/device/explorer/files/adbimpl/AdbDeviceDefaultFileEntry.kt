@@ -22,11 +22,15 @@ import java.nio.file.Path
 /**
  * A [AdbDeviceFileEntry] that goes through the file system mounting points (see [AdbDeviceFileSystem.resolveMountPoint])
  * for its file operations.
+ *
+ * When the entry comes from a directory listing, [siblingLinkResolver] resolves the symbolic links of the whole
+ * listing at once.
  */
 class AdbDeviceDefaultFileEntry(
   device: AdbDeviceFileSystem,
   entry: AdbFileListingEntry,
-  parent: AdbDeviceFileEntry?
+  parent: AdbDeviceFileEntry?,
+  private val siblingLinkResolver: AdbDirectoryLinkResolver? = null
 ) : AdbDeviceFileEntry(device, entry, parent) {
   override suspend fun entries(): List<DeviceFileEntry> =
     fileSystem.resolveMountPoint(this).entries()
@@ -41,7 +45,7 @@ class AdbDeviceDefaultFileEntry(
     fileSystem.resolveMountPoint(this).createNewDirectory(directoryName)
 
   override suspend fun isSymbolicLinkToDirectory(): Boolean =
-    fileSystem.resolveMountPoint(this).isSymbolicLinkToDirectory()
+    siblingLinkResolver?.isDirectoryLink(myEntry) ?: fileSystem.resolveMountPoint(this).isSymbolicLinkToDirectory()
 
   override suspend fun downloadFile(localPath: Path, progress: FileTransferProgress) =
     fileSystem.resolveMountPoint(this).downloadFile(localPath, progress)
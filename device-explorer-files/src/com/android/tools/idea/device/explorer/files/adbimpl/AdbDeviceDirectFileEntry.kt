@@ -37,8 +37,11 @@ class AdbDeviceDirectFileEntry(
   parent: AdbDeviceFileEntry?,
   private val myRunAs: String?
 ) : AdbDeviceFileEntry(device, entry, parent) {
-  override suspend fun entries(): List<DeviceFileEntry> =
-    fileSystem.adbFileListing.getChildrenRunAs(myEntry, myRunAs).map { AdbDeviceDefaultFileEntry(fileSystem, it, this) }
+  override suspend fun entries(): List<DeviceFileEntry> {
+    val children = fileSystem.adbFileListing.getChildrenRunAs(myEntry, myRunAs)
+    val linkResolver = AdbDirectoryLinkResolver(fileSystem.adbFileListing, children, myRunAs)
+    return children.map { AdbDeviceDefaultFileEntry(fileSystem, it, this, linkResolver) }
+  }
 
   override suspend fun delete() =
     if (isDirectory) {
@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.device.explorer.files.adbimpl
+
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+
+/**
+ * Determines which of the entries of a directory listing are symbolic links to directories.
+ *
+ * The first query resolves all the links of the listing at once (see [AdbFileListing.getDirectoryLinksRunAs]),
+ * so that expanding a directory with many links does not run one shell command per link.
+ */
+class AdbDirectoryLinkResolver(
+  private val fileListing: AdbFileListing,
+  private val entries: List<AdbFileListingEntry>,
+  private val runAs: String?
+) {
+  private val mutex = Mutex()
+  private var directoryLinks: Set<String>? = null
+
+  suspend fun isDirectoryLink(entry: AdbFileListingEntry): Boolean {
+    if (!entry.isSymbolicLink) {
+      return false
+    }
+    val links = mutex.withLock {
+      directoryLinks ?: fileListing.getDirectoryLinksRunAs(entries, runAs).also { directoryLinks = it }
+    }
+    return links.contains(entry.fullPath)
+  }
+}
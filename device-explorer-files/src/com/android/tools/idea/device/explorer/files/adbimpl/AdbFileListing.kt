@@ -97,6 +97,35 @@ class AdbFileListing(
     }
   }
 
+  /**
+   * Returns the full paths of the symbolic links of [entries] that point to a directory, running one shell command
+   * per batch of [DIRECTORY_LINKS_BATCH_SIZE] links instead of one per link as [isDirectoryLinkRunAs] does.
+   * Like [isDirectoryLink], this is a best effort process.
+   */
+  suspend fun getDirectoryLinksRunAs(
+    entries: List<AdbFileListingEntry>,
+    runAs: String?
+  ): Set<String> {
+    val links = entries.filter { it.isSymbolicLink }
+    if (links.isEmpty()) {
+      return emptySet()
+    }
+    return withContext(dispatcher) {
+      val result = HashSet<String>()
+      for (batch in links.chunked(DIRECTORY_LINKS_BATCH_SIZE)) {
+        // "test -d" follows the link, and fails if its target is not an accessible directory.
+        // Links are passed with a trailing "/", which is echoed back for the ones that point to a directory.
+        val command = getCommand(runAs, "for f in ") //$NON-NLS-1$
+        batch.forEach { command.withDirectoryEscapedPath(it.fullPath).withText(" ") }
+        command.withText("; do test -d \"\$f\" && echo \"\$f\"; done") //$NON-NLS-1$
+        val commandResult = myShellCommandsUtil.executeCommandNoErrorCheck(command.build())
+        val linksByOutputLine = batch.associateBy { it.fullPath + FileListingService.FILE_SEPARATOR }
+        commandResult.output.mapNotNullTo(result) { line -> linksByOutputLine[line]?.fullPath }
+      }
+      result
+    }
+  }
+
   private suspend fun getCommand(runAs: String?, text: String): AdbShellCommandBuilder {
     val command = AdbShellCommandBuilder()
     if (runAs != null) {
@@ -108,6 +137,8 @@ class AdbFileListing(
   }
 }
 
+private const val DIRECTORY_LINKS_BATCH_SIZE = 100
+
 private fun processLsOutputLine(line: String, escaping: Boolean, parentEntry: AdbFileListingEntry): AdbFileListingEntry? {
   // no need to handle empty lines.
   if (line.isEmpty()) {
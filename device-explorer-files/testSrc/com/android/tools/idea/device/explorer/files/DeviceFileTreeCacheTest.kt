@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.device.explorer.files
+
+import com.android.tools.idea.device.explorer.files.mocks.MockDeviceFileSystemService
+import com.google.common.truth.Truth.assertThat
+import com.google.common.util.concurrent.MoreExecutors.directExecutor
+import com.intellij.openapi.project.Project
+import kotlinx.coroutines.async
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.yield
+import org.junit.Test
+import org.mockito.Mockito.mock
+
+class DeviceFileTreeCacheTest {
+  private var now = 1_000L
+  private val cache = DeviceFileTreeCache().apply {
+    freshnessMillis = 100
+    clock = { now }
+  }
+  private val service = MockDeviceFileSystemService(mock(Project::class.java), directExecutor(), directExecutor())
+  private val device = service.addDevice("device")
+
+  @Test
+  fun listingsAreFreshUntilTheyAreTooOld(): Unit = runBlocking {
+    device.root.addDirectory("dir")
+    device.root.addFile("file")
+
+    val entries = cache.listEntries(device.root)
+
+    assertThat(entries.map { it.name }).containsExactly("dir", "file")
+    val listing = checkNotNull(cache.getListing(device.root))
+    assertThat(listing.entries).isEqualTo(entries)
+    assertThat(listing.listedAtMillis).isEqualTo(1_000L)
+    assertThat(cache.isFresh(device.root, listing)).isTrue()
+
+    now += 100
+    assertThat(cache.isFresh(device.root, listing)).isFalse()
+  }
+
+  @Test
+  fun listingsOfReconnectedDeviceAreDiscarded(): Unit = runBlocking {
+    device.root.addDirectory("dir")
+    cache.listEntries(device.root)
+
+    service.removeDevice(device)
+    val reconnectedDevice = service.addDevice("device")
+
+    assertThat(cache.getListing(reconnectedDevice.root)).isNull()
+    assertThat(cache.getListing(device.root)).isNotNull()
+    cache.listEntries(reconnectedDevice.root)
+    assertThat(cache.getListing(device.root)).isNull()
+  }
+
+  @Test
+  fun invalidateForgetsDescendants(): Unit = runBlocking {
+    val dir = device.root.addDirectory("dir")
+    val subDir = dir.addDirectory("sub")
+    val otherDir = device.root.addDirectory("dir2")
+    for (directory in listOf(device.root, dir, subDir, otherDir)) {
+      cache.listEntries(directory)
+    }
+
+    cache.invalidate(dir)
+
+    assertThat(cache.getListing(dir)).isNull()
+    assertThat(cache.getListing(subDir)).isNull()
+    assertThat(cache.getListing(device.root)).isNotNull()
+    assertThat(cache.getListing(otherDir)).isNotNull()
+  }
+
+  @Test
+  fun listingInFlightDuringInvalidateIsNotRemembered(): Unit = runBlocking {
+    val dir = device.root.addDirectory("dir")
+    dir.addFile("file")
+
+    val listing = async { cache.listEntries(dir) }
+    yield() // Let the listing start
+    cache.invalidate(dir)
+
+    assertThat(listing.await().map { it.name }).containsExactly("file")
+    assertThat(cache.getListing(dir)).isNull()
+
+    cache.listEntries(dir)
+    assertThat(cache.getListing(dir)).isNotNull()
+  }
+
+  @Test
+  fun prefetchListsDirectoriesThatAreNotFresh(): Unit = runBlocking {
+    val freshDir = device.root.addDirectory("fresh")
+    val staleDir = device.root.addDirectory("stale")
+    val failingDir = device.root.addDirectory("failing")
+    val newDir = device.root.addDirectory("new")
+    cache.listEntries(staleDir)
+    now += 100
+    cache.listEntries(freshDir)
+    val freshListing = cache.getListing(freshDir)
+    failingDir.getEntriesError = Exception("Error listing directory")
+
+    cache.prefetch(listOf(freshDir, staleDir, failingDir, newDir))
+
+    assertThat(cache.getListing(freshDir)).isSameAs(freshListing)
+    assertThat(cache.getListing(staleDir)?.listedAtMillis).isEqualTo(now)
+    assertThat(cache.getListing(failingDir)).isNull()
+    assertThat(cache.getListing(newDir)).isNotNull()
+  }
+}
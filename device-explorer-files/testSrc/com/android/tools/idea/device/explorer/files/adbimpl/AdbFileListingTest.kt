@@ -206,6 +206,23 @@ class AdbFileListingTest {
     assertDirectoryLink(fileListing, rootEntries, "vendor", true)
   }
 
+  @Test
+  fun test_Nexus7Api23_GetDirectoryLinks(): Unit = runBlocking {
+    // Prepare
+    TestDevices.NEXUS_7_API23.addCommands(commands)
+    commands.add("for f in /charger/ /d/ /etc/ /sdcard/ /tombstones/ /vendor/ ; do test -d \"\$f\" && echo \"\$f\"; done",
+                 "/d/\r\n/etc/\r\n/sdcard/\r\n/vendor/\r\n")
+    val fileListing = AdbFileListing(device, AdbDeviceCapabilities(scope, deviceName, device), dispatcher)
+
+    // Act
+    val root = fileListing.root
+    val rootEntries = fileListing.getChildren(root)
+    val directoryLinks = fileListing.getDirectoryLinksRunAs(rootEntries, null)
+
+    // Assert
+    assertThat(directoryLinks).containsExactly("/d", "/etc", "/sdcard", "/vendor")
+  }
+
   @Test
   fun test_EmulatorApi25_GetRoot(): Unit = runBlocking {
     // Prepare
@@ -53,6 +53,7 @@ import com.intellij.openapi.util.io.FileUtilRt;
 import com.intellij.openapi.vfs.VirtualFile;
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -187,6 +188,13 @@ public final class BuildModelContext {
     return getOrCreateBuildFile(file, file.getName(), isApplied);
   }
 
+  /**
+   * Loads the PSI of the given build files in parallel ahead of building their Dsl trees. See {@link GradleDslFileCache#preloadBuildFiles}.
+   */
+  public int preloadBuildFiles(@NotNull Collection<VirtualFile> files) {
+    return myFileCache.preloadBuildFiles(files);
+  }
+
   @NotNull
   public GradleSettingsFile getOrCreateSettingsFile(@NotNull VirtualFile settingsFile) {
     return myFileCache.getOrCreateSettingsFile(settingsFile, this);
@@ -32,7 +32,9 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
@@ -177,18 +179,21 @@ public class ProjectBuildModelImpl implements ProjectBuildModel {
     Set<String> modulePaths = settingsModel.modulePaths();
     Integer nModelsToConsider = nModelsSeen[0] + modulePaths.size();
 
-    allModels.addAll(modulePaths.stream().map((modulePath) -> {
-      GradleBuildModel model = null;
+    Map<String, VirtualFile> moduleBuildFiles = new HashMap<>();
+    for (String modulePath : modulePaths) {
       // This should have already been added above
-      if (!modulePath.equals(":")) {
-        File moduleDir = settingsModel.moduleDirectory(modulePath);
-        if (moduleDir != null) {
-          VirtualFile file = myBuildModelContext.getGradleBuildFile(moduleDir);
-          if (file != null) {
-            model = getModuleBuildModel(file);
-          }
-        }
+      if (modulePath.equals(":")) continue;
+      File moduleDir = settingsModel.moduleDirectory(modulePath);
+      VirtualFile file = moduleDir == null ? null : myBuildModelContext.getGradleBuildFile(moduleDir);
+      if (file != null) {
+        moduleBuildFiles.put(modulePath, file);
       }
+    }
+    myBuildModelContext.preloadBuildFiles(moduleBuildFiles.values());
+
+    allModels.addAll(modulePaths.stream().map((modulePath) -> {
+      VirtualFile file = moduleBuildFiles.get(modulePath);
+      GradleBuildModel model = file == null ? null : getModuleBuildModel(file);
       func.accept(++nModelsSeen[0], nModelsToConsider);
       return model;
     }).filter(Objects::nonNull).collect(Collectors.toList()));
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.gradle.dsl.parser.files;
+
+import com.android.tools.idea.gradle.dsl.api.ProjectBuildModel;
+import com.google.common.annotations.VisibleForTesting;
+import com.intellij.lang.ASTNode;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Keeps the syntax trees of the build files parsed by {@link GradleDslFileCache#preloadBuildFiles}, along with the modification stamps
+ * of the files they were parsed from, so that the {@link GradleDslFileCache}s of the following {@link ProjectBuildModel}s find them
+ * parsed as long as the files do not change.
+ * <p>
+ * The platform only keeps the syntax trees of files that are not open in an editor as long as memory allows, and large projects build
+ * many {@link ProjectBuildModel}s, e.g. one for each refactoring or Project Structure dialog, each of them reading every build file. The
+ * syntax tree of a file at a given modification stamp does not change, the file gets a new tree when it is modified. The cache is bounded
+ * and evicts the least recently used trees first.
+ */
+@Service(Service.Level.PROJECT)
+public final class BuildFileTreeCache {
+  @VisibleForTesting static final int MAX_ENTRIES = 1000;
+
+  // Guarded by itself.
+  @NotNull private final Map<VirtualFile, CachedTree> myTrees = new LinkedHashMap<>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<VirtualFile, CachedTree> eldest) {
+      return size() > MAX_ENTRIES;
+    }
+  };
+
+  @NotNull
+  public static BuildFileTreeCache getInstance(@NotNull Project project) {
+    return project.getService(BuildFileTreeCache.class);
+  }
+
+  /**
+   * Returns true if the syntax tree of {@code psiFile} at its current modification stamp is cached.
+   */
+  public boolean isUpToDate(@NotNull PsiFile psiFile) {
+    CachedTree cached;
+    synchronized (myTrees) {
+      cached = myTrees.get(psiFile.getVirtualFile());
+    }
+    return cached != null && cached.myModificationStamp == psiFile.getModificationStamp();
+  }
+
+  /**
+   * Parses {@code psiFile} if needed and keeps its syntax tree. Has to be called in a read action.
+   */
+  public void load(@NotNull PsiFile psiFile) {
+    if (isUpToDate(psiFile)) return;
+    long modificationStamp = psiFile.getModificationStamp();
+    ASTNode node = psiFile.getNode();
+    if (node == null) return;
+    // Accessing the children forces the file to be parsed.
+    node.getFirstChildNode();
+    synchronized (myTrees) {
+      myTrees.put(psiFile.getVirtualFile(), new CachedTree(node, modificationStamp));
+    }
+  }
+
+  private static final class CachedTree {
+    // Only referenced to keep the tree from being collected.
+    @NotNull private final ASTNode myTree;
+    private final long myModificationStamp;
+
+    private CachedTree(@NotNull ASTNode tree, long modificationStamp) {
+      myTree = tree;
+      myModificationStamp = modificationStamp;
+    }
+  }
+}
@@ -18,19 +18,28 @@ package com.android.tools.idea.gradle.dsl.parser.files;
 import static com.android.tools.idea.gradle.dsl.model.notifications.NotificationTypeReference.CIRCULAR_APPLICATION;
 
 import com.android.tools.idea.gradle.dsl.model.BuildModelContext;
+import com.intellij.openapi.application.ex.ApplicationEx;
+import com.intellij.openapi.application.ex.ApplicationManagerEx;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Deque;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -40,6 +49,11 @@ import org.jetbrains.annotations.Nullable;
  * file hundreds of times.
  */
 public class GradleDslFileCache {
+  private static final Logger LOG = Logger.getInstance(GradleDslFileCache.class);
+
+  @NotNull private static final ExecutorService ourPsiLoadingExecutor =
+    AppExecutorUtil.createBoundedApplicationPoolExecutor("GradleDslFileCache PSI loading", Runtime.getRuntime().availableProcessors());
+
   @NotNull private final Project myProject;
   @NotNull private final List<GradleDslFile> myParsedDslFiles = new ArrayList<>();
   @NotNull private final Map<String, GradleBuildFile> myParsedBuildFiles = new LinkedHashMap<>();
@@ -82,6 +96,54 @@ public class GradleDslFileCache {
     return dslFile;
   }
 
+  /**
+   * Loads the PSI trees of the given build files which have not been parsed yet in parallel, each under its own read action. Building Dsl
+   * trees is sequential, since files refer to each other (e.g. through subprojects blocks and applied files), however it is dominated by
+   * lexing and parsing the files, which is independent for each file and can happen upfront. The loaded trees are kept by the project's
+   * {@link BuildFileTreeCache}, so these are also reused by all the {@link BuildModelContext}s created until a file is modified.
+   * <p>
+   * This also works when the caller holds a read lock, as read locks are shared. The loading threads only try to acquire their read lock
+   * and skip their file if a write action is pending, since that write action would wait for the caller to release its own read lock while
+   * the caller waits for them. Skipped files are parsed on demand. Nothing is loaded if the caller holds the write lock.
+   * <p>
+   * When called on the event dispatch thread, the files are loaded in the background and this does not wait for them: files that are not
+   * loaded yet when their Dsl tree is built are parsed on demand, as without preloading.
+   *
+   * @return the number of files that were loaded, always 0 on the event dispatch thread
+   */
+  public int preloadBuildFiles(@NotNull Collection<VirtualFile> files) {
+    ApplicationEx application = ApplicationManagerEx.getApplicationEx();
+    if (files.size() < 2 || application.isWriteAccessAllowed()) return 0;
+
+    BuildFileTreeCache treeCache = BuildFileTreeCache.getInstance(myProject);
+    List<Future<Boolean>> futures = new ArrayList<>();
+    for (VirtualFile file : files) {
+      if (myParsedBuildFiles.containsKey(file.getUrl())) continue;
+      futures.add(ourPsiLoadingExecutor.submit(() -> application.tryRunReadAction(() -> {
+        if (myProject.isDisposed() || !file.isValid()) return;
+        PsiFile psiFile = PsiManager.getInstance(myProject).findFile(file);
+        if (psiFile != null) treeCache.load(psiFile);
+      })));
+    }
+    if (application.isDispatchThread()) return 0;
+
+    int loaded = 0;
+    for (Future<Boolean> future : futures) {
+      try {
+        if (future.get()) loaded++;
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      }
+      catch (ExecutionException e) {
+        // The file is going to be parsed (and the failure reported) again when its Dsl tree is built.
+        LOG.debug("Failed to preload PSI", e.getCause());
+      }
+    }
+    return loaded;
+  }
+
   public void putBuildFile(@NotNull String name, @NotNull GradleBuildFile buildFile) {
     myParsedBuildFiles.put(name, buildFile);
     myParsedDslFiles.add(buildFile);
@@ -118,7 +180,7 @@ public class GradleDslFileCache {
         myParsedDslFiles.add(dslFile);
       }
       catch (IOException e) {
-        Logger.getInstance(GradleDslFileCache.class).warn("Failed to process properties file " + file.getPath(), e);
+        LOG.warn("Failed to process properties file " + file.getPath(), e);
         return null;
       }
     }
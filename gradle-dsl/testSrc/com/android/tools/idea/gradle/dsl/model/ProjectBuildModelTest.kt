@@ -26,12 +26,16 @@ import com.android.tools.idea.gradle.dsl.api.ext.GradlePropertyModel.ValueType.I
 import com.android.tools.idea.gradle.dsl.api.ext.GradlePropertyModel.ValueType.STRING
 import com.android.tools.idea.gradle.dsl.api.ext.PropertyType.REGULAR
 import com.android.tools.idea.gradle.dsl.api.ext.ReferenceTo
+import com.android.tools.idea.gradle.dsl.parser.files.BuildFileTreeCache
 import com.android.tools.idea.gradle.dsl.parser.files.GradleBuildFile
 import com.android.tools.idea.gradle.dsl.parser.files.GradlePropertiesFile
 import com.android.tools.idea.gradle.dsl.parser.files.GradleSettingsFile
 import com.android.tools.idea.gradle.dsl.parser.files.GradleVersionCatalogFile
 import com.android.tools.idea.gradle.dsl.parser.semantics.AndroidGradlePluginVersion
+import com.intellij.openapi.application.ApplicationManager
+import com.intellij.openapi.util.Computable
 import com.intellij.openapi.vfs.VirtualFile
+import com.intellij.psi.PsiManager
 import junit.framework.Assert
 import org.hamcrest.CoreMatchers.hasItems
 import org.hamcrest.MatcherAssert.assertThat
@@ -377,6 +381,47 @@ class ProjectBuildModelTest : GradleFileModelTestCase() {
     assertEquals(listOf(1 to null, 2 to null, 3 to 4, 4 to 4), args)
   }
 
+  @Test
+  fun testPreloadBuildFiles() {
+    writeToBuildFile("")
+    writeToSubModuleBuildFile("")
+    writeToNewSubModule("a", "", "")
+    writeToNewSubModule("b", "", "")
+    writeToSettingsFile(subModuleSettingsText + getSubModuleSettingsText("a") + getSubModuleSettingsText("b"))
+
+    val pbm = projectBuildModel
+    val settingsModel = pbm.projectSettingsModel!!
+    val files = listOf(":a", ":b").map { pbm.context.getGradleBuildFile(settingsModel.moduleDirectory(it)!!)!! }
+
+    // Most callers hold a read lock, the files must be loaded anyway.
+    val loaded = ApplicationManager.getApplication().executeOnPooledThread<Int> {
+      ApplicationManager.getApplication().runReadAction(Computable { pbm.context.preloadBuildFiles(files) })
+    }.get()
+    assertEquals(2, loaded)
+
+    val treeCache = BuildFileTreeCache.getInstance(myProject)
+    ApplicationManager.getApplication().runReadAction {
+      files.forEach { assertTrue(treeCache.isUpToDate(PsiManager.getInstance(myProject).findFile(it)!!)) }
+    }
+  }
+
+  @Test
+  fun testPreloadBuildFilesDoesNotWaitOnEventDispatchThread() {
+    writeToBuildFile("")
+    writeToSubModuleBuildFile("")
+    writeToNewSubModule("a", "", "")
+    writeToNewSubModule("b", "", "")
+    writeToSettingsFile(subModuleSettingsText + getSubModuleSettingsText("a") + getSubModuleSettingsText("b"))
+
+    val pbm = projectBuildModel
+    val settingsModel = pbm.projectSettingsModel!!
+    val files = listOf(":a", ":b").map { pbm.context.getGradleBuildFile(settingsModel.moduleDirectory(it)!!)!! }
+
+    var loaded = -1
+    ApplicationManager.getApplication().invokeAndWait { loaded = pbm.context.preloadBuildFiles(files) }
+    assertEquals(0, loaded)
+  }
+
   @Test
   fun testGetContext() {
     val pbm = projectBuildModel
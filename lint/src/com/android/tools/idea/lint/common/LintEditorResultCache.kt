@@ -0,0 +1,463 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.lint.common
+
+import com.android.tools.lint.detector.api.Issue
+import com.android.tools.lint.detector.api.LintFix
+import com.android.tools.lint.detector.api.Severity
+import com.google.common.cache.Cache
+import com.google.common.cache.CacheBuilder
+import com.google.common.hash.Hasher
+import com.google.common.hash.Hashing
+import com.intellij.openapi.Disposable
+import com.intellij.openapi.application.ReadAction
+import com.intellij.openapi.components.Service
+import com.intellij.openapi.diagnostic.Logger
+import com.intellij.openapi.editor.EditorFactory
+import com.intellij.openapi.editor.event.DocumentEvent
+import com.intellij.openapi.editor.event.DocumentListener
+import com.intellij.openapi.fileEditor.FileDocumentManager
+import com.intellij.openapi.module.Module
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.project.getProjectCachePath
+import com.intellij.openapi.roots.OrderEnumerator
+import com.intellij.openapi.roots.ProjectFileIndex
+import com.intellij.openapi.roots.ProjectRootModificationTracker
+import com.intellij.openapi.util.TextRange
+import com.intellij.openapi.vfs.JarFileSystem
+import com.intellij.openapi.vfs.VirtualFile
+import com.intellij.openapi.vfs.VirtualFileManager
+import com.intellij.openapi.vfs.newvfs.BulkFileListener
+import com.intellij.openapi.vfs.newvfs.events.VFileDeleteEvent
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent
+import com.intellij.openapi.vfs.newvfs.events.VFileMoveEvent
+import com.intellij.psi.util.CachedValueProvider
+import com.intellij.psi.util.CachedValuesManager
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.IOException
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.random.Random
+import org.jetbrains.annotations.VisibleForTesting
+
+/**
+ * A persistent cache of the problems [LintExternalAnnotator] found in individual files. It lets the
+ * editor show lint highlights of unchanged files without running lint again, including after an
+ * IDE restart.
+ *
+ * A cached result is reused only if none of the following have changed since it was recorded:
+ * 1. the content of the file,
+ * 2. the set of enabled issues and their severity overrides,
+ * 3. lint configuration and build files (`lint.xml`, baselines, build scripts) in the directories
+ *    between the file and the project root,
+ * 4. the library classpath of the module, and the files of the module and the modules it depends
+ *    on. Instead of hashing those files, each module has a stamp that is replaced whenever one of
+ *    its files changes.
+ *
+ * At most [MAX_ENTRIES] results are kept, the least recently used ones are deleted first.
+ *
+ * Quick fix data ([LintFix]) cannot be persisted, it is kept in memory for the [MAX_QUICKFIX_ENTRIES]
+ * most recently stored results instead. Results with quick fixes are only reused while their quick
+ * fixes are in memory, so after a restart lint runs again on files that had quick fixes.
+ */
+@Service(Service.Level.PROJECT)
+class LintEditorResultCache(private val project: Project) : Disposable {
+  /**
+   * A random stamp per module name, replaced whenever a file in the module changes. Keying results
+   * on the stamps of the module and its dependencies avoids hashing their source files on every
+   * highlighting pass. The stamps are persisted on dispose so results survive a restart.
+   */
+  private val moduleStamps: ConcurrentHashMap<String, Long> =
+    ConcurrentHashMap(readModuleStamps(cacheDirectory().resolve(MODULE_STAMPS_FILE)))
+
+  private val storesSincePruning = AtomicInteger()
+
+  /** The quick fixes of the results stored in this session, by entry file name. */
+  private val quickfixes: Cache<String, CachedQuickfixes> =
+    CacheBuilder.newBuilder().maximumSize(MAX_QUICKFIX_ENTRIES).build()
+
+  init {
+    project.messageBus
+      .connect(this)
+      .subscribe(
+        VirtualFileManager.VFS_CHANGES,
+        object : BulkFileListener {
+          override fun before(events: List<VFileEvent>) {
+            // Deleted and moved files are no longer in their module afterwards.
+            events
+              .filter { it is VFileDeleteEvent || it is VFileMoveEvent }
+              .forEach { event -> event.file?.let { fileChanged(it) } }
+          }
+
+          override fun after(events: List<VFileEvent>) {
+            events.forEach { event -> event.file?.let { fileChanged(it) } }
+          }
+        }
+      )
+    EditorFactory.getInstance()
+      .eventMulticaster
+      .addDocumentListener(
+        object : DocumentListener {
+          override fun documentChanged(event: DocumentEvent) {
+            FileDocumentManager.getInstance().getFile(event.document)?.let { fileChanged(it) }
+          }
+        },
+        this
+      )
+  }
+
+  /**
+   * Computes the key identifying the inputs [lintResult] depends on. It has to be computed before
+   * lint runs, so that changes made while lint is running invalidate the stored result.
+   */
+  fun computeKey(lintResult: LintEditorResult): Key? {
+    return ReadAction.compute<Key?, RuntimeException> {
+      val module = lintResult.getModule()
+      if (module.isDisposed) return@compute null
+      val hasher = Hashing.sha256().newHasher()
+      hasher.putInt(FORMAT_VERSION)
+      hasher.putString(lintResult.mainFile.url, Charsets.UTF_8)
+      lintResult.getIssues().map { it.id }.sorted().forEach { hasher.putString(it, Charsets.UTF_8) }
+      LintIdeSupport.get().getSeverityOverrides(module)?.toSortedMap()?.forEach { (id, severity) ->
+        hasher.putString(id, Charsets.UTF_8).putInt(severity)
+      }
+      configurationFiles(lintResult.mainFile).forEach { hasher.putFileStamp(it) }
+      val dependencies = moduleDependencies(module)
+      hasher.putString(dependencies.libraryFingerprint, Charsets.UTF_8)
+      for (name in dependencies.moduleNames) {
+        hasher.putString(name, Charsets.UTF_8).putLong(moduleStamp(name))
+      }
+      Key(contentHash(lintResult.mainFileContent), hasher.hash().toString())
+    }
+  }
+
+  /**
+   * Adds the cached problems of [lintResult]'s file to it if there is a result recorded for the
+   * same [key]. Returns whether the cached result was used.
+   */
+  fun load(lintResult: LintEditorResult, key: Key): Boolean {
+    val file = entryFile(lintResult.mainFile)
+    val entry = readEntry(file) ?: return false
+    if (entry.key != key) return false
+    val fixes =
+      if (entry.problems.any { it.hasQuickfix }) {
+        quickfixes.getIfPresent(file.name)?.takeIf { it.key == key }?.fixes ?: return false
+      } else null
+    val problems =
+      entry.toProblems(lintResult.getIssues().associateBy { it.id }, fixes) ?: return false
+    lintResult.problems.addAll(problems)
+    // The modification time orders entries for pruning, see pruneEntries.
+    file.setLastModified(System.currentTimeMillis())
+    return true
+  }
+
+  /** Records the problems lint found in [lintResult]'s file for the given [key]. */
+  fun store(lintResult: LintEditorResult, key: Key) {
+    val file = entryFile(lintResult.mainFile)
+    val problems = lintResult.problems.toList()
+    if (problems.any { it.quickfixData != null }) {
+      quickfixes.put(file.name, CachedQuickfixes(key, problems.map { it.quickfixData }))
+    } else {
+      quickfixes.invalidate(file.name)
+    }
+    writeEntry(file, Entry(key, problems.map { CachedProblem.create(it) }))
+    if (storesSincePruning.incrementAndGet() >= PRUNE_INTERVAL) {
+      storesSincePruning.set(0)
+      pruneEntries(cacheDirectory(), MAX_ENTRIES)
+    }
+  }
+
+  override fun dispose() {
+    writeModuleStamps(cacheDirectory().resolve(MODULE_STAMPS_FILE), moduleStamps)
+  }
+
+  private fun fileChanged(file: VirtualFile) {
+    if (!file.isValid || project.isDisposed) return
+    val module = ProjectFileIndex.getInstance(project).getModuleForFile(file, false) ?: return
+    moduleStamps[module.name] = Random.nextLong()
+  }
+
+  private fun moduleStamp(name: String): Long = moduleStamps.computeIfAbsent(name) { Random.nextLong() }
+
+  /**
+   * Returns the lint configuration and build files that may affect lint results of [file], from the
+   * directory of [file] up to the project root.
+   */
+  private fun configurationFiles(file: VirtualFile): List<VirtualFile> {
+    val projectDir = project.basePath?.let { VirtualFileManager.getInstance().findFileByUrl("file://$it") }
+    val result = mutableListOf<VirtualFile>()
+    var dir = file.parent
+    while (dir != null) {
+      val current: VirtualFile = dir
+      CONFIGURATION_FILE_NAMES.mapNotNullTo(result) { current.findChild(it) }
+      if (current == projectDir) break
+      dir = current.parent
+    }
+    return result
+  }
+
+  private fun moduleDependencies(module: Module): ModuleDependencies {
+    return CachedValuesManager.getManager(project).getCachedValue(module) {
+      CachedValueProvider.Result.create(
+        computeModuleDependencies(module),
+        ProjectRootModificationTracker.getInstance(project)
+      )
+    }
+  }
+
+  private fun computeModuleDependencies(module: Module): ModuleDependencies {
+    val hasher = Hashing.sha256().newHasher()
+    val libraries = OrderEnumerator.orderEntries(module).recursively().withoutModuleSourceEntries()
+    for (root in libraries.classes().usingCache().roots) {
+      hasher.putString(root.url, Charsets.UTF_8)
+      hasher.putFileStamp(JarFileSystem.getInstance().getVirtualFileForJar(root) ?: root)
+    }
+    val moduleNames = mutableListOf(module.name)
+    OrderEnumerator.orderEntries(module).recursively().withoutSdk().withoutLibraries().forEachModule {
+      if (it != module) moduleNames.add(it.name)
+      true
+    }
+    return ModuleDependencies(hasher.hash().toString(), moduleNames.sorted())
+  }
+
+  private fun Hasher.putFileStamp(file: VirtualFile) {
+    putString(file.url, Charsets.UTF_8)
+    putLong(file.timeStamp)
+    putLong(file.length)
+    val fileDocumentManager = FileDocumentManager.getInstance()
+    if (fileDocumentManager.isFileModified(file)) {
+      fileDocumentManager.getCachedDocument(file)?.let { putString(it.charsSequence, Charsets.UTF_8) }
+    }
+  }
+
+  private fun cacheDirectory(): File = project.getProjectCachePath(CACHE_DIRECTORY).toFile()
+
+  private fun entryFile(file: VirtualFile): File =
+    cacheDirectory().resolve(Hashing.sha256().hashString(file.url, Charsets.UTF_8).toString())
+
+  /** The library classpath fingerprint and the sorted names of the modules a module depends on. */
+  private class ModuleDependencies(val libraryFingerprint: String, val moduleNames: List<String>)
+
+  /** The inputs a cached result depends on: the content of the file and everything else. */
+  data class Key(val contentHash: String, val contextHash: String)
+
+  /** The quick fixes of the problems of a result, in the same order. */
+  private class CachedQuickfixes(val key: Key, val fixes: List<LintFix?>)
+
+  @VisibleForTesting
+  class CachedProblem(
+    val issueId: String,
+    val message: String,
+    val startOffset: Int,
+    val endOffset: Int,
+    val configuredSeverity: Severity?,
+    val hasQuickfix: Boolean = false
+  ) {
+    fun toProblem(issue: Issue, quickfix: LintFix?): LintProblemData =
+      LintProblemData(
+        issue,
+        message,
+        TextRange(startOffset, endOffset),
+        configuredSeverity,
+        quickfix
+      )
+
+    companion object {
+      fun create(problem: LintProblemData) =
+        CachedProblem(
+          problem.issue.id,
+          problem.message,
+          problem.textRange.startOffset,
+          problem.textRange.endOffset,
+          problem.configuredSeverity,
+          problem.quickfixData != null
+        )
+    }
+  }
+
+  @VisibleForTesting
+  class Entry(val key: Key, val problems: List<CachedProblem>) {
+    /**
+     * Returns the cached problems with their quick [fixes], or null if one of their issues is no
+     * longer enabled.
+     */
+    fun toProblems(issues: Map<String, Issue>, fixes: List<LintFix?>? = null): List<LintProblemData>? =
+      problems.mapIndexed { index, problem ->
+        problem.toProblem(issues[problem.issueId] ?: return null, fixes?.getOrNull(index))
+      }
+  }
+
+  companion object {
+    private val LOG = Logger.getInstance(LintEditorResultCache::class.java)
+
+    private const val CACHE_DIRECTORY = "android-lint-editor-results"
+    private const val MAGIC = 0x4c455243 // "LERC"
+    private const val FORMAT_VERSION = 3
+    private const val MODULE_STAMPS_FILE = "module-stamps"
+    private const val MAX_ENTRIES = 5000
+    private const val PRUNE_INTERVAL = 100
+    private const val MAX_QUICKFIX_ENTRIES = 500L
+
+    private val CONFIGURATION_FILE_NAMES =
+      listOf(
+        "lint.xml",
+        "lint-baseline.xml",
+        "lint_baseline.xml",
+        "baseline.xml",
+        "build.gradle",
+        "build.gradle.kts",
+        "gradle.properties",
+        "settings.gradle",
+        "settings.gradle.kts"
+      )
+
+    @JvmStatic
+    fun getInstance(project: Project): LintEditorResultCache =
+      project.getService(LintEditorResultCache::class.java)
+
+    private fun contentHash(content: String): String =
+      Hashing.sha256().hashString(content, Charsets.UTF_8).toString()
+
+    @VisibleForTesting
+    fun writeEntry(file: File, entry: Entry) {
+      try {
+        file.parentFile.mkdirs()
+        // Write to a temporary file first so that a concurrent reader never sees a partial entry.
+        val temporaryFile = File(file.path + ".tmp")
+        DataOutputStream(temporaryFile.outputStream().buffered()).use { output ->
+          output.writeInt(MAGIC)
+          output.writeInt(FORMAT_VERSION)
+          output.writeString(entry.key.contentHash)
+          output.writeString(entry.key.contextHash)
+          output.writeInt(entry.problems.size)
+          for (problem in entry.problems) {
+            output.writeString(problem.issueId)
+            output.writeString(problem.message)
+            output.writeInt(problem.startOffset)
+            output.writeInt(problem.endOffset)
+            output.writeString(problem.configuredSeverity?.name ?: "")
+            output.writeBoolean(problem.hasQuickfix)
+          }
+        }
+        if (!temporaryFile.renameTo(file)) {
+          file.delete()
+          temporaryFile.renameTo(file)
+        }
+      } catch (e: IOException) {
+        LOG.debug("Cannot write lint result cache entry $file", e)
+      }
+    }
+
+    @VisibleForTesting
+    fun readEntry(file: File): Entry? {
+      if (!file.isFile) return null
+      return try {
+        DataInputStream(file.inputStream().buffered()).use { input ->
+          if (input.readInt() != MAGIC || input.readInt() != FORMAT_VERSION) return null
+          val key = Key(input.readString(), input.readString())
+          val problems =
+            List(input.readInt()) {
+              CachedProblem(
+                issueId = input.readString(),
+                message = input.readString(),
+                startOffset = input.readInt(),
+                endOffset = input.readInt(),
+                configuredSeverity = input.readString().takeIf { it.isNotEmpty() }?.let { Severity.valueOf(it) },
+                hasQuickfix = input.readBoolean()
+              )
+            }
+          Entry(key, problems)
+        }
+      } catch (e: Exception) {
+        // Corrupted or written by an incompatible version, it will be overwritten by the next run.
+        LOG.debug("Cannot read lint result cache entry $file", e)
+        null
+      }
+    }
+
+    /**
+     * Deletes the least recently used entries of [directory] so that at most [maxEntries] are left.
+     */
+    @VisibleForTesting
+    fun pruneEntries(directory: File, maxEntries: Int) {
+      val entries =
+        directory.listFiles { file -> file.isFile && file.name != MODULE_STAMPS_FILE } ?: return
+      if (entries.size <= maxEntries) return
+      entries
+        .map { it to it.lastModified() }
+        .sortedByDescending { it.second }
+        .drop(maxEntries)
+        .forEach { it.first.delete() }
+    }
+
+    @VisibleForTesting
+    fun writeModuleStamps(file: File, stamps: Map<String, Long>) {
+      try {
+        file.parentFile.mkdirs()
+        DataOutputStream(file.outputStream().buffered()).use { output ->
+          output.writeInt(MAGIC)
+          output.writeInt(FORMAT_VERSION)
+          val snapshot = stamps.toMap()
+          output.writeInt(snapshot.size)
+          for ((name, stamp) in snapshot) {
+            output.writeString(name)
+            output.writeLong(stamp)
+          }
+        }
+      } catch (e: IOException) {
+        LOG.debug("Cannot write lint result cache module stamps $file", e)
+      }
+    }
+
+    /**
+     * Reads the module stamps written by [writeModuleStamps] and deletes the file. If the IDE does
+     * not shut down cleanly, the stamps of changes made in that session are lost, so the next
+     * session must start with fresh stamps rather than reuse older ones.
+     */
+    @VisibleForTesting
+    fun readModuleStamps(file: File): Map<String, Long> {
+      if (!file.isFile) return emptyMap()
+      return try {
+        DataInputStream(file.inputStream().buffered()).use { input ->
+          if (input.readInt() != MAGIC || input.readInt() != FORMAT_VERSION) return emptyMap()
+          val stamps = HashMap<String, Long>()
+          repeat(input.readInt()) { stamps[input.readString()] = input.readLong() }
+          stamps
+        }
+      } catch (e: Exception) {
+        LOG.debug("Cannot read lint result cache module stamps $file", e)
+        emptyMap()
+      } finally {
+        file.delete()
+      }
+    }
+
+    /** Unlike [DataOutputStream.writeUTF], not limited to 64K. */
+    private fun DataOutputStream.writeString(value: String) {
+      val bytes = value.toByteArray(Charsets.UTF_8)
+      writeInt(bytes.size)
+      write(bytes)
+    }
+
+    private fun DataInputStream.readString(): String {
+      val bytes = ByteArray(readInt())
+      readFully(bytes)
+      return String(bytes, Charsets.UTF_8)
+    }
+  }
+}
@@ -211,6 +211,14 @@ class LintExternalAnnotator : ExternalAnnotator<LintEditorResult, LintEditorResu
       if (project.isDisposed) {
         return lintResult
       }
+      val cache =
+        if (LintIdeSupport.get().canCacheEditorResults(lintResult.getModule()))
+          LintEditorResultCache.getInstance(project)
+        else null
+      val cacheKey = cache?.computeKey(lintResult)
+      if (cache != null && cacheKey != null && cache.load(lintResult, cacheKey)) {
+        return lintResult
+      }
       if (DumbService.isDumb(project)) {
         return lintResult // Lint cannot run without indices.
       }
@@ -228,6 +236,9 @@ class LintExternalAnnotator : ExternalAnnotator<LintEditorResult, LintEditorResu
       lint.analyze()
       lint.analysisStartTime = startTime
       LintIdeSupport.get().logSession(lint, lintResult)
+      if (cache != null && cacheKey != null && !lintResult.isDirty) {
+        cache.store(lintResult, cacheKey)
+      }
     } finally {
       Disposer.dispose(client)
     }
@@ -41,10 +41,17 @@ import com.intellij.openapi.module.ModuleManager;
 import com.intellij.openapi.module.ModuleUtilCore;
 import com.intellij.openapi.module.impl.scopes.ModuleWithDependenciesScope;
 import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.IndexNotReadyException;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.DependencyScope;
+import com.intellij.openapi.roots.ModuleOrderEntry;
+import com.intellij.openapi.roots.ModuleRootManager;
+import com.intellij.openapi.roots.OrderEntry;
 import com.intellij.openapi.util.Key;
 import com.intellij.openapi.util.io.FileUtilRt;
+import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiElementVisitor;
@@ -52,18 +59,27 @@ import com.intellij.psi.PsiFile;
 import com.intellij.psi.search.LocalSearchScope;
 import com.intellij.psi.search.SearchScope;
 import com.intellij.testFramework.LightVirtualFile;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Function;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.VisibleForTesting;
 
 public class LintGlobalInspectionContext implements GlobalInspectionContextExtension<LintGlobalInspectionContext> {
   static final Key<LintGlobalInspectionContext> ID = Key.create("LintGlobalInspectionContext");
@@ -258,19 +274,9 @@ public class LintGlobalInspectionContext implements GlobalInspectionContextExten
       }
     }
 
-    LintRequest request = new LintIdeRequest(client, project, files, modules, false);
-    request.setScope(lintScope);
-    final LintDriver lint = client.createDriver(request);
-
     // Baseline analysis?
     myBaseline = null;
-    Module severityModule = null;
     for (Module module : modules) {
-      if (severityModule == null) {
-        if (ideSupport.getSeverityOverrides(module) != null) {
-          severityModule = module;
-        }
-      }
       File baselineFile = ideSupport.getBaselineFile(client, module);
       if (baselineFile != null && !AndroidLintLintBaselineInspection.ourSkipBaselineNextRun) {
         if (!baselineFile.isAbsolute()) {
@@ -280,7 +286,6 @@ public class LintGlobalInspectionContext implements GlobalInspectionContextExten
           }
         }
         myBaseline = new LintBaseline(client, baselineFile);
-        lint.setBaseline(myBaseline);
         if (!baselineFile.isFile()) {
           myBaseline.setWriteOnClose(true);
         }
@@ -292,7 +297,21 @@ public class LintGlobalInspectionContext implements GlobalInspectionContextExten
       }
     }
 
-    lint.analyze();
+    // The baseline is shared by all drivers and is not thread-safe, so only run without one in parallel.
+    if (files == null && myBaseline == null && modules.size() > 1 && ideSupport.canAnalyzeModulesInParallel(project)) {
+      analyzeInParallel(ideSupport, project, partitionIntoIndependentRoots(modules), lintScope, scope, issues, problemMap);
+    }
+    else {
+      LintRequest request = new LintIdeRequest(client, project, files, modules, false);
+      request.setScope(lintScope);
+      final LintDriver lint = client.createDriver(request);
+      if (myBaseline != null) {
+        lint.setBaseline(myBaseline);
+      }
+      lint.analyze();
+      lint.setAnalysisStartTime(startTime);
+      ideSupport.logSession(lint, findSeverityModule(ideSupport, modules), lintResult);
+    }
 
     // Running all detectors? Then add dynamically registered detectors too.
     if (!runningSingleInspection) {
@@ -330,11 +349,180 @@ public class LintGlobalInspectionContext implements GlobalInspectionContextExten
     }
 
     AndroidLintLintBaselineInspection.clearNextRunState();
-    lint.setAnalysisStartTime(startTime);
-    ideSupport.logSession(lint, severityModule, lintResult);
     myResults = problemMap;
   }
 
+  @Nullable
+  private static Module findSeverityModule(@NotNull LintIdeSupport ideSupport, @NotNull List<Module> modules) {
+    for (Module module : modules) {
+      if (ideSupport.getSeverityOverrides(module) != null) {
+        return module;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Splits the given modules into groups which can be analyzed independently of each other. Like {@link LintIdeProject#create}, lint only
+   * analyzes the modules which are not a compile dependency of another given module as root projects, each together with all of its
+   * module dependencies, so the roots whose dependencies overlap are kept in the same group for each module to be analyzed only once.
+   */
+  @NotNull
+  private static List<List<Module>> partitionIntoIndependentRoots(@NotNull List<Module> modules) {
+    Map<Module, Set<Module>> closures = new HashMap<>();
+    ReadAction.run(() -> {
+      for (Module module : modules) {
+        Set<Module> closure = new LinkedHashSet<>();
+        addCompileDependencies(module, closure);
+        closures.put(module, closure);
+      }
+    });
+    return partitionIntoIndependentGroups(modules, closures::get);
+  }
+
+  /** Adds {@code module} and the modules it depends on with compile scope, the same way {@link LintIdeProject#create} follows them. */
+  private static void addCompileDependencies(@NotNull Module module, @NotNull Set<Module> closure) {
+    if (!closure.add(module)) {
+      return;
+    }
+    for (OrderEntry orderEntry : ModuleRootManager.getInstance(module).getOrderEntries()) {
+      if (orderEntry instanceof ModuleOrderEntry && ((ModuleOrderEntry)orderEntry).getScope() == DependencyScope.COMPILE) {
+        Module dependency = ((ModuleOrderEntry)orderEntry).getModule();
+        if (dependency != null) {
+          addCompileDependencies(dependency, closure);
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the root {@code items}, those which are not in the closure of another item, grouped such that the closures of different groups
+   * do not overlap. Of the items depending on each other in a cycle only the first one is a root. Groups are ordered by their first root,
+   * and roots keep their relative order within a group.
+   *
+   * @param closure returns the item itself along with everything it transitively depends on
+   */
+  @VisibleForTesting
+  @NotNull
+  static <T> List<List<T>> partitionIntoIndependentGroups(@NotNull List<T> items, @NotNull Function<T, Set<T>> closure) {
+    List<T> roots = new ArrayList<>();
+    for (T item : items) {
+      boolean covered = false;
+      for (T other : items) {
+        if (other != item && closure.apply(other).contains(item) && (!closure.apply(item).contains(other) || roots.contains(other))) {
+          covered = true;
+          break;
+        }
+      }
+      if (!covered) {
+        roots.add(item);
+      }
+    }
+
+    List<List<T>> groups = new ArrayList<>();
+    List<Set<T>> groupClosures = new ArrayList<>();
+    for (T root : roots) {
+      List<T> group = new ArrayList<>();
+      Set<T> groupClosure = new HashSet<>(closure.apply(root));
+      for (int i = groups.size() - 1; i >= 0; i--) {
+        if (!Collections.disjoint(groupClosures.get(i), groupClosure)) {
+          group.addAll(0, groups.remove(i));
+          groupClosure.addAll(groupClosures.remove(i));
+        }
+      }
+      group.add(root);
+      group.sort(Comparator.comparingInt(roots::indexOf));
+      int index = 0;
+      while (index < groups.size() && roots.indexOf(groups.get(index).get(0)) < roots.indexOf(group.get(0))) {
+        index++;
+      }
+      groups.add(index, group);
+      groupClosures.add(index, groupClosure);
+    }
+    return groups;
+  }
+
+  /**
+   * Analyzes each group of root modules concurrently with its own client and driver; the groups share no module, so every module is
+   * analyzed once, together with the same dependencies as in a single request for all the modules. The results are merged into
+   * {@code problemMap} in the order of the groups, so that the output does not depend on which group finishes first.
+   */
+  private static void analyzeInParallel(@NotNull LintIdeSupport ideSupport,
+                                        @NotNull Project project,
+                                        @NotNull List<List<Module>> groups,
+                                        @Nullable EnumSet<Scope> lintScope,
+                                        @NotNull AnalysisScope scope,
+                                        @NotNull Set<Issue> issues,
+                                        @NotNull Map<Issue, Map<File, List<LintProblemData>>> problemMap) {
+    ProgressIndicator indicator = ProgressManager.getInstance().getProgressIndicator();
+    int parallelism = Math.min(groups.size(), Runtime.getRuntime().availableProcessors());
+    ExecutorService executor = AppExecutorUtil.createBoundedApplicationPoolExecutor("Lint Batch Analysis", parallelism);
+    List<Future<Map<Issue, Map<File, List<LintProblemData>>>>> futures = new ArrayList<>();
+    for (List<Module> group : groups) {
+      futures.add(executor.submit(() -> {
+        Map<Issue, Map<File, List<LintProblemData>>> groupProblemMap = new HashMap<>();
+        LintBatchResult groupResult = new LintBatchResult(project, groupProblemMap, scope, issues);
+        if (indicator != null) {
+          ProgressManager.getInstance().executeProcessUnderProgress(
+            () -> analyzeModules(ideSupport, groupResult, group, lintScope), indicator);
+        }
+        else {
+          analyzeModules(ideSupport, groupResult, group, lintScope);
+        }
+        return groupProblemMap;
+      }));
+    }
+    try {
+      for (Future<Map<Issue, Map<File, List<LintProblemData>>>> future : futures) {
+        mergeProblems(problemMap, future.get());
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ProcessCanceledException(e);
+    }
+    catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException)cause;
+      }
+      throw new RuntimeException(cause);
+    }
+    finally {
+      for (Future<?> future : futures) {
+        future.cancel(true);
+      }
+    }
+  }
+
+  /** Appends the problems of {@code source} to those of the same issue and file in {@code target}. */
+  @VisibleForTesting
+  static void mergeProblems(@NotNull Map<Issue, Map<File, List<LintProblemData>>> target,
+                            @NotNull Map<Issue, Map<File, List<LintProblemData>>> source) {
+    for (Map.Entry<Issue, Map<File, List<LintProblemData>>> entry : source.entrySet()) {
+      Map<File, List<LintProblemData>> file2ProblemList = target.computeIfAbsent(entry.getKey(), issue -> new HashMap<>());
+      for (Map.Entry<File, List<LintProblemData>> fileEntry : entry.getValue().entrySet()) {
+        file2ProblemList.computeIfAbsent(fileEntry.getKey(), file -> new ArrayList<>()).addAll(fileEntry.getValue());
+      }
+    }
+  }
+
+  private static void analyzeModules(@NotNull LintIdeSupport ideSupport,
+                                     @NotNull LintBatchResult lintResult,
+                                     @NotNull List<Module> modules,
+                                     @Nullable EnumSet<Scope> lintScope) {
+    long startTime = System.currentTimeMillis();
+    LintIdeClient client = ideSupport.createBatchClient(lintResult);
+    LintRequest request = new LintIdeRequest(client, lintResult.getProject(), null, modules, false);
+    request.setScope(lintScope);
+    LintDriver lint = client.createDriver(request);
+    lint.analyze();
+    lint.setAnalysisStartTime(startTime);
+    ideSupport.logSession(lint, findSeverityModule(ideSupport, modules), lintResult);
+    Logger.getInstance(LintGlobalInspectionContext.class).info(
+      "Lint analysis of " + StringUtil.join(modules, Module::getName, ", ") + " took " + (System.currentTimeMillis() - startTime) + "ms");
+  }
+
   @Nullable
   public Map<Issue, Map<File, List<LintProblemData>>> getResults() {
     return myResults;
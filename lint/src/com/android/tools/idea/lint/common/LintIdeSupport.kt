@@ -110,6 +110,12 @@ abstract class LintIdeSupport {
     return true
   }
 
+  /**
+   * Whether independent groups of modules of the given project can be analyzed concurrently in
+   * batch mode
+   */
+  open fun canAnalyzeModulesInParallel(project: Project): Boolean = false
+
   // Creating projects
   /** Creates a set of projects for the given IntelliJ modules */
   open fun createProject(
@@ -168,6 +174,9 @@ abstract class LintIdeSupport {
   // Editor session
   open fun logSession(lint: LintDriver, lintResult: LintEditorResult) {}
 
+  /** Whether editor results can be reused from [LintEditorResultCache] for files in [module] */
+  open fun canCacheEditorResults(module: Module): Boolean = false
+
   open fun logSession(lint: LintDriver, module: Module?, lintResult: LintBatchResult) {}
 
   // XML processing
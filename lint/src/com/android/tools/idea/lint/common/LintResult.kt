@@ -54,7 +54,7 @@ constructor(
   val mainFileContent: String,
   private val myIssues: Set<Issue>
 ) : LintResult() {
-  val problems: List<LintProblemData> = ArrayList()
+  val problems: MutableList<LintProblemData> = ArrayList()
 
   @Volatile
   var isDirty = false
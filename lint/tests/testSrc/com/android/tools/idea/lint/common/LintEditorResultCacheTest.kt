@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.lint.common
+
+import com.android.tools.lint.checks.GradleDetector
+import com.android.tools.lint.checks.WrongIdDetector
+import com.android.tools.lint.detector.api.LintFix
+import com.android.tools.lint.detector.api.Severity
+import com.google.common.truth.Truth.assertThat
+import com.intellij.openapi.util.TextRange
+import java.io.File
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+
+class LintEditorResultCacheTest {
+  @get:Rule val temporaryFolder = TemporaryFolder()
+
+  @Test
+  fun testEntryRoundTrip() {
+    val file = File(temporaryFolder.root, "cache/entry")
+    val key = LintEditorResultCache.Key("content", "context")
+    val longMessage = "x".repeat(100_000)
+    LintEditorResultCache.writeEntry(
+      file,
+      LintEditorResultCache.Entry(
+        key,
+        listOf(
+          LintEditorResultCache.CachedProblem(GradleDetector.DEPRECATED.id, "Deprecated", 1, 5, null),
+          LintEditorResultCache.CachedProblem(
+            WrongIdDetector.UNKNOWN_ID.id,
+            longMessage,
+            10,
+            20,
+            Severity.ERROR
+          )
+        )
+      )
+    )
+
+    val entry = LintEditorResultCache.readEntry(file)!!
+    assertThat(entry.key).isEqualTo(key)
+    val problems =
+      entry.toProblems(
+        listOf(GradleDetector.DEPRECATED, WrongIdDetector.UNKNOWN_ID).associateBy { it.id }
+      )!!
+    assertThat(problems.map { it.issue })
+      .containsExactly(GradleDetector.DEPRECATED, WrongIdDetector.UNKNOWN_ID)
+      .inOrder()
+    assertThat(problems[0].textRange).isEqualTo(TextRange(1, 5))
+    assertThat(problems[0].configuredSeverity).isNull()
+    assertThat(problems[1].message).isEqualTo(longMessage)
+    assertThat(problems[1].configuredSeverity).isEqualTo(Severity.ERROR)
+    assertThat(problems.all { it.quickfixData == null }).isTrue()
+  }
+
+  @Test
+  fun testEntryRoundTripWithQuickfixes() {
+    val file = File(temporaryFolder.root, "cache/entry")
+    val key = LintEditorResultCache.Key("content", "context")
+    LintEditorResultCache.writeEntry(
+      file,
+      LintEditorResultCache.Entry(
+        key,
+        listOf(
+          LintEditorResultCache.CachedProblem(GradleDetector.DEPRECATED.id, "Deprecated", 1, 5, null, hasQuickfix = true),
+          LintEditorResultCache.CachedProblem(WrongIdDetector.UNKNOWN_ID.id, "Unknown", 10, 20, null)
+        )
+      )
+    )
+
+    val entry = LintEditorResultCache.readEntry(file)!!
+    assertThat(entry.problems.map { it.hasQuickfix }).containsExactly(true, false).inOrder()
+    val fix = LintFix.create().replace().text("a").with("b").build()
+    val problems =
+      entry.toProblems(
+        listOf(GradleDetector.DEPRECATED, WrongIdDetector.UNKNOWN_ID).associateBy { it.id },
+        listOf(fix, null)
+      )!!
+    assertThat(problems[0].quickfixData).isSameAs(fix)
+    assertThat(problems[1].quickfixData).isNull()
+  }
+
+  @Test
+  fun testEntryWithDisabledIssueIsNotUsed() {
+    val entry =
+      LintEditorResultCache.Entry(
+        LintEditorResultCache.Key("content", "context"),
+        listOf(
+          LintEditorResultCache.CachedProblem(GradleDetector.DEPRECATED.id, "Deprecated", 1, 5, null)
+        )
+      )
+    assertThat(entry.toProblems(emptyMap())).isNull()
+  }
+
+  @Test
+  fun testInvalidEntry() {
+    val file = File(temporaryFolder.root, "entry")
+    assertThat(LintEditorResultCache.readEntry(file)).isNull()
+    file.writeText("not a cache entry")
+    assertThat(LintEditorResultCache.readEntry(file)).isNull()
+  }
+
+  @Test
+  fun testPruneEntriesKeepsMostRecentlyUsed() {
+    val directory = temporaryFolder.newFolder("cache")
+    val entries = List(5) { File(directory, "entry$it").apply { writeText("$it") } }
+    entries.forEachIndexed { index, file -> file.setLastModified(1_000_000L * (index + 1)) }
+    // Using an entry makes it the most recently used one.
+    entries[0].setLastModified(10_000_000L)
+
+    LintEditorResultCache.pruneEntries(directory, 3)
+
+    assertThat(directory.list()!!.toList()).containsExactly("entry0", "entry3", "entry4")
+  }
+
+  @Test
+  fun testPruneEntriesBelowLimit() {
+    val directory = temporaryFolder.newFolder("cache")
+    repeat(3) { File(directory, "entry$it").writeText("$it") }
+
+    LintEditorResultCache.pruneEntries(directory, 3)
+
+    assertThat(directory.list()!!.toList()).hasSize(3)
+  }
+
+  @Test
+  fun testModuleStampsRoundTrip() {
+    val file = File(temporaryFolder.root, "cache/module-stamps")
+    LintEditorResultCache.writeModuleStamps(file, mapOf("app" to 1L, "lib" to -42L))
+
+    assertThat(LintEditorResultCache.readModuleStamps(file)).containsExactly("app", 1L, "lib", -42L)
+    // Stamps are only reused after a clean shutdown, which writes them again.
+    assertThat(file.exists()).isFalse()
+    assertThat(LintEditorResultCache.readModuleStamps(file)).isEmpty()
+  }
+}
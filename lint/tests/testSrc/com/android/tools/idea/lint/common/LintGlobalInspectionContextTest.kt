@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.lint.common
+
+import com.android.tools.lint.checks.GradleDetector
+import com.android.tools.lint.checks.WrongIdDetector
+import com.android.tools.lint.detector.api.Issue
+import com.google.common.truth.Truth.assertThat
+import com.intellij.openapi.util.TextRange
+import java.io.File
+import org.junit.Test
+
+class LintGlobalInspectionContextTest {
+  /** Partitions [items] like [LintGlobalInspectionContext] does, following [dependencies] transitively. */
+  private fun groups(items: List<String>, dependencies: Map<String, List<String>>) =
+    LintGlobalInspectionContext.partitionIntoIndependentGroups(items) { item ->
+      val closure = mutableSetOf<String>()
+      fun add(next: String) {
+        if (closure.add(next)) dependencies[next].orEmpty().forEach(::add)
+      }
+      add(item)
+      closure
+    }
+
+  @Test
+  fun testIndependentModulesAreSeparateGroups() {
+    assertThat(groups(listOf("a", "b", "c"), emptyMap()))
+      .containsExactly(listOf("a"), listOf("b"), listOf("c"))
+      .inOrder()
+  }
+
+  @Test
+  fun testDependenciesAreAnalyzedWithTheirRoots() {
+    // app -> feature -> core, app -> core, lib -> core, other is independent.
+    val dependencies =
+      mapOf(
+        "app" to listOf("feature", "core"),
+        "feature" to listOf("core"),
+        "lib" to listOf("core")
+      )
+    assertThat(groups(listOf("core", "app", "feature", "lib", "other"), dependencies))
+      .containsExactly(listOf("app", "lib"), listOf("other"))
+      .inOrder()
+  }
+
+  @Test
+  fun testRootsSharingATransitiveDependencyAreGrouped() {
+    // a -> x -> shared, b -> y -> shared, c -> z.
+    val dependencies =
+      mapOf(
+        "a" to listOf("x"),
+        "x" to listOf("shared"),
+        "b" to listOf("y"),
+        "y" to listOf("shared"),
+        "c" to listOf("z")
+      )
+    assertThat(groups(listOf("c", "b", "a"), dependencies))
+      .containsExactly(listOf("c"), listOf("b", "a"))
+      .inOrder()
+  }
+
+  @Test
+  fun testDependenciesOutsideTheRequestStillGroupRoots() {
+    val dependencies = mapOf("app" to listOf("core"), "lib" to listOf("core"))
+    assertThat(groups(listOf("app", "lib"), dependencies)).containsExactly(listOf("app", "lib"))
+  }
+
+  @Test
+  fun testCycleHasASingleRoot() {
+    val dependencies = mapOf("a" to listOf("b"), "b" to listOf("a"))
+    assertThat(groups(listOf("a", "b"), dependencies)).containsExactly(listOf("a"))
+    assertThat(groups(listOf("a", "b", "c"), dependencies + ("c" to listOf("a"))))
+      .containsExactly(listOf("c"))
+  }
+
+  @Test
+  fun testMergeProblems() {
+    val build = File("build.gradle")
+    val layout = File("layout.xml")
+    val first = problem(GradleDetector.DEPRECATED, "first")
+    val second = problem(GradleDetector.DEPRECATED, "second")
+    val third = problem(WrongIdDetector.UNKNOWN_ID, "third")
+    val target: MutableMap<Issue, MutableMap<File, MutableList<LintProblemData>>> =
+      mutableMapOf(GradleDetector.DEPRECATED to mutableMapOf(build to mutableListOf(first)))
+
+    LintGlobalInspectionContext.mergeProblems(
+      target,
+      mapOf(
+        GradleDetector.DEPRECATED to mapOf(build to listOf(second)),
+        WrongIdDetector.UNKNOWN_ID to mapOf(layout to listOf(third))
+      )
+    )
+
+    assertThat(target[GradleDetector.DEPRECATED]!![build]).containsExactly(first, second).inOrder()
+    assertThat(target[WrongIdDetector.UNKNOWN_ID]!![layout]).containsExactly(third)
+  }
+
+  private fun problem(issue: Issue, message: String) =
+    LintProblemData(issue, message, TextRange(0, 1), null, null)
+}
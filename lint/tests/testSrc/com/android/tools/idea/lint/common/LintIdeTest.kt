@@ -32,19 +32,27 @@ import com.intellij.codeInspection.GlobalInspectionTool
 import com.intellij.codeInspection.ex.GlobalInspectionToolWrapper
 import com.intellij.codeInspection.ex.InspectionToolWrapper
 import com.intellij.ide.highlighter.ModuleFileType
+import com.intellij.openapi.application.ApplicationManager
 import com.intellij.openapi.application.ex.PathManagerEx
 import com.intellij.openapi.command.WriteCommandAction
 import com.intellij.openapi.fileEditor.FileDocumentManager
+import com.intellij.openapi.module.JavaModuleType
 import com.intellij.openapi.module.Module
 import com.intellij.openapi.module.ModuleManager
 import com.intellij.openapi.module.ModuleTypeId
+import com.intellij.openapi.project.DumbServiceImpl
 import com.intellij.openapi.project.Project
+import com.intellij.openapi.roots.ModuleRootManager
+import com.intellij.openapi.roots.ModuleRootModificationUtil
 import com.intellij.openapi.util.io.FileUtil
+import com.intellij.openapi.vfs.LocalFileSystem
 import com.intellij.openapi.vfs.VfsUtilCore
 import com.intellij.openapi.vfs.newvfs.impl.VfsRootAccess
 import com.intellij.psi.PsiFile
 import com.intellij.testFramework.InspectionTestUtil
+import com.intellij.testFramework.PsiTestUtil
 import com.intellij.testFramework.UsefulTestCase
+import com.intellij.testFramework.VfsTestUtil
 import com.intellij.testFramework.builders.JavaModuleFixtureBuilder
 import com.intellij.testFramework.createGlobalContextForTool
 import com.intellij.testFramework.fixtures.IdeaProjectTestFixture
@@ -55,6 +63,7 @@ import com.intellij.testFramework.fixtures.ModuleFixture
 import com.intellij.testFramework.fixtures.TestFixtureBuilder
 import com.intellij.testFramework.fixtures.impl.JavaModuleFixtureBuilderImpl
 import com.intellij.testFramework.fixtures.impl.ModuleFixtureImpl
+import com.intellij.testFramework.registerOrReplaceServiceInstance
 import com.intellij.util.ThrowableRunnable
 import java.io.File
 import java.io.IOException
@@ -131,6 +140,76 @@ class LintIdeTest : UsefulTestCase() {
     assertThat(lintClient.module).isSameAs(module)
   }
 
+  fun testEditorResultCacheKeyChangesWithInputs() {
+    val support = CachingLintIdeSupport()
+    ApplicationManager.getApplication()
+      .registerOrReplaceServiceInstance(LintIdeSupport::class.java, support, testRootDisposable)
+    val file =
+      myFixture.addFileToProject("src/p1/p2/Keyed.java", "package p1.p2;\npublic class Keyed {}").virtualFile
+    val cache = LintEditorResultCache.getInstance(project)
+    fun key() =
+      cache
+        .computeKey(
+          LintEditorResult(myModule, file, VfsUtilCore.loadText(file), setOf(CommentDetector.STOP_SHIP))
+        )!!
+        .contextHash
+
+    val initial = key()
+    assertThat(key()).isEqualTo(initial)
+
+    support.severityOverrides = mapOf(CommentDetector.STOP_SHIP.id to 2)
+    val withSeverityOverrides = key()
+    assertThat(withSeverityOverrides).isNotEqualTo(initial)
+
+    myFixture.addFileToProject("lint.xml", "<lint/>")
+    val withConfiguration = key()
+    assertThat(withConfiguration).isNotEqualTo(withSeverityOverrides)
+
+    // The library is outside of the module, so only the classpath changes.
+    val libraryDir = FileUtil.createTempDirectory("lib", null)
+    LocalFileSystem.getInstance().refreshAndFindFileByIoFile(libraryDir)
+    ModuleRootModificationUtil.addModuleLibrary(myModule, VfsUtilCore.pathToUrl(libraryDir.path))
+    val withLibrary = key()
+    assertThat(withLibrary).isNotEqualTo(withConfiguration)
+
+    // Any other file of the module replaces the module stamp.
+    myFixture.addFileToProject("src/p1/p2/Other.java", "package p1.p2;\npublic class Other {}")
+    assertThat(key()).isNotEqualTo(withLibrary)
+  }
+
+  fun testExternalAnnotatorStoresAndLoadsEditorResults() {
+    ApplicationManager.getApplication()
+      .registerOrReplaceServiceInstance(LintIdeSupport::class.java, CachingLintIdeSupport(), testRootDisposable)
+    val stopShipEnabled = CommentDetector.STOP_SHIP.isEnabledByDefault()
+    CommentDetector.STOP_SHIP.setEnabledByDefault(true)
+    try {
+      val file =
+        myFixture
+          .addFileToProject("src/p1/p2/Cached.java", "package p1.p2;\npublic class Cached {\n  // STOPSHIP\n}")
+          .virtualFile
+      fun annotate() =
+        LintExternalAnnotator()
+          .doAnnotate(LintEditorResult(myModule, file, VfsUtilCore.loadText(file), setOf(CommentDetector.STOP_SHIP)))
+
+      val analyzed = annotate().problems.single()
+      assertThat(analyzed.issue).isEqualTo(CommentDetector.STOP_SHIP)
+      assertThat(analyzed.quickfixData).isNotNull()
+
+      // Lint does not run in dumb mode, so the problems can only come from the cache.
+      DumbServiceImpl.getInstance(project).isDumb = true
+      try {
+        val loaded = annotate().problems.single()
+        assertThat(loaded.message).isEqualTo(analyzed.message)
+        assertThat(loaded.textRange).isEqualTo(analyzed.textRange)
+        assertThat(loaded.quickfixData).isSameAs(analyzed.quickfixData)
+      } finally {
+        DumbServiceImpl.getInstance(project).isDumb = false
+      }
+    } finally {
+      CommentDetector.STOP_SHIP.setEnabledByDefault(stopShipEnabled)
+    }
+  }
+
   fun testUseValueOf() {
     doTestWithFix(
       AndroidLintUseValueOfInspection(),
@@ -292,6 +371,64 @@ class LintIdeTest : UsefulTestCase() {
     doGlobalInspectionTest(AndroidLintUseValueOfInspection())
   }
 
+  fun testParallelAnalysisMatchesSequentialAnalysis() {
+    // app and feature share lib, standalone is independent of them.
+    val lib = addJavaModule("lib")
+    val feature = addJavaModule("feature")
+    val standalone = addJavaModule("standalone")
+    ModuleRootModificationUtil.addDependency(myModule, lib)
+    ModuleRootModificationUtil.addDependency(feature, lib)
+    myFixture.addFileToProject("src/app/Values.java", valuesClass("app"))
+    for (module in listOf(lib, feature, standalone)) {
+      val root = ModuleRootManager.getInstance(module).contentRoots.single()
+      VfsTestUtil.createFile(root, "${module.name}/Values.java", valuesClass(module.name))
+    }
+
+    fun analyze(parallel: Boolean): List<String> {
+      val support =
+        object : LintIdeSupport() {
+          override fun canAnalyzeModulesInParallel(project: Project): Boolean = parallel
+        }
+      ApplicationManager.getApplication()
+        .registerOrReplaceServiceInstance(LintIdeSupport::class.java, support, testRootDisposable)
+      val wrapper = GlobalInspectionToolWrapper(AndroidLintUseValueOfInspection())
+      myFixture.enableInspections(wrapper.tool)
+      val scope = AnalysisScope(project)
+      val globalContext =
+        createGlobalContextForTool(scope, project, listOf<InspectionToolWrapper<*, *>>(wrapper))
+      InspectionTestUtil.runTool(wrapper, scope, globalContext)
+      val results = globalContext.getExtension(LintGlobalInspectionContext.ID).results!!
+      return results
+        .flatMap { (issue, files) ->
+          files.flatMap { (file, problems) ->
+            problems.map { "${issue.id} ${file.path} ${it.textRange} ${it.message}" }
+          }
+        }
+        .sorted()
+    }
+
+    val sequential = analyze(parallel = false)
+    assertThat(sequential).hasSize(4)
+    // Every module is analyzed exactly once, so there are no duplicates either.
+    assertThat(analyze(parallel = true)).containsExactlyElementsIn(sequential).inOrder()
+  }
+
+  private fun addJavaModule(name: String): Module {
+    val root = LocalFileSystem.getInstance().refreshAndFindFileByIoFile(FileUtil.createTempDirectory(name, null))!!
+    val module = PsiTestUtil.addModule(project, JavaModuleType.getModuleType(), name, root)
+    ModuleRootModificationUtil.setModuleSdk(module, ModuleRootManager.getInstance(myModule).sdk)
+    return module
+  }
+
+  private fun valuesClass(packageName: String) =
+    """
+      package $packageName;
+      public class Values {
+        Integer n = new Integer(3);
+      }
+    """
+      .trimIndent()
+
   fun testLintNonAndroid() {
     // Make sure that we include the lint implementation checks themselves outside of Android
     // contexts
@@ -494,6 +631,14 @@ class LintIdeTest : UsefulTestCase() {
     )
   }
 
+  private class CachingLintIdeSupport : LintIdeSupport() {
+    var severityOverrides: Map<String, Int>? = null
+
+    override fun canCacheEditorResults(module: Module): Boolean = true
+
+    override fun getSeverityOverrides(module: Module): Map<String, Int>? = severityOverrides
+  }
+
   interface LintModuleFixtureBuilder<T : ModuleFixture?> : JavaModuleFixtureBuilder<T> {
     fun setModuleRoot(moduleRoot: String)
   }
@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.nativeSymbolizer
+
+import java.io.File
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.channels.FileChannel
+import java.nio.file.StandardOpenOption
+
+private const val ELF_CLASS_32: Byte = 1
+private const val ELF_CLASS_64: Byte = 2
+private const val ELF_DATA_LITTLE_ENDIAN: Byte = 1
+private const val ELF_DATA_BIG_ENDIAN: Byte = 2
+private const val SHT_NOTE = 7
+private const val NT_GNU_BUILD_ID = 3
+private const val MAX_NOTE_SECTION_SIZE = 1 shl 16
+
+/**
+ * Reads the GNU build-id of an ELF file, which identifies the binary regardless of its path or timestamp.
+ *
+ * Only the ELF header, the section headers and the note sections are read, so this is cheap even for
+ * libraries with large debug info.
+ *
+ * @return the build-id as a lowercase hex string, or null if the file is not an ELF file or has no build-id.
+ */
+fun readElfBuildId(file: File): String? {
+  try {
+    FileChannel.open(file.toPath(), StandardOpenOption.READ).use { channel ->
+      val ident = channel.readAt(0, 16) ?: return null
+      if (ident.getInt(0) != 0x7f454c46) { // "\u007fELF"
+        return null
+      }
+      val is64 = when (ident.get(4)) {
+        ELF_CLASS_32 -> false
+        ELF_CLASS_64 -> true
+        else -> return null
+      }
+      val order = when (ident.get(5)) {
+        ELF_DATA_LITTLE_ENDIAN -> ByteOrder.LITTLE_ENDIAN
+        ELF_DATA_BIG_ENDIAN -> ByteOrder.BIG_ENDIAN
+        else -> return null
+      }
+
+      val header = channel.readAt(0, if (is64) 64 else 52)?.order(order) ?: return null
+      val sectionHeadersOffset = if (is64) header.getLong(0x28) else header.getInt(0x20).toUnsignedLong()
+      val sectionHeaderSize = (if (is64) header.getShort(0x3A) else header.getShort(0x2E)).toUnsignedInt()
+      val sectionCount = (if (is64) header.getShort(0x3C) else header.getShort(0x30)).toUnsignedInt()
+      if (sectionHeadersOffset <= 0 || sectionHeaderSize == 0 || sectionCount == 0) {
+        return null
+      }
+
+      val sectionHeaders = channel.readAt(sectionHeadersOffset, sectionHeaderSize * sectionCount)?.order(order) ?: return null
+      for (i in 0 until sectionCount) {
+        val base = i * sectionHeaderSize
+        if (sectionHeaders.getInt(base + 4) != SHT_NOTE) {
+          continue
+        }
+        val offset = if (is64) sectionHeaders.getLong(base + 0x18) else sectionHeaders.getInt(base + 0x10).toUnsignedLong()
+        val size = if (is64) sectionHeaders.getLong(base + 0x20) else sectionHeaders.getInt(base + 0x14).toUnsignedLong()
+        if (size <= 0 || size > MAX_NOTE_SECTION_SIZE) {
+          continue
+        }
+        val notes = channel.readAt(offset, size.toInt())?.order(order) ?: continue
+        findGnuBuildId(notes)?.let { return it }
+      }
+      return null
+    }
+  }
+  catch (e: IOException) {
+    getLogger().debug("Failed to read the build-id of $file", e)
+    return null
+  }
+}
+
+/**
+ * Looks for a NT_GNU_BUILD_ID note in the content of a note section.
+ */
+private fun findGnuBuildId(notes: ByteBuffer): String? {
+  var position = 0
+  while (position + 12 <= notes.limit()) {
+    val nameSize = notes.getInt(position)
+    val descriptorSize = notes.getInt(position + 4)
+    val type = notes.getInt(position + 8)
+    if (nameSize < 0 || descriptorSize < 0) {
+      return null
+    }
+    val nameStart = position + 12
+    val descriptorStart = nameStart + nameSize.alignTo4()
+    val next = descriptorStart + descriptorSize.alignTo4()
+    if (descriptorStart + descriptorSize > notes.limit()) {
+      return null
+    }
+    if (type == NT_GNU_BUILD_ID && nameSize == 4 && notes.isGnuName(nameStart)) {
+      return buildString {
+        for (i in descriptorStart until descriptorStart + descriptorSize) {
+          append(String.format("%02x", notes.get(i)))
+        }
+      }
+    }
+    position = next
+  }
+  return null
+}
+
+private fun ByteBuffer.isGnuName(start: Int) =
+  get(start) == 'G'.code.toByte() && get(start + 1) == 'N'.code.toByte() && get(start + 2) == 'U'.code.toByte() && get(start + 3) == 0.toByte()
+
+private fun Int.alignTo4() = (this + 3) and 3.inv()
+
+private fun Int.toUnsignedLong() = toLong() and 0xffffffffL
+
+private fun Short.toUnsignedInt() = toInt() and 0xffff
+
+/**
+ * Reads exactly [size] bytes at [position], or returns null if the file is too short.
+ */
+private fun FileChannel.readAt(position: Long, size: Int): ByteBuffer? {
+  if (position < 0 || size < 0 || position + size > size()) {
+    return null
+  }
+  val buffer = ByteBuffer.allocate(size)
+  while (buffer.hasRemaining()) {
+    if (read(buffer, position + buffer.position()) < 0) {
+      return null
+    }
+  }
+  buffer.flip()
+  return buffer
+}
@@ -15,6 +15,8 @@
  */
 package com.android.tools.nativeSymbolizer
 
+import com.google.common.cache.Cache
+import com.google.common.cache.CacheBuilder
 import com.intellij.openapi.Disposable
 import java.io.BufferedReader
 import java.io.File
@@ -22,9 +24,12 @@ import java.io.IOException
 import java.io.InputStreamReader
 import java.io.OutputStreamWriter
 import java.util.concurrent.Callable
+import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.ExecutionException
 import java.util.concurrent.ExecutorService
 import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.concurrent.LinkedBlockingDeque
 import java.util.concurrent.TimeUnit
 import java.util.concurrent.TimeoutException
 
@@ -42,70 +47,136 @@ import java.util.concurrent.TimeoutException
  * TestSimpleMethodCall(_JNIEnv*, _jobject*)
  * /usr/local/google/home/ezemtsov/projects/android-apps/sum/app/src/main/cpp/native-lib.cpp:36:7
  *
+ * Requests are pipelined: up to [PIPELINE_DEPTH] of them are written before reading the first response. Offsets symbolized
+ * together are split in batches of [BATCH_SIZE] that are handled by a pool of up to [poolSize] llvm-symbolizer processes,
+ * and results are kept in an LRU cache keyed by the build-id of the symbol file and the offset.
+ *
  * More info about llvm-symbolizer: https://llvm.org/docs/CommandGuide/llvm-symbolizer.html
  */
 class LlvmSymbolizer(private val symbolizerExe: String,
                      private val symLocator: SymbolFilesLocator,
-                     private val timeoutMsc: Long = 5000) : NativeSymbolizer {
+                     private val timeoutMsc: Long = 5000,
+                     poolSize: Int = DEFAULT_POOL_SIZE,
+                     cacheSize: Long = DEFAULT_CACHE_SIZE) : NativeSymbolizer {
 
-  private var procHolder : ProcessHolder? = null
-  private val executor : ExecutorService = Executors.newSingleThreadExecutor()
+  private val allSlots = List(poolSize.coerceAtLeast(1)) { ProcessSlot() }
+  // Used as a stack, so that processes that are already running are reused first
+  private val idleSlots = LinkedBlockingDeque(allSlots)
+  private val cache: Cache<CacheKey, CachedSymbol> = CacheBuilder.newBuilder().maximumSize(cacheSize).build()
+  private val moduleIds = ConcurrentHashMap<File, ModuleId>()
 
   /**
    * @param abiArch - The cpu architecture of the symbol.
    * @param module - The file path to the module.
    * @param offset - The starting byte address in the module of the symbol.
    */
-  override fun symbolize(abiArch: String, module: File, offset: Long): Symbol? {
+  override fun symbolize(abiArch: String, module: File, offset: Long): Symbol? = symbolize(abiArch, module, listOf(offset))[0]
+
+  override fun symbolize(abiArch: String, module: File, offsets: List<Long>): List<Symbol?> {
+    val result = arrayOfNulls<Symbol>(offsets.size)
+    if (offsets.isEmpty()) {
+      return result.asList()
+    }
     val symFiles = symLocator.getFiles(abiArch)
 
     for (symFile in symFiles.filter { it.nameWithoutExtension == module.nameWithoutExtension }) {
-      val request = formatRequest(symFile, offset)
+      val unresolved = offsets.indices.filter { result[it] == null }
+      if (unresolved.isEmpty()) {
+        break
+      }
 
-      val holder = getProcHolder()
-      val future = executor.submit( Callable<List<String>> {
-        holder.stdin.write(request)
-        holder.stdin.flush()
-
-        val response: MutableList<String> = mutableListOf()
-        var responseLine: String?
-        while (true) {
-          responseLine = holder.stdout.readLine()
-          if (responseLine.isNullOrEmpty()) {
-            break
-          }
-          response.add(responseLine)
+      val moduleId = getModuleId(symFile)
+      val misses = LinkedHashSet<Long>()
+      for (i in unresolved) {
+        val cached = cache.getIfPresent(CacheKey(moduleId, offsets[i]))
+        if (cached == null) {
+          misses.add(offsets[i])
         }
-        response
-      })
-      val response : List<String>
-      try {
-        response = future.get(timeoutMsc, TimeUnit.MILLISECONDS)
-      } catch (e: TimeoutException) {
-        getLogger().warn("llvm-symbolizer timed out", e)
-        stop()
-        continue
-      } catch (e: ExecutionException) {
-        getLogger().warn("llvm-symbolizer communication failed", e)
-        stop()
+        else {
+          result[i] = cached.symbol?.copy(module = module.absolutePath)
+        }
+      }
+      if (misses.isEmpty()) {
         continue
       }
 
-      val result = parseResponse(response, module)
-      if (result != null)
-        return result
+      val symbols = lookUp(symFile, misses.toList())
+      symbols.forEach { (offset, symbol) -> cache.put(CacheKey(moduleId, offset), CachedSymbol(symbol)) }
+      for (i in unresolved) {
+        if (result[i] == null) {
+          result[i] = symbols[offsets[i]]?.copy(module = module.absolutePath)
+        }
+      }
     }
 
-    return null
+    return result.asList()
   }
 
-  private fun getProcHolder() : ProcessHolder {
-    var holder = procHolder
-    if (holder == null || !holder.process.isAlive) {
-      start()
-      holder = procHolder!! // procHolder must't be null after start()
+  /**
+   * Symbolizes the offsets in a symbol file, spreading their batches over the pool of processes.
+   * Offsets of batches that could not be symbolized (e.g. because llvm-symbolizer timed out) are absent from the result,
+   * so that they are not cached.
+   */
+  private fun lookUp(symFile: File, offsets: List<Long>): Map<Long, Symbol?> {
+    val symbols = HashMap<Long, Symbol?>()
+    for (wave in offsets.chunked(BATCH_SIZE).chunked(allSlots.size)) {
+      val borrowedSlots = mutableListOf<ProcessSlot>()
+      try {
+        val requests = mutableListOf<BatchRequest>()
+        for (batch in wave) {
+          val slot = idleSlots.pollFirst(getBatchTimeoutMsc(BATCH_SIZE), TimeUnit.MILLISECONDS)
+          if (slot == null) {
+            getLogger().warn("No llvm-symbolizer process became available")
+            break
+          }
+          borrowedSlots.add(slot)
+          requests.add(BatchRequest(slot, batch, slot.submit(symFile, batch)))
+        }
+
+        for (request in requests) {
+          val responses: List<List<String>>
+          try {
+            responses = request.future.get(getBatchTimeoutMsc(request.offsets.size), TimeUnit.MILLISECONDS)
+          } catch (e: TimeoutException) {
+            getLogger().warn("llvm-symbolizer timed out", e)
+            request.slot.stop()
+            continue
+          } catch (e: ExecutionException) {
+            getLogger().warn("llvm-symbolizer communication failed", e)
+            request.slot.stop()
+            continue
+          }
+          request.offsets.forEachIndexed { i, offset -> symbols[offset] = parseResponse(responses[i], symFile) }
+        }
+      }
+      finally {
+        borrowedSlots.asReversed().forEach(idleSlots::addFirst)
+      }
+    }
+    return symbols
+  }
+
+  /**
+   * The first lookup in a symbol file loads its debug info, which [timeoutMsc] accounts for. Each further offset is quick to
+   * resolve, so a batch only gets [OFFSET_TIMEOUT_MSC] more per offset.
+   */
+  private fun getBatchTimeoutMsc(batchSize: Int): Long = timeoutMsc + batchSize * OFFSET_TIMEOUT_MSC
+
+  /**
+   * Identifies the content of a symbol file by its build-id (or by its size and timestamp if it has none), so that cached
+   * symbols don't outlive a rebuild of the library. The path is kept, because a stripped and an unstripped library share
+   * the same build-id but not the same symbols.
+   */
+  private fun getModuleId(symFile: File): ModuleId {
+    val length = symFile.length()
+    val lastModified = symFile.lastModified()
+    val known = moduleIds[symFile]
+    if (known != null && known.length == length && known.lastModified == lastModified) {
+      return known
     }
-    return holder
+    val moduleId = ModuleId(symFile.absolutePath, readElfBuildId(symFile), length, lastModified)
+    moduleIds[symFile] = moduleId
+    return moduleId
   }
 
   private fun formatRequest(symFile: File, offset: Long): String {
@@ -113,51 +184,111 @@ class LlvmSymbolizer(private val symbolizerExe: String,
     return java.lang.String.format("\"%s\" 0x%x\n", escapedPath, offset)
   }
 
-  private fun parseResponse(response: List<String>, module: File): Symbol? {
+  /**
+   * @return the symbol described by the response, with [symFile] as its module
+   */
+  private fun parseResponse(response: List<String>, symFile: File): Symbol? {
     if (response.isEmpty())
       return null
 
+    val modulePath = symFile.absolutePath
     val name = response.first().trim()
     if (name.isEmpty() || name == "??") {
       return null
     }
     if (response.size < 2)
-      return Symbol(name, module.absolutePath)
+      return Symbol(name, modulePath)
 
     // Location line looks like this: <path to source file>:<line number>:<column number>
     val locationLine = response[1].trim()
     val indexBeforeColumn = locationLine.lastIndexOf(':')
     if (indexBeforeColumn < 2)
-      return Symbol(name, module.absolutePath)
+      return Symbol(name, modulePath)
 
     val indexBeforeLine = locationLine.lastIndexOf(':', indexBeforeColumn - 1)
     if (indexBeforeColumn < 1)
-      return Symbol(name, module.absolutePath)
+      return Symbol(name, modulePath)
 
     val sourceFile = locationLine.substring(0, indexBeforeLine)
     val lineNumber = locationLine.substring(indexBeforeLine + 1, indexBeforeColumn).toIntOrNull() ?: 0
 
-    return Symbol(name, module.absolutePath, sourceFile, lineNumber)
+    return Symbol(name, modulePath, sourceFile, lineNumber)
   }
 
-  private fun start() {
-    if (procHolder != null)
-      stop()
+  override fun stop() {
+    allSlots.forEach(ProcessSlot::stop)
+  }
 
-    val builder = ProcessBuilder(symbolizerExe)
-    val process = builder.start()
-    if (!process.isAlive) {
-      throw IOException("Symbolizer process is not alive. Executable: $symbolizerExe")
+  /**
+   * An llvm-symbolizer process, started on demand, and the thread talking to it.
+   */
+  private inner class ProcessSlot {
+    private var procHolder : ProcessHolder? = null
+    private val executor : ExecutorService = Executors.newSingleThreadExecutor()
+
+    /**
+     * Sends the requests for all the offsets, and reads one response per offset.
+     */
+    fun submit(symFile: File, offsets: List<Long>): Future<List<List<String>>> {
+      val holder = getProcHolder()
+      return executor.submit(Callable<List<List<String>>> {
+        val responses = ArrayList<List<String>>(offsets.size)
+        var sent = 0
+        while (responses.size < offsets.size) {
+          // Keep a few requests in flight, but not so many that llvm-symbolizer blocks on a full stdout pipe
+          // while we block on a full stdin pipe.
+          while (sent < offsets.size && sent - responses.size < PIPELINE_DEPTH) {
+            holder.stdin.write(formatRequest(symFile, offsets[sent++]))
+          }
+          holder.stdin.flush()
+          responses.add(readResponse(holder.stdout))
+        }
+        responses
+      })
     }
 
-    val stdin = OutputStreamWriter(process.outputStream, Charsets.UTF_8)
-    val stdout = BufferedReader(InputStreamReader(process.inputStream, Charsets.UTF_8))
-    procHolder = ProcessHolder(process, stdout, stdin)
-  }
+    private fun readResponse(stdout: BufferedReader): List<String> {
+      val response: MutableList<String> = mutableListOf()
+      while (true) {
+        val responseLine = stdout.readLine() ?: throw IOException("llvm-symbolizer closed its output")
+        if (responseLine.isEmpty()) {
+          break
+        }
+        response.add(responseLine)
+      }
+      return response
+    }
 
-  override fun stop() {
-    procHolder?.dispose()
-    procHolder = null
+    @Synchronized
+    private fun getProcHolder() : ProcessHolder {
+      var holder = procHolder
+      if (holder == null || !holder.process.isAlive) {
+        start()
+        holder = procHolder!! // procHolder must't be null after start()
+      }
+      return holder
+    }
+
+    private fun start() {
+      if (procHolder != null)
+        stop()
+
+      val builder = ProcessBuilder(symbolizerExe)
+      val process = builder.start()
+      if (!process.isAlive) {
+        throw IOException("Symbolizer process is not alive. Executable: $symbolizerExe")
+      }
+
+      val stdin = OutputStreamWriter(process.outputStream, Charsets.UTF_8)
+      val stdout = BufferedReader(InputStreamReader(process.inputStream, Charsets.UTF_8))
+      procHolder = ProcessHolder(process, stdout, stdin)
+    }
+
+    @Synchronized
+    fun stop() {
+      procHolder?.dispose()
+      procHolder = null
+    }
   }
 
   private class ProcessHolder(val process: Process,
@@ -167,4 +298,23 @@ class LlvmSymbolizer(private val symbolizerExe: String,
       process.destroy()
     }
   }
-}
\ No newline at end of file
+
+  private class BatchRequest(val slot: ProcessSlot, val offsets: List<Long>, val future: Future<List<List<String>>>)
+
+  private data class ModuleId(val path: String, val buildId: String?, val length: Long, val lastModified: Long)
+
+  private data class CacheKey(val moduleId: ModuleId, val offset: Long)
+
+  /**
+   * A cached lookup, which may have found no symbol
+   */
+  private class CachedSymbol(val symbol: Symbol?)
+
+  companion object {
+    private const val BATCH_SIZE = 256
+    private const val PIPELINE_DEPTH = 8
+    private const val OFFSET_TIMEOUT_MSC = 50L
+    private val DEFAULT_POOL_SIZE = Runtime.getRuntime().availableProcessors().coerceIn(1, 4)
+    private const val DEFAULT_CACHE_SIZE = 100_000L
+  }
+}
@@ -45,6 +45,15 @@ interface NativeSymbolizer {
    */
   @Throws(IOException::class)
   fun symbolize(abiArch: String, module: File, offset: Long): Symbol?
+
+  /**
+   * Obtains information about the functions located at several offsets in a given module, which implementations
+   * can look up in a single batch.
+   * @return symbols info for each offset, in the same order, with null for the offsets that can't be symbolized
+   */
+  @Throws(IOException::class)
+  fun symbolize(abiArch: String, module: File, offsets: List<Long>): List<Symbol?> = offsets.map { symbolize(abiArch, module, it) }
+
   fun stop()
 }
 
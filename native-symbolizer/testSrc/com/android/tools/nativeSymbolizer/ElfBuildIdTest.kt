@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.nativeSymbolizer
+
+import com.android.testutils.TestUtils.resolveWorkspacePath
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+import java.io.File
+
+class ElfBuildIdTest {
+
+  @Test
+  fun readBuildIdOf32And64BitLibraries() {
+    // Expected values from `readelf -n`
+    assertThat(readElfBuildId(getTestPath("arm", "libnative-lib.so"))).isEqualTo("463de9a467d1bc1453c0e1f494308df8a8616b48")
+    assertThat(readElfBuildId(getTestPath("arm64", "libnative-lib.so"))).isEqualTo("9b3ea9b018209bd554c02186a62cf2c7cca3e915")
+    assertThat(readElfBuildId(getTestPath("x86", "libnative-lib.so"))).isEqualTo("77d9de6b9746662e7da8225fedd7533b57ded517")
+    assertThat(readElfBuildId(getTestPath("x86_64", "libnative-lib.so"))).isEqualTo("415446799bd7b2495e1056857fc6dfc724ffc002")
+  }
+
+  @Test
+  fun readBuildIdOfNonElfFile() {
+    assertThat(readElfBuildId(getTestPath("no_libraries", "not_a_library.txt"))).isNull()
+    assertThat(readElfBuildId(getTestPath("does_not_exist.so"))).isNull()
+  }
+
+  private fun getTestPath(vararg part: String): File {
+    var testDataDir = resolveWorkspacePath("tools/adt/idea/native-symbolizer/testData/bin/")
+    for (p in part) {
+      testDataDir = testDataDir.resolve(p)
+    }
+    return testDataDir.toAbsolutePath().toFile()
+  }
+}
@@ -64,6 +64,30 @@ class LlvmSymbolizerTest {
     }
   }
 
+  @Test
+  fun testSymbolizeBatch() {
+    val symbolizer = createSymbolizer()
+    for (arch in architectures) {
+      val expectedSymbols = getTestPath(arch, EXPECTED_SYMBOLS_FILE_NAME).readLines().map { it.split('|') }
+      // +1 to get an address within the function, rather than function start address. The unknown offset must not
+      // prevent the other ones from being symbolized, and the repeated offsets must all be symbolized.
+      val offsets = expectedSymbols.map { it[0].toLong(16) + 1 } + 0xffffffffff + expectedSymbols.map { it[0].toLong(16) + 1 }
+
+      val symbols = symbolizer.symbolize(arch, modulePath, offsets)
+      Assert.assertEquals(offsets.size, symbols.size)
+      Assert.assertNull(symbols[expectedSymbols.size])
+      for ((i, offset) in offsets.withIndex()) {
+        if (i == expectedSymbols.size) continue
+        val expected = expectedSymbols[i % (expectedSymbols.size + 1)]
+        val symbol = symbols[i]!!
+        Assert.assertEquals(expected[1], symbol.name)
+        Assert.assertEquals(modulePath.absolutePath, symbol.module)
+        // Batched results are the same as individual ones, whether they come from llvm-symbolizer or from the cache
+        Assert.assertEquals(symbol, symbolizer.symbolize(arch, modulePath, offset))
+      }
+    }
+  }
+
   @Test
   fun testSymbolizeBinariesBuiltOnWindows() {
     val arch = "arm64"
@@ -22,7 +22,13 @@ import com.android.tools.profilers.stacktrace.NativeFrameSymbolizer;
 import com.intellij.openapi.diagnostic.Logger;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * Wrapper for {@link NativeSymbolizer} to return a NativeCallStack.NativeFrame instead of the Symbol class which profilers don't have a
@@ -55,7 +61,46 @@ public class IntelliJNativeFrameSymbolizer implements NativeFrameSymbolizer {
     catch (IOException | RuntimeException e) {
       getLogger().warn(e);
     }
+    return buildFrame(unsymbolizedFrame, instructionOffset, symbol);
+  }
+
+  /**
+   * Groups the frames by module, so that each module is symbolized with a single batch request.
+   */
+  @NotNull
+  @Override
+  public List<NativeCallStack.NativeFrame> symbolize(String abi, @NotNull List<NativeCallStack.NativeFrame> unsymbolizedFrames) {
+    Map<String, List<Integer>> indexesByModule = new LinkedHashMap<>();
+    for (int i = 0; i < unsymbolizedFrames.size(); i++) {
+      indexesByModule.computeIfAbsent(unsymbolizedFrames.get(i).getModuleName(), module -> new ArrayList<>()).add(i);
+    }
 
+    NativeCallStack.NativeFrame[] frames = new NativeCallStack.NativeFrame[unsymbolizedFrames.size()];
+    for (Map.Entry<String, List<Integer>> entry : indexesByModule.entrySet()) {
+      List<Integer> indexes = entry.getValue();
+      List<Long> offsets = new ArrayList<>(indexes.size());
+      for (int index : indexes) {
+        offsets.add(getOffsetOfPreviousInstruction(unsymbolizedFrames.get(index).getModuleOffset()));
+      }
+      List<Symbol> symbols = null;
+      try {
+        symbols = mySymbolizer.symbolize(abi, new File(entry.getKey()), offsets);
+      }
+      catch (IOException | RuntimeException e) {
+        getLogger().warn(e);
+      }
+      for (int i = 0; i < indexes.size(); i++) {
+        int index = indexes.get(i);
+        frames[index] = buildFrame(unsymbolizedFrames.get(index), offsets.get(i), symbols == null ? null : symbols.get(i));
+      }
+    }
+    return Arrays.asList(frames);
+  }
+
+  @NotNull
+  private static NativeCallStack.NativeFrame buildFrame(@NotNull NativeCallStack.NativeFrame unsymbolizedFrame,
+                                                        long instructionOffset,
+                                                        @Nullable Symbol symbol) {
     NativeCallStack.NativeFrame.Builder builder = unsymbolizedFrame.toBuilder();
     if (symbol == null) {
       String unfoundSymbolName = String.format("0x%x", instructionOffset);
@@ -76,7 +121,7 @@ public class IntelliJNativeFrameSymbolizer implements NativeFrameSymbolizer {
     mySymbolizer.stop();
   }
 
-  private long getOffsetOfPreviousInstruction(long offset) {
+  private static long getOffsetOfPreviousInstruction(long offset) {
     // In non-bottom frames native backtrace contains addresses where the execution will
     // continue after a function call. After symbolization such addresses often resolved
     // to the source line immediately following the function call.
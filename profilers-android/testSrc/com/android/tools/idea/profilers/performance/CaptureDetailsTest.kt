@@ -95,21 +95,41 @@ class CaptureDetailsTest {
                                                      CaptureDetails.Type.FLAME_CHART.build,
                                                      ::FlameChartDetailsView)
 
+  @Test
+  fun benchmarkTopDownLargeCapture() = benchmarkInitAndUpdate(benchmarkTopDownInit,
+                                                              benchmarkTopDownRangeChange,
+                                                              benchmarkTopDownFilterChange,
+                                                              CaptureDetails.Type.TOP_DOWN.build,
+                                                              ::TopDownDetailsView,
+                                                              "synthetic-5M",
+                                                              ::largeTestTrees)
+
+  @Test
+  fun benchmarkBottomUpLargeCapture() = benchmarkInitAndUpdate(benchmarkBottomUpInit,
+                                                               benchmarkBottomUpRangeChange,
+                                                               benchmarkBottomUpFilterChange,
+                                                               CaptureDetails.Type.BOTTOM_UP.build,
+                                                               ::BottomUpDetailsView,
+                                                               "synthetic-5M",
+                                                               ::largeTestTrees)
+
   private fun<T: CaptureDetails>
     benchmarkInitAndUpdate(benchmarkInit: BenchmarkRunner,
                            benchmarkRangeUpdate: BenchmarkRunner,
                            benchmarkFilterChange: BenchmarkRunner,
                            initModel: (ClockType, Range, List<CaptureNode>, CpuCapture, (Runnable) -> Unit) -> CaptureDetails,
-                           initTree: (StudioProfilersView, T) -> CaptureDetailsView) {
-    withTestData { range, captureNodes, cpuCapture ->
+                           initTree: (StudioProfilersView, T) -> CaptureDetailsView,
+                           tag: String = "synthetic",
+                           trees: (Long, Long) -> List<CaptureNode> = ::testTrees) {
+    withTestData(trees) { range, captureNodes, cpuCapture ->
       val profilersView = fakeProfilersView()
 
-      val treeView = benchmarkInit("synthetic") {
+      val treeView = benchmarkInit(tag) {
         initTree(profilersView, initModel(ClockType.GLOBAL, range, captureNodes, cpuCapture,
                                           ApplicationManager.getApplication()::executeOnPooledThread) as T)
       }
 
-      benchmarkRangeUpdate("synthetic") {
+      benchmarkRangeUpdate(tag) {
         val lo = range.min
         val hi = range.max
         val updateIntervals = 100
@@ -121,7 +141,7 @@ class CaptureDetailsTest {
         repeat(updateIntervals) { range.set(range.min - d, hi) }
       }
 
-      benchmarkFilterChange("synthetic") {
+      benchmarkFilterChange(tag) {
         listOf("100", "42", "n/a", "").forEach { str ->
           captureNodes.forEach { node ->
             node.applyFilter(Filter(str))
@@ -140,7 +160,7 @@ class CaptureDetailsTest {
     return SessionProfilersView(profilers, FakeIdeProfilerComponents(), disposableRule.disposable)
   }
 
-  private fun<A> withTestData(test: (Range, List<CaptureNode>, CpuCapture) -> A): A {
+  private fun<A> withTestData(trees: (Long, Long) -> List<CaptureNode>, test: (Range, List<CaptureNode>, CpuCapture) -> A): A {
     val lo = 0
     val hi = Int.MAX_VALUE
     // for the purpose of benchmarking, we avoid mockito, because it can insert code that slows down
@@ -162,35 +182,44 @@ class CaptureDetailsTest {
       override fun getTags(): MutableSet<String> = TODO()
     }
     return test(Range(lo.toDouble(), hi.toDouble()),
-                testTrees(lo.toLong(), hi.toLong()),
+                trees(lo.toLong(), hi.toLong()),
                 cpuCapture)
   }
 
   private fun testTrees(lo: Long, hi: Long): List<CaptureNode> {
-    val numIds = 512
-    var nextId = 0
-
-    fun captureTree(branching: Int, depth: Int, lo: Long, hi: Long): CaptureNode =
-      CaptureNode(model("${nextId++ % numIds}")).apply {
-        startGlobal = lo
-        endGlobal = hi
-        startThread = lo
-        endThread = hi
-        if (depth > 0) {
-          val l = (hi - lo) / branching
-          (0 until branching).forEach { i ->
-            addChild(captureTree(branching, depth - 1, lo + i * l, lo + (i + 1) * l))
-          }
-        }
-      }
-
     val l = (hi - lo) / 4
-    return listOf(captureTree(4, 8, lo, lo + l),
-                  captureTree(16, 4, lo + l, lo + 2*l),
-                  captureTree(2, 16, lo + 2*l,lo + 3*l),
-                  captureTree(1, 1000, lo + 3*l, hi))
+    val ids = IdGenerator()
+    return listOf(captureTree(ids, 4, 8, lo, lo + l),
+                  captureTree(ids, 16, 4, lo + l, lo + 2*l),
+                  captureTree(ids, 2, 16, lo + 2*l,lo + 3*l),
+                  captureTree(ids, 1, 1000, lo + 3*l, hi))
   }
 
+  /**
+   * About 5.6M nodes, the size of a long sampled capture of a busy app
+   */
+  private fun largeTestTrees(lo: Long, hi: Long): List<CaptureNode> = listOf(captureTree(IdGenerator(), 4, 11, lo, hi))
+
+  private class IdGenerator {
+    private val numIds = 512
+    private var nextId = 0
+    fun next() = "${nextId++ % numIds}"
+  }
+
+  private fun captureTree(ids: IdGenerator, branching: Int, depth: Int, lo: Long, hi: Long): CaptureNode =
+    CaptureNode(model(ids.next())).apply {
+      startGlobal = lo
+      endGlobal = hi
+      startThread = lo
+      endThread = hi
+      if (depth > 0) {
+        val l = (hi - lo) / branching
+        (0 until branching).forEach { i ->
+          addChild(captureTree(ids, branching, depth - 1, lo + i * l, lo + (i + 1) * l))
+        }
+      }
+    }
+
   private fun model(name: String) = object : CaptureNodeModel {
     override fun getName() = name
     override fun getFullName() = name
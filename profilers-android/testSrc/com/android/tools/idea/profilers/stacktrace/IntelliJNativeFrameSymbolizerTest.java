@@ -22,7 +22,13 @@ import com.android.tools.nativeSymbolizer.NativeSymbolizer;
 import com.android.tools.nativeSymbolizer.Symbol;
 import com.android.tools.profiler.proto.Memory.NativeCallStack;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.junit.Test;
@@ -60,8 +66,31 @@ public class IntelliJNativeFrameSymbolizerTest {
     assertThat(symbolizedFrame2).isEqualTo(expectedSymbolizedFrame2);
   }
 
+  @Test
+  public void testSymbolizeFramesInBatchesPerModule() {
+    FakeNativeSymbolizer nativeSymbolizer = new FakeNativeSymbolizer();
+    IntelliJNativeFrameSymbolizer frameSymbolizer = new IntelliJNativeFrameSymbolizer(nativeSymbolizer);
+
+    List<NativeCallStack.NativeFrame> frames = Arrays.asList(
+      NativeCallStack.NativeFrame.newBuilder().setModuleName("test2").setModuleOffset(100).build(),
+      NativeCallStack.NativeFrame.newBuilder().setModuleName("test3").setModuleOffset(200).build(),
+      NativeCallStack.NativeFrame.newBuilder().setModuleName("test2").setModuleOffset(300).build());
+    List<NativeCallStack.NativeFrame> symbolizedFrames = frameSymbolizer.symbolize("arm", frames);
+
+    assertThat(nativeSymbolizer.batches).containsExactly("test2", Arrays.asList(99L, 299L), "test3", Collections.singletonList(199L))
+      .inOrder();
+    assertThat(symbolizedFrames).hasSize(3);
+    for (int i = 0; i < frames.size(); i++) {
+      assertThat(symbolizedFrames.get(i)).isEqualTo(frameSymbolizer.symbolize("arm", frames.get(i)));
+    }
+
+    // Frames of unsupported architectures keep their offset as name.
+    assertThat(frameSymbolizer.symbolize("arm64", frames).get(1).getSymbolName()).isEqualTo(String.format("0x%x", 200 - 1));
+  }
+
   private static class FakeNativeSymbolizer implements NativeSymbolizer {
     private final HashSet<String> supportedArch = new HashSet<>();
+    private final Map<String, List<Long>> batches = new LinkedHashMap<>();
 
     public FakeNativeSymbolizer() {
       supportedArch.add("arm");
@@ -83,6 +112,17 @@ public class IntelliJNativeFrameSymbolizerTest {
                         1000 + (int)offset);
     }
 
+    @NotNull
+    @Override
+    public List<Symbol> symbolize(@NotNull String abiArch, @NotNull File module, @NotNull List<Long> offsets) {
+      batches.put(module.getName(), offsets);
+      List<Symbol> symbols = new ArrayList<>();
+      for (long offset : offsets) {
+        symbols.add(symbolize(abiArch, module, offset));
+      }
+      return symbols;
+    }
+
     @Override
     public void stop() {
     }
@@ -15,6 +15,11 @@
  */
 package com.android.tools.profilers
 
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionException
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentLinkedQueue
+
 /**
  * This class implements cached functions that can be invalidated to recompute the next time they're called
  */
@@ -37,4 +42,49 @@ class CachedFunction<K,V>(private val cache: MutableMap<K,V>, private val comput
 
 class CappedLRUMap<K, V>(val maxSize: Int): LinkedHashMap<K, V>(maxSize, .8f, true) {
   override fun removeEldestEntry(eldest: MutableMap.MutableEntry<K, V>?) = size > maxSize
-}
\ No newline at end of file
+}
+
+/**
+ * A cached function whose results may be requested from several threads at once. Each result is computed once, by the first thread
+ * requesting it and without holding any lock, so the results of different keys are computed in parallel while the other threads
+ * requesting the same key wait for it. At most [maxSize] results are kept, the earliest computed ones are evicted first.
+ */
+class ConcurrentCachedFunction<K : Any, V>(private val maxSize: Int, private val compute: (K) -> V): (K) -> V {
+  private val cache = ConcurrentHashMap<K, CompletableFuture<V>>()
+  private val insertionOrder = ConcurrentLinkedQueue<K>()
+
+  override operator fun invoke(key: K): V {
+    val created = CompletableFuture<V>()
+    val cached = cache.putIfAbsent(key, created)
+    if (cached != null) {
+      return try {
+        cached.join()
+      }
+      catch (e: CompletionException) {
+        throw e.cause ?: e
+      }
+    }
+    insertionOrder.add(key)
+    evictEldest(key)
+    return try {
+      compute(key).also { created.complete(it) }
+    }
+    catch (t: Throwable) {
+      // Don't cache failures, the next request computes the result again.
+      cache.remove(key, created)
+      created.completeExceptionally(t)
+      throw t
+    }
+  }
+
+  private fun evictEldest(newest: K) {
+    while (cache.size > maxSize) {
+      val eldest = insertionOrder.poll() ?: return
+      if (eldest == newest) {
+        insertionOrder.add(eldest)
+        return
+      }
+      cache.remove(eldest)
+    }
+  }
+}
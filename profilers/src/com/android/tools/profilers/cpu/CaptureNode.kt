@@ -157,6 +157,14 @@ open class CaptureNode(val data: CaptureNodeModel, var clockType: ClockType) : H
    */
   fun applyFilter(filter: Filter) = computeFilter(filter).also { aspectModelPlaceHolder?.changed(Aspect.FILTER_APPLIED) }
 
+  /**
+   * Sets the clock type of this node and all its descendants, which changes their start and end.
+   */
+  fun updateClockType(clockType: ClockType) {
+    descendantsStream.forEach { it.clockType = clockType }
+    aspectModelPlaceHolder?.changed(Aspect.CLOCK_TYPE_CHANGED)
+  }
+
   /**
    * Recursively applies filter to this node and its children.
    */
@@ -253,7 +261,12 @@ open class CaptureNode(val data: CaptureNodeModel, var clockType: ClockType) : H
     /**
      * Fired when a [Filter] is applied to this node.
      */
-    FILTER_APPLIED
+    FILTER_APPLIED,
+
+    /**
+     * Fired when the clock type of this node and its descendants is changed.
+     */
+    CLOCK_TYPE_CHANGED
   }
 }
 
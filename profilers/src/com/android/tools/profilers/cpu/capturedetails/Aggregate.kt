@@ -50,18 +50,16 @@ abstract class Aggregate<T: Aggregate<T>> {
       { nodes.all { it.childCount == 0 } }
     )
 
-    override fun totalOver(clockType: ClockType, range: Range): Summary {
-      var total = 0.0
-      var childrenTotal = 0.0
-      for (node in nodes) {
-        total += getIntersection(range, node, clockType)
-        for (child in node.children) {
-          childrenTotal += getIntersection(range, child, clockType)
-        }
-      }
-      return Summary(total, childrenTotal)
+    // Intervals of the nodes and of their children, so that totals over a range take a couple of binary searches
+    private val intervals = PerClockType { clockType ->
+      IntervalSums.of(nodes, clockType) to IntervalSums.of(nodes.asSequence().flatMap(CaptureNode::children).asIterable(), clockType)
     }
 
+    override fun totalOver(clockType: ClockType, range: Range): Summary =
+      intervals[clockType].let { (nodeIntervals, childIntervals) ->
+        Summary(nodeIntervals.intersectionLength(range), childIntervals.intersectionLength(range))
+      }
+
     companion object {
       @JvmStatic fun rootAt(node: CaptureNode) = TopDown(node.data.id, listOf(node))
     }
@@ -89,44 +87,47 @@ abstract class Aggregate<T: Aggregate<T>> {
       )
     }
 
-    override fun totalOver(clockType: ClockType, range: Range): Summary {
-      // how much time was spent in this call stack path, and in the functions it called
-      var total = 0.0
+    private val intervals = PerClockType { clockType ->
+      Triple(IntervalSums.of(outerNodes(clockType), clockType),
+             IntervalSums.of(nodes, clockType),
+             IntervalSums.of(nodes.asSequence().flatMap(CaptureNode::children).asIterable(), clockType))
+    }
+
+    override fun totalOver(clockType: ClockType, range: Range): Summary =
+      intervals[clockType].let { (outerIntervals, nodeIntervals, childIntervals) ->
+        // how much time was spent in this call stack path, and in the functions it called
+        val total = outerIntervals.intersectionLength(range)
+        // how much time was spent doing work directly in this call stack path
+        val self = nodeIntervals.intersectionLength(range) - childIntervals.intersectionLength(range)
+        Summary(total, total - self)
+      }
 
-      // The node that is at the top of the call stack, e.g if the call stack looks like B [0..30] -> B [1..20],
-      // then the second method can't be outerSoFarByParent.
-      // It's used to exclude nodes which aren't at the top of the
-      // call stack from the total time calculation.
+    /**
+     * The nodes at the top of the call stack, whose time is counted in the total.
+     * E.g if the call stack looks like B [0..30] -> B [1..20], then the second method isn't at the top of the call stack.
+     */
+    private fun outerNodes(clockType: ClockType): List<CaptureNode> {
       // When multiple threads with the same ID are selected, the nodes are merged. When this happens nodes may be interlaced between
-      // each of the threads. As such we keep a mapping of outer so far by parents to keep the book keeping done properly.
-      val outerSoFarByParent = IdentityHashMap<CaptureNode, CaptureNode>()
-
-      // how much time was spent doing work directly in this call stack path
-      var self = 0.0
+      // each of the threads. As such we keep a mapping of outer so far by root to keep the book keeping done properly.
+      val outerSoFarByRoot = IdentityHashMap<CaptureNode, CaptureNode>()
+      val outerNodes = mutableListOf<CaptureNode>()
+      val end = when (clockType) {
+        ClockType.GLOBAL -> CaptureNode::endGlobal
+        ClockType.THREAD -> CaptureNode::endThread
+      }
       // myNodes is sorted by CaptureNode#getStart() in increasing order,
       // if they are equal then ancestor comes first
       for (node in nodes) {
         // We use the root node to distinguish if two nodes share the same tree. In the event of multi-select we want to compute the bottom
         // up calculation independently for each tree then sum them after the fact.
-        // TODO(153306735): Cache the root calculation, otherwise our update algorithm is going to be O(n*depth) instead of O(n)
         val root = node.findRootNode()
-        val outerSoFar = outerSoFarByParent[root]
-        if (outerSoFar == null || node.end > outerSoFar.end) {
-          if (outerSoFar != null) {
-            // |outerSoFarByParent| is at the top of the call stack
-            total += getIntersection(range, outerSoFar, clockType)
-          }
-          outerSoFarByParent[root] = node
+        val outerSoFar = outerSoFarByRoot[root]
+        if (outerSoFar == null || end(node) > end(outerSoFar)) {
+          outerSoFarByRoot[root] = node
+          outerNodes.add(node)
         }
-        self += getIntersection(range, node, clockType) -
-                node.children.sumOf { getIntersection(range, it, clockType) }
-      }
-      for (outerSoFar in outerSoFarByParent.values) {
-        // |outerSoFarByParent| is at the top of the call stack
-        total += getIntersection(range, outerSoFar, clockType)
       }
-      val childrenTotal = total - self
-      return Summary(total, childrenTotal)
+      return outerNodes
     }
 
     companion object {
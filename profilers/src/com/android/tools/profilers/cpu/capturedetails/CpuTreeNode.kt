@@ -21,6 +21,7 @@ import java.util.Collections
 import java.util.Enumeration
 import java.util.IdentityHashMap
 import java.util.Objects
+import java.util.stream.Collectors
 import javax.swing.tree.TreeNode
 
 /**
@@ -44,16 +45,15 @@ class CpuTreeNode<T: Aggregate<T>>(val base: T,
       when {
         childrenDelegate.isInitialized() -> {
           val oldNode = childrenDelegate.value.associateByTo(IdentityHashMap(), CpuTreeNode<T>::base)
-          val children = base.children.asSequence()
+          val children = base.children
             .filter { it.overlapsWith(newRange) }
-            .map { child ->
+            .forkJoinMap { child ->
               oldNode[child]?.let { childNode -> when {
                 diffs.any(child::overlapsWith) -> childNode.withRange(clockType, newRange, diffs, order)
                 else -> childNode
               } } ?: of(child, clockType, newRange, order)
             }
-            .maybe(Sequence<CpuTreeNode<T>>::sortedWith, order)
-            .toList()
+            .maybe(List<CpuTreeNode<T>>::sortedWith, order)
           CpuTreeNode(base, total, totalChildren, children.asLazy())
         }
         else ->
@@ -103,9 +103,25 @@ class CpuTreeNode<T: Aggregate<T>>(val base: T,
 
     internal fun<T: Aggregate<T>> of(bases: List<T>, clockType: ClockType, range: Range, order: Comparator<CpuTreeNode<T>>?): List<CpuTreeNode<T>> =
       bases
-        .mapNotNull { base -> base.takeIf { base.overlapsWith(range) }?.let { of(base, clockType, range, order) } }
+        .filter { base -> base.overlapsWith(range) }
+        .forkJoinMap { base -> of(base, clockType, range, order) }
         .maybe(List<CpuTreeNode<T>>::sortedWith, order)
 
+    /**
+     * Below this many siblings, computing their totals on the calling thread is cheaper than forking
+     */
+    private const val FORK_THRESHOLD = 32
+
+    /**
+     * Map siblings on the common fork-join pool, as their sub-trees are independent and (re)computing their totals
+     * dominates range changes on large captures. The aggregates are safe to share, as they are immutable apart from
+     * their thread-safe lazy parts.
+     */
+    private fun<A, B> List<A>.forkJoinMap(f: (A) -> B): List<B> = when {
+      size < FORK_THRESHOLD -> map(f)
+      else -> parallelStream().map(f).collect(Collectors.toList())
+    }
+
     private fun<X> X.asLazy() = object: Lazy<X> {
       override val value get() = this@asLazy
       override fun isInitialized() = true
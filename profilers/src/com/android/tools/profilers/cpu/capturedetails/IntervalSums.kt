@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.cpu.capturedetails
+
+import com.android.tools.adtui.model.Range
+import com.android.tools.perflib.vmtrace.ClockType
+import com.android.tools.profilers.cpu.CaptureNode
+
+/**
+ * Prefix sums over a fixed set of (possibly overlapping) intervals, answering the total length of their
+ * intersections with a range in O(log n) instead of walking every interval.
+ *
+ * The total intersection with `[a, b]` is `F(b) - F(a)`, where `F(t)` is the length of all intervals below `t`,
+ * i.e. the sum of `t - start` over the starts below `t` minus the sum of `t - end` over the ends below `t`.
+ * Both sums come from a binary search in the sorted starts (resp. ends) and their prefix sums.
+ */
+internal class IntervalSums private constructor(private val starts: LongArray, private val ends: LongArray) {
+  // Offset to keep the prefix sums small, which matters for the precision of the differences taken in `lengthBelow`
+  private val origin = if (starts.isEmpty()) 0L else starts[0]
+  private val startSums = prefixSums(starts, origin)
+  private val endSums = prefixSums(ends, origin)
+
+  /**
+   * Sum of the intersection lengths of all intervals with `range`, as [Range.getIntersectionLength] would sum them up.
+   */
+  fun intersectionLength(range: Range): Double = when {
+    starts.isEmpty() || range.isEmpty -> 0.0
+    else -> lengthBelow(range.max) - lengthBelow(range.min)
+  }
+
+  private fun lengthBelow(t: Double): Double {
+    val x = t - origin
+    val startCount = countAtMost(starts, t)
+    val endCount = countAtMost(ends, t)
+    val startPart = startCount * x - (if (startCount == 0) 0L else startSums[startCount - 1])
+    val endPart = endCount * x - (if (endCount == 0) 0L else endSums[endCount - 1])
+    return startPart - endPart
+  }
+
+  companion object {
+    @JvmStatic
+    fun of(nodes: Iterable<CaptureNode>, clockType: ClockType): IntervalSums {
+      val starts = LongArrayBuilder()
+      val ends = LongArrayBuilder()
+      for (node in nodes) {
+        val start = node.startOf(clockType)
+        starts.add(start)
+        ends.add(maxOf(start, node.endOf(clockType))) // malformed intervals contribute nothing, as in `getIntersectionLength`
+      }
+      return IntervalSums(starts.toSortedArray(), ends.toSortedArray())
+    }
+
+    private fun CaptureNode.startOf(clockType: ClockType) = when (clockType) {
+      ClockType.GLOBAL -> startGlobal
+      ClockType.THREAD -> startThread
+    }
+
+    private fun CaptureNode.endOf(clockType: ClockType) = when (clockType) {
+      ClockType.GLOBAL -> endGlobal
+      ClockType.THREAD -> endThread
+    }
+
+    private fun prefixSums(values: LongArray, origin: Long) = LongArray(values.size).also { sums ->
+      var sum = 0L
+      values.forEachIndexed { i, value ->
+        sum += value - origin
+        sums[i] = sum
+      }
+    }
+
+    /**
+     * Number of elements of the sorted `values` that are at most `t`
+     */
+    private fun countAtMost(values: LongArray, t: Double): Int {
+      var low = 0
+      var high = values.size
+      while (low < high) {
+        val mid = (low + high) ushr 1
+        if (values[mid] <= t) low = mid + 1 else high = mid
+      }
+      return low
+    }
+  }
+
+  private class LongArrayBuilder {
+    private var values = LongArray(16)
+    private var size = 0
+
+    fun add(value: Long) {
+      if (size == values.size) values = values.copyOf(size * 2)
+      values[size++] = value
+    }
+
+    fun toSortedArray() = values.copyOf(size).also { it.sort() }
+  }
+}
+
+/**
+ * Lazily computed value for each clock type, safe to share between the threads expanding a tree
+ */
+internal class PerClockType<T>(compute: (ClockType) -> T) {
+  private val global = lazy { compute(ClockType.GLOBAL) }
+  private val thread = lazy { compute(ClockType.THREAD) }
+
+  operator fun get(clockType: ClockType): T = when (clockType) {
+    ClockType.GLOBAL -> global.value
+    ClockType.THREAD -> thread.value
+  }
+}
@@ -15,17 +15,20 @@
  */
 package com.android.tools.profilers.cpu.nodemodel
 
+import java.util.concurrent.ConcurrentHashMap
+
 /**
  * This Factory returns instances of {@link SystemTraceNodeModel}s, guaranteeing that nodes that
- * represents a same object would be mapped to a single instance.
+ * represents a same object would be mapped to a single instance. It can be shared by threads building trees in parallel.
  */
 class SystemTraceNodeFactory {
-  private val nodeMap = mutableMapOf<String, SystemTraceNodeModel>()
+  private val nodeMap = ConcurrentHashMap<String, SystemTraceNodeModel>()
 
   fun getNode(name: String): SystemTraceNodeModel {
-    return nodeMap.getOrPut(name) {
-      val canonicalName = NUMBER_SUFFIX_PATTERN.replace(name, "")
-      SystemTraceNodeModel(canonicalName, name)
+    // Unlike getOrPut, computeIfAbsent is atomic, so threads sharing this factory always get the same instance.
+    return nodeMap.computeIfAbsent(name) {
+      val canonicalName = NUMBER_SUFFIX_PATTERN.replace(it, "")
+      SystemTraceNodeModel(canonicalName, it)
     }
   }
 
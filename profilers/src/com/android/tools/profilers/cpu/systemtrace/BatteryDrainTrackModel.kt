@@ -16,6 +16,7 @@
 package com.android.tools.profilers.cpu.systemtrace
 
 import com.android.tools.adtui.model.LineChartModel
+import com.android.tools.adtui.model.MinMaxPyramidDataSeries
 import com.android.tools.adtui.model.Range
 import com.android.tools.adtui.model.RangedContinuousSeries
 import com.android.tools.adtui.model.SeriesData
@@ -23,7 +24,6 @@ import com.android.tools.adtui.model.axis.AxisComponentModel
 import com.android.tools.adtui.model.axis.ResizingAxisComponentModel
 import com.android.tools.adtui.model.formatter.PercentAxisFormatter
 import com.android.tools.adtui.model.formatter.SingleUnitAxisFormatter
-import com.android.tools.profilers.cpu.LazyDataSeries
 import kotlin.math.abs
 
 class BatteryDrainTrackModel(dataSeries: List<SeriesData<Long>>, viewRange: Range, trackName: String) : LineChartModel() {
@@ -54,7 +54,7 @@ class BatteryDrainTrackModel(dataSeries: List<SeriesData<Long>>, viewRange: Rang
 
     axisComponentModel = ResizingAxisComponentModel.Builder(yRange, axisFormatter).build()
     batteryDrainCounterSeries = RangedContinuousSeries(
-      "Battery Drain", viewRange, yRange, LazyDataSeries { dataSeries }
+      "Battery Drain", viewRange, yRange, MinMaxPyramidDataSeries.lazyOf { dataSeries }
     )
     add(batteryDrainCounterSeries)
   }
@@ -16,18 +16,17 @@
 package com.android.tools.profilers.cpu.systemtrace
 
 import com.android.tools.adtui.model.LineChartModel
+import com.android.tools.adtui.model.MinMaxPyramidDataSeries
 import com.android.tools.adtui.model.Range
 import com.android.tools.adtui.model.RangedContinuousSeries
 import com.android.tools.adtui.model.SeriesData
-import com.android.tools.profilers.cpu.LazyDataSeries
-import java.util.function.Supplier
 
 /**
  * Track model for CPU frequency counter in CPU capture stage.
  */
 class CpuFrequencyTrackModel(dataSeries: List<SeriesData<Long>>, viewRange: Range) : LineChartModel() {
   val cpuFrequencySeries = RangedContinuousSeries("CPU Frequency", viewRange, Range(0.0, MAX_FREQ_KHZ),
-                                                  LazyDataSeries(Supplier { dataSeries }))
+                                                  MinMaxPyramidDataSeries.lazyOf { dataSeries })
 
   init {
     add(cpuFrequencySeries)
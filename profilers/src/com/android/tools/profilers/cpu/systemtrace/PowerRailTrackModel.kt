@@ -16,11 +16,10 @@
 package com.android.tools.profilers.cpu.systemtrace
 
 import com.android.tools.adtui.model.LineChartModel
+import com.android.tools.adtui.model.MinMaxPyramidDataSeries
 import com.android.tools.adtui.model.Range
 import com.android.tools.adtui.model.RangedContinuousSeries
 import com.android.tools.adtui.model.SeriesData
-import com.android.tools.profilers.cpu.LazyDataSeries
-import java.util.function.Supplier
 
 /**
  * Track model for Power counter in CPU capture stage.
@@ -36,7 +35,7 @@ class PowerRailTrackModel(dataSeries: List<SeriesData<Long>>, viewRange: Range)
 
   val powerRailCounterSeries = RangedContinuousSeries("Power Rails", viewRange,
                                                       Range(minValue.toDouble() - baselineNormalizer, maxValue.toDouble()),
-                                                      LazyDataSeries(Supplier { dataSeries }))
+                                                      MinMaxPyramidDataSeries.lazyOf { dataSeries })
   init {
     add(powerRailCounterSeries)
   }
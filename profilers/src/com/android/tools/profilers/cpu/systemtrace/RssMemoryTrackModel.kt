@@ -16,13 +16,13 @@
 package com.android.tools.profilers.cpu.systemtrace
 
 import com.android.tools.adtui.model.LineChartModel
+import com.android.tools.adtui.model.MinMaxPyramidDataSeries
 import com.android.tools.adtui.model.Range
 import com.android.tools.adtui.model.RangedContinuousSeries
 import com.android.tools.adtui.model.SeriesData
 import com.android.tools.adtui.model.axis.AxisComponentModel
 import com.android.tools.adtui.model.axis.ResizingAxisComponentModel
 import com.android.tools.adtui.model.formatter.MemoryAxisFormatter
-import com.android.tools.profilers.cpu.LazyDataSeries
 
 /**
  * Track model for RSS (Resident Set Size) memory counter in CPU capture stage.
@@ -36,7 +36,7 @@ class RssMemoryTrackModel(dataSeries: List<SeriesData<Long>>, viewRange: Range)
     val yRange = Range(0.0, maxValue.toDouble())
     axisComponentModel = ResizingAxisComponentModel.Builder(yRange, axisFormatter).build()
     memoryCounterSeries = RangedContinuousSeries(
-      "RSS", viewRange, yRange, LazyDataSeries { dataSeries }
+      "RSS", viewRange, yRange, MinMaxPyramidDataSeries.lazyOf { dataSeries }
     )
     add(memoryCounterSeries)
   }
@@ -19,6 +19,7 @@ import com.android.tools.adtui.model.Range
 import com.android.tools.adtui.model.SeriesData
 import com.android.tools.profilers.CachedFunction
 import com.android.tools.profilers.CappedLRUMap
+import com.android.tools.profilers.ConcurrentCachedFunction
 import com.android.tools.profilers.cpu.BaseCpuCapture
 import com.android.tools.profilers.cpu.CaptureNode
 import com.android.tools.profilers.cpu.CpuThreadInfo
@@ -30,14 +31,15 @@ import kotlin.streams.toList
 class SystemTraceCpuCapture(traceId: Long,
                             model: SystemTraceModelAdapter,
                             captureNodes: Map<CpuThreadInfo, CaptureNode>,
-                            private val threadStateDataSeries: Map<Int, List<SeriesData<ThreadState>>>,
-                            private val cpuThreadSliceInfoStates: Map<Int, List<SeriesData<CpuThreadSliceInfo>>>,
+                            buildThreadStates: (Int) -> List<SeriesData<ThreadState>>,
+                            override val cpuCount: Int,
+                            buildCpuThreadSliceInfoStates: (Int) -> List<SeriesData<CpuThreadSliceInfo>>,
                             override val cpuUtilizationSeries: List<SeriesData<Long>>,
-                            override val cpuCounters: List<Map<String, List<SeriesData<Long>>>>,
-                            override val memoryCounters: Map<String, List<SeriesData<Long>>>,
-                            override val powerRailCounters: Map<String, List<SeriesData<Long>>>,
-                            override val batteryDrainCounters: Map<String, List<SeriesData<Long>>>,
-                            private val blastBufferQueueCounter: List<SeriesData<Long>>,
+                            cpuCounters: Lazy<List<Map<String, List<SeriesData<Long>>>>>,
+                            memoryCounters: Lazy<Map<String, List<SeriesData<Long>>>>,
+                            powerRailCounters: Lazy<Map<String, List<SeriesData<Long>>>>,
+                            batteryDrainCounters: Lazy<Map<String, List<SeriesData<Long>>>>,
+                            blastBufferQueueCounter: Lazy<List<SeriesData<Long>>>,
                             private val frameManager: SystemTraceFrameManager,
                             private val surfaceflingerManager: SystemTraceSurfaceflingerManager,
                             initialViewRangeUs: Range)
@@ -49,12 +51,23 @@ class SystemTraceCpuCapture(traceId: Long,
   override val isMissingData = model.isCapturePossibleCorrupted()
   override val androidFrameLayers = model.getAndroidFrameLayers()
   override val androidFrameTimelineEvents = model.getAndroidFrameTimelineEvents()
-  override val cpuCount get() = cpuThreadSliceInfoStates.size
   override val surfaceflingerEvents get() = surfaceflingerManager.surfaceflingerEvents
   override val vsyncCounterValues get() = surfaceflingerManager.vsyncCounterValues
   override val renderThreadId get() = frameManager.renderThreadId
   val gpuThreadId by lazy { threads.first { it.isGpuThread }.id }
 
+  // The series of the thread and CPU core tracks are built the first time they are queried, so that opening a capture doesn't
+  // depend on how many threads it has. Series queried at the same time are built in parallel, and only a bounded number of them are
+  // kept, the others are built again if needed.
+  private val threadStateDataSeries = ConcurrentCachedFunction(MAX_CACHED_THREADS, buildThreadStates)
+  private val cpuThreadSliceInfoStates = ConcurrentCachedFunction(MAX_CACHED_CPUS, buildCpuThreadSliceInfoStates)
+
+  override val cpuCounters by cpuCounters
+  override val memoryCounters by memoryCounters
+  override val powerRailCounters by powerRailCounters
+  override val batteryDrainCounters by batteryDrainCounters
+  private val blastBufferQueueCounter by blastBufferQueueCounter
+
   // Each search is a full scan over the thread's nodes, and GPU's result is dependent on Render's,
   // and this is potentially called many times during rendering, so we cache the few most recent ones.
   // The cache isn't weak, but it's small and it dies with this capture, so there shouldn't be any serious leak.
@@ -100,12 +113,12 @@ class SystemTraceCpuCapture(traceId: Long,
    * Atrace reports a sched_switch event each time the thread state changes, because of this the thread states
    * reported here are more accurate than the ones sampled via perfd.
    */
-  override fun getThreadStatesForThread(threadId: Int) = threadStateDataSeries[threadId] ?: listOf()
+  override fun getThreadStatesForThread(threadId: Int) = threadStateDataSeries(threadId)
 
   /**
    * The information is computed from the sched_switch trace line reported by atrace.
    */
-  override fun getCpuThreadSliceInfoStates(cpu: Int) = cpuThreadSliceInfoStates[cpu] ?: listOf()
+  override fun getCpuThreadSliceInfoStates(cpu: Int) = cpuThreadSliceInfoStates(cpu)
   override fun getFrames(threadType: FrameThread) = frameManager.getFrames(threadType)
   override fun getSystemTraceData() = this
 
@@ -113,6 +126,9 @@ class SystemTraceCpuCapture(traceId: Long,
     const val MAIN_THREAD_EVENT_PREFIX = "Choreographer#doFrame"
     const val RENDER_THREAD_EVENT_PREFIX = "DrawFrames"
     const val GPU_THREAD_EVENT_PREFIX = "waiting for GPU completion"
+
+    private const val MAX_CACHED_THREADS = 256
+    private const val MAX_CACHED_CPUS = 64
   }
 }
 
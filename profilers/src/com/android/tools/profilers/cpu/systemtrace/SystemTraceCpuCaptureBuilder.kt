@@ -24,6 +24,7 @@ import com.android.tools.profilers.cpu.ThreadState
 import com.android.tools.profilers.cpu.nodemodel.SystemTraceNodeFactory
 import java.util.concurrent.TimeUnit
 import java.util.function.UnaryOperator
+import java.util.stream.Collectors
 import kotlin.math.max
 
 class SystemTraceCpuCaptureBuilder(private val model: SystemTraceModelAdapter) {
@@ -31,6 +32,106 @@ class SystemTraceCpuCaptureBuilder(private val model: SystemTraceModelAdapter) {
   companion object {
     val UTILIZATION_BUCKET_LENGTH_US = TimeUnit.MILLISECONDS.toMicros(50)
     val BLAST_BUFFER_QUEUE_COUNTER_REGEX = Regex("QueuedBuffer - .+BLAST#\\d")
+
+    /**
+     * Builds the list of [ThreadState] series of a thread.
+     */
+    private fun buildThreadStateData(schedulingEvents: List<SchedulingEventModel>): List<SeriesData<ThreadState>> {
+      val states: MutableList<SeriesData<ThreadState>> = ArrayList()
+
+      // We use a (state, timestamp) tuple and assume the state is valid until the next state.
+      // But Perfetto uses a (state, timestamp, duration) triplet to timebox each state.
+      var (lastState, lastEndTimestampUs) = Pair(ThreadState.NO_ACTIVITY, 0L)
+      for (sched in schedulingEvents) {
+        if (sched.state !== lastState) {
+          states.add(SeriesData(sched.startTimestampUs, sched.state))
+          lastState = sched.state
+          lastEndTimestampUs = sched.endTimestampUs
+        }
+      }
+
+      // To avoid the last thread state slice extending until
+      // the end of user-dictated capture time, a fake NO_ACTIVITY
+      // event is appended to terminate the last state slice.
+      // Non-empty check makes sure we don't insert state data
+      // when there is actually isn't any.
+      if (lastState != ThreadState.NO_ACTIVITY && states.isNotEmpty()) {
+        states.add(SeriesData(lastEndTimestampUs, ThreadState.NO_ACTIVITY))
+      }
+
+      return states
+    }
+
+    /**
+     * Builds the list of [CpuThreadSliceInfo] series of a CPU, i.e. which thread was running on it and when.
+     */
+    private fun buildCpuSchedulingData(cpu: CpuCoreModel,
+                                       threadNames: ThreadNames,
+                                       startUserTimeUs: Long,
+                                       endUserTimeUs: Long): List<SeriesData<CpuThreadSliceInfo>> {
+      val processList: MutableList<SeriesData<CpuThreadSliceInfo>> = ArrayList()
+      var lastSliceEnd = cpu.schedulingEvents.firstOrNull()?.endTimestampUs ?: startUserTimeUs
+      for (sched in cpu.schedulingEvents) {
+
+        // If we have a gap, add a placeholder entry representing no threads using this cpu.
+        if (sched.startTimestampUs > lastSliceEnd) {
+          processList.add(SeriesData(lastSliceEnd, CpuThreadSliceInfo.NULL_THREAD))
+        }
+
+        val processName = threadNames.getProcessName(sched.processId)
+        val threadName = threadNames.getThreadName(sched.processId, sched.threadId)
+
+        processList.add(
+          SeriesData(sched.startTimestampUs,
+                     CpuThreadSliceInfo(
+                       sched.threadId, threadName,
+                       sched.processId, processName,
+                       sched.durationUs)))
+        lastSliceEnd = sched.endTimestampUs
+      }
+
+      // We are done with this Cpu so we add a null process at the end to properly render this segment.
+      processList.add(SeriesData(endUserTimeUs, CpuThreadSliceInfo.NULL_THREAD))
+      return processList
+    }
+
+    private fun buildMainProcessMemoryCountersData(mainProcessCounters: Map<String, CounterModel>): Map<String, List<SeriesData<Long>>> {
+      return mainProcessCounters.entries
+        .filter { it.key.startsWith("mem.") }
+        .associate { it.key to convertCounterToSeriesData(it.value) }
+        .toSortedMap()
+    }
+
+    /**
+     * Builds the series of the power rail or battery drain [counters], by their name without [prefix].
+     */
+    private fun buildCountersData(counters: List<CounterModel>, prefix: String): Map<String, List<SeriesData<Long>>> {
+      return counters.associate {
+        it.name.replace(prefix, "") to convertCounterToSeriesData(it)
+      }.toSortedMap()
+    }
+
+    private fun buildCpuCountersData(cpuCores: List<CpuCoreModel>): List<Map<String, List<SeriesData<Long>>>> {
+      return cpuCores.map {
+        cpuCoreModel -> cpuCoreModel.countersMap.asSequence().associate { it.key to convertCounterToSeriesData(it.value) }
+      }
+    }
+
+    /**
+     * In S+, the BLAST buffer queue replaces SurfaceFlinger buffer queue and thus we need to extract the BLAST buffer queue counter from
+     * the app process.
+     */
+    private fun buildBlastBufferQueueCounterData(mainProcessCounters: Map<String, CounterModel>): List<SeriesData<Long>> {
+      val counter = mainProcessCounters
+                      .filterKeys { it.matches(BLAST_BUFFER_QUEUE_COUNTER_REGEX) }.values
+                      .firstOrNull { it.valuesByTimestampUs.isNotEmpty() }
+                    ?: return emptyList()
+      return convertCounterToSeriesData(counter)
+    }
+
+    private fun convertCounterToSeriesData(counter: CounterModel): List<SeriesData<Long>> {
+      return counter.valuesByTimestampUs.map { SeriesData(it.key, it.value.toLong()) }.toList()
+    }
   }
 
   fun build(traceId: Long, mainProcessId: Int, initialViewRange: Range): SystemTraceCpuCapture {
@@ -38,20 +139,39 @@ class SystemTraceCpuCaptureBuilder(private val model: SystemTraceModelAdapter) {
     val mainProcess = model.getProcessById(mainProcessId) ?: throw IllegalArgumentException(
       "A process with the id $mainProcessId was not found while parsing the capture.")
 
+    // The call trees are built right away, as the capture needs all of them to find the main thread and to collapse tags,
+    // but everything else is built the first time its track is queried (see [SystemTraceCpuCapture]).
     val captureTreeNodes = buildCaptureTreeNodes(mainProcess)
-    val threadState = buildThreadStateData(mainProcess)
-    val cpuState = buildCpuStateData(mainProcess)
-    val cpuCounters = buildCpuCountersData()
-    val memoryCounters = buildMainProcessMemoryCountersData(mainProcess)
-    val powerRailCounters = buildPowerRailCountersData()
-    val batteryDrainCounters = buildBatteryDrainCountersData()
-    val blastBufferQueueCounter = buildBlastBufferQueueCounterData(mainProcess)
+    val utilizationData = buildCpuUtilizationData(mainProcess)
 
     val frameManager = SystemTraceFrameManager(mainProcess)
     val sfManager = SystemTraceSurfaceflingerManager(model, mainProcess.name)
 
-    return SystemTraceCpuCapture(traceId, model, captureTreeNodes, threadState, cpuState.schedulingData, cpuState.utilizationData,
-                                 cpuCounters, memoryCounters, powerRailCounters, batteryDrainCounters, blastBufferQueueCounter,
+    // The tracks are built by functions of the companion object, from the parts of the model they need only, so that the capture
+    // doesn't keep the whole model alive, in particular the trace events the call trees have been built from.
+    val startUserTimeUs = model.getCaptureStartTimestampUs()
+    val endUserTimeUs = model.getCaptureEndTimestampUs()
+    val schedulingEventsByThreadId = mainProcess.getThreads().associate { it.id to it.schedulingEvents }
+    val cpuCores = model.getCpuCores()
+    val coresById = cpuCores.associateBy { it.id }
+    val threadNames = ThreadNames(model)
+    val mainProcessCounters = mainProcess.counterByName
+    val powerRails = model.getPowerRails()
+    val batteryDrain = model.getBatteryDrain()
+
+    return SystemTraceCpuCapture(traceId, model, captureTreeNodes,
+                                 { threadId -> schedulingEventsByThreadId[threadId]?.let(::buildThreadStateData) ?: listOf() },
+                                 coresById.size,
+                                 { cpu ->
+                                   coresById[cpu]?.let { buildCpuSchedulingData(it, threadNames, startUserTimeUs, endUserTimeUs) }
+                                   ?: listOf()
+                                 },
+                                 utilizationData,
+                                 lazy { buildCpuCountersData(cpuCores) },
+                                 lazy { buildMainProcessMemoryCountersData(mainProcessCounters) },
+                                 lazy { buildCountersData(powerRails, "power.rails.") },
+                                 lazy { buildCountersData(batteryDrain, "batt.") },
+                                 lazy { buildBlastBufferQueueCounterData(mainProcessCounters) },
                                  frameManager, sfManager, initialViewRange)
   }
 
@@ -60,18 +180,23 @@ class SystemTraceCpuCaptureBuilder(private val model: SystemTraceModelAdapter) {
    * The capture nodes are built from [TraceEventModel] maintaining the order and hierarchy.
    */
   private fun buildCaptureTreeNodes(mainProcessModel: ProcessModel): Map<CpuThreadInfo, CaptureNode> {
-    val threadToCaptureNodeMap = mutableMapOf<CpuThreadInfo, CaptureNode>()
     val nodeFactory = SystemTraceNodeFactory()
 
-    for (thread in mainProcessModel.getThreads()) {
-      val threadInfo = CpuThreadSliceInfo(thread.id, thread.name, mainProcessModel.id, mainProcessModel.name)
+    // The threads' trees are independent, so they are built on the common fork-join pool.
+    val threads = mainProcessModel.getThreads()
+    val roots = threads.parallelStream().map { thread ->
       val root = CaptureNode(nodeFactory.getNode(thread.name), ClockType.GLOBAL)
       root.startGlobal = model.getCaptureStartTimestampUs()
       root.endGlobal = model.getCaptureEndTimestampUs()
-      threadToCaptureNodeMap[threadInfo] = root
       for (event in thread.traceEvents) {
         root.addChild(populateCaptureNode(event, 1, nodeFactory))
       }
+      root
+    }.collect(Collectors.toList())
+
+    val threadToCaptureNodeMap = mutableMapOf<CpuThreadInfo, CaptureNode>()
+    threads.forEachIndexed { i, thread ->
+      threadToCaptureNodeMap[CpuThreadSliceInfo(thread.id, thread.name, mainProcessModel.id, mainProcessModel.name)] = roots[i]
     }
     return threadToCaptureNodeMap
   }
@@ -99,47 +224,10 @@ class SystemTraceCpuCaptureBuilder(private val model: SystemTraceModelAdapter) {
   }
 
   /**
-   * Builds a map of thread id to a list of [ThreadState] series.
+   * Builds the CPU utilization series of the main process, the total time its threads spent on any CPU, in buckets of
+   * [UTILIZATION_BUCKET_LENGTH_US].
    */
-  private fun buildThreadStateData(mainProcessModel: ProcessModel): Map<Int, List<SeriesData<ThreadState>>> {
-    val threadToStateSeries = mutableMapOf<Int, List<SeriesData<ThreadState>>>()
-
-    for (thread in mainProcessModel.getThreads()) {
-      val states: MutableList<SeriesData<ThreadState>> = ArrayList()
-      threadToStateSeries[thread.id] = states
-
-      // We use a (state, timestamp) tuple and assume the state is valid until the next state.
-      // But Perfetto uses a (state, timestamp, duration) triplet to timebox each state.
-      var (lastState, lastEndTimestampUs) = Pair(ThreadState.NO_ACTIVITY, 0L)
-      for (sched in thread.schedulingEvents) {
-        if (sched.state !== lastState) {
-          states.add(SeriesData(sched.startTimestampUs, sched.state))
-          lastState = sched.state
-          lastEndTimestampUs = sched.endTimestampUs
-        }
-      }
-
-      // To avoid the last thread state slice extending until
-      // the end of user-dictated capture time, a fake NO_ACTIVITY
-      // event is appended to terminate the last state slice.
-      // Non-empty check makes sure we don't insert state data
-      // when there is actually isn't any.
-      if (lastState != ThreadState.NO_ACTIVITY && states.isNotEmpty()) {
-        states.add(SeriesData(lastEndTimestampUs, ThreadState.NO_ACTIVITY))
-      }
-    }
-
-    return threadToStateSeries
-  }
-
-  private data class CpuStateData(
-    val schedulingData: Map<Int, List<SeriesData<CpuThreadSliceInfo>>>,
-    val utilizationData: List<SeriesData<Long>>)
-
-  /**
-   * Builds a map of CPU ids to a list of [CpuThreadInfo] series. While building the CPU map it also builds a CPU utilization series.
-   */
-  private fun buildCpuStateData(mainProcessModel: ProcessModel): CpuStateData {
+  private fun buildCpuUtilizationData(mainProcessModel: ProcessModel): List<SeriesData<Long>> {
 
     // Initialize utilizationData with the buckets.
     val utilizationData = mutableListOf<SeriesData<Long>>()
@@ -151,35 +239,8 @@ class SystemTraceCpuCaptureBuilder(private val model: SystemTraceModelAdapter) {
       i += UTILIZATION_BUCKET_LENGTH_US
     }
 
-    val schedData = mutableMapOf<Int, List<SeriesData<CpuThreadSliceInfo>>>()
-
-    // Create a lookup table for thread names, to be used when the full process info is missing
-    val threadNames = model.getProcesses().flatMap { it.getThreads() }.associate { it.id to it.name }
-
     for (cpu in model.getCpuCores()) {
-      val processList: MutableList<SeriesData<CpuThreadSliceInfo>> = ArrayList()
-      var lastSliceEnd = cpu.schedulingEvents.firstOrNull()?.endTimestampUs ?: startUserTimeUs
       for (sched in cpu.schedulingEvents) {
-
-        // If we have a gap, add a placeholder entry representing no threads using this cpu.
-        if (sched.startTimestampUs > lastSliceEnd) {
-          processList.add(SeriesData(lastSliceEnd, CpuThreadSliceInfo.NULL_THREAD))
-        }
-
-        // Some of PIDs and TIDs are not present on the process/thread lists, so we do our best to find their data here.
-        val processName = model.getProcessById(sched.processId)?.getSafeProcessName() ?: ""
-        // Start by checking threads in the known processes, fallback to dangling threads and again to an empty name.
-        val threadName = model.getProcessById(sched.processId)?.threadById?.get(sched.threadId)?.name
-                         ?: model.getDanglingThread(sched.threadId)?.name
-                         ?: ""
-
-        processList.add(
-          SeriesData(sched.startTimestampUs,
-                     CpuThreadSliceInfo(
-                       sched.threadId, threadName,
-                       sched.processId, processName,
-                       sched.durationUs)))
-        lastSliceEnd = sched.endTimestampUs
         if (sched.processId == mainProcessModel.id) {
           // Calculate our start time.
           val startBucket = (sched.startTimestampUs - startUserTimeUs) / UTILIZATION_BUCKET_LENGTH_US
@@ -198,10 +259,6 @@ class SystemTraceCpuCaptureBuilder(private val model: SystemTraceModelAdapter) {
           }
         }
       }
-
-      // We are done with this Cpu so we add a null process at the end to properly render this segment.
-      processList.add(SeriesData(endUserTimeUs, CpuThreadSliceInfo.NULL_THREAD))
-      schedData[cpu.id] = processList
     }
 
     // When we have finished processing all CPUs the utilization series contains the total time each CPU spent in each bucket.
@@ -213,47 +270,24 @@ class SystemTraceCpuCaptureBuilder(private val model: SystemTraceModelAdapter) {
       series
     })
 
-    return CpuStateData(schedData, utilizationData)
-  }
-
-  private fun buildMainProcessMemoryCountersData(mainProcessModel: ProcessModel): Map<String, List<SeriesData<Long>>> {
-    return mainProcessModel.counterByName.entries
-      .filter { it.key.startsWith("mem.") }
-      .associate { it.key to convertCounterToSeriesData(it.value) }
-      .toSortedMap()
-  }
-
-  private fun buildPowerRailCountersData(): Map<String, List<SeriesData<Long>>> {
-    return model.getPowerRails().associate {
-      it.name.replace("power.rails.", "") to convertCounterToSeriesData(it)
-    }.toSortedMap()
+    return utilizationData
   }
+}
 
-  private fun buildBatteryDrainCountersData(): Map<String, List<SeriesData<Long>>> {
-    return model.getBatteryDrain().associate {
-      it.name.replace("batt.", "") to convertCounterToSeriesData(it)
-    }.toSortedMap()
-  }
-
-  private fun buildCpuCountersData(): List<Map<String, List<SeriesData<Long>>>> {
-    return model.getCpuCores().map {
-      cpuCoreModel -> cpuCoreModel.countersMap.asSequence().associate { it.key to convertCounterToSeriesData(it.value) }
-    }
+/**
+ * The names of the processes and threads of a model, which the CPU core tracks show for the threads scheduled on each core.
+ */
+private class ThreadNames(model: SystemTraceModelAdapter) {
+  private val processNames = model.getProcesses().associate { it.id to it.getSafeProcessName() }
+  private val threadNamesByProcessId = model.getProcesses().associate { process ->
+    process.id to process.threadById.mapValues { it.value.name }
   }
+  private val danglingThreadNames = model.getDanglingThreads().associate { it.id to it.name }
 
-  /**
-   * In S+, the BLAST buffer queue replaces SurfaceFlinger buffer queue and thus we need to extract the BLAST buffer queue counter from the
-   * app process.
-   */
-  private fun buildBlastBufferQueueCounterData(mainProcessModel: ProcessModel): List<SeriesData<Long>> {
-    val counter = mainProcessModel.counterByName
-                    .filterKeys { it.matches(BLAST_BUFFER_QUEUE_COUNTER_REGEX) }.values
-                    .firstOrNull { it.valuesByTimestampUs.isNotEmpty() }
-                  ?: return emptyList()
-    return convertCounterToSeriesData(counter)
-  }
+  // Some of PIDs and TIDs are not present on the process/thread lists, so we do our best to find their data here.
+  fun getProcessName(processId: Int) = processNames[processId] ?: ""
 
-  private fun convertCounterToSeriesData(counter: CounterModel): List<SeriesData<Long>> {
-    return counter.valuesByTimestampUs.map { SeriesData(it.key, it.value.toLong()) }.toList()
-  }
-}
\ No newline at end of file
+  // Start by checking threads in the known processes, fallback to dangling threads and again to an empty name.
+  fun getThreadName(processId: Int, threadId: Int) =
+    threadNamesByProcessId[processId]?.get(threadId) ?: danglingThreadNames[threadId] ?: ""
+}
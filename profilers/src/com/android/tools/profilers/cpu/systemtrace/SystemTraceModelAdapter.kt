@@ -43,6 +43,11 @@ interface SystemTraceModelAdapter {
    */
   fun getDanglingThread(tid: Int): ThreadModel?
 
+  /**
+   * @return all the dangling threads, see [getDanglingThread].
+   */
+  fun getDanglingThreads(): Collection<ThreadModel> = emptyList()
+
   fun getCpuCores(): List<CpuCoreModel>
 
   fun getSystemTraceTechnology(): TraceType
@@ -476,16 +476,19 @@ class LiveAllocationCaptureObject(private val client: ProfilerClient,
   fun resolveNativeBacktrace(backtrace: NativeBacktrace?): NativeCallStack = when {
     backtrace == null || backtrace.addressesCount == 0 -> NativeCallStack.getDefaultInstance()
     else -> NativeCallStack.newBuilder().let { builder ->
+      // Symbolize the new frames together, so that the frames of each module are looked up in one batch.
+      val unsymbolizedFrames = backtrace.addressesList.distinct().filter { !nativeFrameMap.containsKey(it) }.map { address ->
+        val (module, offset) = getRegionByAddress(address)?.let {
+          Pair(it.name, it.fileOffset + (address - it.startAddress)) // Adjust address to represent module offset.
+        } ?: Pair("", 0L)
+        NativeFrame.newBuilder().setAddress(address).setModuleName(module).setModuleOffset(offset).build()
+      }
+      if (unsymbolizedFrames.isNotEmpty()) {
+        stage.studioProfilers.ideServices.nativeFrameSymbolizer
+          .symbolize(stage.studioProfilers.sessionsManager.selectedSessionMetaData.processAbi, unsymbolizedFrames)
+          .forEachIndexed { i, symbolizedFrame -> nativeFrameMap.put(unsymbolizedFrames[i].address, symbolizedFrame) }
+      }
       for (address in backtrace.addressesList) {
-        if (!nativeFrameMap.containsKey(address)) {
-          val (module, offset) = getRegionByAddress(address)?.let {
-            Pair(it.name, it.fileOffset + (address - it.startAddress)) // Adjust address to represent module offset.
-          } ?: Pair("", 0L)
-          val unsymbolizedFrame = NativeFrame.newBuilder().setAddress(address).setModuleName(module).setModuleOffset(offset).build()
-          val symbolizedFrame = stage.studioProfilers.ideServices.nativeFrameSymbolizer
-            .symbolize(stage.studioProfilers.sessionsManager.selectedSessionMetaData.processAbi, unsymbolizedFrame)
-          nativeFrameMap.put(address, symbolizedFrame)
-        }
         builder.addFrames(nativeFrameMap[address])
       }
       builder.build()
@@ -97,6 +97,7 @@ class TraceProcessorModel(builder: Builder) : SystemTraceModelAdapter, Serializa
   override fun getProcessById(id: Int) = processMap[id]
   override fun getProcesses() = processMap.values.toList()
   override fun getDanglingThread(tid: Int): ThreadModel? = danglingThreads[tid]
+  override fun getDanglingThreads(): Collection<ThreadModel> = danglingThreads.values
   override fun getCpuCores() = cpuCores
   override fun getPowerRails(): List<CounterModel> = powerRails
   override fun getBatteryDrain(): List<CounterModel> = batteryDrain
@@ -16,6 +16,8 @@
 package com.android.tools.profilers.stacktrace;
 
 import com.android.tools.profiler.proto.Memory.NativeCallStack;
+import java.util.ArrayList;
+import java.util.List;
 import org.jetbrains.annotations.NotNull;
 
 /**
@@ -25,6 +27,20 @@ public interface NativeFrameSymbolizer {
   @NotNull
   NativeCallStack.NativeFrame symbolize(String abi, NativeCallStack.NativeFrame unsymbolizedFrame);
 
+  /**
+   * Resolves several frames at once, which lets implementations look up the frames of the same module in a single batch.
+   *
+   * @return the resolved frames, in the same order as {@code unsymbolizedFrames}
+   */
+  @NotNull
+  default List<NativeCallStack.NativeFrame> symbolize(String abi, @NotNull List<NativeCallStack.NativeFrame> unsymbolizedFrames) {
+    List<NativeCallStack.NativeFrame> frames = new ArrayList<>(unsymbolizedFrames.size());
+    for (NativeCallStack.NativeFrame frame : unsymbolizedFrames) {
+      frames.add(symbolize(abi, frame));
+    }
+    return frames;
+  }
+
   /**
    * Stop / Cleanup any processes or state created by the symbolizer. This is a call made outside the symbolize function as an optimization.
    * It is the callers responsibility to call stop when done processing symbols allowing the symbolizer to reset state.
@@ -16,7 +16,14 @@
 package com.android.tools.profilers
 
 import com.google.common.truth.Truth.assertThat
+import org.junit.Assert.fail
 import org.junit.Test
+import java.util.concurrent.Callable
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
 import kotlin.math.sin
 
 class CachedFunctionTest {
@@ -63,6 +70,61 @@ class CachedFunctionTest {
     assertThat(countedInc.invocationCount).isEqualTo(11)
   }
 
+  @Test
+  fun `concurrent cached function stays within cap and evicts the earliest results`() {
+    val countedInc = CountedFunction(Int::inc)
+    val cachedInc = ConcurrentCachedFunction(3, countedInc)
+    for (i in 1..10) {
+      assertThat(cachedInc(i)).isEqualTo(i.inc())
+    }
+    assertThat(countedInc.invocationCount).isEqualTo(10)
+    repeat(10) {
+      cachedInc(8)
+      cachedInc(9)
+      cachedInc(10)
+    }
+    assertThat(countedInc.invocationCount).isEqualTo(10)
+    cachedInc(7)
+    assertThat(countedInc.invocationCount).isEqualTo(11)
+  }
+
+  @Test
+  fun `concurrent cached function computes each key once and different keys in parallel`() {
+    val computing = CountDownLatch(2)
+    val invocations = ConcurrentHashMap<Int, AtomicInteger>()
+    val cachedInc = ConcurrentCachedFunction<Int, Int>(10) { x ->
+      invocations.computeIfAbsent(x) { AtomicInteger() }.incrementAndGet()
+      // Both keys have to be computing at the same time for either of them to finish.
+      computing.countDown()
+      assertThat(computing.await(10, TimeUnit.SECONDS)).isTrue()
+      x.inc()
+    }
+    val executor = Executors.newFixedThreadPool(8)
+    try {
+      val results = (1..8).map { i -> executor.submit(Callable { cachedInc(i % 2) }) }.map { it.get(10, TimeUnit.SECONDS) }
+      assertThat(results.toSet()).containsExactly(1, 2)
+      assertThat(invocations.mapValues { it.value.get() }).containsExactly(0, 1, 1, 1)
+    }
+    finally {
+      executor.shutdownNow()
+    }
+  }
+
+  @Test
+  fun `concurrent cached function does not cache failures`() {
+    var failing = true
+    val cachedInc = ConcurrentCachedFunction<Int, Int>(10) { x -> if (failing) throw IllegalStateException("failed") else x.inc() }
+    try {
+      cachedInc(1)
+      fail("Expected the computation to fail")
+    }
+    catch (e: IllegalStateException) {
+      assertThat(e).hasMessageThat().isEqualTo("failed")
+    }
+    failing = false
+    assertThat(cachedInc(1)).isEqualTo(2)
+  }
+
   private class CountedFunction<X, Y>(private val f: (X) -> Y) : (X) -> Y {
     var invocationCount = 0
       private set
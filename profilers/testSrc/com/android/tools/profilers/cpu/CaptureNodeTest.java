@@ -157,6 +157,21 @@ public class CaptureNodeTest {
     assertThat(latch.await(100, TimeUnit.MILLISECONDS)).isTrue();
   }
 
+  @Test
+  public void testClockTypeAspect() throws Exception {
+    CaptureNode node = new CaptureNode(new SingleNameModel("Foo"));
+    CaptureNode child = new CaptureNode(new SingleNameModel("Bar"));
+    node.addChild(child);
+    child.setStartThread(1);
+    child.setStartGlobal(10);
+    CountDownLatch latch = new CountDownLatch(1);
+    node.getAspectModel().addDependency(new AspectObserver()).onChange(CaptureNode.Aspect.CLOCK_TYPE_CHANGED, () -> latch.countDown());
+    node.updateClockType(ClockType.THREAD);
+    assertThat(latch.await(100, TimeUnit.MILLISECONDS)).isTrue();
+    assertThat(child.getClockType()).isEqualTo(ClockType.THREAD);
+    assertThat(child.getStart()).isEqualTo(1);
+  }
+
   @Test
   public void abbreviationCollapseAdjacentUninterestingNodes() {
     Function<CaptureNodeModel, Function<List<CaptureNode>, CaptureNode>> make = data -> children -> {
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.cpu.capturedetails
+
+import com.android.tools.adtui.model.Range
+import com.android.tools.perflib.vmtrace.ClockType
+import com.android.tools.profilers.cpu.CaptureNode
+import com.android.tools.profilers.cpu.nodemodel.SingleNameModel
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+import kotlin.random.Random
+
+class IntervalSumsTest {
+  @Test
+  fun `intersection length sums up overlapping intervals`() {
+    val sums = IntervalSums.of(listOf(node(0, 10), node(5, 15), node(20, 30)), ClockType.GLOBAL)
+    assertThat(sums.intersectionLength(Range(0.0, 30.0))).isEqualTo(30.0)
+    assertThat(sums.intersectionLength(Range(8.0, 22.0))).isEqualTo(11.0)
+    assertThat(sums.intersectionLength(Range(16.0, 19.0))).isEqualTo(0.0)
+    assertThat(sums.intersectionLength(Range(-10.0, -5.0))).isEqualTo(0.0)
+    assertThat(sums.intersectionLength(Range())).isEqualTo(0.0)
+  }
+
+  @Test
+  fun `intersection length uses the given clock`() {
+    val node = node(0, 10).apply {
+      startThread = 2
+      endThread = 4
+    }
+    assertThat(IntervalSums.of(listOf(node), ClockType.GLOBAL).intersectionLength(Range(0.0, 10.0))).isEqualTo(10.0)
+    assertThat(IntervalSums.of(listOf(node), ClockType.THREAD).intersectionLength(Range(0.0, 10.0))).isEqualTo(2.0)
+  }
+
+  @Test
+  fun `intersection length matches summing up each interval`() {
+    val random = Random(42)
+    val nodes = List(1000) {
+      val start = random.nextLong(1_000_000_000L, 1_000_100_000L)
+      node(start, start + random.nextLong(0, 5_000))
+    }
+    val sums = IntervalSums.of(nodes, ClockType.GLOBAL)
+    repeat(100) {
+      val min = random.nextDouble(999_990_000.0, 1_000_110_000.0)
+      val range = Range(min, min + random.nextDouble(0.0, 50_000.0))
+      val expected = nodes.sumOf { range.getIntersectionLength(it.startGlobal.toDouble(), it.endGlobal.toDouble()) }
+      assertThat(sums.intersectionLength(range)).isWithin(1e-3).of(expected)
+    }
+  }
+
+  @Test
+  fun `empty intervals`() {
+    assertThat(IntervalSums.of(listOf(), ClockType.GLOBAL).intersectionLength(Range(0.0, 10.0))).isEqualTo(0.0)
+  }
+
+  private fun node(start: Long, end: Long) = CaptureNode(SingleNameModel("n"), ClockType.GLOBAL).apply {
+    startGlobal = start
+    endGlobal = end
+    startThread = start
+    endThread = end
+  }
+}
@@ -46,6 +46,17 @@ class PowerRailTrackModelTest {
     assertThat(powerRailTrackModel.series[0].yRange.max).isEqualTo(1000.0)
   }
 
+  @Test
+  fun seriesIsReducedToChartWidth() {
+    val values = (0L until 100_000L).map { SeriesData(it * 10, it % 1000) }
+    val powerRailTrackModel = PowerRailTrackModel(values, Range(0.0, 1_000_000.0))
+
+    val reduced = powerRailTrackModel.powerRailCounterSeries.getSeries(100)
+    assertThat(reduced.size).isAtMost(4 * 100)
+    assertThat(reduced.maxOf { it.value }).isEqualTo(999L)
+    assertThat(powerRailTrackModel.powerRailCounterSeries.series).hasSize(100_000)
+  }
+
   companion object {
     private val NON_ZERO_RANGE_POWER_RAIL_VALUES = listOf(
       SeriesData(0L, 1000L),
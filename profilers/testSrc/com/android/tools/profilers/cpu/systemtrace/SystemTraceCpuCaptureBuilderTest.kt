@@ -110,6 +110,36 @@ class SystemTraceCpuCaptureBuilderTest {
     assertThat(systemTraceData.getThreadStatesForThread(2).size).isEqualTo(0)
   }
 
+  @Test
+  fun `thread and cpu tracks are built on demand and cached`() {
+    val threads = (1..100).associateWith {
+      ThreadModel(it, 1, "Thread $it",
+                  listOf(TraceEventModel("Event $it", 0, 10, 10, listOf())),
+                  listOf(SchedulingEventModel(ThreadState.RUNNING_CAPTURED, 0L, 5L, 5L, 5L, 1, it, 0)))
+    }
+    val processes = mapOf(1 to ProcessModel(1, "Process", threads, mapOf()))
+    val cpuCores = listOf(
+      CpuCoreModel(0, listOf(SchedulingEventModel(ThreadState.RUNNING, 0L, 40L, 40L, 40L, 1, 1, 0)), mapOf()))
+
+    val model = TestModel(processes, mapOf(), cpuCores, listOf(), listOf())
+    val capture = SystemTraceCpuCaptureBuilder(model).build(0L, 1, Range(0.0, 5.0))
+    val systemTraceData = capture.systemTraceData
+
+    // The call trees are built in parallel, but each one still belongs to its own thread.
+    assertThat(capture.threads).hasSize(100)
+    for (thread in capture.threads) {
+      assertThat(capture.getCaptureNode(thread.id)!!.children.single().data.nameWithSuffix).isEqualTo("Event ${thread.id}")
+    }
+
+    assertThat(systemTraceData.getThreadStatesForThread(42)).hasSize(2)
+    assertThat(systemTraceData.getThreadStatesForThread(42)).isSameAs(systemTraceData.getThreadStatesForThread(42))
+    assertThat(systemTraceData.getThreadStatesForThread(1000)).isEmpty()
+
+    assertThat(systemTraceData.cpuCount).isEqualTo(1)
+    assertThat(systemTraceData.getCpuThreadSliceInfoStates(0)).isSameAs(systemTraceData.getCpuThreadSliceInfoStates(0))
+    assertThat(systemTraceData.getCpuThreadSliceInfoStates(1)).isEmpty()
+  }
+
   @Test
   fun `buildCpuStateData - thread states`() {
     val processes = mapOf(
@@ -395,6 +425,7 @@ class SystemTraceCpuCaptureBuilderTest {
     override fun getProcessById(id: Int) = processes[id]
     override fun getProcesses(): List<ProcessModel> = processes.values.sortedBy { it.id }
     override fun getDanglingThread(tid: Int): ThreadModel? = danglingThreads[tid]
+    override fun getDanglingThreads(): Collection<ThreadModel> = danglingThreads.values
     override fun getCpuCores(): List<CpuCoreModel> = cpuCores
 
     override fun getSystemTraceTechnology() = TraceType.UNSPECIFIED
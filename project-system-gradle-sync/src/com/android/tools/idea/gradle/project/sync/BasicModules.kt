@@ -49,7 +49,8 @@ internal sealed class BasicIncompleteGradleModule(
   abstract fun getGradleModuleAction(
     internedModels: InternedModels,
     modelCacheLock: ReentrantLock,
-    buildInfo: BuildInfo
+    buildInfo: BuildInfo,
+    syncCounters: SyncCounters
   ): ActionToRun<GradleModule>
 }
 
@@ -86,7 +87,8 @@ internal class BasicV1AndroidModuleGradleProject(
   override fun getGradleModuleAction(
     internedModels: InternedModels,
     modelCacheLock: ReentrantLock,
-    buildInfo: BuildInfo
+    buildInfo: BuildInfo,
+    syncCounters: SyncCounters
   ): ActionToRun<GradleModule> {
     return ActionToRun(
       fun(controller: BuildController): GradleModule {
@@ -173,6 +175,7 @@ internal class BasicV2AndroidModuleGradleProject(
     internedModels: InternedModels,
     modelCacheLock: ReentrantLock,
     buildInfo: BuildInfo,
+    syncCounters: SyncCounters,
   ): ActionToRun<GradleModule> {
     return ActionToRun(
       fun(controller: BuildController): GradleModule {
@@ -192,7 +195,7 @@ internal class BasicV2AndroidModuleGradleProject(
         val gradlePropertiesModel = controller.findModel(gradleProject, GradlePropertiesModel::class.java)
           ?: error("Cannot get GradlePropertiesModel (V2) for project '$gradleProject'")
 
-        val modelCache = modelCacheV2Impl(internedModels, modelCacheLock, agpVersion, syncActionOptions.syncTestMode,
+        val modelCache = modelCacheV2Impl(internedModels, syncCounters.modelConversion, agpVersion, syncActionOptions.syncTestMode,
                                           syncActionOptions.flags.studioFlagMultiVariantAdditionalArtifactSupport)
         val rootBuildId = buildInfo.buildNameMap[":"] ?: error("Root build (':') not found")
         val buildId = buildInfo.buildNameMap[basicAndroidProject.buildName]
@@ -247,7 +250,8 @@ internal class BasicNonAndroidIncompleteGradleModule(gradleProject: BasicGradleP
   override fun getGradleModuleAction(
     internedModels: InternedModels,
     modelCacheLock: ReentrantLock,
-    buildInfo: BuildInfo
+    buildInfo: BuildInfo,
+    syncCounters: SyncCounters
   ): ActionToRun<GradleModule> {
     return ActionToRun(
       fun(controller: BuildController): GradleModule {
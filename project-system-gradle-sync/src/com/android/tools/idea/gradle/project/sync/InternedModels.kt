@@ -27,31 +27,42 @@ import com.android.tools.idea.gradle.model.impl.IdePreResolvedModuleLibraryImpl
 import com.android.tools.idea.gradle.model.impl.IdeUnknownLibraryImpl
 import com.android.tools.idea.gradle.model.impl.IdeUnresolvedModuleLibraryImpl
 import java.io.File
+import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.locks.ReentrantLock
 import kotlin.concurrent.withLock
 
+/**
+ * Interned strings and libraries shared by all models converted in one sync.
+ *
+ * All methods are thread-safe, so that models of different modules can be converted concurrently as they arrive from Gradle. Interning
+ * maps are concurrent hash maps, which lock only the bin being updated, and the library list and the allocated library names are guarded
+ * by the lock of the list held only while a new library is named and appended. The library list is the only place holding named library
+ * instances, interning maps only hold references to it, so that names re-allocated by [createLibraryTable] are seen by all lookups.
+ */
 class InternedModels(private val buildRootDirectory: File?) {
-  private val strings: MutableMap<String, String> = HashMap()
+  private val strings: ConcurrentHashMap<String, String> = ConcurrentHashMap()
+
+  // Guarded by itself.
   private val libraries: MutableList<IdeUnresolvedLibrary> = mutableListOf()
 
   // Library names are expected to be unique, and thus we track already allocated library names to be able to uniqualize names when
-  // necessary.
-  private val allocatedLibraryNames: MutableSet<String> = HashSet()
+  // necessary. Guarded by [libraries].
+  private var allocatedLibraryNames: MutableSet<String> = HashSet()
 
   // Different modules (Gradle projects) may (usually do) share the same libraries. We create up to two library instances in this case.
   // One is when the library is used as a regular dependency and one when it is used as a "provided" dependency. This is going to change
   // when we add support for dependency graphs and different entities are used to represent libraries and dependencies.
-  // We use mutable [Instances] objects to keep record of already instantiated and named library objects for each of the cases.
-  private val androidLibraries: MutableMap<IdeAndroidLibraryImpl, Pair<LibraryReference, IdeAndroidLibraryImpl>> = HashMap()
-  private val javaLibraries: MutableMap<IdeJavaLibraryImpl, Pair<LibraryReference, IdeJavaLibraryImpl>> = HashMap()
-  private val moduleLibraries: MutableMap<IdeUnresolvedLibrary, Pair<LibraryReference, IdeUnresolvedLibrary>> = HashMap()
-  private val unknownLibraries: MutableMap<IdeUnresolvedLibrary, Pair<LibraryReference, IdeUnresolvedLibrary>> = HashMap()
-  var artifactToLibraryReferenceMap: Map<File, LibraryReference>? = null ; private set
+  // We map unnamed library instances to the references of already instantiated and named library objects for each of the cases.
+  private val androidLibraries: ConcurrentHashMap<IdeAndroidLibraryImpl, LibraryReference> = ConcurrentHashMap()
+  private val javaLibraries: ConcurrentHashMap<IdeJavaLibraryImpl, LibraryReference> = ConcurrentHashMap()
+  private val moduleLibraries: ConcurrentHashMap<IdeUnresolvedLibrary, LibraryReference> = ConcurrentHashMap()
+  private val unknownLibraries: ConcurrentHashMap<IdeUnresolvedLibrary, LibraryReference> = ConcurrentHashMap()
+  @Volatile var artifactToLibraryReferenceMap: Map<File, LibraryReference>? = null ; private set
 
-  fun lookup(reference: LibraryReference): IdeUnresolvedLibrary = libraries[reference.libraryIndex]
+  fun lookup(reference: LibraryReference): IdeUnresolvedLibrary = synchronized(libraries) { libraries[reference.libraryIndex] }
 
   fun intern(string: String): String {
-    return strings.getOrPut(string) { string }
+    return strings.putIfAbsent(string, string) ?: string
   }
 
   /**
@@ -103,6 +114,21 @@ class InternedModels(private val buildRootDirectory: File?) {
     return unknownLibraries.createOrGetLibrary(unknownLibrary) { it }
   }
 
+  /**
+   * Interns a [library] obtained from a library table of a different sync. Artifact libraries are renamed so that their names are unique
+   * within this instance.
+   */
+  fun reintern(library: IdeUnresolvedLibrary): LibraryReference {
+    return when (library) {
+      is IdeAndroidLibraryImpl -> getOrCreate(library.copy(name = ""))
+      is IdeJavaLibraryImpl -> getOrCreate(library.copy(name = ""))
+      is IdePreResolvedModuleLibraryImpl -> getOrCreate(library)
+      is IdeUnresolvedModuleLibraryImpl -> getOrCreate(library)
+      is IdeUnknownLibraryImpl -> getOrCreate(library)
+      else -> error("Unexpected library type: ${library.javaClass}")
+    }
+  }
+
   /**
    * Finds an existing or creates a new library instance that match [unnamed]. When creating a new library generates a unique library name
    * based on its artifact address.
@@ -110,20 +136,56 @@ class InternedModels(private val buildRootDirectory: File?) {
    * Note: Naming mechanism is going to change in the future when dependencies and libraries are separated. We will try to assign more
    * meaningful names to libraries representing different artifact variants under the same Gradle coordinates.
    */
-  private fun <T : IdeUnresolvedLibrary> MutableMap<T, Pair<LibraryReference, T>>.createOrGetLibrary(
+  private fun <T : IdeUnresolvedLibrary> ConcurrentHashMap<T, LibraryReference>.createOrGetLibrary(
     unnamed: T,
     factory: (unnamed: T) -> T
   ): LibraryReference {
+    // Fast path for already interned libraries, which does not lock.
+    get(unnamed)?.let { return it }
     return computeIfAbsent(unnamed) {
-      val library = factory(unnamed)
-      val index = libraries.size
-      libraries.add(library)
-      LibraryReference(index) to library
-    }.first
+      synchronized(libraries) {
+        libraries.add(factory(unnamed))
+        LibraryReference(libraries.size - 1)
+      }
+    }
   }
 
   fun createLibraryTable(): IdeUnresolvedLibraryTableImpl {
-    return IdeUnresolvedLibraryTableImpl(libraries.toList())
+    return IdeUnresolvedLibraryTableImpl(canonicalizeLibraryNames())
+  }
+
+  /**
+   * Library names are allocated when libraries are created, and thus when two libraries share the same artifact address the one converted
+   * first gets the name without a suffix. When models are converted concurrently this order depends on timing, so the names of such
+   * libraries are re-allocated here in an order that depends only on the libraries themselves.
+   *
+   * Note: library indexes still follow the order in which libraries were converted, since they are already referenced by the converted
+   * models. They only link the models of this sync to its library table, libraries are identified by their names in the IDE.
+   */
+  private fun canonicalizeLibraryNames(): List<IdeUnresolvedLibrary> = synchronized(libraries) {
+    val conflictingGroups = libraries
+      .withIndex()
+      .filter { it.value is IdeArtifactLibrary }
+      .groupBy { convertToLibraryName((it.value as IdeArtifactLibrary).artifactAddress, buildRootDirectory) }
+      .filterValues { it.size > 1 }
+    if (conflictingGroups.isEmpty()) return@synchronized libraries.toList()
+
+    val conflictingIndexes = conflictingGroups.values.flatten().map { it.index }.toSet()
+    val names = libraries
+      .withIndex()
+      .filter { it.index !in conflictingIndexes }
+      .mapNotNull { (it.value as? IdeArtifactLibrary)?.name }
+      .toHashSet()
+    conflictingGroups.toSortedMap().values.forEach { group ->
+      group
+        .sortedBy { it.value.withName("").toString() }
+        .forEach { (index, library) ->
+          val name = names.generateLibraryName(buildRootDirectory, (library as IdeArtifactLibrary).artifactAddress)
+          libraries[index] = library.withName(name)
+        }
+    }
+    allocatedLibraryNames = names
+    libraries.toList()
   }
 
   /**
@@ -148,10 +210,19 @@ class InternedModels(private val buildRootDirectory: File?) {
     }
   }
 
+  // Called with [libraries] locked.
   private fun nameLibrary(unnamed: IdeArtifactLibrary) =
     allocatedLibraryNames.generateLibraryName(projectBasePath = buildRootDirectory, artifactAddress = unnamed.artifactAddress)
 }
 
+private fun IdeUnresolvedLibrary.withName(name: String): IdeUnresolvedLibrary {
+  return when (this) {
+    is IdeAndroidLibraryImpl -> copy(name = name)
+    is IdeJavaLibraryImpl -> copy(name = name)
+    else -> this
+  }
+}
+
 private fun MutableSet<String>.generateLibraryName(projectBasePath: File?, artifactAddress: String): String {
   val baseLibraryName = convertToLibraryName(artifactAddress, projectBasePath)
   var candidateLibraryName = baseLibraryName
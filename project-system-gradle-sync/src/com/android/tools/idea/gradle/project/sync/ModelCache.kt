@@ -48,6 +48,7 @@ import com.android.tools.idea.gradle.model.impl.ndk.v1.IdeNativeVariantAbiImpl
 import com.android.tools.idea.gradle.model.impl.ndk.v2.IdeNativeModuleImpl
 import com.android.tools.idea.gradle.project.sync.ModelCache.Companion.LOCAL_AARS
 import com.android.tools.idea.gradle.project.sync.ModelCache.Companion.LOCAL_JARS
+import com.android.tools.idea.projectsystem.gradle.sync.Counter
 import com.google.common.annotations.VisibleForTesting
 import com.google.common.collect.ImmutableSortedSet
 import com.intellij.openapi.util.io.FileUtil
@@ -135,7 +136,7 @@ interface ModelCache {
       return if (useV2BuilderModels) {
         modelCacheV2Impl(
           internedModels,
-          modelCacheLock,
+          Counter("modelConversion"),
           AgpVersion.parse(Version.ANDROID_GRADLE_PLUGIN_VERSION),
           syncTestMode = SyncTestMode.PRODUCTION,
           false,
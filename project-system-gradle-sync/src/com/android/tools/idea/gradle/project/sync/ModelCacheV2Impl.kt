@@ -120,20 +120,22 @@ import com.android.tools.idea.gradle.model.impl.ndk.v2.IdeNativeAbiImpl
 import com.android.tools.idea.gradle.model.impl.ndk.v2.IdeNativeModuleImpl
 import com.android.tools.idea.gradle.model.impl.ndk.v2.IdeNativeVariantImpl
 import com.android.tools.idea.gradle.model.impl.throwingIdeDependencies
+import com.android.tools.idea.projectsystem.gradle.sync.Counter
 import com.google.common.collect.ImmutableList
 import com.google.common.collect.ImmutableMap
 import com.google.common.collect.ImmutableSet
 import com.google.common.collect.Lists
 import java.io.File
-import java.util.concurrent.locks.ReentrantLock
-import kotlin.concurrent.withLock
 
 // NOTE: The implementation is structured as a collection of nested functions to ensure no recursive dependencies are possible between
 //       models unless explicitly handled by nesting. The same structure expressed as classes allows recursive data structures and thus we
 //       cannot validate the structure at compile time.
+//
+// NOTE: The only state shared between instances is [internedModels], which is thread-safe, and thus models of different modules can be
+//       converted concurrently. Time spent converting models is recorded by [conversionCounter].
 internal fun modelCacheV2Impl(
   internedModels: InternedModels,
-  lock: ReentrantLock,
+  conversionCounter: Counter,
   agpVersion: AgpVersion,
   syncTestMode: SyncTestMode,
   multiVariantAdditionalArtifactSupport: Boolean,
@@ -1441,7 +1443,7 @@ internal fun modelCacheV2Impl(
       variant: Variant,
       legacyApplicationIdModel: LegacyApplicationIdModel?
     ): ModelResult<IdeVariantCoreImpl> =
-      lock.withLock { variantFrom(androidProject, basicVariant, variant, legacyApplicationIdModel) }
+      conversionCounter { variantFrom(androidProject, basicVariant, variant, legacyApplicationIdModel) }
 
     override fun variantFrom(
       ownerBuildId: BuildId,
@@ -1452,7 +1454,7 @@ internal fun modelCacheV2Impl(
       androidProjectPathResolver: AndroidProjectPathResolver,
       buildNameMap: Map<String, BuildId>
     ): ModelResult<IdeVariantWithPostProcessor> =
-      lock.withLock {
+      conversionCounter {
         variantFrom(
           ownerBuildId,
           ownerProjectPath,
@@ -1473,11 +1475,11 @@ internal fun modelCacheV2Impl(
       androidDsl: AndroidDsl,
       legacyApplicationIdModel: LegacyApplicationIdModel?,
       gradlePropertiesModel: GradlePropertiesModel,
-    ): ModelResult<IdeAndroidProjectImpl> = lock.withLock {
+    ): ModelResult<IdeAndroidProjectImpl> = conversionCounter {
       androidProjectFrom(rootBuildId, buildId, basicProject, project, androidVersion, androidDsl, legacyApplicationIdModel, gradlePropertiesModel)
     }
 
-    override fun nativeModuleFrom(nativeModule: NativeModule): IdeNativeModuleImpl = lock.withLock { nativeModuleFrom(nativeModule) }
+    override fun nativeModuleFrom(nativeModule: NativeModule): IdeNativeModuleImpl = conversionCounter { nativeModuleFrom(nativeModule) }
   }
 }
 
@@ -0,0 +1,294 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.gradle.project.sync
+
+import com.android.tools.idea.gradle.model.IdePreResolvedModuleLibrary
+import com.android.tools.idea.gradle.model.IdeUnresolvedLibrary
+import com.android.tools.idea.gradle.model.LibraryReference
+import com.android.tools.idea.gradle.model.impl.IdeDependenciesCoreImpl
+import com.android.tools.idea.gradle.model.impl.IdeVariantCoreImpl
+import org.gradle.tooling.model.gradle.BasicGradleProject
+import org.jetbrains.annotations.VisibleForTesting
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.File
+import java.io.InputStream
+import java.io.ObjectInputStream
+import java.io.ObjectOutputStream
+import java.io.ObjectStreamClass
+import java.io.Serializable
+import java.security.MessageDigest
+
+/**
+ * An on-disk cache of the variant models converted for Android modules in previous syncs. It backs the opt-in incremental sync mode
+ * (see [GradleSyncStudioFlags.studioFlagIncrementalSyncModelCache]).
+ *
+ * Each Android module is fingerprinted by the content of its own build inputs (build scripts and `gradle.properties` in the project
+ * directory, and the manifests and source directories of its source sets). A cached variant of a module is reused instead of being
+ * fetched from Gradle when:
+ *   1. the global fingerprint (settings, `local.properties`, root build scripts, version catalogs, `buildSrc`, build scripts of all
+ *      non-Android modules, AGP version, Studio build number and sync flags) has not changed,
+ *   2. the module's own fingerprint has not changed,
+ *   3. the fingerprints of all Android modules the cached variant depended on have not changed and their cached entries are still valid,
+ *   4. the same variant is requested.
+ *
+ * Library references of cached variants point to the library table of the sync that produced them, so cached libraries are stored
+ * together with the variant and re-interned into the [InternedModels] of the current sync when reused.
+ *
+ * Note: dependencies that can change without any change to build inputs (e.g. dynamic versions or snapshots) are not detected, which is
+ * why this mode is opt-in.
+ */
+internal class ModuleModelCache private constructor(
+  private val cacheDirectory: File,
+  private val globalFingerprint: String,
+  /** Module id => fingerprint of the module's own build inputs, for all Android modules in this sync. */
+  private val ownFingerprints: Map<String, String>
+) {
+  private val entries: Map<String, CachedModuleEntry> = ownFingerprints.keys.mapNotNull { id -> readEntry(id)?.let { id to it } }.toMap()
+  private val validity: MutableMap<String, Boolean> = HashMap()
+
+  /**
+   * Returns the cached [variantName] variant of the module with the given [moduleId] re-interned into [internedModels], or null if there
+   * is no valid cached variant.
+   *
+   * Note: only modules without native code are cached, and thus ABIs are not taken into account.
+   */
+  fun load(moduleId: String, variantName: String, internedModels: InternedModels): IdeVariantCoreImpl? {
+    val entry = entries[moduleId] ?: return null
+    if (entry.variant != variantName) return null
+    if (!isValid(moduleId, HashSet())) return null
+    val payload = runCatching { entry.payload.deserialize<CachedVariantPayload>() }.getOrNull() ?: return null
+    val references = payload.libraries.map { internedModels.reintern(it) }
+    return payload.variant.mapLibraryReferences { references[it.libraryIndex] }
+  }
+
+  /**
+   * Stores the [variant] fetched for the module with the given [moduleId] so that it can be reused by the next sync.
+   */
+  fun store(moduleId: String, variant: IdeVariantCoreImpl, libraryResolver: (LibraryReference) -> IdeUnresolvedLibrary) {
+    val ownFingerprint = ownFingerprints[moduleId] ?: return
+    // Rebase library references onto a table containing only the libraries the variant uses.
+    val libraryIndexes = LinkedHashMap<LibraryReference, Int>()
+    val rebased = variant.mapLibraryReferences { reference ->
+      LibraryReference(libraryIndexes.getOrPut(reference) { libraryIndexes.size })
+    }
+    val libraries = libraryIndexes.keys.map(libraryResolver)
+    val dependencyFingerprints = libraries
+      .filterIsInstance<IdePreResolvedModuleLibrary>()
+      .map { Modules.createUniqueModuleId(it.buildId, it.projectPath) }
+      .filter { it != moduleId }
+      .distinct()
+      .associateWith { ownFingerprints[it] ?: return }
+    val entry = CachedModuleEntry(
+      globalFingerprint = globalFingerprint,
+      ownFingerprint = ownFingerprint,
+      dependencyFingerprints = dependencyFingerprints,
+      variant = variant.name,
+      payload = runCatching { CachedVariantPayload(rebased, libraries).serialize() }.getOrNull() ?: return
+    )
+    runCatching {
+      cacheDirectory.mkdirs()
+      entryFile(moduleId).writeBytes(entry.serialize())
+    }
+  }
+
+  private fun isValid(moduleId: String, visiting: MutableSet<String>): Boolean {
+    validity[moduleId]?.let { return it }
+    // A dependency cycle between modules cannot be resolved by Gradle, treat it as invalid.
+    if (!visiting.add(moduleId)) return false
+    val entry = entries[moduleId]
+    val result = entry != null &&
+                 entry.globalFingerprint == globalFingerprint &&
+                 entry.ownFingerprint == ownFingerprints[moduleId] &&
+                 entry.dependencyFingerprints.all { (dependencyId, fingerprint) ->
+                   ownFingerprints[dependencyId] == fingerprint && isValid(dependencyId, visiting)
+                 }
+    validity[moduleId] = result
+    return result
+  }
+
+  private fun readEntry(moduleId: String): CachedModuleEntry? {
+    val file = entryFile(moduleId)
+    if (!file.isFile) return null
+    return runCatching { file.readBytes().deserialize<CachedModuleEntry>() }.getOrNull()
+  }
+
+  private fun entryFile(moduleId: String): File = File(cacheDirectory, moduleId.sha256() + ".bin")
+
+  private class CachedModuleEntry(
+    val globalFingerprint: String,
+    val ownFingerprint: String,
+    val dependencyFingerprints: Map<String, String>,
+    val variant: String,
+    /** Serialized [CachedVariantPayload], only deserialized when the entry is reused. */
+    val payload: ByteArray
+  ) : Serializable {
+    companion object {
+      private const val serialVersionUID: Long = CACHE_VERSION
+    }
+  }
+
+  private class CachedVariantPayload(
+    /** The variant with library references pointing to [libraries]. */
+    val variant: IdeVariantCoreImpl,
+    val libraries: List<IdeUnresolvedLibrary>
+  ) : Serializable {
+    companion object {
+      private const val serialVersionUID: Long = CACHE_VERSION
+    }
+  }
+
+  companion object {
+    private const val CACHE_VERSION = 1L
+    private const val CACHE_DIRECTORY = ".gradle/android-studio/sync-model-cache"
+
+    fun create(
+      buildInfo: BuildInfo,
+      androidProjects: List<BasicGradleProject>,
+      agpVersions: Collection<String>,
+      flags: GradleSyncStudioFlags
+    ): ModuleModelCache {
+      val androidProjectPaths = androidProjects.map { it.projectDirectory }.toSet()
+      return create(
+        cacheDirectory = File(buildInfo.buildRootDirectory, CACHE_DIRECTORY),
+        buildRoots = buildInfo.projects.map { it.projectIdentifier.buildIdentifier.rootDir }.distinct().toList(),
+        androidModuleDirectories = androidProjects.associate { Modules.createUniqueModuleId(it) to it.projectDirectory },
+        otherModuleDirectories = buildInfo.projects.map { it.projectDirectory }.filter { it !in androidProjectPaths }.toList(),
+        agpVersions = agpVersions,
+        flags = flags
+      )
+    }
+
+    @VisibleForTesting
+    fun create(
+      cacheDirectory: File,
+      buildRoots: Collection<File>,
+      /** Module id => project directory, for all Android modules in this sync. */
+      androidModuleDirectories: Map<String, File>,
+      otherModuleDirectories: Collection<File>,
+      agpVersions: Collection<String>,
+      flags: GradleSyncStudioFlags
+    ): ModuleModelCache {
+      val globalInputs = buildList {
+        buildRoots.sorted().forEach { buildRoot ->
+          add(File(buildRoot, "settings.gradle"))
+          add(File(buildRoot, "settings.gradle.kts"))
+          add(File(buildRoot, "gradle.properties"))
+          // The SDK and NDK locations end up in the boot classpath and the native models.
+          add(File(buildRoot, "local.properties"))
+          add(File(buildRoot, "gradle/libs.versions.toml"))
+          add(File(buildRoot, "gradle/wrapper/gradle-wrapper.properties"))
+          val buildSrc = File(buildRoot, "buildSrc")
+          if (buildSrc.isDirectory) addAll(buildSrc.walkTopDown().onEnter { it.name != "build" && it.name != ".gradle" }.filter { it.isFile })
+        }
+        // We do not know the dependencies of non-Android modules, so treat their build inputs as global inputs.
+        otherModuleDirectories.sorted().forEach { addAll(moduleInputs(it)) }
+      }
+      val globalFingerprint = fingerprint(globalInputs) {
+        update(CACHE_VERSION.toString())
+        // Cached variants are the output of the model conversion code, which changes with the IDE.
+        update(flags.studioBuildNumber)
+        agpVersions.sorted().forEach { update(it) }
+        update(flags.toString())
+      }
+      return ModuleModelCache(
+        cacheDirectory = cacheDirectory,
+        globalFingerprint = globalFingerprint,
+        ownFingerprints = androidModuleDirectories.mapValues { (_, directory) -> fingerprint(moduleInputs(directory)) }
+      )
+    }
+
+    /**
+     * The files the models of a module depend on: its build scripts and properties, and for each source set in the conventional `src`
+     * directory, its manifest and which of its source directories (`java`, `res`, `aidl`...) exist.
+     *
+     * Note: source sets and manifests configured at other locations are only detected through the changes to the build scripts.
+     */
+    private fun moduleInputs(directory: File): List<File> {
+      return buildList {
+        add(File(directory, "build.gradle"))
+        add(File(directory, "build.gradle.kts"))
+        add(File(directory, "gradle.properties"))
+        add(File(directory, "proguard-rules.pro"))
+        File(directory, "src").listFiles { file -> file.isDirectory }?.sorted()?.forEach { sourceSet ->
+          add(File(sourceSet, "AndroidManifest.xml"))
+          sourceSet.listFiles { file -> file.isDirectory }?.sorted()?.let { addAll(it) }
+        }
+      }
+    }
+
+    private fun fingerprint(files: List<File>, extra: MessageDigest.() -> Unit = {}): String {
+      val digest = MessageDigest.getInstance("SHA-256")
+      files.forEach { file ->
+        digest.update(file.path)
+        when {
+          file.isFile -> digest.update(file.readBytes())
+          file.isDirectory -> digest.update("<directory>")
+          else -> digest.update("<missing>")
+        }
+      }
+      digest.extra()
+      return digest.digest().toHex()
+    }
+
+    private fun MessageDigest.update(string: String) = update(string.toByteArray(Charsets.UTF_8))
+
+    private fun String.sha256(): String = MessageDigest.getInstance("SHA-256").digest(toByteArray(Charsets.UTF_8)).toHex()
+
+    private fun ByteArray.toHex(): String = joinToString("") { "%02x".format(it) }
+  }
+}
+
+/**
+ * Returns a copy of this variant with every library reference replaced by the result of [transform].
+ */
+internal fun IdeVariantCoreImpl.mapLibraryReferences(transform: (LibraryReference) -> LibraryReference): IdeVariantCoreImpl {
+  fun IdeDependenciesCoreImpl.map() = IdeDependenciesCoreImpl(dependencies.map { it.copy(target = transform(it.target)) })
+  return copy(
+    mainArtifact = mainArtifact.copy(
+      compileClasspathCore = mainArtifact.compileClasspathCore.map(),
+      runtimeClasspathCore = mainArtifact.runtimeClasspathCore.map()
+    ),
+    unitTestArtifact = unitTestArtifact?.let {
+      it.copy(compileClasspathCore = it.compileClasspathCore.map(), runtimeClasspathCore = it.runtimeClasspathCore.map())
+    },
+    androidTestArtifact = androidTestArtifact?.let {
+      it.copy(compileClasspathCore = it.compileClasspathCore.map(), runtimeClasspathCore = it.runtimeClasspathCore.map())
+    },
+    testFixturesArtifact = testFixturesArtifact?.let {
+      it.copy(compileClasspathCore = it.compileClasspathCore.map(), runtimeClasspathCore = it.runtimeClasspathCore.map())
+    }
+  )
+}
+
+private fun Serializable.serialize(): ByteArray {
+  val bytes = ByteArrayOutputStream()
+  ObjectOutputStream(bytes).use { it.writeObject(this) }
+  return bytes.toByteArray()
+}
+
+private inline fun <reified T> ByteArray.deserialize(): T {
+  return ClassLoaderObjectInputStream(ByteArrayInputStream(this), ModuleModelCache::class.java.classLoader).use { it.readObject() as T }
+}
+
+/**
+ * An [ObjectInputStream] resolving classes with the class loader of the sync action rather than the Gradle daemon's one.
+ */
+private class ClassLoaderObjectInputStream(input: InputStream, private val classLoader: ClassLoader) : ObjectInputStream(input) {
+  override fun resolveClass(desc: ObjectStreamClass): Class<*> {
+    return runCatching { Class.forName(desc.name, false, classLoader) }.getOrElse { super.resolveClass(desc) }
+  }
+}
@@ -32,6 +32,10 @@ class SyncCounters {
   val mppModel = Counter("mppModel")
   val nativeModel = Counter("nativeModel")
   val otherModel = Counter("otherModel")
+  val cachedVariantModel = Counter("cachedVariantModel")
+
+  // Time spent converting fetched models into IDE models (not included in the model fetching counters above).
+  val modelConversion = Counter("modelConversion")
 
   override fun toString(): String {
     return buildString {
@@ -47,6 +51,8 @@ class SyncCounters {
       append(kaptModel)
       append(mppModel)
       append(otherModel)
+      append(cachedVariantModel)
+      append(modelConversion)
     }
   }
 }
@@ -24,6 +24,7 @@ import org.gradle.tooling.BuildController
 import org.gradle.tooling.model.BuildModel
 import java.util.LinkedList
 import java.util.concurrent.locks.ReentrantLock
+import kotlin.concurrent.withLock
 
 internal class SyncProjectActionWorker(
   private val buildInfo: BuildInfo,
@@ -34,6 +35,8 @@ internal class SyncProjectActionWorker(
   private val modelCacheLock = ReentrantLock()
   private val internedModels = InternedModels(buildInfo.buildRootDirectory)
   private val androidModulesById: MutableMap<String, AndroidModule> = HashMap()
+  private var moduleModelCache: ModuleModelCache? = null
+  private val moduleIdsWithCachedVariants: MutableSet<String> = HashSet()
   private val rootBuildModel: BuildModel get() = buildInfo.rootBuild
 
   /**
@@ -57,6 +60,14 @@ internal class SyncProjectActionWorker(
 
     val androidModules = modules.filterIsInstance<AndroidModule>()
     androidModules.forEach { androidModulesById[it.id] = it }
+    if (syncOptions.flags.studioFlagIncrementalSyncModelCache && syncOptions is SingleVariantSyncActionOptions) {
+      moduleModelCache = ModuleModelCache.create(
+        buildInfo,
+        androidModules.map { it.gradleProject },
+        androidModules.mapNotNull { it.agpVersion?.toString() }.distinct(),
+        syncOptions.flags
+      )
+    }
 
     val androidModulesByProjectPath = androidModules
       .associateBy { (BuildId(it.gradleProject.projectIdentifier.buildIdentifier.rootDir) to it.gradleProject.path) }
@@ -71,6 +82,7 @@ internal class SyncProjectActionWorker(
           // without any Variant information. Now we need to request that Variant information for the variants that we are interested in.
           // e.g the ones that should be selected by the IDE.
           chooseSelectedVariants(androidModules, syncOptions, ::resolveAndroidProjectPath)
+          storeVariantsInModuleModelCache(androidModules)
         }
 
         is AllVariantsSyncActionOptions -> {
@@ -100,6 +112,28 @@ internal class SyncProjectActionWorker(
     return modules.map { it.prepare(indexedModels) } + GradleProject(rootBuildModel, internedModels.createLibraryTable())
   }
 
+  /**
+   * Stores the variants fetched from Gradle in this sync in the [moduleModelCache], if enabled.
+   */
+  private fun storeVariantsInModuleModelCache(androidModules: List<AndroidModule>) {
+    val cache = moduleModelCache ?: return
+    androidModules
+      .asSequence()
+      .filter { it.isCacheable() && it.id !in moduleIdsWithCachedVariants }
+      .filter { it.exceptions.isEmpty() && it.unresolvedDependencies.isEmpty() }
+      .forEach { module ->
+        val variant = module.syncedVariant?.variant ?: return@forEach
+        modelCacheLock.withLock { cache.store(module.id, variant, internedModels::lookup) }
+      }
+  }
+
+  /**
+   * Only variants of V2 modules without native code can be reused from the [moduleModelCache] since their variant models do not require
+   * post-processing and do not depend on the selected ABI.
+   */
+  private fun AndroidModule.isCacheable(): Boolean =
+    this is AndroidModule.V2 && nativeModelVersion == AndroidModule.NativeModelVersion.None
+
   private fun indexModels(modules: List<GradleModule>): IndexedModels {
     return IndexedModels(
       dynamicFeatureToBaseFeatureMap =
@@ -120,7 +154,7 @@ internal class SyncProjectActionWorker(
   ): List<GradleModule> {
     return actionRunner.runActions(
       incompleteBasicModules
-        .map { it.getGradleModuleAction(internedModels, modelCacheLock, buildInfo) }
+        .map { it.getGradleModuleAction(internedModels, modelCacheLock, buildInfo, syncCounters) }
         .toList()
     )
   }
@@ -339,6 +373,22 @@ internal class SyncProjectActionWorker(
   ): ActionToRun<ModelResult<SyncVariantResultCore>> {
     val module = androidModulesById[moduleConfiguration.id]
       ?: return ActionToRun({ ModelResult.create { error("Module with id '${moduleConfiguration.id}' not found") } }, false)
+    val cachedVariant = moduleModelCache?.takeIf { module.isCacheable() }?.let { cache ->
+      syncCounters.cachedVariantModel {
+        modelCacheLock.withLock { cache.load(module.id, moduleConfiguration.variant, internedModels) }
+      }
+    }
+    if (cachedVariant != null) {
+      moduleIdsWithCachedVariants.add(module.id)
+      val result = SyncVariantResultCoreSuccess(
+        moduleConfiguration,
+        module,
+        IdeVariantWithPostProcessor(cachedVariant),
+        NativeVariantAbiResult.None,
+        unresolvedDependencies = emptyList()
+      )
+      return ActionToRun({ ModelResult.create { result } })
+    }
     val isV2Action =
       when (module) { // Exhaustive when, do not replace with `is`.
         is AndroidModule.V1 -> false
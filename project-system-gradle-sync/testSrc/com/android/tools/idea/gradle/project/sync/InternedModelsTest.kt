@@ -26,6 +26,9 @@ import org.junit.Assert.assertEquals
 import org.junit.Assert.assertTrue
 import org.junit.Test
 import java.io.File
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+import kotlin.random.Random
 
 private const val BUILD_ROOT = "/tmp/abc"
 
@@ -149,6 +152,30 @@ class InternedModelsTest {
     assertTrue(module1 === module2)
   }
 
+  @Test
+  fun `reintern libraries from another sync`() {
+    val previousSync = InternedModels(File(BUILD_ROOT))
+    val libRoot = "/tmp/libs/lib"
+    val unnamed = ideAndroidLibrary(libRoot, "com.example:lib:1.0", "$libRoot/artifactFile")
+    val module = IdePreResolvedModuleLibraryImpl(
+      buildId = "/tmp/build",
+      projectPath = ":app",
+      variant = "debug",
+      lintJar = null,
+      sourceSet = IdeModuleWellKnownSourceSet.MAIN
+    )
+    val previousLibrary = previousSync.lookup(previousSync.getOrCreate(unnamed))
+    val previousModule = previousSync.lookup(previousSync.getOrCreate(module))
+
+    val existingRef = internedModels.getOrCreate(unnamed.copy())
+    val reinternedRef = internedModels.reintern(previousLibrary)
+    val reinternedModuleRef = internedModels.reintern(previousModule)
+
+    assertEquals(existingRef, reinternedRef)
+    assertEquals("com.example:lib:1.0", reinternedRef.lookup().name)
+    assertEquals(module, internedModels.lookup(reinternedModuleRef))
+  }
+
   @Test
   fun `name library with matching artifact name`() {
     val unnamed1 = let {
@@ -173,6 +200,64 @@ class InternedModelsTest {
     assertEquals("com.example:lib:1.0 (1)", named2.name)
   }
 
+  @Test
+  fun `library names do not depend on creation order`() {
+    val unnamed1 = ideAndroidLibrary("/tmp/libs/lib1", "com.example:lib:1.0", "/tmp/libs/lib1/artifactFile")
+    val unnamed2 = ideAndroidLibrary("/tmp/libs/lib2", "com.example:lib:1.0", "/tmp/libs/lib2/artifactFile")
+
+    fun namesInCreationOrder(vararg libraries: IdeAndroidLibraryImpl): Map<String, String> {
+      val models = InternedModels(File(BUILD_ROOT))
+      libraries.forEach { models.getOrCreate(it) }
+      return models.createLibraryTable().libraries
+        .map { it as IdeAndroidLibraryImpl }
+        .associate { it.folder.path to it.name }
+    }
+
+    val names = namesInCreationOrder(unnamed1, unnamed2)
+    assertEquals(names, namesInCreationOrder(unnamed2, unnamed1))
+    assertEquals(setOf("com.example:lib:1.0", "com.example:lib:1.0 (1)"), names.values.toSet())
+  }
+
+  @Test
+  fun `lookups agree with the library table after names are re-allocated`() {
+    val unnamed1 = ideAndroidLibrary("/tmp/libs/lib1", "com.example:lib:1.0", "/tmp/libs/lib1/artifactFile")
+    val unnamed2 = ideAndroidLibrary("/tmp/libs/lib2", "com.example:lib:1.0", "/tmp/libs/lib2/artifactFile")
+    val unnamed3 = ideAndroidLibrary("/tmp/libs/lib3", "com.example:lib:1.0", "/tmp/libs/lib3/artifactFile")
+    internedModels.getOrCreate(unnamed2)
+    internedModels.getOrCreate(unnamed1)
+
+    val table = internedModels.createLibraryTable().libraries
+    val reference1 = internedModels.getOrCreate(unnamed1.copy())
+    val reference2 = internedModels.getOrCreate(unnamed2.copy())
+    val reference3 = internedModels.getOrCreate(unnamed3)
+
+    assertEquals((table[reference1.libraryIndex] as IdeArtifactLibrary).name, reference1.lookup().name)
+    assertEquals((table[reference2.libraryIndex] as IdeArtifactLibrary).name, reference2.lookup().name)
+    assertEquals(
+      setOf("com.example:lib:1.0", "com.example:lib:1.0 (1)", "com.example:lib:1.0 (2)"),
+      setOf(reference1.lookup().name, reference2.lookup().name, reference3.lookup().name)
+    )
+  }
+
+  @Test
+  fun `intern libraries concurrently`() {
+    val unnamedLibraries = (0 until 100).map { ideAndroidLibrary("/tmp/libs/lib$it", "com.example:lib$it:1.0", "/tmp/libs/lib$it/a") }
+    val executor = Executors.newFixedThreadPool(8)
+    try {
+      val references = (0 until 8)
+        .map { thread ->
+          executor.submit(Callable { unnamedLibraries.shuffled(Random(thread)).associateWith { internedModels.getOrCreate(it.copy()) } })
+        }
+        .map { it.get() }
+      references.forEach { assertEquals(references[0], it) }
+      assertEquals(100, internedModels.createLibraryTable().libraries.size)
+      assertEquals(100, references[0].values.toSet().size)
+    }
+    finally {
+      executor.shutdownNow()
+    }
+  }
+
   @Test
   fun `name local aar library`() {
     val unnamed = let {
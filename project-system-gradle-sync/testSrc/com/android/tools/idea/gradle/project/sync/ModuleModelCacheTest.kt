@@ -0,0 +1,233 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.gradle.project.sync
+
+import com.android.tools.idea.gradle.model.IdeArtifactName
+import com.android.tools.idea.gradle.model.IdeModuleWellKnownSourceSet
+import com.android.tools.idea.gradle.model.LibraryReference
+import com.android.tools.idea.gradle.model.impl.IdeAndroidArtifactCoreImpl
+import com.android.tools.idea.gradle.model.impl.IdeApiVersionImpl
+import com.android.tools.idea.gradle.model.impl.IdeBuildTasksAndOutputInformationImpl
+import com.android.tools.idea.gradle.model.impl.IdeDependenciesCoreImpl
+import com.android.tools.idea.gradle.model.impl.IdeDependencyCoreImpl
+import com.android.tools.idea.gradle.model.impl.IdePreResolvedModuleLibraryImpl
+import com.android.tools.idea.gradle.model.impl.IdeVariantCoreImpl
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotNull
+import org.junit.Assert.assertNull
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+
+class ModuleModelCacheTest {
+  @get:Rule
+  val temporaryFolder = TemporaryFolder()
+
+  private lateinit var buildRoot: File
+  private lateinit var app: File
+  private lateinit var lib: File
+  private lateinit var appId: String
+  private lateinit var libId: String
+
+  private val flags = GradleSyncStudioFlags(
+    studioFlagParallelSyncEnabled = true,
+    studioFlagParallelSyncPrefetchVariantsEnabled = false,
+    studioFlagUseV2BuilderModels = true,
+    studioFlagDisableForcedUpgrades = false,
+    studioFlagOutputSyncStats = false,
+    studioHprofOutputDirectory = "",
+    studioHeapAnalysisOutputDirectory = "",
+    studioHeapAnalysisLightweightMode = false,
+    studioFlagMultiVariantAdditionalArtifactSupport = false,
+    studioFlagSkipRuntimeClasspathForLibraries = false,
+    studioFlagSupportFutureAgpVersions = false,
+    studioFlagIncrementalSyncModelCache = true,
+    studioBuildNumber = "AI-232.1"
+  )
+
+  @Before
+  fun setUp() {
+    buildRoot = temporaryFolder.newFolder("project")
+    File(buildRoot, "settings.gradle").writeText("include ':app', ':lib'")
+    app = File(buildRoot, "app").apply { mkdirs() }
+    lib = File(buildRoot, "lib").apply { mkdirs() }
+    for (module in listOf(app, lib)) {
+      File(module, "build.gradle").writeText("plugins { id 'com.android.library' }")
+      File(module, "src/main/java").mkdirs()
+      File(module, "src/main/AndroidManifest.xml").writeText("<manifest/>")
+    }
+    appId = Modules.createUniqueModuleId(buildRoot, ":app")
+    libId = Modules.createUniqueModuleId(buildRoot, ":lib")
+  }
+
+  private fun createCache(flags: GradleSyncStudioFlags = this.flags) = ModuleModelCache.create(
+    cacheDirectory = File(buildRoot, ".gradle/android-studio/sync-model-cache"),
+    buildRoots = listOf(buildRoot),
+    androidModuleDirectories = mapOf(appId to app, libId to lib),
+    otherModuleDirectories = listOf(),
+    agpVersions = listOf("8.1.0"),
+    flags = flags
+  )
+
+  /** Stores the debug variant of :app, depending on :lib, and of :lib. */
+  private fun storeVariants() {
+    val internedModels = InternedModels(buildRoot)
+    val libReference = internedModels.getOrCreate(
+      IdePreResolvedModuleLibraryImpl(buildRoot.path, ":lib", "debug", null, IdeModuleWellKnownSourceSet.MAIN))
+    val cache = createCache()
+    cache.store(appId, variant("debug", listOf(libReference)), internedModels::lookup)
+    cache.store(libId, variant("debug"), internedModels::lookup)
+  }
+
+  private fun loadApp(variantName: String = "debug") = createCache().load(appId, variantName, InternedModels(buildRoot))
+
+  @Test
+  fun `unchanged module is loaded from the cache`() {
+    assertNull(loadApp())
+    storeVariants()
+
+    val internedModels = InternedModels(buildRoot)
+    val cached = createCache().load(appId, "debug", internedModels)
+
+    assertNotNull(cached)
+    val dependency = cached!!.mainArtifact.compileClasspathCore.dependencies.single()
+    assertEquals(":lib", (internedModels.lookup(dependency.target) as IdePreResolvedModuleLibraryImpl).projectPath)
+  }
+
+  @Test
+  fun `other variant is not loaded from the cache`() {
+    storeVariants()
+
+    assertNull(loadApp("release"))
+  }
+
+  @Test
+  fun `changing the module build script invalidates the module`() {
+    storeVariants()
+
+    File(app, "build.gradle").appendText("\nandroid { namespace 'com.example.app' }")
+
+    assertNull(loadApp())
+    assertNotNull(createCache().load(libId, "debug", InternedModels(buildRoot)))
+  }
+
+  @Test
+  fun `changing a manifest invalidates the module`() {
+    storeVariants()
+
+    File(app, "src/main/AndroidManifest.xml").writeText("<manifest package='com.example.app'/>")
+
+    assertNull(loadApp())
+  }
+
+  @Test
+  fun `adding a source set invalidates the module`() {
+    storeVariants()
+
+    File(app, "src/debug/res").mkdirs()
+
+    assertNull(loadApp())
+  }
+
+  @Test
+  fun `changing local properties invalidates all modules`() {
+    storeVariants()
+
+    File(buildRoot, "local.properties").writeText("sdk.dir=/sdk")
+
+    assertNull(loadApp())
+    assertNull(createCache().load(libId, "debug", InternedModels(buildRoot)))
+  }
+
+  @Test
+  fun `upgrading Studio invalidates all modules`() {
+    storeVariants()
+
+    val upgradedFlags = flags.copy(studioBuildNumber = "AI-232.2")
+
+    assertNull(createCache(upgradedFlags).load(appId, "debug", InternedModels(buildRoot)))
+    assertNull(createCache(upgradedFlags).load(libId, "debug", InternedModels(buildRoot)))
+  }
+
+  @Test
+  fun `changing a dependency invalidates its dependents`() {
+    storeVariants()
+
+    File(lib, "src/main/AndroidManifest.xml").writeText("<manifest package='com.example.lib'/>")
+
+    assertNull(loadApp())
+  }
+
+  private fun variant(name: String, dependencies: List<LibraryReference> = listOf()): IdeVariantCoreImpl {
+    val classpath = IdeDependenciesCoreImpl(dependencies.map { IdeDependencyCoreImpl(it, null) })
+    return IdeVariantCoreImpl(
+      name = name,
+      displayName = name,
+      mainArtifact = IdeAndroidArtifactCoreImpl(
+        name = IdeArtifactName.MAIN,
+        compileTaskName = "compile",
+        assembleTaskName = "assemble",
+        classesFolder = listOf(),
+        variantSourceProvider = null,
+        multiFlavorSourceProvider = null,
+        ideSetupTaskNames = listOf(),
+        generatedSourceFolders = listOf(),
+        isTestArtifact = false,
+        compileClasspathCore = classpath,
+        runtimeClasspathCore = classpath,
+        unresolvedDependencies = listOf(),
+        applicationId = null,
+        signingConfigName = null,
+        isSigned = false,
+        generatedResourceFolders = listOf(),
+        additionalRuntimeApks = listOf(),
+        testOptions = null,
+        abiFilters = setOf(),
+        buildInformation = IdeBuildTasksAndOutputInformationImpl("assemble", null, null, null, null, null),
+        codeShrinker = null,
+        modelSyncFiles = listOf(),
+        privacySandboxSdkInfo = null,
+        desugaredMethodsFiles = listOf()
+      ),
+      unitTestArtifact = null,
+      androidTestArtifact = null,
+      testFixturesArtifact = null,
+      buildType = "debug",
+      productFlavors = listOf(),
+      minSdkVersion = IdeApiVersionImpl(21, null, "21"),
+      targetSdkVersion = null,
+      maxSdkVersion = null,
+      versionCode = null,
+      versionNameWithSuffix = null,
+      versionNameSuffix = null,
+      instantAppCompatible = false,
+      vectorDrawablesUseSupportLibrary = false,
+      resourceConfigurations = listOf(),
+      resValues = mapOf(),
+      proguardFiles = listOf(),
+      consumerProguardFiles = listOf(),
+      manifestPlaceholders = mapOf(),
+      testInstrumentationRunner = null,
+      testInstrumentationRunnerArguments = mapOf(),
+      testedTargetVariants = listOf(),
+      deprecatedPreMergedApplicationId = null,
+      deprecatedPreMergedTestApplicationId = null,
+      desugaredMethodsFiles = listOf()
+    )
+  }
+}